@@ -21,6 +21,12 @@ import org.jahia.services.content.nodetypes.ExtendedPropertyDefinition;
 import org.jahia.services.content.nodetypes.SelectorType;
 
 import javax.jcr.PropertyType;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Defines the HTML filtering policy for a given site and workspace.
@@ -35,6 +41,13 @@ public interface Policy {
      */
     Strategy getStrategy();
 
+    /**
+     * Identifies the sanitization rules of the policy (rule sets, formats and placeholders): policies with the same fingerprint
+     * produce the same sanitized HTML. The fingerprint changes when any of those rules changes in the configuration.
+     *
+     * @return the fingerprint of the sanitization rules
+     */
+    String getFingerprint();
 
     /**
      * Determines whether the policy is applicable to a given property.
@@ -63,6 +76,120 @@ public interface Policy {
      *
      * @param htmlText the HTML text to be sanitized
      * @return the result of the sanitize operation, including the filtered HTML and any changes made
+     * @see #sanitize(String, SanitizeDetailLevel)
      */
     PolicySanitizedHtmlResult sanitize(String htmlText);
+
+    /**
+     * Same as {@link #sanitize(String)}, only collecting the information of the given detail level.
+     * <p>
+     * Lower detail levels avoid the cost of collecting information that the caller does not use, e.g. the rejected tags/attributes
+     * when only the sanitized HTML is needed.
+     *
+     * @param htmlText    the HTML text to be sanitized
+     * @param detailLevel the information to collect
+     * @return the result of the sanitize operation, only providing the information of the detail level
+     */
+    PolicySanitizedHtmlResult sanitize(String htmlText, SanitizeDetailLevel detailLevel);
+
+    /**
+     * Batch variant of {@link #sanitize(String)}, e.g. for the values of a multi-valued property or for bulk jobs.
+     *
+     * @param htmlTexts the HTML texts to be sanitized
+     * @return the results of the sanitize operations, in the order of the HTML texts
+     * @see #sanitizeAll(List, SanitizeDetailLevel)
+     */
+    default List<PolicySanitizedHtmlResult> sanitizeAll(List<String> htmlTexts) {
+        return sanitizeAll(htmlTexts, SanitizeDetailLevel.FULL);
+    }
+
+    /**
+     * Batch variant of {@link #sanitize(String, SanitizeDetailLevel)}.
+     * <p>
+     * Identical HTML texts are only sanitized once and share the same result. Large batches are sanitized in parallel, on a pool of
+     * threads bounded by the module.
+     *
+     * @param htmlTexts   the HTML texts to be sanitized
+     * @param detailLevel the information to collect
+     * @return the results of the sanitize operations, in the order of the HTML texts
+     */
+    List<PolicySanitizedHtmlResult> sanitizeAll(List<String> htmlTexts, SanitizeDetailLevel detailLevel);
+
+    /**
+     * Asynchronous variant of {@link #sanitize(String)}.
+     *
+     * @param htmlText the HTML text to be sanitized
+     * @return the stage completed with the result of the sanitize operation
+     * @see #sanitizeAsync(String, SanitizeDetailLevel)
+     */
+    default CompletionStage<PolicySanitizedHtmlResult> sanitizeAsync(String htmlText) {
+        return sanitizeAsync(htmlText, SanitizeDetailLevel.FULL);
+    }
+
+    /**
+     * Asynchronous variant of {@link #sanitize(String, SanitizeDetailLevel)}, so that the caller can do something else meanwhile,
+     * e.g. reading the next nodes from the JCR.
+     * <p>
+     * The sanitization runs on an executor bounded by the module rather than on the thread of the caller. When too many
+     * sanitizations are already pending, the returned stage is completed exceptionally with a {@link RejectedExecutionException}
+     * right away: the caller should then wait for its pending sanitizations before submitting new ones. A sanitization that is not
+     * started yet is skipped if the stage is cancelled with {@link CompletableFuture#cancel(boolean)}.
+     *
+     * @param htmlText    the HTML text to be sanitized
+     * @param detailLevel the information to collect
+     * @return the stage completed with the result of the sanitize operation
+     */
+    CompletionStage<PolicySanitizedHtmlResult> sanitizeAsync(String htmlText, SanitizeDetailLevel detailLevel);
+
+    /**
+     * Streaming variant of {@link #sanitize(String)}, for large HTML inputs: the sanitized HTML is written to the given output as it
+     * is produced, instead of being returned as a String.
+     * <p>
+     * The sanitized HTML written and the rejected tags/attributes are identical to the ones of {@link #sanitize(String)}.
+     * If a limit of the policy is exceeded (see {@link PolicyValidationResult#getExceededLimit()}), the output written until then
+     * is incomplete and must be discarded.
+     *
+     * @param htmlText the HTML text to be sanitized
+     * @param output   where the sanitized HTML is written to
+     * @return the tags/attributes rejected during the sanitize operation
+     * @throws IOException if an error occurs while writing the output
+     */
+    PolicyValidationResult sanitize(String htmlText, Appendable output) throws IOException;
+
+    /**
+     * Same as {@link #sanitize(String, Appendable)}, with the HTML text read from the given reader.
+     * <p>
+     * The input is read entirely before being sanitized, but no complete copy of the output is kept in memory.
+     *
+     * @param htmlReader the reader providing the HTML text to be sanitized, not closed by this method
+     * @param output     where the sanitized HTML is written to
+     * @return the tags/attributes rejected during the sanitize operation
+     * @throws IOException if an error occurs while reading the input or writing the output
+     */
+    PolicyValidationResult sanitize(Reader htmlReader, Appendable output) throws IOException;
+
+    /**
+     * Validates an HTML String input against the configured rules, without producing the sanitized HTML.
+     * <p>
+     * This is equivalent to checking the rejected tags/attributes of {@link #sanitize(String)}, but cheaper as no output is rendered.
+     *
+     * @param htmlText the HTML text to be validated
+     * @return the tags/attributes rejected by the policy
+     */
+    default PolicyValidationResult validate(String htmlText) {
+        return validate(htmlText, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Validates an HTML String input against the configured rules, without producing the sanitized HTML, and stops as soon as
+     * the given number of violations is reached.
+     * <p>
+     * A violation is a distinct rejected tag, or a distinct rejected attribute of a tag. When the validation stops early, the result
+     * is invalid and only contains the violations found so far.
+     *
+     * @param htmlText      the HTML text to be validated
+     * @param maxViolations the number of violations after which the validation stops, <code>1</code> to stop at the first violation
+     * @return the tags/attributes rejected by the policy, up to <code>maxViolations</code> violations
+     */
+    PolicyValidationResult validate(String htmlText, int maxViolations);
 }
@@ -0,0 +1,46 @@
+package org.jahia.modules.htmlfiltering;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Result of the validation of an HTML content against a {@link Policy}: the tags and attributes that the policy rejects.
+ *
+ * @see Policy#validate(String, int)
+ */
+public interface PolicyValidationResult {
+
+    /**
+     * @return <code>true</code> if no tags, attributes were rejected during sanitization process. <code>false</code> otherwise.
+     * When the rejected tags/attributes are not collected (see {@link SanitizeDetailLevel}), a content is only considered valid
+     * if it is unchanged by the sanitization. A content exceeding one of the limits of the policy is never valid.
+     */
+    boolean isValid();
+
+    /**
+     * @return the limit of the policy exceeded by the HTML content, <code>null</code> if none was exceeded. When a limit is exceeded,
+     * the processing of the content is interrupted: the rejected tags/attributes are only the ones found until then, and the
+     * sanitized HTML is empty.
+     */
+    default SanitizeLimit getExceededLimit() {
+        return null;
+    }
+
+    /**
+     * Retrieves the set of tags that were rejected during the sanitization process.
+     *
+     * @return a set of strings representing the names of the rejected tags
+     */
+    Set<String> getRejectedTags();
+
+    /**
+     * Retrieves a mapping of HTML tags to their corresponding sets of rejected attributes.
+     * Each entry in the map represents an HTML tag as the key and a set of attribute names
+     * that were rejected during validation for that tag as the value.
+     * <p><strong>Note:</strong> if the same tag name has been rejected multiple times, the attributes will be merged</p>
+     *
+     * @return a map where the keys are the names of HTML tags (as strings) and the values
+     * are sets of strings representing the rejected attribute names for each tag.
+     */
+    Map<String, Set<String>> getRejectedAttributesByTag();
+}
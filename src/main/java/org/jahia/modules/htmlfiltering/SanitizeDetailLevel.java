@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering;
+
+/**
+ * Defines how much information a {@link Policy} collects when sanitizing an HTML content, so that callers only pay for what they use.
+ *
+ * @see Policy#sanitize(String, SanitizeDetailLevel)
+ */
+public enum SanitizeDetailLevel {
+    /**
+     * Only the sanitized HTML is produced.
+     * The rejected tags/attributes are not collected, and the content is considered changed unless it is known to be already clean.
+     */
+    OUTPUT,
+    /**
+     * The sanitized HTML is produced, along with whether it differs from the original content.
+     * The rejected tags/attributes are not collected.
+     */
+    OUTPUT_AND_CHANGED,
+    /**
+     * The sanitized HTML is produced, along with whether it differs from the original content and the rejected tags/attributes.
+     */
+    FULL
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering;
+
+/**
+ * The limits a {@link Policy} may enforce on the HTML contents it processes, to bound the time and memory spent on pathological
+ * contents.
+ * <p>
+ * A content exceeding one of the limits is refused: it is not valid and its sanitized HTML is empty.
+ *
+ * @see PolicyValidationResult#getExceededLimit()
+ */
+public enum SanitizeLimit {
+    /**
+     * The maximum length of the HTML content, in characters.
+     */
+    INPUT_LENGTH,
+    /**
+     * The maximum number of nested elements. An element whose end tag is omitted is considered open until the end of its parent,
+     * or until a sibling of the same kind when its end tag is optional (e.g. list items or paragraphs).
+     */
+    NESTING_DEPTH,
+    /**
+     * The maximum number of elements, including the ones rejected by the policy.
+     */
+    ELEMENT_COUNT,
+    /**
+     * The maximum time spent processing the HTML content.
+     */
+    DURATION,
+    /**
+     * The maximum number of HTML contents processed concurrently by the policy, see the <code>bulkhead</code> of its configuration.
+     * Unlike the other limits, it depends on the load at the time: the same content may be accepted later.
+     */
+    CONCURRENCY
+}
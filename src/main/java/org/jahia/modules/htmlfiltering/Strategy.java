@@ -28,5 +28,10 @@ public enum Strategy {
      * Strategy to sanitize the HTML content by removing all tags and attributes that
      * are not part of allowed rules or that are defined in disallowed rules.
      */
-    SANITIZE
+    SANITIZE,
+    /**
+     * Strategy to remove all the markup of the HTML content, keeping only its text.
+     * The allowed and disallowed rules are not used, the text is extracted without the OWASP sanitizer.
+     */
+    STRIP
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.engine;
+
+/**
+ * A policy compiled by a {@link SanitizerEngine}, sanitizing the HTML contents according to its rules.
+ * <p>
+ * Implementations must be thread-safe.
+ */
+public interface CompiledSanitizer {
+
+    /**
+     * Sanitizes an HTML content.
+     * <p>
+     * The rendering of the sanitized HTML, the restoration of the placeholders and the output compaction are handled by the
+     * policy from the events sent to the output.
+     *
+     * @param htmlText      the HTML content to sanitize
+     * @param output        receives the events of the sanitized HTML
+     * @param inputObserver receives the events of the parsed HTML content before they are sanitized, including the elements
+     *                      rejected afterward, so that the limits of the policy are enforced; it interrupts the sanitization by
+     *                      throwing an unchecked exception that must be propagated. <code>null</code> if the policy has no limit
+     *                      to enforce
+     * @param listener      notified of the tags and attributes rejected, <code>null</code> if they are not needed
+     * @param context       the context passed to the listener
+     * @param <T>           the type of the context
+     */
+    <T> void sanitize(String htmlText, HtmlEventReceiver output, HtmlEventReceiver inputObserver, RejectionListener<? super T> listener,
+                      T context);
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.engine;
+
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * The parts of a configuration that a {@link SanitizerEngine} needs to compile one of its policies.
+ */
+public interface EngineContext {
+
+    /**
+     * @param format the format reference of a rule, either to a format definition or to a built-in format
+     * @return the matcher of the attribute values allowed by the format, memoizing its decisions if the attribute cache of the
+     * policy is enabled
+     */
+    Predicate<String> getFormat(String format);
+
+    /**
+     * @return the filter of the <code>style</code> attribute values keeping the allowed CSS declarations, returning
+     * <code>null</code> if none is kept; <code>null</code> if the allowed CSS properties are not configured for the policy
+     */
+    UnaryOperator<String> getStyleFilter();
+}
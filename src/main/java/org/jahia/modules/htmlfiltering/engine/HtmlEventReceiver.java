@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.engine;
+
+import java.util.List;
+
+/**
+ * Receives the events of an HTML document, as the <code>HtmlStreamEventReceiver</code> of the OWASP Java HTML Sanitizer, so that
+ * the engines do not depend on it.
+ */
+public interface HtmlEventReceiver {
+
+    void openDocument();
+
+    void closeDocument();
+
+    /**
+     * @param elementName the lower case name of the element
+     * @param attrs       the lower case names and the decoded values of the attributes, alternately
+     */
+    void openTag(String elementName, List<String> attrs);
+
+    /**
+     * @param elementName the lower case name of the element
+     */
+    void closeTag(String elementName);
+
+    /**
+     * @param text the decoded text
+     */
+    void text(String text);
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.engine;
+
+/**
+ * Notified of the tags and attributes rejected while sanitizing an HTML content, as the <code>HtmlChangeListener</code> of the
+ * OWASP Java HTML Sanitizer, so that the engines do not depend on it.
+ *
+ * @param <T> the type of the context of the sanitization
+ */
+public interface RejectionListener<T> {
+
+    /**
+     * @param context     the context of the sanitization
+     * @param elementName the lower case name of the element removed
+     */
+    void discardedTag(T context, String elementName);
+
+    /**
+     * @param context        the context of the sanitization
+     * @param tagName        the lower case name of the element kept, whose attributes were removed
+     * @param attributeNames the lower case names of the attributes removed
+     */
+    void discardedAttributes(T context, String tagName, String... attributeNames);
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.engine;
+
+import org.jahia.modules.htmlfiltering.model.PolicyModel;
+
+/**
+ * An engine compiling the policies of the html-filtering configurations into {@link CompiledSanitizer sanitizers}.
+ * <p>
+ * The built-in engine, named {@value #DEFAULT_ENGINE}, relies on the OWASP Java HTML Sanitizer. Alternative engines are registered
+ * as OSGi services implementing this interface, and are selected for each workspace with the <code>engine</code> setting of the
+ * configuration. The shortcuts taken by the policies (e.g. for the content already in its sanitized form) assume that an engine
+ * produces the same sanitized HTML as the built-in one.
+ */
+public interface SanitizerEngine {
+
+    /**
+     * The name of the built-in engine, used when the configuration does not select any.
+     */
+    String DEFAULT_ENGINE = "owasp";
+
+    /**
+     * @return the name identifying the engine in the <code>engine</code> setting of the configurations
+     */
+    String getName();
+
+    /**
+     * Compiles a policy into a sanitizer, called each time a configuration selecting this engine is updated.
+     *
+     * @param policyModel the policy of a workspace, already validated
+     * @param context     the formats and the style filter of the policy, shared with the rest of the configuration
+     * @return the sanitizer applying the rules of the policy, used concurrently by all the sanitizations of the policy
+     */
+    CompiledSanitizer compile(PolicyModel policyModel, EngineContext context);
+}
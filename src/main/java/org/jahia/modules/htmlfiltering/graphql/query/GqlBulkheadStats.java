@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.graphql.query;
+
+import graphql.annotations.annotationTypes.GraphQLDescription;
+import graphql.annotations.annotationTypes.GraphQLField;
+import org.jahia.modules.htmlfiltering.impl.BulkheadStats;
+
+/**
+ * GraphQL representation of {@link BulkheadStats}
+ */
+public class GqlBulkheadStats {
+
+    private final BulkheadStats stats;
+
+    public GqlBulkheadStats(BulkheadStats stats) {
+        this.stats = stats;
+    }
+
+    @GraphQLField
+    @GraphQLDescription("The maximum number of HTML contents processed concurrently by the policy")
+    public int getMaxConcurrent() {
+        return stats.getMaxConcurrent();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("The number of HTML contents being processed by the policy, i.e. the permits in use")
+    public int getActiveCount() {
+        return stats.getActiveCount();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("The number of HTML contents waiting for a permit, i.e. the depth of the queue")
+    public int getWaitingCount() {
+        return stats.getWaitingCount();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("The total number of permits acquired since the configuration was last updated")
+    public long getAcquiredCount() {
+        return stats.getAcquiredCount();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("The total number of permits acquired after waiting in the queue")
+    public long getQueuedCount() {
+        return stats.getQueuedCount();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("The total number of HTML contents refused because the queue was full")
+    public long getRejectedCount() {
+        return stats.getRejectedCount();
+    }
+
+    @GraphQLField
+    @GraphQLDescription("The total number of HTML contents refused because no permit was available in time")
+    public long getTimedOutCount() {
+        return stats.getTimedOutCount();
+    }
+}
@@ -23,6 +23,8 @@ import org.jahia.modules.graphql.provider.dxm.node.NodeQueryExtensions;
 import org.jahia.modules.graphql.provider.dxm.osgi.annotations.GraphQLOsgiService;
 import org.jahia.modules.htmlfiltering.Policy;
 import org.jahia.modules.htmlfiltering.PolicyResolver;
+import org.jahia.modules.htmlfiltering.impl.BulkheadStats;
+import org.jahia.modules.htmlfiltering.impl.PolicyImpl;
 
 import javax.inject.Inject;
 
@@ -53,5 +55,23 @@ public class GqlHtmlFilteringQuery {
 
         return null;
     }
-}
 
+    @GraphQLField
+    @GraphQLName("bulkhead")
+    @GraphQLDescription("The live gauges of the bulkhead of the policy for a given workspace and site: the permits in use, the depth of the queue " +
+            "and the contents refused. Returns null if the policy has no bulkhead.")
+    public GqlBulkheadStats getBulkhead(@GraphQLName("workspace") NodeQueryExtensions.Workspace workspace, @GraphQLName("siteKey") String siteKey) {
+        if (workspace == null) {
+            workspace = NodeQueryExtensions.Workspace.EDIT;
+        }
+        Policy policy = registry.resolvePolicy(siteKey, workspace.getValue());
+        if (policy instanceof PolicyImpl) {
+            BulkheadStats stats = ((PolicyImpl) policy).getBulkheadStats();
+            if (stats != null) {
+                return new GqlBulkheadStats(stats);
+            }
+        }
+
+        return null;
+    }
+}
@@ -47,6 +47,13 @@ public class GqlValidationResult {
         return policyExecutionResult.getSanitizedHtml();
     }
 
+    @GraphQLField
+    @GraphQLDescription("The limit of the policy exceeded by the provided HTML (INPUT_LENGTH, NESTING_DEPTH, ELEMENT_COUNT, DURATION or CONCURRENCY), " +
+            "null if none was exceeded. The HTML is refused when a limit is exceeded: it is not safe and the sanitized HTML is empty.")
+    public String getExceededLimit() {
+        return policyExecutionResult.getExceededLimit() == null ? null : policyExecutionResult.getExceededLimit().name();
+    }
+
     @GraphQLField
     @GraphQLDescription("Removed tags")
     public Set<String> getRemovedTags() {
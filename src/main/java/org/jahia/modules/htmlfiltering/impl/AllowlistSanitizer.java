@@ -0,0 +1,798 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl;
+
+import org.jahia.modules.htmlfiltering.engine.CompiledSanitizer;
+import org.jahia.modules.htmlfiltering.engine.HtmlEventReceiver;
+import org.jahia.modules.htmlfiltering.engine.RejectionListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * The sanitizer compiled by the {@link AllowlistSanitizerEngine}, tokenizing the HTML content and filtering its tags and
+ * attributes in a single forward pass, with a small fixed-size stack of the open elements.
+ * <p>
+ * It only handles the content it sanitizes exactly as the OWASP sanitizer does. That is:
+ * <ul>
+ *     <li>start tags with double or single quoted attribute values, end tags and comments, the other markup (doctypes,
+ *     processing instructions, unquoted or empty attributes, a <code>&lt;</code> not starting a tag...) is not handled;</li>
+ *     <li>the most common character references, the named ones being limited to a few frequent ones;</li>
+ *     <li>the elements with a simple content model (see {@link #CONTENT_MODELS}), properly nested according to it once the
+ *     rejected elements are removed, the other elements (scripts, styles, tables...) are not handled, even rejected;</li>
+ *     <li>the attributes whose values are only checked against formats and protocols, the ones the OWASP sanitizer rewrites
+ *     (styles, link relations...) are not handled when they are allowed.</li>
+ * </ul>
+ * As soon as the content is found not to be handled, it is sanitized by the fallback sanitizer compiled with the OWASP engine: the
+ * sanitized HTML is only sent to the output at the end of the pass, while the input observer and the rejection listener are
+ * notified along the pass, and not notified again by the fallback sanitizer of the events they already received.
+ */
+final class AllowlistSanitizer implements CompiledSanitizer {
+
+    private static final int MAX_DEPTH = 32;
+    private static final int MAX_ATTRIBUTES = 32;
+
+    // content models of the handled elements
+    static final int UNSUPPORTED = 0;
+    private static final int PHRASING = 1;
+    private static final int VOID = 2;
+    private static final int BLOCK = 3;
+    private static final int CONTAINER = 4;
+    private static final int LIST = 5;
+    private static final int LIST_ITEM = 6;
+    /**
+     * Set in the context of the elements inside a link, as links cannot be nested.
+     */
+    private static final int IN_LINK = 8;
+    static final Map<String, Integer> CONTENT_MODELS;
+
+    static {
+        Map<String, Integer> contentModels = new HashMap<>();
+        for (String tag : Arrays.asList("a", "abbr", "b", "big", "cite", "code", "del", "dfn", "em", "font", "i", "ins", "kbd", "mark",
+                "q", "s", "samp", "small", "span", "strike", "strong", "sub", "sup", "tt", "u", "var")) {
+            contentModels.put(tag, PHRASING);
+        }
+        contentModels.put("br", VOID);
+        contentModels.put("img", VOID);
+        for (String tag : Arrays.asList("p", "h1", "h2", "h3", "h4", "h5", "h6")) {
+            contentModels.put(tag, BLOCK);
+        }
+        for (String tag : Arrays.asList("article", "aside", "blockquote", "div", "footer", "header", "nav", "section")) {
+            contentModels.put(tag, CONTAINER);
+        }
+        contentModels.put("ul", LIST);
+        contentModels.put("ol", LIST);
+        contentModels.put("li", LIST_ITEM);
+        CONTENT_MODELS = Collections.unmodifiableMap(contentModels);
+    }
+
+    /**
+     * The elements removed by the OWASP sanitizer when none of their attributes is kept.
+     */
+    private static final Set<String> SKIP_IF_EMPTY = new HashSet<>(Arrays.asList("a", "font", "img", "span"));
+
+    private static final Map<String, Character> CHARACTER_REFERENCES = new HashMap<>();
+
+    static {
+        String[] names = {"amp", "lt", "gt", "quot", "apos", "nbsp", "copy", "reg", "trade", "euro", "hellip", "mdash", "ndash",
+                "lsquo", "rsquo", "ldquo", "rdquo", "laquo", "raquo", "middot", "bull", "deg", "times", "agrave", "ccedil", "eacute",
+                "egrave"};
+        char[] characters = {'&', '<', '>', '"', '\'', '\u00A0', '\u00A9', '\u00AE', '\u2122', '\u20AC', '\u2026', '\u2014',
+                '\u2013', '\u2018', '\u2019', '\u201C', '\u201D', '\u00AB', '\u00BB', '\u00B7', '\u2022', '\u00B0', '\u00D7',
+                '\u00E0', '\u00E7', '\u00E9', '\u00E8'};
+        for (int i = 0; i < names.length; i++) {
+            CHARACTER_REFERENCES.put(names[i], characters[i]);
+        }
+    }
+
+    /**
+     * The named character references that may be decoded without their final semicolon: a <code>&amp;</code> followed by letters
+     * starting with one of them is not handled.
+     */
+    private static final String[] LEGACY_REFERENCES = {"AElig", "AMP", "Aacute", "Acirc", "Agrave", "Aring", "Atilde", "Auml",
+            "COPY", "Ccedil", "ETH", "Eacute", "Ecirc", "Egrave", "Euml", "GT", "Iacute", "Icirc", "Igrave", "Iuml", "LT", "Ntilde",
+            "Oacute", "Ocirc", "Ograve", "Oslash", "Otilde", "Ouml", "QUOT", "REG", "THORN", "Uacute", "Ucirc", "Ugrave", "Uuml",
+            "Yacute", "aacute", "acirc", "acute", "aelig", "agrave", "amp", "aring", "atilde", "auml", "brvbar", "ccedil", "cedil",
+            "cent", "copy", "curren", "deg", "divide", "eacute", "ecirc", "egrave", "eth", "euml", "frac12", "frac14", "frac34", "gt",
+            "iacute", "icirc", "iexcl", "igrave", "iquest", "iuml", "laquo", "lt", "macr", "micro", "middot", "nbsp", "not", "ntilde",
+            "oacute", "ocirc", "ograve", "ordf", "ordm", "oslash", "otilde", "ouml", "para", "plusmn", "pound", "quot", "raquo", "reg",
+            "sect", "shy", "sup1", "sup2", "sup3", "szlig", "thorn", "times", "uacute", "ucirc", "ugrave", "uml", "uuml", "yacute",
+            "yen", "yuml"};
+
+    private final PerfectHashTable tags;
+    private final int[] contentModels;
+    private final boolean[] skipIfEmpty;
+    private final int linkTag;
+    private final PerfectHashTable attributes;
+    /**
+     * The bitsets of the attributes allowed on each tag, <code>null</code> for the tags that are not allowed.
+     */
+    private final long[][] allowedAttributes;
+    /**
+     * The rules of the attributes allowed on each tag, <code>null</code> for the attributes that are allowed whatever their value.
+     */
+    private final AttributeRule[][] attributeRules;
+    private final CompiledSanitizer fallback;
+
+    AllowlistSanitizer(PerfectHashTable tags, int[] contentModels, PerfectHashTable attributes, long[][] allowedAttributes,
+                       AttributeRule[][] attributeRules, CompiledSanitizer fallback) {
+        this.tags = tags;
+        this.contentModels = contentModels;
+        this.attributes = attributes;
+        this.allowedAttributes = allowedAttributes;
+        this.attributeRules = attributeRules;
+        this.fallback = fallback;
+        this.skipIfEmpty = new boolean[tags.size()];
+        for (int tag = 0; tag < tags.size(); tag++) {
+            skipIfEmpty[tag] = SKIP_IF_EMPTY.contains(tags.name(tag));
+        }
+        this.linkTag = tags.indexOf("a", 0, 1);
+    }
+
+    @Override
+    public <T> void sanitize(String htmlText, HtmlEventReceiver output, HtmlEventReceiver inputObserver,
+                             RejectionListener<? super T> listener, T context) {
+        Pass<T> pass = new Pass<>(htmlText, inputObserver, listener, context);
+        if (pass.run()) {
+            pass.replay(output);
+        } else {
+            fallback.sanitize(htmlText, output,
+                    inputObserver == null ? null : new SkippingObserver(inputObserver, pass.observedTagEvents),
+                    listener == null ? null : new SkippingListener<>(listener, pass.reportedRejections), context);
+        }
+    }
+
+    private static boolean canContain(int parent, int child) {
+        switch (parent & ~IN_LINK) {
+            case CONTAINER:
+            case LIST_ITEM:
+                return child != LIST_ITEM;
+            case BLOCK:
+            case PHRASING:
+                return child == PHRASING || child == VOID;
+            case LIST:
+                return child == LIST_ITEM;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isNameChar(char c) {
+        return isAsciiLetter(c) || (c >= '0' && c <= '9') || c == '-';
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * The sanitization of one HTML content.
+     */
+    private final class Pass<T> {
+        private static final byte OPEN_TAG = 0;
+        private static final byte CLOSE_TAG = 1;
+        private static final byte TEXT = 2;
+
+        private final String html;
+        private final HtmlEventReceiver observer;
+        private final RejectionListener<? super T> listener;
+        private final T context;
+        private int position;
+
+        // the open elements, and the content model of their closest allowed ancestor (or of themselves if allowed)
+        private final int[] openTags = new int[MAX_DEPTH];
+        private final int[] openContexts = new int[MAX_DEPTH];
+        private int depth;
+        private int[] attributeOffsets;
+        private List<String> rejectedAttributes;
+
+        // the events of the sanitized HTML, sent to the output at the end of the pass
+        private byte[] eventTypes = new byte[16];
+        private String[] eventValues = new String[16];
+        private List<?>[] eventAttributes = new List<?>[16];
+        private int eventCount;
+
+        private int observedTagEvents;
+        private int reportedRejections;
+
+        private Pass(String html, HtmlEventReceiver observer, RejectionListener<? super T> listener, T context) {
+            this.html = html;
+            this.observer = observer;
+            this.listener = listener;
+            this.context = context;
+        }
+
+        /**
+         * @return <code>true</code> if the content was sanitized, <code>false</code> if it is not handled
+         */
+        private boolean run() {
+            if (observer != null) {
+                observer.openDocument();
+            }
+            int length = html.length();
+            while (position < length) {
+                int tagStart = html.indexOf('<', position);
+                int textEnd = tagStart < 0 ? length : tagStart;
+                if (textEnd > position && !text(textEnd)) {
+                    return false;
+                }
+                if (tagStart < 0) {
+                    break;
+                }
+                if (!markup()) {
+                    return false;
+                }
+            }
+            // as the OWASP sanitizer, the elements left open are closed at the end of the content
+            while (depth > 0) {
+                int tag = openTags[--depth];
+                if (allowedAttributes[tag] != null) {
+                    addEvent(CLOSE_TAG, tags.name(tag), null);
+                }
+            }
+            if (observer != null) {
+                observer.closeDocument();
+            }
+            return true;
+        }
+
+        private boolean text(int end) {
+            String text = decode(position, end);
+            if (text == null) {
+                return false;
+            }
+            if (observer != null) {
+                observer.text(text);
+            }
+            // text, even whitespaces, directly inside lists is not kept as is
+            if ((currentContext() & ~IN_LINK) == LIST) {
+                return false;
+            }
+            addEvent(TEXT, text, null);
+            position = end;
+            return true;
+        }
+
+        private boolean markup() {
+            int length = html.length();
+            if (position + 1 >= length) {
+                return false;
+            }
+            char c = html.charAt(position + 1);
+            if (isAsciiLetter(c)) {
+                return startTag();
+            }
+            if (c == '/' && position + 2 < length && isAsciiLetter(html.charAt(position + 2))) {
+                return endTag();
+            }
+            if (html.startsWith("<!--", position) && !html.startsWith(">", position + 4) && !html.startsWith("->", position + 4)) {
+                // comments are removed
+                int end = html.indexOf("-->", position + 4);
+                if (end < 0) {
+                    return false;
+                }
+                position = end + 3;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean startTag() {
+            int length = html.length();
+            int nameStart = position + 1;
+            int nameEnd = scanName(nameStart);
+            int tag = tags.indexOf(html, nameStart, nameEnd);
+            if (tag < 0 || contentModels[tag] == UNSUPPORTED) {
+                return false;
+            }
+            // the offsets of the name and value of each attribute
+            int attributeCount = 0;
+            int i = nameEnd;
+            boolean selfClosing = false;
+            while (true) {
+                int next = skipSpaces(i);
+                if (next >= length) {
+                    return false;
+                }
+                char c = html.charAt(next);
+                if (c == '>') {
+                    i = next + 1;
+                    break;
+                }
+                if (c == '/') {
+                    if (!html.startsWith(">", next + 1)) {
+                        return false;
+                    }
+                    selfClosing = true;
+                    i = next + 2;
+                    break;
+                }
+                if (next == i || !isAsciiLetter(c) || attributeCount == MAX_ATTRIBUTES) {
+                    return false;
+                }
+                int attributeNameEnd = scanName(next);
+                if (attributeNameEnd + 1 >= length || html.charAt(attributeNameEnd) != '=') {
+                    return false;
+                }
+                char quote = html.charAt(attributeNameEnd + 1);
+                int valueEnd = quote == '"' || quote == '\'' ? html.indexOf(quote, attributeNameEnd + 2) : -1;
+                if (valueEnd < 0) {
+                    return false;
+                }
+                if (attributeOffsets == null) {
+                    attributeOffsets = new int[MAX_ATTRIBUTES * 3];
+                }
+                attributeOffsets[attributeCount * 3] = next;
+                attributeOffsets[attributeCount * 3 + 1] = attributeNameEnd;
+                attributeOffsets[attributeCount * 3 + 2] = valueEnd;
+                attributeCount++;
+                i = valueEnd + 1;
+            }
+            int contentModel = contentModels[tag];
+            if ((selfClosing && contentModel != VOID) || hasDuplicateAttributes(attributeCount)) {
+                return false;
+            }
+            String tagName = tags.name(tag);
+            if (observer != null) {
+                List<String> attrs = new ArrayList<>(attributeCount * 2);
+                for (int attribute = 0; attribute < attributeCount; attribute++) {
+                    String value = decodeValue(attribute);
+                    if (value == null) {
+                        return false;
+                    }
+                    attrs.add(attributeName(attribute, -1));
+                    attrs.add(value);
+                }
+                observer.openTag(tagName, attrs);
+                observedTagEvents++;
+            }
+            int parentContext = currentContext();
+            int elementContext = parentContext;
+            if (allowedAttributes[tag] == null) {
+                if (listener != null) {
+                    listener.discardedTag(context, tagName);
+                    reportedRejections++;
+                }
+            } else {
+                if (!canContain(parentContext, contentModel) || (tag == linkTag && (parentContext & IN_LINK) != 0)) {
+                    return false;
+                }
+                List<String> attrs = filterAttributes(tag, attributeCount);
+                if (attrs == null || (attrs.isEmpty() && skipIfEmpty[tag])) {
+                    return false;
+                }
+                if (rejectedAttributes != null && listener != null) {
+                    listener.discardedAttributes(context, tagName, rejectedAttributes.toArray(new String[0]));
+                    reportedRejections++;
+                }
+                addEvent(OPEN_TAG, tagName, attrs);
+                elementContext = contentModel | (parentContext & IN_LINK) | (tag == linkTag ? IN_LINK : 0);
+            }
+            if (contentModel != VOID) {
+                if (depth == MAX_DEPTH) {
+                    return false;
+                }
+                openTags[depth] = tag;
+                openContexts[depth++] = elementContext;
+            }
+            position = i;
+            return true;
+        }
+
+        private boolean endTag() {
+            int nameStart = position + 2;
+            int nameEnd = scanName(nameStart);
+            int end = skipSpaces(nameEnd);
+            int tag = tags.indexOf(html, nameStart, nameEnd);
+            if (end >= html.length() || html.charAt(end) != '>' || tag < 0 || contentModels[tag] == UNSUPPORTED
+                    || contentModels[tag] == VOID) {
+                return false;
+            }
+            String tagName = tags.name(tag);
+            if (observer != null) {
+                observer.closeTag(tagName);
+                observedTagEvents++;
+            }
+            int openDepth = depth - 1;
+            while (openDepth >= 0 && openTags[openDepth] != tag) {
+                openDepth--;
+            }
+            if (openDepth >= 0) {
+                // closing an outer element would also close the elements left open inside it
+                if (openDepth != depth - 1) {
+                    return false;
+                }
+                depth--;
+                if (allowedAttributes[tag] != null) {
+                    addEvent(CLOSE_TAG, tagName, null);
+                }
+            }
+            // an end tag without start tag is ignored
+            position = end + 1;
+            return true;
+        }
+
+        /**
+         * @return the attributes kept on an allowed element, <code>null</code> if one of them is not handled; the names of the
+         * attributes rejected are kept in {@link #rejectedAttributes}
+         */
+        private List<String> filterAttributes(int tag, int attributeCount) {
+            List<String> attrs = new ArrayList<>(attributeCount * 2);
+            rejectedAttributes = null;
+            for (int attribute = 0; attribute < attributeCount; attribute++) {
+                int start = attributeOffsets[attribute * 3];
+                int index = attributes.indexOf(html, start, attributeOffsets[attribute * 3 + 1]);
+                if (index >= 0 && (allowedAttributes[tag][index >>> 6] & (1L << index)) != 0) {
+                    String value = decodeValue(attribute);
+                    AttributeRule rule = attributeRules[tag][index];
+                    if (value == null || (rule != null && !rule.isHandled(value))) {
+                        return null;
+                    }
+                    value = rule == null ? value : rule.apply(value);
+                    if (value != null) {
+                        attrs.add(attributes.name(index));
+                        attrs.add(value);
+                        continue;
+                    }
+                }
+                if (rejectedAttributes == null) {
+                    rejectedAttributes = new ArrayList<>();
+                }
+                rejectedAttributes.add(attributeName(attribute, index));
+            }
+            return attrs;
+        }
+
+        private boolean hasDuplicateAttributes(int attributeCount) {
+            for (int attribute = 1; attribute < attributeCount; attribute++) {
+                int start = attributeOffsets[attribute * 3];
+                int nameLength = attributeOffsets[attribute * 3 + 1] - start;
+                for (int other = 0; other < attribute; other++) {
+                    int otherStart = attributeOffsets[other * 3];
+                    if (attributeOffsets[other * 3 + 1] - otherStart == nameLength
+                            && html.regionMatches(true, start, html, otherStart, nameLength)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @param index the index of the attribute name in the attribute table, <code>-1</code> if unknown
+         * @return the lower case name of an attribute of the current tag
+         */
+        private String attributeName(int attribute, int index) {
+            int start = attributeOffsets[attribute * 3];
+            int end = attributeOffsets[attribute * 3 + 1];
+            if (index < 0) {
+                index = attributes.indexOf(html, start, end);
+            }
+            return index >= 0 ? attributes.name(index) : html.substring(start, end).toLowerCase(Locale.ROOT);
+        }
+
+        private String decodeValue(int attribute) {
+            // the value starts after the name, the equal sign and the quote
+            return decode(attributeOffsets[attribute * 3 + 1] + 2, attributeOffsets[attribute * 3 + 2]);
+        }
+
+        /**
+         * @return the text between the given indexes with its character references decoded, <code>null</code> if one of them is
+         * not handled
+         */
+        private String decode(int start, int end) {
+            int ampersand = html.indexOf('&', start);
+            if (ampersand < 0 || ampersand >= end) {
+                return html.substring(start, end);
+            }
+            StringBuilder decoded = new StringBuilder(end - start);
+            int i = start;
+            while (ampersand >= 0 && ampersand < end) {
+                decoded.append(html, i, ampersand);
+                int next = ampersand + 1;
+                if (next < end && html.charAt(next) == '#') {
+                    i = decodeNumericReference(next + 1, end, decoded);
+                } else if (next < end && isAsciiLetter(html.charAt(next))) {
+                    i = decodeNamedReference(next, end, decoded);
+                } else {
+                    decoded.append('&');
+                    i = next;
+                }
+                if (i < 0) {
+                    return null;
+                }
+                ampersand = html.indexOf('&', i);
+            }
+            return decoded.append(html, i, end).toString();
+        }
+
+        /**
+         * @return the index after the reference, <code>-1</code> if it is not handled
+         */
+        private int decodeNumericReference(int start, int end, StringBuilder decoded) {
+            boolean hexadecimal = start < end && (html.charAt(start) == 'x' || html.charAt(start) == 'X');
+            int i = hexadecimal ? start + 1 : start;
+            int codePoint = 0;
+            int digits = 0;
+            for (; i < end && digits <= 6; i++, digits++) {
+                int digit = Character.digit(html.charAt(i), hexadecimal ? 16 : 10);
+                if (digit < 0) {
+                    break;
+                }
+                codePoint = codePoint * (hexadecimal ? 16 : 10) + digit;
+            }
+            // control characters and the code points the HTML parsers replace are left to the OWASP sanitizer
+            if (digits == 0 || i >= end || html.charAt(i) != ';' || codePoint > Character.MAX_CODE_POINT
+                    || (codePoint < 0x20 && codePoint != '\t' && codePoint != '\n') || (codePoint >= 0x7F && codePoint < 0xA0)
+                    || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+                return -1;
+            }
+            decoded.appendCodePoint(codePoint);
+            return i + 1;
+        }
+
+        /**
+         * @return the index after the reference, <code>-1</code> if it is not handled
+         */
+        private int decodeNamedReference(int start, int end, StringBuilder decoded) {
+            int nameEnd = start;
+            while (nameEnd < end && isNameChar(html.charAt(nameEnd)) && html.charAt(nameEnd) != '-') {
+                nameEnd++;
+            }
+            if (nameEnd < end && html.charAt(nameEnd) == ';') {
+                Character character = CHARACTER_REFERENCES.get(html.substring(start, nameEnd));
+                if (character == null) {
+                    return -1;
+                }
+                decoded.append(character.charValue());
+                return nameEnd + 1;
+            }
+            // without semicolon, only the letters that cannot be a reference are kept as is, e.g. in "?a=1&b=2"
+            for (String reference : LEGACY_REFERENCES) {
+                if (html.startsWith(reference, start)) {
+                    return -1;
+                }
+            }
+            decoded.append('&');
+            return start;
+        }
+
+        private int currentContext() {
+            return depth == 0 ? CONTAINER : openContexts[depth - 1];
+        }
+
+        private int scanName(int start) {
+            int i = start;
+            while (i < html.length() && isNameChar(html.charAt(i))) {
+                i++;
+            }
+            return i;
+        }
+
+        private int skipSpaces(int start) {
+            int i = start;
+            while (i < html.length() && isSpace(html.charAt(i))) {
+                i++;
+            }
+            return i;
+        }
+
+        private void addEvent(byte type, String value, List<String> attrs) {
+            if (eventCount == eventTypes.length) {
+                eventTypes = Arrays.copyOf(eventTypes, eventCount * 2);
+                eventValues = Arrays.copyOf(eventValues, eventCount * 2);
+                eventAttributes = Arrays.copyOf(eventAttributes, eventCount * 2);
+            }
+            eventTypes[eventCount] = type;
+            eventValues[eventCount] = value;
+            eventAttributes[eventCount++] = attrs;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void replay(HtmlEventReceiver output) {
+            output.openDocument();
+            for (int i = 0; i < eventCount; i++) {
+                switch (eventTypes[i]) {
+                    case OPEN_TAG:
+                        output.openTag(eventValues[i], (List<String>) eventAttributes[i]);
+                        break;
+                    case CLOSE_TAG:
+                        output.closeTag(eventValues[i]);
+                        break;
+                    default:
+                        output.text(eventValues[i]);
+                        break;
+                }
+            }
+            output.closeDocument();
+        }
+    }
+
+    /**
+     * The checks of the value of an attribute allowed on a tag.
+     */
+    static final class AttributeRule {
+        private final List<Predicate<String>> formats;
+        private final Set<String> protocols;
+        private final boolean unsupported;
+
+        /**
+         * @param formats     the formats the value must all match
+         * @param protocols   the protocols allowed in the value, <code>null</code> if the attribute is not a URL
+         * @param unsupported <code>true</code> if the attribute is never handled
+         */
+        AttributeRule(List<Predicate<String>> formats, Set<String> protocols, boolean unsupported) {
+            this.formats = formats;
+            this.protocols = protocols;
+            this.unsupported = unsupported;
+        }
+
+        /**
+         * @return <code>false</code> if the value of the attribute is not handled
+         */
+        boolean isHandled(String value) {
+            if (unsupported) {
+                return false;
+            }
+            if (protocols == null) {
+                return true;
+            }
+            // the OWASP sanitizer percent-encodes these characters in URLs, only the curly braces of the placeholders are handled
+            boolean hasBraces = false;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c <= ' ' || c >= 0x7F || c == '(' || c == ')') {
+                    return false;
+                }
+                hasBraces |= c == '{' || c == '}';
+            }
+            // the formats must then agree on both forms of the URL
+            return !hasBraces || matchesFormats(value) == matchesFormats(encodeBraces(value));
+        }
+
+        /**
+         * @param value a handled value
+         * @return the value to keep, <code>null</code> if the attribute is rejected
+         */
+        String apply(String value) {
+            if (!matchesFormats(value) || (protocols != null && !hasAllowedProtocol(value))) {
+                return null;
+            }
+            return protocols == null ? value : encodeBraces(value);
+        }
+
+        private boolean matchesFormats(String value) {
+            for (Predicate<String> format : formats) {
+                if (!format.test(value)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean hasAllowedProtocol(String url) {
+            for (int i = 0; i < url.length(); i++) {
+                switch (url.charAt(i)) {
+                    case '/':
+                    case '#':
+                    case '?':
+                        return true;
+                    case ':':
+                        return protocols.contains(url.substring(0, i).toLowerCase(Locale.ROOT));
+                    default:
+                        break;
+                }
+            }
+            // a relative URL
+            return true;
+        }
+
+        private static String encodeBraces(String url) {
+            return url.indexOf('{') < 0 && url.indexOf('}') < 0 ? url : url.replace("{", "%7b").replace("}", "%7d");
+        }
+    }
+
+    /**
+     * Passes the events of the fallback sanitizer to the input observer, except the ones it already received.
+     */
+    private static final class SkippingObserver implements HtmlEventReceiver {
+        private final HtmlEventReceiver observer;
+        private int skippedTagEvents;
+
+        private SkippingObserver(HtmlEventReceiver observer, int skippedTagEvents) {
+            this.observer = observer;
+            this.skippedTagEvents = skippedTagEvents;
+        }
+
+        @Override
+        public void openDocument() {
+            // already received
+        }
+
+        @Override
+        public void closeDocument() {
+            observer.closeDocument();
+        }
+
+        @Override
+        public void openTag(String elementName, List<String> attrs) {
+            if (skippedTagEvents > 0) {
+                skippedTagEvents--;
+            } else {
+                observer.openTag(elementName, attrs);
+            }
+        }
+
+        @Override
+        public void closeTag(String elementName) {
+            if (skippedTagEvents > 0) {
+                skippedTagEvents--;
+            } else {
+                observer.closeTag(elementName);
+            }
+        }
+
+        @Override
+        public void text(String text) {
+            if (skippedTagEvents == 0) {
+                observer.text(text);
+            }
+        }
+    }
+
+    /**
+     * Passes the rejections of the fallback sanitizer to the listener, except the ones it was already notified of.
+     */
+    private static final class SkippingListener<T> implements RejectionListener<T> {
+        private final RejectionListener<? super T> listener;
+        private int skippedRejections;
+
+        private SkippingListener(RejectionListener<? super T> listener, int skippedRejections) {
+            this.listener = listener;
+            this.skippedRejections = skippedRejections;
+        }
+
+        @Override
+        public void discardedTag(T context, String elementName) {
+            if (skippedRejections > 0) {
+                skippedRejections--;
+            } else {
+                listener.discardedTag(context, elementName);
+            }
+        }
+
+        @Override
+        public void discardedAttributes(T context, String tagName, String... attributeNames) {
+            if (skippedRejections > 0) {
+                skippedRejections--;
+            } else {
+                listener.discardedAttributes(context, tagName, attributeNames);
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl;
+
+import org.jahia.modules.htmlfiltering.engine.CompiledSanitizer;
+import org.jahia.modules.htmlfiltering.engine.EngineContext;
+import org.jahia.modules.htmlfiltering.engine.SanitizerEngine;
+import org.jahia.modules.htmlfiltering.model.ElementModel;
+import org.jahia.modules.htmlfiltering.model.PolicyModel;
+import org.jahia.modules.htmlfiltering.model.RuleSetModel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * A built-in {@link SanitizerEngine} dedicated to the tag and attribute allowlists, protocols and formats of the rule sets, selected
+ * with <code>engine: allowlist</code>.
+ * <p>
+ * The rules are compiled into perfect hash tables of the tag and attribute names, and a bitset of the allowed attributes per tag;
+ * see {@link AllowlistSanitizer} for the single-pass sanitization. The content this engine does not reproduce exactly as the
+ * {@link OwaspSanitizerEngine} does (unusual markup, elements with a complex content model, style attributes...) is sanitized
+ * by a policy compiled with the OWASP engine, so that both engines always produce the same sanitized HTML.
+ */
+final class AllowlistSanitizerEngine implements SanitizerEngine {
+
+    static final String NAME = "allowlist";
+    static final AllowlistSanitizerEngine INSTANCE = new AllowlistSanitizerEngine();
+
+    /**
+     * The attributes the OWASP sanitizer checks the protocol of, see <code>HtmlPolicyBuilder.URL_ATTRIBUTE_NAMES</code>.
+     */
+    private static final Set<String> URL_ATTRIBUTES = new HashSet<>(Arrays.asList(
+            "action", "archive", "background", "cite", "classid", "codebase", "data", "dsync", "formaction", "href", "icon",
+            "longdesc", "manifest", "poster", "profile", "src", "usemap"));
+    /**
+     * The attributes the OWASP sanitizer applies a dedicated policy to, or adds values to, always left to it when they are kept.
+     */
+    private static final Set<String> UNSUPPORTED_ATTRIBUTES = new HashSet<>(Arrays.asList(
+            "rel", "srcset", "style", "target", "xmlns"));
+
+    private AllowlistSanitizerEngine() {
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public CompiledSanitizer compile(PolicyModel policyModel, EngineContext context) {
+        return compile(policyModel, context, OwaspSanitizerEngine.INSTANCE.compile(policyModel, context));
+    }
+
+    /**
+     * @param fallback the sanitizer of the content that is not handled by this engine
+     */
+    static AllowlistSanitizer compile(PolicyModel policyModel, EngineContext context, CompiledSanitizer fallback) {
+        RuleSetModel allowedRuleSet = policyModel.getAllowedRuleSet();
+        RuleSetModel disallowedRuleSet = policyModel.getDisallowedRuleSet();
+
+        // the tags and the attributes of each tag, "null" standing for all the tags
+        Set<String> allowedTags = new HashSet<>();
+        Set<String> disallowedTags = new HashSet<>();
+        Map<String, Map<String, List<Predicate<String>>>> allowedFormatsByTag = new HashMap<>();
+        Map<String, Set<String>> disallowedAttributesByTag = new HashMap<>();
+        Set<String> attributeNames = new LinkedHashSet<>();
+        for (ElementModel element : elements(allowedRuleSet)) {
+            List<String> tags = toLowerCase(element.getTags());
+            List<String> attributes = toLowerCase(element.getAttributes());
+            if (attributes.isEmpty()) {
+                allowedTags.addAll(tags);
+                continue;
+            }
+            attributeNames.addAll(attributes);
+            Predicate<String> format = element.getFormat() == null ? null : context.getFormat(element.getFormat());
+            for (String tag : tags.isEmpty() ? Collections.<String>singletonList(null) : tags) {
+                Map<String, List<Predicate<String>>> formatsByAttribute = allowedFormatsByTag.computeIfAbsent(tag, k -> new HashMap<>());
+                for (String attribute : attributes) {
+                    List<Predicate<String>> formats = formatsByAttribute.computeIfAbsent(attribute, k -> new ArrayList<>());
+                    if (format != null) {
+                        formats.add(format);
+                    }
+                }
+            }
+        }
+        for (ElementModel element : elements(disallowedRuleSet)) {
+            List<String> tags = toLowerCase(element.getTags());
+            List<String> attributes = toLowerCase(element.getAttributes());
+            if (attributes.isEmpty()) {
+                disallowedTags.addAll(tags);
+                continue;
+            }
+            attributeNames.addAll(attributes);
+            for (String tag : tags.isEmpty() ? Collections.<String>singletonList(null) : tags) {
+                disallowedAttributesByTag.computeIfAbsent(tag, k -> new HashSet<>()).addAll(attributes);
+            }
+        }
+        Set<String> protocols = new HashSet<>(toLowerCase(allowedRuleSet == null ? null : allowedRuleSet.getProtocols()));
+        protocols.removeAll(toLowerCase(disallowedRuleSet == null ? null : disallowedRuleSet.getProtocols()));
+
+        Set<String> tagNames = new LinkedHashSet<>(AllowlistSanitizer.CONTENT_MODELS.keySet());
+        tagNames.addAll(allowedTags);
+        tagNames.addAll(disallowedTags);
+        PerfectHashTable tagTable = PerfectHashTable.create(tagNames);
+        PerfectHashTable attributeTable = PerfectHashTable.create(attributeNames);
+        int[] contentModels = new int[tagTable.size()];
+        long[][] allowedAttributes = new long[tagTable.size()][];
+        AllowlistSanitizer.AttributeRule[][] attributeRules = new AllowlistSanitizer.AttributeRule[tagTable.size()][];
+        for (int tag = 0; tag < tagTable.size(); tag++) {
+            String tagName = tagTable.name(tag);
+            Integer contentModel = AllowlistSanitizer.CONTENT_MODELS.get(tagName);
+            // the text of the disallowed tags is removed by the OWASP sanitizer, such elements are left to it
+            contentModels[tag] = contentModel == null || disallowedTags.contains(tagName) ? AllowlistSanitizer.UNSUPPORTED : contentModel;
+            if (!allowedTags.contains(tagName) || disallowedTags.contains(tagName)) {
+                continue;
+            }
+            allowedAttributes[tag] = new long[(attributeTable.size() + 63) / 64];
+            attributeRules[tag] = new AllowlistSanitizer.AttributeRule[attributeTable.size()];
+            for (int attribute = 0; attribute < attributeTable.size(); attribute++) {
+                String attributeName = attributeTable.name(attribute);
+                List<Predicate<String>> formats = allowedFormats(allowedFormatsByTag, tagName, attributeName);
+                if (formats == null || isDisallowed(disallowedAttributesByTag, tagName, attributeName)) {
+                    continue;
+                }
+                allowedAttributes[tag][attribute >>> 6] |= 1L << attribute;
+                boolean url = URL_ATTRIBUTES.contains(attributeName);
+                // without protocol, the OWASP sanitizer may reject all the URLs, this is not worth reproducing
+                boolean unsupported = UNSUPPORTED_ATTRIBUTES.contains(attributeName) || attributeName.startsWith("on")
+                        || (url && protocols.isEmpty());
+                if (!formats.isEmpty() || url || unsupported) {
+                    attributeRules[tag][attribute] = new AllowlistSanitizer.AttributeRule(formats, url ? protocols : null, unsupported);
+                }
+            }
+        }
+        return new AllowlistSanitizer(tagTable, contentModels, attributeTable, allowedAttributes, attributeRules, fallback);
+    }
+
+    /**
+     * @return the formats the values of the attribute must all match on the tag, <code>null</code> if the attribute is not allowed
+     * on the tag
+     */
+    private static List<Predicate<String>> allowedFormats(Map<String, Map<String, List<Predicate<String>>>> allowedFormatsByTag,
+                                                          String tag, String attribute) {
+        List<Predicate<String>> tagFormats = allowedFormatsByTag.getOrDefault(tag, Collections.emptyMap()).get(attribute);
+        List<Predicate<String>> globalFormats = allowedFormatsByTag.getOrDefault(null, Collections.emptyMap()).get(attribute);
+        if (tagFormats == null || globalFormats == null) {
+            return tagFormats == null ? globalFormats : tagFormats;
+        }
+        // as the OWASP sanitizer, both the formats of the tag and the global ones apply
+        List<Predicate<String>> formats = new ArrayList<>(tagFormats);
+        formats.addAll(globalFormats);
+        return formats;
+    }
+
+    private static boolean isDisallowed(Map<String, Set<String>> disallowedAttributesByTag, String tag, String attribute) {
+        return disallowedAttributesByTag.getOrDefault(tag, Collections.emptySet()).contains(attribute)
+                || disallowedAttributesByTag.getOrDefault(null, Collections.emptySet()).contains(attribute);
+    }
+
+    private static List<ElementModel> elements(RuleSetModel ruleSet) {
+        return ruleSet == null || ruleSet.getElements() == null ? Collections.emptyList() : ruleSet.getElements();
+    }
+
+    private static List<String> toLowerCase(List<String> names) {
+        List<String> lowerCaseNames = new ArrayList<>();
+        if (names != null) {
+            names.forEach(name -> lowerCaseNames.add(name.toLowerCase(Locale.ROOT)));
+        }
+        return lowerCaseNames;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl;
+
+import org.osgi.service.cm.ManagedService;
+import org.osgi.service.component.annotations.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Dictionary;
+
+/**
+ * Reads the bounds of the executor of the asynchronous sanitizations (see
+ * {@link org.jahia.modules.htmlfiltering.Policy#sanitizeAsync(String, org.jahia.modules.htmlfiltering.SanitizeDetailLevel)})
+ * from the optional <code>org.jahia.modules.htmlfiltering.async.yml</code> configuration file.
+ */
+@Component(immediate = true, service = ManagedService.class,
+        property = {
+                "service.pid=org.jahia.modules.htmlfiltering.async",
+                "service.description=HTML filtering configuration of the executor of the asynchronous sanitizations",
+                "service.vendor=Jahia Solutions Group SA"
+        })
+public final class AsyncSanitizeConfig implements ManagedService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncSanitizeConfig.class);
+    static final String THREADS_PROPERTY = "htmlFiltering.async.threads";
+    static final String QUEUE_CAPACITY_PROPERTY = "htmlFiltering.async.queueCapacity";
+
+    @Override
+    public void updated(Dictionary<String, ?> properties) {
+        int threads = readPositiveIntProperty(properties, THREADS_PROPERTY, SanitizeExecutors.DEFAULT_ASYNC_THREADS);
+        int queueCapacity = readPositiveIntProperty(properties, QUEUE_CAPACITY_PROPERTY, SanitizeExecutors.DEFAULT_ASYNC_QUEUE_CAPACITY);
+        logger.info("Up to {} asynchronous sanitizations will run at the same time, and up to {} will wait for a thread", threads,
+                queueCapacity);
+        SanitizeExecutors.configureAsync(threads, queueCapacity);
+    }
+
+    private static int readPositiveIntProperty(Dictionary<String, ?> properties, String name, int defaultValue) {
+        Object value = properties == null ? null : properties.get(name);
+        if (value != null) {
+            try {
+                int intValue = Integer.parseInt(value.toString().trim());
+                if (intValue > 0) {
+                    return intValue;
+                }
+            } catch (NumberFormatException e) {
+                // same as a value that is not positive
+            }
+            logger.warn("Invalid value '{}' for {}, using the default value {}", value, name, defaultValue);
+        }
+        return defaultValue;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl;
+
+import org.jahia.modules.htmlfiltering.impl.cache.CacheStats;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Memoizes the format decisions taken on the attribute values by a policy, as a small set of values (classes, links, roles, ids)
+ * usually accounts for most of the attribute occurrences.
+ * <p>
+ * The decisions are kept in a direct-mapped table: a value has a single slot, determined by its hash and its format, and a
+ * decision replaces the one in its slot. The lookups and the replacements are neither locked nor ordered, as the entries are
+ * immutable, a thread either sees a complete entry or misses and matches the value again. Only the short values are cached, so
+ * that the cache stays small and the values used once (e.g. long inline styles) do not pollute it. It is bound to its policy: when
+ * the configuration is updated, a new policy is built and the cache is dropped with the previous one.
+ */
+final class AttributeDecisionCache {
+
+    private final int maxValueLength;
+    private final Entry[] entries;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder rejectionCount = new LongAdder();
+
+    /**
+     * @param maxEntries     the maximum number of decisions kept, rounded up to a power of two
+     * @param maxValueLength the maximum length of the attribute values whose decisions are kept
+     */
+    AttributeDecisionCache(int maxEntries, int maxValueLength) {
+        this.maxValueLength = maxValueLength;
+        this.entries = new Entry[maxEntries <= 1 ? 1 : Integer.highestOneBit(maxEntries - 1) << 1];
+    }
+
+    /**
+     * @param matcher the format matcher
+     * @return the matcher of the format, through this cache
+     */
+    Predicate<String> matcher(Predicate<String> matcher) {
+        // the same matcher used by several rules shares its slots
+        int salt = System.identityHashCode(matcher) * 0x9E3779B9;
+        int mask = entries.length - 1;
+        return value -> {
+            if (value.length() > maxValueLength) {
+                rejectionCount.increment();
+                return matcher.test(value);
+            }
+            int hash = value.hashCode() ^ salt;
+            int index = (hash ^ (hash >>> 16)) & mask;
+            Entry entry = entries[index];
+            if (entry != null && entry.matcher == matcher && entry.value.equals(value)) {
+                hitCount.increment();
+                return entry.accepted;
+            }
+            missCount.increment();
+            boolean accepted = matcher.test(value);
+            if (entry != null) {
+                evictionCount.increment();
+            }
+            entries[index] = new Entry(matcher, value, accepted);
+            return accepted;
+        };
+    }
+
+    /**
+     * @return the statistics of this cache, the weight of a decision being 1
+     */
+    CacheStats stats() {
+        int size = 0;
+        for (Entry entry : entries) {
+            if (entry != null) {
+                size++;
+            }
+        }
+        return new CacheStats(hitCount.sum(), missCount.sum(), evictionCount.sum(), rejectionCount.sum(), size, size);
+    }
+
+    /**
+     * A decision, only read through its final fields so that it can be shared between threads without synchronization.
+     */
+    private static final class Entry {
+        private final Predicate<String> matcher;
+        private final String value;
+        private final boolean accepted;
+
+        private Entry(Predicate<String> matcher, String value, boolean accepted) {
+            this.matcher = matcher;
+            this.value = value;
+            this.accepted = accepted;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl;
+
+import org.jahia.modules.htmlfiltering.PolicySanitizedHtmlResult;
+import org.jahia.modules.htmlfiltering.impl.cache.BoundedCache;
+import org.jahia.modules.htmlfiltering.impl.cache.CacheStats;
+import org.jahia.modules.htmlfiltering.impl.cache.ContentHash;
+
+import java.util.List;
+
+/**
+ * Caches the sanitization results of the top-level blocks of the large HTML contents, so that saving again a content in which a
+ * single paragraph was edited only sanitizes that paragraph.
+ * <p>
+ * The contents are split before each of their top-level blocks, as by the {@link DocumentSplitter}: the boundaries only depend
+ * on the content itself, an edit does not move the other boundaries, and the sanitized HTML of each block is the one it would
+ * have within the whole content. It is bound to its policy: when the configuration is updated, a new policy is built and the
+ * cache is dropped with the previous one.
+ */
+final class BlockCache {
+
+    private final DocumentSplitter splitter;
+    private final BoundedCache<ContentHash, PolicySanitizedHtmlResult> blocks;
+
+    /**
+     * @param minLength  the length (in characters) from which the contents are split into blocks
+     * @param maxEntries the maximum number of blocks kept
+     * @param maxBytes   the approximate maximum memory used by the blocks kept
+     */
+    BlockCache(int minLength, int maxEntries, long maxBytes) {
+        this.splitter = new DocumentSplitter(minLength, 1);
+        this.blocks = new BoundedCache<>(maxEntries, maxBytes, PolicyImpl::estimateResultSize);
+    }
+
+    /**
+     * @param htmlText the HTML content to sanitize
+     * @return the top-level blocks of the content, in order, <code>null</code> if the content is too short or cannot be split
+     */
+    List<String> split(String htmlText) {
+        return splitter.split(htmlText);
+    }
+
+    /**
+     * @param key the hash of a block
+     * @return the result of the sanitization of the block, <code>null</code> if it is not cached
+     */
+    PolicySanitizedHtmlResult get(ContentHash key) {
+        return blocks.get(key);
+    }
+
+    /**
+     * @param key    the hash of a block
+     * @param result the result of the sanitization of the block, that must not be modifiable
+     */
+    void put(ContentHash key, PolicySanitizedHtmlResult result) {
+        blocks.put(key, result);
+    }
+
+    CacheStats stats() {
+        return blocks.stats();
+    }
+}
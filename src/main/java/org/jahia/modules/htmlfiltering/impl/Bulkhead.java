@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounds the number of HTML contents processed concurrently by a policy, so that a site processing many large contents at once
+ * (e.g. a bulk import) does not hold all the request threads and delay the contents of the other sites.
+ * <p>
+ * A content exceeding the permits waits for one in a bounded queue, for a bounded time; it is refused once the queue is full or
+ * the time has elapsed. Instances are thread-safe and shared by all the sanitizations of a policy, they count the permits
+ * acquired and the contents refused.
+ */
+final class Bulkhead {
+
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final long maxWaitMillis;
+    // fair, the contents waiting for a permit get it in order
+    private final Semaphore permits;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final LongAdder acquiredCount = new LongAdder();
+    private final LongAdder queuedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder timedOutCount = new LongAdder();
+
+    /**
+     * @param maxConcurrent the maximum number of contents processed concurrently
+     * @param maxQueued     the maximum number of contents waiting for a permit, <code>0</code> to refuse them right away
+     * @param maxWaitMillis the maximum time a content waits for a permit, <code>0</code> to refuse it right away
+     */
+    Bulkhead(int maxConcurrent, int maxQueued, long maxWaitMillis) {
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.maxWaitMillis = maxWaitMillis;
+        this.permits = new Semaphore(maxConcurrent, true);
+    }
+
+    /**
+     * Acquires a permit, waiting for one if needed and allowed. A permit acquired must be given back with {@link #release()}.
+     *
+     * @return <code>true</code> if a permit was acquired, <code>false</code> if the content must be refused
+     */
+    boolean tryAcquire() {
+        // barging, no need to queue behind the waiting contents when a permit is available right away
+        if (permits.tryAcquire()) {
+            acquiredCount.increment();
+            return true;
+        }
+        if (maxQueued == 0 || maxWaitMillis == 0) {
+            rejectedCount.increment();
+            return false;
+        }
+        if (waiting.incrementAndGet() > maxQueued) {
+            waiting.decrementAndGet();
+            rejectedCount.increment();
+            return false;
+        }
+        try {
+            if (permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                acquiredCount.increment();
+                queuedCount.increment();
+                return true;
+            }
+            timedOutCount.increment();
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejectedCount.increment();
+            return false;
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    /**
+     * Gives back a permit acquired with {@link #tryAcquire()}.
+     */
+    void release() {
+        permits.release();
+    }
+
+    /**
+     * @return a snapshot of the gauges and statistics of this bulkhead
+     */
+    BulkheadStats stats() {
+        return new BulkheadStats(maxConcurrent, maxConcurrent - permits.availablePermits(), waiting.get(), acquiredCount.sum(),
+                queuedCount.sum(), rejectedCount.sum(), timedOutCount.sum());
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl;
+
+/**
+ * Immutable snapshot of the gauges and statistics of the bulkhead of a policy.
+ */
+public final class BulkheadStats {
+
+    private final int maxConcurrent;
+    private final int activeCount;
+    private final int waitingCount;
+    private final long acquiredCount;
+    private final long queuedCount;
+    private final long rejectedCount;
+    private final long timedOutCount;
+
+    BulkheadStats(int maxConcurrent, int activeCount, int waitingCount, long acquiredCount, long queuedCount, long rejectedCount,
+                  long timedOutCount) {
+        this.maxConcurrent = maxConcurrent;
+        this.activeCount = activeCount;
+        this.waitingCount = waitingCount;
+        this.acquiredCount = acquiredCount;
+        this.queuedCount = queuedCount;
+        this.rejectedCount = rejectedCount;
+        this.timedOutCount = timedOutCount;
+    }
+
+    /**
+     * @return the maximum number of contents processed concurrently
+     */
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /**
+     * @return the number of contents being processed, i.e. the permits in use
+     */
+    public int getActiveCount() {
+        return activeCount;
+    }
+
+    /**
+     * @return the number of contents waiting for a permit, i.e. the depth of the queue
+     */
+    public int getWaitingCount() {
+        return waitingCount;
+    }
+
+    /**
+     * @return the total number of permits acquired
+     */
+    public long getAcquiredCount() {
+        return acquiredCount;
+    }
+
+    /**
+     * @return the total number of permits acquired after waiting in the queue
+     */
+    public long getQueuedCount() {
+        return queuedCount;
+    }
+
+    /**
+     * @return the total number of contents refused because the queue was full
+     */
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * @return the total number of contents refused because no permit was available in time
+     */
+    public long getTimedOutCount() {
+        return timedOutCount;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkheadStats{" +
+                "maxConcurrent=" + maxConcurrent +
+                ", activeCount=" + activeCount +
+                ", waitingCount=" + waitingCount +
+                ", acquiredCount=" + acquiredCount +
+                ", queuedCount=" + queuedCount +
+                ", rejectedCount=" + rejectedCount +
+                ", timedOutCount=" + timedOutCount +
+                '}';
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl;
+
+/**
+ * An {@link Appendable} verifying that the sanitized HTML written to it is identical to the original HTML, without keeping it.
+ * <p>
+ * The sanitization is interrupted with a {@link NotCanonicalException} as soon as the sanitized HTML differs from the original HTML,
+ * so that content that is not already in its sanitized form costs as little as possible.
+ */
+final class CanonicalOutputVerifier implements Appendable {
+
+    private final String originalHtml;
+    private int length;
+
+    CanonicalOutputVerifier(String originalHtml) {
+        this.originalHtml = originalHtml;
+    }
+
+    @Override
+    public CanonicalOutputVerifier append(CharSequence csq) {
+        return append(csq, 0, csq.length());
+    }
+
+    @Override
+    public CanonicalOutputVerifier append(CharSequence csq, int start, int end) {
+        if (length + end - start > originalHtml.length()) {
+            throw NotCanonicalException.INSTANCE;
+        }
+        for (int i = start; i < end; i++) {
+            if (csq.charAt(i) != originalHtml.charAt(length++)) {
+                throw NotCanonicalException.INSTANCE;
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public CanonicalOutputVerifier append(char c) {
+        if (length >= originalHtml.length() || c != originalHtml.charAt(length++)) {
+            throw NotCanonicalException.INSTANCE;
+        }
+        return this;
+    }
+
+    /**
+     * @return <code>true</code> if the whole original HTML has been written, i.e. the sanitized HTML is identical to it
+     */
+    boolean isComplete() {
+        return length == originalHtml.length();
+    }
+
+    /**
+     * Interrupts the sanitizer once the sanitized HTML is known to differ from the original HTML.
+     */
+    static final class NotCanonicalException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        // stateless, a single instance is enough
+        private static final NotCanonicalException INSTANCE = new NotCanonicalException();
+
+        private NotCanonicalException() {
+            // no message nor stack trace, only used for control flow
+            super(null, null, false, false);
+        }
+    }
+}
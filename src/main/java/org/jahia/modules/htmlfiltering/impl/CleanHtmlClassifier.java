@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Single-pass classifier detecting HTML content that the OWASP sanitizer would return unchanged, so that the full
+ * parse/render can be skipped.
+ * <p>
+ * The classification is deliberately conservative: a content is only considered clean when it is already in the exact
+ * canonical form produced by the sanitizer. That is:
+ * <ul>
+ *     <li>the text only contains characters that the sanitizer never encodes nor removes (no <code>&lt;</code>, <code>&amp;</code>,
+ *     quotes, <code>=</code>, <code>+</code>, <code>@</code>, backticks, opening braces, control characters, surrogates or non-characters)
+ *     and no encoded editor placeholder such as <code>%7bmode%7d</code>;</li>
+ *     <li>the tags are lowercase, allowed by the policy, part of a small set of elements with a simple content model and properly
+ *     nested according to that content model; void elements are written <code>&lt;br /&gt;</code>;</li>
+ *     <li>the attributes are lowercase, double-quoted, non-empty, allowed by the policy on the tag without any format, and are
+ *     neither URL nor style attributes.</li>
+ * </ul>
+ * Any other content is left to the sanitizer, including the content exceeding the nesting depth or element count limits of the
+ * policy, so that the sanitizer refuses it.
+ */
+final class CleanHtmlClassifier {
+
+    private static final int MAX_DEPTH = 32;
+    private static final int MAX_ATTRIBUTES = 8;
+
+    // content models of the supported elements
+    private static final int PHRASING = 1;
+    private static final int VOID = 2;
+    private static final int BLOCK = 3;
+    private static final int CONTAINER = 4;
+    private static final int LIST = 5;
+    private static final int LIST_ITEM = 6;
+    private static final Map<String, Integer> CONTENT_MODELS = new HashMap<>();
+
+    static {
+        for (String tag : Arrays.asList("b", "i", "em", "strong", "u", "s", "sub", "sup", "code", "small")) {
+            CONTENT_MODELS.put(tag, PHRASING);
+        }
+        CONTENT_MODELS.put("br", VOID);
+        for (String tag : Arrays.asList("p", "h1", "h2", "h3", "h4", "h5", "h6")) {
+            CONTENT_MODELS.put(tag, BLOCK);
+        }
+        CONTENT_MODELS.put("div", CONTAINER);
+        CONTENT_MODELS.put("blockquote", CONTAINER);
+        CONTENT_MODELS.put("ul", LIST);
+        CONTENT_MODELS.put("ol", LIST);
+        CONTENT_MODELS.put("li", LIST_ITEM);
+    }
+
+    /**
+     * Attributes the sanitizer applies a dedicated policy to (URLs, styles), never considered clean.
+     */
+    private static final Set<String> UNSAFE_ATTRIBUTES = new HashSet<>(Arrays.asList(
+            "action", "archive", "background", "cite", "classid", "codebase", "data", "formaction", "href", "longdesc",
+            "poster", "profile", "src", "srcset", "style", "usemap", "xmlns"));
+
+    private static final boolean[] SAFE_ASCII = new boolean[128];
+
+    static {
+        for (char c = 0x20; c < 0x7F; c++) {
+            SAFE_ASCII[c] = true;
+        }
+        for (char c : "\"&'+<=>@`{".toCharArray()) {
+            SAFE_ASCII[c] = false;
+        }
+        SAFE_ASCII['\t'] = true;
+        SAFE_ASCII['\n'] = true;
+    }
+
+    /**
+     * The supported elements allowed by the policy, associated with the attributes that can be considered clean on them.
+     */
+    private final Map<String, Set<String>> attributesByTag;
+    private final Map<String, Integer> contentModelsByTag;
+    private final int maxDepth;
+    private final int maxElementCount;
+
+    private CleanHtmlClassifier(Map<String, Set<String>> attributesByTag, int maxDepth, int maxElementCount) {
+        this.attributesByTag = attributesByTag;
+        this.maxDepth = maxDepth;
+        this.maxElementCount = maxElementCount;
+        this.contentModelsByTag = new HashMap<>();
+        attributesByTag.keySet().forEach(tag -> contentModelsByTag.put(tag, CONTENT_MODELS.get(tag)));
+    }
+
+    /**
+     * Creates a classifier for a policy.
+     *
+     * @param allowedAttributesByTag the tags allowed by the policy (lowercase), associated with the attributes allowed on them
+     *                               without any format, and not disallowed
+     * @param limits                 the limits of the policy
+     * @return the classifier
+     */
+    static CleanHtmlClassifier create(Map<String, Set<String>> allowedAttributesByTag, SanitizeLimits limits) {
+        Map<String, Set<String>> attributesByTag = new HashMap<>();
+        allowedAttributesByTag.forEach((tag, attributes) -> {
+            if (CONTENT_MODELS.containsKey(tag)) {
+                Set<String> safeAttributes = new HashSet<>();
+                for (String attribute : attributes) {
+                    if (!UNSAFE_ATTRIBUTES.contains(attribute) && !attribute.startsWith("on") && isName(attribute)) {
+                        safeAttributes.add(attribute);
+                    }
+                }
+                attributesByTag.put(tag, Collections.unmodifiableSet(safeAttributes));
+            }
+        });
+        return new CleanHtmlClassifier(attributesByTag, Math.min(MAX_DEPTH, limits.getMaxNestingDepth()), limits.getMaxElementCount());
+    }
+
+    /**
+     * @param html the HTML content, must not be <code>null</code>
+     * @return <code>true</code> if the HTML content is known to be returned unchanged, and without any rejected tag or attribute,
+     * by the sanitizer; <code>false</code> if the sanitizer has to process it
+     */
+    boolean isClean(String html) {
+        // content models and tag name offsets of the open elements
+        int[] contentModels = null;
+        int[] nameOffsets = null;
+        int depth = 0;
+        int elementCount = 0;
+        int length = html.length();
+        int i = 0;
+        while (i < length) {
+            char c = html.charAt(i);
+            if (c == '<') {
+                if (contentModels == null) {
+                    contentModels = new int[MAX_DEPTH];
+                    nameOffsets = new int[MAX_DEPTH];
+                }
+                int parent = depth == 0 ? CONTAINER : contentModels[depth - 1];
+                if (i + 1 < length && html.charAt(i + 1) == '/') {
+                    // closing tag, must close the current element
+                    int end = html.indexOf('>', i + 2);
+                    if (end < 0 || depth == 0 || !isCurrentElement(html, i + 2, end, nameOffsets[depth - 1])) {
+                        return false;
+                    }
+                    depth--;
+                    i = end + 1;
+                    continue;
+                }
+                int nameEnd = i + 1;
+                while (nameEnd < length && isNameChar(html.charAt(nameEnd))) {
+                    nameEnd++;
+                }
+                String tag = html.substring(i + 1, nameEnd);
+                Integer contentModel = contentModelsByTag.get(tag);
+                if (contentModel == null || !canContain(parent, contentModel) || ++elementCount > maxElementCount) {
+                    return false;
+                }
+                int end = scanAttributes(html, nameEnd, attributesByTag.get(tag), contentModel == VOID);
+                if (end < 0) {
+                    return false;
+                }
+                if (contentModel != VOID) {
+                    if (depth == maxDepth) {
+                        return false;
+                    }
+                    contentModels[depth] = contentModel;
+                    nameOffsets[depth++] = i + 1;
+                }
+                i = end;
+            } else {
+                if (depth > 0 && contentModels[depth - 1] == LIST) {
+                    // text (even whitespaces) directly inside lists is not kept as is
+                    return false;
+                }
+                if (!isSafeChar(c) || (c == '%' && html.startsWith("7b", i + 1))) {
+                    return false;
+                }
+                i++;
+            }
+        }
+        return depth == 0;
+    }
+
+    /**
+     * Scans the attributes of an opening tag, up to its end.
+     *
+     * @return the index after the end of the tag, or <code>-1</code> if the tag is not clean
+     */
+    private static int scanAttributes(String html, int start, Set<String> allowedAttributes, boolean isVoid) {
+        int length = html.length();
+        String[] seen = null;
+        int count = 0;
+        int i = start;
+        while (i < length) {
+            char c = html.charAt(i);
+            if (c == '>') {
+                return isVoid ? -1 : i + 1;
+            }
+            if (c != ' ') {
+                return -1;
+            }
+            i++;
+            if (isVoid && html.startsWith("/>", i)) {
+                return i + 2;
+            }
+            int nameEnd = i;
+            while (nameEnd < length && isNameChar(html.charAt(nameEnd))) {
+                nameEnd++;
+            }
+            String attribute = html.substring(i, nameEnd);
+            if (!allowedAttributes.contains(attribute) || !html.startsWith("=\"", nameEnd) || count == MAX_ATTRIBUTES) {
+                return -1;
+            }
+            if (seen == null) {
+                seen = new String[MAX_ATTRIBUTES];
+            }
+            for (int j = 0; j < count; j++) {
+                if (seen[j].equals(attribute)) {
+                    return -1;
+                }
+            }
+            seen[count++] = attribute;
+            int valueStart = nameEnd + 2;
+            int valueEnd = valueStart;
+            while (valueEnd < length && html.charAt(valueEnd) != '"') {
+                char v = html.charAt(valueEnd);
+                if (!isSafeChar(v) || v == '\t' || v == '\n' || (v == '%' && html.startsWith("7b", valueEnd + 1))) {
+                    return -1;
+                }
+                valueEnd++;
+            }
+            if (valueEnd == valueStart || valueEnd == length) {
+                return -1;
+            }
+            i = valueEnd + 1;
+        }
+        return -1;
+    }
+
+    /**
+     * @return whether the closing tag is exactly <code>&lt;/name&gt;</code>, the name being the one of the current element: the
+     * sanitizer drops anything else within closing tags (attributes, whitespaces)
+     */
+    private static boolean isCurrentElement(String html, int nameStart, int nameEnd, int openingNameStart) {
+        int openingNameEnd = openingNameStart;
+        while (isNameChar(html.charAt(openingNameEnd))) {
+            openingNameEnd++;
+        }
+        int nameLength = nameEnd - nameStart;
+        return nameLength == openingNameEnd - openingNameStart && html.regionMatches(nameStart, html, openingNameStart, nameLength);
+    }
+
+    private static boolean canContain(int parent, int child) {
+        switch (parent) {
+            case CONTAINER:
+            case LIST_ITEM:
+                return child != LIST_ITEM;
+            case BLOCK:
+            case PHRASING:
+                return child == PHRASING || child == VOID;
+            case LIST:
+                return child == LIST_ITEM;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isSafeChar(char c) {
+        if (c < 0x80) {
+            return SAFE_ASCII[c];
+        }
+        return (c >= 0xA0 && c < 0xD800 && c != 0x2028 && c != 0x2029)
+                || (c >= 0xE000 && c < 0xFDD0)
+                || (c > 0xFDEF && c < 0xFFF0);
+    }
+
+    private static boolean isNameChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-';
+    }
+
+    private static boolean isName(String name) {
+        if (name.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (!isNameChar(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -3,17 +3,33 @@ package org.jahia.modules.htmlfiltering.impl;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.dataformat.javaprop.JavaPropsMapper;
-import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.jahia.modules.htmlfiltering.Policy;
+import org.jahia.modules.htmlfiltering.PolicySanitizedHtmlResult;
 import org.jahia.modules.htmlfiltering.Strategy;
+import org.jahia.modules.htmlfiltering.engine.EngineContext;
+import org.jahia.modules.htmlfiltering.engine.SanitizerEngine;
+import org.jahia.modules.htmlfiltering.impl.cache.BoundedCache;
+import org.jahia.modules.htmlfiltering.impl.cache.ContentHash;
 import org.jahia.modules.htmlfiltering.impl.config.Config;
+import org.jahia.modules.htmlfiltering.impl.format.BuiltinFormat;
+import org.jahia.modules.htmlfiltering.impl.format.FormatComplexity;
+import org.jahia.modules.htmlfiltering.impl.format.FormatMatcher;
+import org.jahia.modules.htmlfiltering.model.AttributeCacheModel;
+import org.jahia.modules.htmlfiltering.model.BlockCacheModel;
+import org.jahia.modules.htmlfiltering.model.BulkheadModel;
+import org.jahia.modules.htmlfiltering.model.CacheModel;
 import org.jahia.modules.htmlfiltering.model.ConfigModel;
+import org.jahia.modules.htmlfiltering.model.CssPropertyModel;
 import org.jahia.modules.htmlfiltering.model.ElementModel;
+import org.jahia.modules.htmlfiltering.model.LimitsModel;
+import org.jahia.modules.htmlfiltering.model.OutputCompactionModel;
+import org.jahia.modules.htmlfiltering.model.ParallelSanitizationModel;
+import org.jahia.modules.htmlfiltering.model.PasteCleanupModel;
 import org.jahia.modules.htmlfiltering.model.PolicyModel;
 import org.jahia.modules.htmlfiltering.model.RuleSetModel;
+import org.jahia.modules.htmlfiltering.model.StyleModel;
 import org.osgi.service.cm.ConfigurationException;
-import org.owasp.html.HtmlPolicyBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -21,14 +37,20 @@ import javax.validation.ConstraintViolation;
 import javax.validation.Validation;
 import javax.validation.Validator;
 import javax.validation.ValidatorFactory;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Pattern;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 /**
@@ -79,7 +101,7 @@ public class ConfigBuilder {
 
     /**
      * Builds a valid {@link Config} object from the given {@link ConfigModel}. This method validates the
-     * provided {@link ConfigModel}, compiles format definitions into regex patterns, and generates
+     * provided {@link ConfigModel}, compiles format definitions into {@link FormatMatcher format matchers}, and generates
      * policies for the edit and live workspaces.
      *
      * @param configModel the {@link ConfigModel} containing the configuration details used to build the {@link Config}
@@ -88,17 +110,30 @@ public class ConfigBuilder {
      */
     static Config buildFromModel(ConfigModel configModel) throws ConfigurationException {
         validate(configModel);
-        // compile the regex patterns for the allowed and disallowed rule sets (shared for both workspaces)
-        Map<String, Pattern> formatPatterns = new HashMap<>();
+        // compile the format matchers for the allowed and disallowed rule sets (shared for both workspaces and configurations)
+        Map<String, FormatMatcher> formatMatchers = new HashMap<>();
         if (configModel.getFormatDefinitions() != null) {
             configModel.getFormatDefinitions().forEach((formatName, formatRegex) -> {
-                formatPatterns.put(formatName, Pattern.compile(formatRegex));
-                logger.debug("Compiled format {} regex: {}", formatName, formatRegex);
+                FormatMatcher formatMatcher = FormatMatcher.compile(formatRegex);
+                formatMatchers.put(formatName, formatMatcher);
+                // the exponential ones are rejected by the validation
+                if (!formatMatcher.isLinear() && formatMatcher.getComplexity() == FormatComplexity.POLYNOMIAL) {
+                    logger.warn("The format {} may take a polynomial time to match some values, consider simplifying its regex: {}",
+                            formatName, formatRegex);
+                } else {
+                    logger.debug("Compiled format {} regex: {} ({})", formatName, formatRegex, formatMatcher);
+                }
             });
         }
 
-        return new Config(buildPolicy(formatPatterns, configModel.getEditWorkspace()),
-                buildPolicy(formatPatterns, configModel.getLiveWorkspace()));
+        // compile the placeholders restored after sanitization (shared for both workspaces)
+        PlaceholderRestorer placeholderRestorer = configModel.getPlaceholders() != null
+                ? PlaceholderRestorer.create(configModel.getPlaceholders()) : PlaceholderRestorer.DEFAULT;
+
+        Set<String> engineNames = new HashSet<>(Arrays.asList(engineName(configModel.getEditWorkspace()),
+                engineName(configModel.getLiveWorkspace())));
+        return new Config(buildPolicy(formatMatchers, placeholderRestorer, configModel.getEditWorkspace()),
+                buildPolicy(formatMatchers, placeholderRestorer, configModel.getLiveWorkspace()), engineNames);
     }
 
     private static void validate(ConfigModel configModel) throws ConfigurationException {
@@ -109,20 +144,305 @@ public class ConfigBuilder {
         }
     }
 
-    static Policy buildPolicy(Map<String, Pattern> formatPatterns, PolicyModel policyModel) {
+    static Policy buildPolicy(Map<String, FormatMatcher> formatMatchers, PlaceholderRestorer placeholderRestorer, PolicyModel policyModel) {
+        SanitizeLimits limits = buildLimits(policyModel.getLimits());
+        AttributeDecisionCache attributeCache = buildAttributeCache(policyModel.getAttributeCache());
+        StyleFilter styleFilter = buildStyleFilter(formatMatchers, policyModel.getStyle());
+        SanitizerEngine engine = resolveEngine(policyModel.getEngine());
+        EngineContext engineContext = new EngineContext() {
+            @Override
+            public Predicate<String> getFormat(String format) {
+                return buildFormat(formatMatchers, attributeCache, format);
+            }
 
-        // Configure OWASP
-        HtmlPolicyBuilder builder = new HtmlPolicyBuilder();
-        processRuleSet(builder, policyModel.getAllowedRuleSet(), formatPatterns,
-                HtmlPolicyBuilder::allowAttributes, HtmlPolicyBuilder::allowElements, HtmlPolicyBuilder::allowTextIn, HtmlPolicyBuilder::allowUrlProtocols);
-        processRuleSet(builder, policyModel.getDisallowedRuleSet(), formatPatterns,
-                HtmlPolicyBuilder::disallowAttributes, HtmlPolicyBuilder::disallowElements, HtmlPolicyBuilder::disallowTextIn, HtmlPolicyBuilder::disallowUrlProtocols);
+            @Override
+            public UnaryOperator<String> getStyleFilter() {
+                return styleFilter == null ? null : styleFilter::filter;
+            }
+        };
 
         return new PolicyImpl(readStrategy(policyModel),
                 createPropsByNodeType(policyModel.getProcess(), "process"),
                 createPropsByNodeType(policyModel.getSkip(), "skip"),
                 policyModel.getSkipOnPermissions() != null ? policyModel.getSkipOnPermissions() : Collections.emptyList(),
-                builder.toFactory());
+                engine.compile(policyModel, engineContext),
+                buildResultCache(policyModel.getResultCache()),
+                buildBlockCache(policyModel.getBlockCache()),
+                attributeCache,
+                styleFilter,
+                buildPasteCleaner(policyModel.getPasteCleanup()),
+                buildOutputCompactor(policyModel.getOutputCompaction()),
+                buildDocumentSplitter(policyModel.getParallelSanitization()),
+                buildBulkhead(policyModel.getBulkhead()),
+                buildCleanHtmlClassifier(policyModel, limits),
+                buildKnownNames(policyModel),
+                placeholderRestorer,
+                buildFingerprint(formatMatchers, placeholderRestorer, policyModel, engine),
+                limits);
+    }
+
+    /**
+     * Computes the fingerprint of everything that affects the sanitized HTML produced by a policy: whether it strips all the
+     * markup, the engine actually compiling it (the configured one may not be registered), its rule sets, the allowed CSS properties, the paste cleanup, the output compaction, the format patterns,
+     * the placeholders and the limits.
+     * <p>
+     * The fields are written explicitly, in a fixed order, each value being prefixed by its length; the lists whose order does not
+     * matter are sorted. This way, the fingerprint neither depends on the <code>toString()</code> of the models nor on the order of
+     * the rules in the configuration.
+     */
+    private static String buildFingerprint(Map<String, FormatMatcher> formatMatchers, PlaceholderRestorer placeholderRestorer, PolicyModel policyModel,
+                                           SanitizerEngine engine) {
+        StringBuilder rules = new StringBuilder();
+        // the rejection and the sanitization produce the same HTML, only the strip strategy differs
+        appendField(rules, "strip", String.valueOf(policyModel.getStrategy() == PolicyModel.PolicyStrategy.STRIP));
+        appendField(rules, "engine", engine.getName());
+        appendRuleSet(rules, "allowed", policyModel.getAllowedRuleSet());
+        appendRuleSet(rules, "disallowed", policyModel.getDisallowedRuleSet());
+        if (policyModel.getStyle() != null) {
+            appendField(rules, "style", sorted(policyModel.getStyle().getProperties(), property -> {
+                StringBuilder value = new StringBuilder();
+                appendField(value, "properties", sorted(property.getProperties(), name -> name));
+                appendField(value, "format", property.getFormat());
+                return value.toString();
+            }));
+        }
+        PasteCleanupModel pasteCleanup = policyModel.getPasteCleanup();
+        if (pasteCleanup != null && pasteCleanup.isEnabled()) {
+            appendField(rules, "pasteCleanup", pasteCleanup.isOfficeStyles() + "," + pasteCleanup.isOfficeClasses() + ","
+                    + pasteCleanup.isGoogleDocsWrappers() + "," + pasteCleanup.isEmptySpans());
+        }
+        OutputCompactionModel outputCompaction = policyModel.getOutputCompaction();
+        if (outputCompaction != null && outputCompaction.isEnabled()) {
+            appendField(rules, "outputCompaction", outputCompaction.isCollapseWhitespace() + ","
+                    + outputCompaction.isRemoveEmptyElements() + "," + outputCompaction.isRemoveNestedDuplicates());
+        }
+        new TreeMap<>(formatMatchers).forEach((name, matcher) -> appendField(rules, "format:" + name, matcher.getRegex()));
+        // already sorted by encoded form
+        appendField(rules, "placeholders", String.join(",", placeholderRestorer.getPlaceholders()));
+        LimitsModel limits = policyModel.getLimits();
+        if (limits != null) {
+            appendField(rules, "limits", limits.getMaxInputLength() + "," + limits.getMaxNestingDepth() + ","
+                    + limits.getMaxElementCount() + "," + limits.getMaxDurationMillis());
+        }
+        return ContentHash.of(rules).toString();
+    }
+
+    private static void appendRuleSet(StringBuilder rules, String name, RuleSetModel ruleSet) {
+        if (ruleSet == null) {
+            return;
+        }
+        StringBuilder value = new StringBuilder();
+        appendField(value, "protocols", sorted(ruleSet.getProtocols(), protocol -> protocol));
+        // the elements of a rule set are combined, whatever their order
+        appendField(value, "elements", sorted(ruleSet.getElements(), element -> {
+            StringBuilder elementValue = new StringBuilder();
+            appendField(elementValue, "tags", sorted(element.getTags(), tag -> tag));
+            appendField(elementValue, "attributes", sorted(element.getAttributes(), attribute -> attribute));
+            appendField(elementValue, "format", element.getFormat());
+            return elementValue.toString();
+        }));
+        appendField(rules, name, value.toString());
+    }
+
+    /**
+     * @return the sorted values of the list, each one prefixed by its length, <code>null</code> if the list is <code>null</code>
+     */
+    private static <T> String sorted(List<T> list, Function<T, String> toValue) {
+        if (list == null) {
+            return null;
+        }
+        List<String> values = list.stream().map(toValue).sorted(Comparator.nullsFirst(Comparator.naturalOrder())).collect(Collectors.toList());
+        StringBuilder sortedValues = new StringBuilder();
+        for (String value : values) {
+            appendValue(sortedValues, value);
+        }
+        return sortedValues.toString();
+    }
+
+    private static void appendField(StringBuilder rules, String name, String value) {
+        rules.append(name).append('=');
+        appendValue(rules, value);
+        rules.append(';');
+    }
+
+    /**
+     * Appends a value prefixed by its length, so that no value can be mistaken for several ones.
+     */
+    private static void appendValue(StringBuilder rules, String value) {
+        if (value == null) {
+            rules.append('-');
+        } else {
+            rules.append(value.length()).append(':').append(value);
+        }
+    }
+
+    /**
+     * Collects the tag and attribute names of the allowed and disallowed rule sets, each one mapped to itself.
+     */
+    private static Map<String, String> buildKnownNames(PolicyModel policyModel) {
+        Map<String, String> knownNames = new HashMap<>();
+        for (RuleSetModel ruleSet : Arrays.asList(policyModel.getAllowedRuleSet(), policyModel.getDisallowedRuleSet())) {
+            if (ruleSet == null) {
+                continue;
+            }
+            for (ElementModel element : ruleSet.getElements()) {
+                toLowerCase(element.getTags()).forEach(tag -> knownNames.putIfAbsent(tag, tag));
+                toLowerCase(element.getAttributes()).forEach(attribute -> knownNames.putIfAbsent(attribute, attribute));
+            }
+        }
+        return knownNames;
+    }
+
+    /**
+     * Builds the classifier detecting the HTML content that the policy would return unchanged.
+     * Only the tags allowed by the policy are considered, with their attributes that are allowed without format and never disallowed.
+     * The <code>style</code> attribute is not considered when its declarations are filtered.
+     */
+    private static CleanHtmlClassifier buildCleanHtmlClassifier(PolicyModel policyModel, SanitizeLimits limits) {
+        Set<String> allowedTags = new HashSet<>();
+        Set<String> globalAttributes = new HashSet<>();
+        Map<String, Set<String>> attributesByTag = new HashMap<>();
+        Set<String> excludedTags = new HashSet<>();
+        Set<String> excludedAttributes = new HashSet<>();
+        for (ElementModel element : policyModel.getAllowedRuleSet().getElements()) {
+            List<String> tags = toLowerCase(element.getTags());
+            List<String> attributes = toLowerCase(element.getAttributes());
+            if (attributes.isEmpty()) {
+                allowedTags.addAll(tags);
+            } else if (element.getFormat() != null) {
+                // the values of those attributes have to be checked by the sanitizer
+                excludedAttributes.addAll(attributes);
+            } else if (tags.isEmpty()) {
+                globalAttributes.addAll(attributes);
+            } else {
+                tags.forEach(tag -> attributesByTag.computeIfAbsent(tag, k -> new HashSet<>()).addAll(attributes));
+            }
+        }
+        if (policyModel.getDisallowedRuleSet() != null) {
+            for (ElementModel element : policyModel.getDisallowedRuleSet().getElements()) {
+                List<String> attributes = toLowerCase(element.getAttributes());
+                if (attributes.isEmpty()) {
+                    excludedTags.addAll(toLowerCase(element.getTags()));
+                } else {
+                    excludedAttributes.addAll(attributes);
+                }
+            }
+        }
+        if (policyModel.getStyle() != null) {
+            // the values of this attribute have to be filtered by the sanitizer
+            excludedAttributes.add(StyleFilter.STYLE_ATTRIBUTE);
+        }
+        allowedTags.removeAll(excludedTags);
+
+        Map<String, Set<String>> cleanAttributesByTag = new HashMap<>();
+        for (String tag : allowedTags) {
+            Set<String> attributes = new HashSet<>(globalAttributes);
+            attributes.addAll(attributesByTag.getOrDefault(tag, Collections.emptySet()));
+            attributes.removeAll(excludedAttributes);
+            cleanAttributesByTag.put(tag, attributes);
+        }
+        return CleanHtmlClassifier.create(cleanAttributesByTag, limits);
+    }
+
+    private static List<String> toLowerCase(List<String> names) {
+        if (names == null) {
+            return Collections.emptyList();
+        }
+        return names.stream().map(name -> name.toLowerCase(Locale.ROOT)).collect(Collectors.toList());
+    }
+
+    private static BoundedCache<ContentHash, PolicySanitizedHtmlResult> buildResultCache(CacheModel cacheModel) {
+        if (cacheModel == null || !cacheModel.isEnabled()) {
+            return null;
+        }
+        logger.debug("Result cache enabled with at most {} entries and {} bytes", cacheModel.getMaxEntries(), cacheModel.getMaxBytes());
+        return new BoundedCache<>(cacheModel.getMaxEntries(), cacheModel.getMaxBytes(), PolicyImpl::estimateResultSize);
+    }
+
+    private static BlockCache buildBlockCache(BlockCacheModel cacheModel) {
+        if (cacheModel == null || !cacheModel.isEnabled()) {
+            return null;
+        }
+        logger.debug("Block cache enabled with at most {} entries and {} bytes, for contents of at least {} characters",
+                cacheModel.getMaxEntries(), cacheModel.getMaxBytes(), cacheModel.getMinLength());
+        return new BlockCache(cacheModel.getMinLength(), cacheModel.getMaxEntries(), cacheModel.getMaxBytes());
+    }
+
+    private static AttributeDecisionCache buildAttributeCache(AttributeCacheModel cacheModel) {
+        if (cacheModel == null || !cacheModel.isEnabled()) {
+            return null;
+        }
+        logger.debug("Attribute cache enabled with at most {} entries, for values of at most {} characters",
+                cacheModel.getMaxEntries(), cacheModel.getMaxValueLength());
+        return new AttributeDecisionCache(cacheModel.getMaxEntries(), cacheModel.getMaxValueLength());
+    }
+
+    /**
+     * @return the filter of the <code>style</code> attribute values keeping the allowed CSS properties, <code>null</code> if the
+     * style section is not configured
+     */
+    private static StyleFilter buildStyleFilter(Map<String, FormatMatcher> formatMatchers, StyleModel styleModel) {
+        if (styleModel == null) {
+            return null;
+        }
+        Map<String, Predicate<String>> formatsByProperty = new HashMap<>();
+        for (CssPropertyModel property : styleModel.getProperties()) {
+            Predicate<String> format = property.getFormat() != null ? resolveFormat(formatMatchers, property.getFormat()) : value -> true;
+            // a property listed several times accepts the values matching any of its formats
+            toLowerCase(property.getProperties()).forEach(name -> formatsByProperty.merge(name, format, Predicate::or));
+        }
+        CacheModel cacheModel = styleModel.getCache() != null ? styleModel.getCache() : new CacheModel();
+        if (!cacheModel.isEnabled()) {
+            return new StyleFilter(formatsByProperty);
+        }
+        logger.debug("Style cache enabled with at most {} entries and {} bytes", cacheModel.getMaxEntries(), cacheModel.getMaxBytes());
+        return new StyleFilter(formatsByProperty, cacheModel.getMaxEntries(), cacheModel.getMaxBytes());
+    }
+
+    private static PasteCleaner buildPasteCleaner(PasteCleanupModel pasteCleanupModel) {
+        if (pasteCleanupModel == null || !pasteCleanupModel.isEnabled()) {
+            return null;
+        }
+        logger.debug("Paste cleanup enabled: {}", pasteCleanupModel);
+        return new PasteCleaner(pasteCleanupModel.isOfficeStyles(), pasteCleanupModel.isOfficeClasses(),
+                pasteCleanupModel.isGoogleDocsWrappers(), pasteCleanupModel.isEmptySpans());
+    }
+
+    private static OutputCompactor buildOutputCompactor(OutputCompactionModel outputCompactionModel) {
+        if (outputCompactionModel == null || !outputCompactionModel.isEnabled()) {
+            return null;
+        }
+        logger.debug("Output compaction enabled: {}", outputCompactionModel);
+        return new OutputCompactor(outputCompactionModel.isCollapseWhitespace(), outputCompactionModel.isRemoveEmptyElements(),
+                outputCompactionModel.isRemoveNestedDuplicates());
+    }
+
+    private static DocumentSplitter buildDocumentSplitter(ParallelSanitizationModel parallelSanitizationModel) {
+        if (parallelSanitizationModel == null || !parallelSanitizationModel.isEnabled()) {
+            return null;
+        }
+        logger.debug("Parallel sanitization enabled: {}", parallelSanitizationModel);
+        return new DocumentSplitter(parallelSanitizationModel.getMinLength(), parallelSanitizationModel.getChunkLength());
+    }
+
+    private static Bulkhead buildBulkhead(BulkheadModel bulkheadModel) {
+        if (bulkheadModel == null || !bulkheadModel.isEnabled()) {
+            return null;
+        }
+        logger.debug("Bulkhead enabled: {}", bulkheadModel);
+        return new Bulkhead(bulkheadModel.getMaxConcurrent(), bulkheadModel.getMaxQueued(), bulkheadModel.getMaxWaitMillis());
+    }
+
+    private static SanitizeLimits buildLimits(LimitsModel limitsModel) {
+        if (limitsModel == null) {
+            return SanitizeLimits.NONE;
+        }
+        logger.debug("Limits enforced on the HTML contents: {}", limitsModel);
+        return new SanitizeLimits(
+                limitsModel.getMaxInputLength() != null ? limitsModel.getMaxInputLength() : Integer.MAX_VALUE,
+                limitsModel.getMaxNestingDepth() != null ? limitsModel.getMaxNestingDepth() : Integer.MAX_VALUE,
+                limitsModel.getMaxElementCount() != null ? limitsModel.getMaxElementCount() : Integer.MAX_VALUE,
+                limitsModel.getMaxDurationMillis() != null ? limitsModel.getMaxDurationMillis() : 0);
     }
 
     private static Map<String, Set<String>> createPropsByNodeType(List<String> propsByNodeType, String configSectionName) {
@@ -179,61 +499,47 @@ public class ConfigBuilder {
                 return Strategy.REJECT;
             case SANITIZE:
                 return Strategy.SANITIZE;
+            case STRIP:
+                return Strategy.STRIP;
         }
         return null; // should not happen as the configuration is validated beforehand
     }
 
-    private static void processRuleSet(HtmlPolicyBuilder builder, RuleSetModel ruleSet,
-                                       Map<String, Pattern> formatPatterns,
-                                       AttributeBuilderHandlerFunction attributeBuilderHandlerFunction,
-                                       BuilderHandlerFunction tagHandler, BuilderHandlerFunction textContentHandler, BuilderHandlerFunction protocolHandler) {
-        if (ruleSet != null) {
-            // Apply element rules
-            for (ElementModel element : ruleSet.getElements()) {
-                processElement(builder, formatPatterns, attributeBuilderHandlerFunction, tagHandler, textContentHandler, element);
-            }
-
-            // Apply protocol rules
-            if (ruleSet.getProtocols() != null) {
-                protocolHandler.handle(builder, ruleSet.getProtocols().toArray(new String[0]));
-            }
-        }
+    /**
+     * @return the matcher of the values allowed by the given format, through the attribute cache if enabled
+     */
+    private static Predicate<String> buildFormat(Map<String, FormatMatcher> formatMatchers, AttributeDecisionCache attributeCache,
+                                                 String format) {
+        Predicate<String> matcher = resolveFormat(formatMatchers, format);
+        return attributeCache != null ? attributeCache.matcher(matcher) : matcher;
     }
 
-    private static void processElement(HtmlPolicyBuilder builder, Map<String, Pattern> formatPatterns,
-                                       AttributeBuilderHandlerFunction attributeBuilderHandlerFunction,
-                                       BuilderHandlerFunction tagHandler, BuilderHandlerFunction textContentHandler, ElementModel element) {
-        boolean noTags = CollectionUtils.isEmpty(element.getTags());
-        boolean noAttributes = CollectionUtils.isEmpty(element.getAttributes());
-        if (noAttributes) {
-            tagHandler.handle(builder, element.getTags().toArray(new String[0]));
-            textContentHandler.handle(builder, element.getTags().toArray(new String[0]));
-        } else {
-            HtmlPolicyBuilder.AttributeBuilder attributeBuilder =
-                    attributeBuilderHandlerFunction.handle(builder, element.getAttributes().toArray(new String[0]));
-
-            // Handle format pattern for allowed attributes only
-            if (element.getFormat() != null) {
-                Pattern formatPattern = formatPatterns.get(element.getFormat());
-                attributeBuilder.matching(formatPattern);
-            }
-
-            if (noTags) {
-                // The attributes are for all tags
-                attributeBuilder.globally();
-            } else {
-                attributeBuilder.onElements(element.getTags().toArray(new String[0]));
-            }
-        }
+    /**
+     * @return the name of the engine selected by the policy
+     */
+    private static String engineName(PolicyModel policyModel) {
+        return policyModel.getEngine() != null ? policyModel.getEngine() : SanitizerEngine.DEFAULT_ENGINE;
     }
 
-    @FunctionalInterface
-    private interface AttributeBuilderHandlerFunction {
-        HtmlPolicyBuilder.AttributeBuilder handle(HtmlPolicyBuilder builder, String[] attributes);
+    /**
+     * @return the engine of the given name, the built-in one if it is not registered, so that the contents are still sanitized
+     */
+    private static SanitizerEngine resolveEngine(String name) {
+        SanitizerEngine engine = SanitizerEngines.get(name);
+        if (engine == null) {
+            logger.warn("The sanitizer engine {} is not registered, using the {} engine until it is registered", name,
+                    SanitizerEngine.DEFAULT_ENGINE);
+            return SanitizerEngines.get(null);
+        }
+        logger.debug("Policy compiled with the {} sanitizer engine", engine.getName());
+        return engine;
     }
 
-    @FunctionalInterface
-    private interface BuilderHandlerFunction {
-        void handle(HtmlPolicyBuilder builder, String[] items);
+    /**
+     * @return the matcher of the given format reference, either to a built-in format or to a format definition
+     */
+    private static Predicate<String> resolveFormat(Map<String, FormatMatcher> formatMatchers, String format) {
+        BuiltinFormat builtinFormat = BuiltinFormat.fromReference(format);
+        return builtinFormat != null ? builtinFormat::matches : formatMatchers.get(format)::matches;
     }
 }
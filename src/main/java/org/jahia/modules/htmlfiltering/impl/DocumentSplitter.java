@@ -0,0 +1,353 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Splits the very large HTML contents into chunks that can be sanitized independently, in parallel, and whose sanitized HTML
+ * concatenated is the sanitized HTML of the whole content.
+ * <p>
+ * A content is only split right before the start tag of a top-level block element (e.g. <code>&lt;p&gt;</code>), when all the
+ * elements before it are closed, so that the sanitizer starts each chunk with the same state as it would have when reaching that
+ * point of the whole content: no open element, no pending text. The content is scanned once, without parsing the attributes; as
+ * soon as anything would make the state of the sanitizer uncertain (a misnested or unmatched end tag, an element implying a
+ * parent at the top level, a bogus comment, etc.), the rest of the content is kept in the last chunk. So is the rest of the
+ * content after an element that the tag balancer of the sanitizer would close before its end tag, and possibly reopen after it:
+ * a block within an inline element or a paragraph (e.g. <code>&lt;b&gt;&lt;p&gt;x&lt;/p&gt;&lt;/b&gt;</code>), anything but the
+ * expected children within a list or a table, a link within a link, etc.
+ * <p>
+ * Instances are thread-safe and shared by all the sanitizations of a policy, they count the contents split.
+ */
+final class DocumentSplitter {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentSplitter.class);
+
+    private static final Set<String> VOID_ELEMENTS = new HashSet<>(Arrays.asList("area", "base", "br", "col", "embed", "hr", "img",
+            "input", "keygen", "link", "meta", "param", "source", "track", "wbr"));
+    /**
+     * The elements whose content is raw text, up to their end tag.
+     */
+    private static final Set<String> RAW_TEXT_ELEMENTS = new HashSet<>(Arrays.asList("iframe", "noembed", "noframes", "noscript",
+            "script", "style", "textarea", "title", "xmp"));
+    /**
+     * The elements whose content is parsed differently depending on the context, or up to the end of the content.
+     */
+    private static final Set<String> UNCERTAIN_ELEMENTS = new HashSet<>(Arrays.asList("comment", "listing", "plaintext"));
+    /**
+     * The block elements before which a content can be split.
+     */
+    private static final Set<String> BOUNDARY_ELEMENTS = new HashSet<>(Arrays.asList("address", "article", "aside", "blockquote",
+            "dl", "div", "figure", "footer", "h1", "h2", "h3", "h4", "h5", "h6", "header", "hr", "nav", "ol", "p", "pre", "section",
+            "table", "ul"));
+    /**
+     * The elements that may be within the elements of {@link #PHRASING_CONTAINERS}.
+     */
+    private static final Set<String> PHRASING_ELEMENTS = new HashSet<>(Arrays.asList("a", "abbr", "b", "bdi", "bdo", "big", "br",
+            "cite", "code", "data", "del", "dfn", "em", "font", "i", "img", "ins", "kbd", "mark", "nobr", "q", "s", "samp", "small",
+            "span", "strike", "strong", "sub", "sup", "time", "tt", "u", "var", "wbr"));
+    /**
+     * The elements that may only contain the elements of {@link #PHRASING_ELEMENTS}: the sanitizer closes them before any other
+     * element.
+     */
+    private static final Set<String> PHRASING_CONTAINERS = new HashSet<>(Arrays.asList("a", "abbr", "b", "bdi", "bdo", "big",
+            "cite", "code", "data", "del", "dfn", "em", "font", "h1", "h2", "h3", "h4", "h5", "h6", "i", "ins", "kbd", "mark", "nobr",
+            "p", "pre", "q", "s", "samp", "small", "span", "strike", "strong", "sub", "sup", "time", "tt", "u", "var"));
+    /**
+     * The children expected within the lists, the tables and the selects, neither text nor any other element being expected.
+     */
+    private static final Map<String, Set<String>> STRUCTURED_CONTENT = new HashMap<>();
+    /**
+     * The elements closed by the start tag of the same element, e.g. a link within a link.
+     */
+    private static final Set<String> SELF_CLOSING_ELEMENTS = new HashSet<>(Arrays.asList("a", "form", "nobr"));
+    /**
+     * The elements for which a parent is implied when they are not within it, e.g. a list item outside of any list.
+     */
+    private static final Set<String> IMPLIED_PARENT_ELEMENTS = new HashSet<>(Arrays.asList("caption", "col", "colgroup", "dd", "dt",
+            "figcaption", "legend", "li", "optgroup", "option", "param", "rp", "rt", "source", "summary", "tbody", "td", "tfoot", "th",
+            "thead", "tr", "track"));
+
+    static {
+        Set<String> tableContent = new HashSet<>(Arrays.asList("caption", "col", "colgroup", "tbody", "td", "tfoot", "th", "thead",
+                "tr"));
+        Set<String> tableSectionContent = new HashSet<>(Arrays.asList("td", "th", "tr"));
+        STRUCTURED_CONTENT.put("table", tableContent);
+        STRUCTURED_CONTENT.put("thead", tableSectionContent);
+        STRUCTURED_CONTENT.put("tbody", tableSectionContent);
+        STRUCTURED_CONTENT.put("tfoot", tableSectionContent);
+        STRUCTURED_CONTENT.put("tr", new HashSet<>(Arrays.asList("td", "th")));
+        STRUCTURED_CONTENT.put("colgroup", Collections.singleton("col"));
+        STRUCTURED_CONTENT.put("ul", Collections.singleton("li"));
+        STRUCTURED_CONTENT.put("ol", Collections.singleton("li"));
+        STRUCTURED_CONTENT.put("dl", new HashSet<>(Arrays.asList("dd", "dt")));
+        STRUCTURED_CONTENT.put("select", new HashSet<>(Arrays.asList("optgroup", "option")));
+        STRUCTURED_CONTENT.put("optgroup", Collections.singleton("option"));
+    }
+
+    private final int minLength;
+    private final int chunkLength;
+    private final LongAdder splitCount = new LongAdder();
+    private final LongAdder unsplitCount = new LongAdder();
+    private final LongAdder chunkCount = new LongAdder();
+
+    /**
+     * @param minLength   the length (in characters) from which the contents are split
+     * @param chunkLength the minimal length (in characters) of a chunk, the last one excepted
+     */
+    DocumentSplitter(int minLength, int chunkLength) {
+        this.minLength = minLength;
+        this.chunkLength = chunkLength;
+    }
+
+    /**
+     * @return the length (in characters) from which the contents are split
+     */
+    int getMinLength() {
+        return minLength;
+    }
+
+    /**
+     * @param htmlText the HTML content to sanitize
+     * @return the chunks of the content, in order, <code>null</code> if the content is too short or cannot be split
+     */
+    List<String> split(String htmlText) {
+        if (htmlText.length() < minLength) {
+            return null;
+        }
+        List<Integer> boundaries = findBoundaries(htmlText);
+        if (boundaries.isEmpty()) {
+            unsplitCount.increment();
+            logger.debug("HTML content of {} characters not split, it has no safe boundary", htmlText.length());
+            return null;
+        }
+        List<String> chunks = new ArrayList<>(boundaries.size() + 1);
+        int start = 0;
+        for (int boundary : boundaries) {
+            chunks.add(htmlText.substring(start, boundary));
+            start = boundary;
+        }
+        chunks.add(htmlText.substring(start));
+        splitCount.increment();
+        chunkCount.add(chunks.size());
+        logger.debug("HTML content of {} characters split into {} chunks", htmlText.length(), chunks.size());
+        return chunks;
+    }
+
+    /**
+     * @return the positions of the start tags before which the content is split, at least {@link #chunkLength} characters apart
+     */
+    private List<Integer> findBoundaries(String htmlText) {
+        List<Integer> boundaries = new ArrayList<>();
+        List<String> openElements = new ArrayList<>();
+        int length = htmlText.length();
+        int chunkStart = 0;
+        int i = 0;
+        while (true) {
+            int tagStart = htmlText.indexOf('<', i);
+            if (tagStart < 0 || tagStart + 1 >= length) {
+                return boundaries;
+            }
+            String parent = openElements.isEmpty() ? null : openElements.get(openElements.size() - 1);
+            if (STRUCTURED_CONTENT.containsKey(parent) && !isBlank(htmlText, i, tagStart)) {
+                // text within a list or a table, that the sanitizer may move or wrap
+                return boundaries;
+            }
+            char c = htmlText.charAt(tagStart + 1);
+            if (c == '!') {
+                i = skipComment(htmlText, tagStart);
+            } else if (c == '/') {
+                int nameEnd = nameEnd(htmlText, tagStart + 2);
+                int last = openElements.size() - 1;
+                if (nameEnd == tagStart + 2 || last < 0 || !openElements.get(last).equals(name(htmlText, tagStart + 2, nameEnd))) {
+                    // an end tag that does not close the last open element, the sanitizer may close several elements or none
+                    return boundaries;
+                }
+                openElements.remove(last);
+                i = tagEnd(htmlText, nameEnd);
+            } else if (isAsciiLetter(c)) {
+                int nameEnd = nameEnd(htmlText, tagStart + 1);
+                String name = name(htmlText, tagStart + 1, nameEnd);
+                if (openElements.isEmpty()) {
+                    if (IMPLIED_PARENT_ELEMENTS.contains(name)) {
+                        return boundaries;
+                    }
+                    if (tagStart - chunkStart >= chunkLength && BOUNDARY_ELEMENTS.contains(name)) {
+                        boundaries.add(tagStart);
+                        chunkStart = tagStart;
+                    }
+                } else if (!isExpectedChild(openElements, parent, name)) {
+                    // the sanitizer closes some open elements first, and may reopen them afterwards
+                    return boundaries;
+                }
+                i = tagEnd(htmlText, nameEnd);
+                if (UNCERTAIN_ELEMENTS.contains(name)) {
+                    return boundaries;
+                } else if (RAW_TEXT_ELEMENTS.contains(name)) {
+                    // its content is skipped up to its end tag, that closes it
+                    openElements.add(name);
+                    i = i < 0 ? i : rawTextEnd(htmlText, i, name);
+                } else if (!VOID_ELEMENTS.contains(name)) {
+                    openElements.add(name);
+                }
+            } else if (c == '?') {
+                // a processing instruction, parsed as a bogus comment
+                return boundaries;
+            } else if (STRUCTURED_CONTENT.containsKey(parent)) {
+                // a less-than sign in the text of a list or a table
+                return boundaries;
+            } else {
+                // a less-than sign in the text
+                i = tagStart + 1;
+            }
+            if (i < 0) {
+                // a construct left unterminated, or whose parsing is uncertain
+                return boundaries;
+            }
+        }
+    }
+
+    /**
+     * @return whether the sanitizer keeps the given element within its parent, with all the open elements
+     */
+    private static boolean isExpectedChild(List<String> openElements, String parent, String name) {
+        if (SELF_CLOSING_ELEMENTS.contains(name) && openElements.contains(name)) {
+            return false;
+        }
+        if (PHRASING_CONTAINERS.contains(parent)) {
+            return PHRASING_ELEMENTS.contains(name);
+        }
+        Set<String> expectedChildren = STRUCTURED_CONTENT.get(parent);
+        return expectedChildren == null || expectedChildren.contains(name);
+    }
+
+    private static boolean isBlank(String htmlText, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!isSpace(htmlText.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the position after the comment, <code>-1</code> if it is not a regular comment
+     */
+    private static int skipComment(String htmlText, int tagStart) {
+        if (!htmlText.startsWith("<!--", tagStart) || htmlText.startsWith(">", tagStart + 4) || htmlText.startsWith("->", tagStart + 4)) {
+            // a declaration, a CDATA section or an abruptly closed comment
+            return -1;
+        }
+        int end = htmlText.indexOf("-->", tagStart + 4);
+        if (end < 0 || htmlText.substring(tagStart + 4, end).contains("--!>")) {
+            return -1;
+        }
+        return end + 3;
+    }
+
+    private static int nameEnd(String htmlText, int nameStart) {
+        int i = nameStart;
+        while (i < htmlText.length() && (isAsciiLetter(htmlText.charAt(i)) || isDigit(htmlText.charAt(i)))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static String name(String htmlText, int nameStart, int nameEnd) {
+        return htmlText.substring(nameStart, nameEnd).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param i the position after the tag name
+     * @return the position after the tag, <code>-1</code> if the tag is not terminated or its name is followed by unexpected characters
+     */
+    private static int tagEnd(String htmlText, int i) {
+        int length = htmlText.length();
+        if (i < length && !isSpace(htmlText.charAt(i)) && htmlText.charAt(i) != '/' && htmlText.charAt(i) != '>') {
+            // e.g. a namespace prefix, handled differently by the sanitizer
+            return -1;
+        }
+        boolean valueExpected = false;
+        while (i < length) {
+            char c = htmlText.charAt(i);
+            if (c == '>') {
+                return i + 1;
+            } else if (valueExpected && (c == '"' || c == '\'')) {
+                int quoteEnd = htmlText.indexOf(c, i + 1);
+                if (quoteEnd < 0) {
+                    return -1;
+                }
+                i = quoteEnd + 1;
+                valueExpected = false;
+            } else {
+                if (c == '=') {
+                    valueExpected = true;
+                } else if (!isSpace(c)) {
+                    valueExpected = false;
+                }
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the position of the end tag of the raw text element, <code>-1</code> if there is none
+     */
+    private static int rawTextEnd(String htmlText, int i, String name) {
+        int length = htmlText.length();
+        while (true) {
+            int end = htmlText.indexOf("</", i);
+            if (end < 0) {
+                return -1;
+            }
+            int nameEnd = end + 2 + name.length();
+            if (htmlText.regionMatches(true, end + 2, name, 0, name.length()) && nameEnd < length
+                    && (isSpace(htmlText.charAt(nameEnd)) || htmlText.charAt(nameEnd) == '/' || htmlText.charAt(nameEnd) == '>')) {
+                return end;
+            }
+            i = end + 2;
+        }
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r';
+    }
+
+    ParallelSanitizationStats stats() {
+        return new ParallelSanitizationStats(splitCount.sum(), unsplitCount.sum(), chunkCount.sum());
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl;
+
+/**
+ * Immutable snapshot of the statistics of the output compaction of a policy.
+ */
+public final class OutputCompactionStats {
+
+    private final long renderedCount;
+    private final long compactedCount;
+    private final long savedCharacters;
+
+    OutputCompactionStats(long renderedCount, long compactedCount, long savedCharacters) {
+        this.renderedCount = renderedCount;
+        this.compactedCount = compactedCount;
+        this.savedCharacters = savedCharacters;
+    }
+
+    /**
+     * @return the number of sanitized HTML contents rendered with the compaction
+     */
+    public long getRenderedCount() {
+        return renderedCount;
+    }
+
+    /**
+     * @return the number of sanitized HTML contents made shorter by the compaction
+     */
+    public long getCompactedCount() {
+        return compactedCount;
+    }
+
+    /**
+     * @return the total number of characters saved by the compaction
+     */
+    public long getSavedCharacters() {
+        return savedCharacters;
+    }
+
+    /**
+     * @return the average number of characters saved per sanitized HTML content rendered, <code>0</code> if none was rendered yet
+     */
+    public double getAverageSavedCharacters() {
+        return renderedCount == 0 ? 0 : (double) savedCharacters / renderedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "OutputCompactionStats{" +
+                "renderedCount=" + renderedCount +
+                ", compactedCount=" + compactedCount +
+                ", savedCharacters=" + savedCharacters +
+                ", averageSavedCharacters=" + String.format("%.1f", getAverageSavedCharacters()) +
+                '}';
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl;
+
+import org.owasp.html.HtmlStreamEventReceiver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compacts the sanitized HTML while it is rendered, without changing the way it is displayed:
+ * <ul>
+ *     <li>optionally, the runs of whitespace characters of the text are collapsed into a single space, or a single line feed if
+ *     the run contains one, except within the preformatted elements (<code>pre</code>, <code>textarea</code>, etc., or any
+ *     element whose <code>style</code> attribute sets the <code>white-space</code> property);</li>
+ *     <li>optionally, the inline elements without attributes nor content (e.g. <code>&lt;span&gt;&lt;/span&gt;</code>, usually
+ *     left behind by the discarded tags) are removed;</li>
+ *     <li>optionally, the formatting elements without attributes nested within the same element (e.g.
+ *     <code>&lt;b&gt;&lt;b&gt;</code>) are removed, keeping their content.</li>
+ * </ul>
+ * The events received from the OWASP policy are balanced, so that the opening and closing tags can be matched with a stack.
+ * <p>
+ * Instances are thread-safe and shared by all the sanitizations of a policy, they count the characters saved.
+ */
+final class OutputCompactor {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutputCompactor.class);
+
+    private static final Set<String> VOID_ELEMENTS = new HashSet<>(Arrays.asList("area", "base", "br", "col", "embed", "hr", "img",
+            "input", "keygen", "link", "meta", "param", "source", "track", "wbr"));
+    private static final Set<String> PREFORMATTED_ELEMENTS = new HashSet<>(Arrays.asList("pre", "textarea", "listing", "plaintext",
+            "xmp", "script", "style"));
+    /**
+     * The inline elements that have no effect when they have neither attributes nor content (unlike <code>q</code>, whose
+     * quotation marks are rendered even when it is empty).
+     */
+    private static final Set<String> EMPTY_REMOVABLE_ELEMENTS = new HashSet<>(Arrays.asList("span", "b", "strong", "i", "em", "u", "s",
+            "strike", "small", "big", "sub", "sup", "font", "mark", "code", "abbr", "cite", "dfn", "kbd", "samp", "var"));
+    /**
+     * The formatting elements whose effect is the same when nested within themselves (unlike <code>small</code> or
+     * <code>sub</code>, whose effect is cumulative).
+     */
+    private static final Set<String> IDEMPOTENT_ELEMENTS = new HashSet<>(Arrays.asList("b", "strong", "i", "em", "u", "s", "strike"));
+
+    private final boolean collapseWhitespace;
+    private final boolean removeEmptyElements;
+    private final boolean removeNestedDuplicates;
+    private final LongAdder renderedCount = new LongAdder();
+    private final LongAdder compactedCount = new LongAdder();
+    private final LongAdder savedCharacters = new LongAdder();
+
+    /**
+     * @param collapseWhitespace     whether the runs of whitespace characters are collapsed
+     * @param removeEmptyElements    whether the empty inline elements without attributes are removed
+     * @param removeNestedDuplicates whether the formatting elements nested within the same element are removed
+     */
+    OutputCompactor(boolean collapseWhitespace, boolean removeEmptyElements, boolean removeNestedDuplicates) {
+        this.collapseWhitespace = collapseWhitespace;
+        this.removeEmptyElements = removeEmptyElements;
+        this.removeNestedDuplicates = removeNestedDuplicates;
+    }
+
+    /**
+     * @param receiver the receiver of the compacted events, usually the renderer
+     * @return a receiver compacting the events of a single sanitization before passing them to the given receiver
+     */
+    HtmlStreamEventReceiver wrap(HtmlStreamEventReceiver receiver) {
+        return new CompactingReceiver(receiver);
+    }
+
+    /**
+     * Verifies whether an HTML content already in its sanitized form (see {@link CleanHtmlClassifier}) is also compact. Such a
+     * content is lowercase, properly nested and has neither preformatted elements nor style attributes.
+     *
+     * @return <code>true</code> if compacting the content would leave it unchanged
+     */
+    boolean isCompact(String cleanHtml) {
+        List<String> openElements = new ArrayList<>();
+        List<String> idempotentElements = new ArrayList<>();
+        int length = cleanHtml.length();
+        int i = 0;
+        while (i < length) {
+            char c = cleanHtml.charAt(i);
+            if (c != '<') {
+                if (collapseWhitespace && isWhitespace(c) && i + 1 < length && isWhitespace(cleanHtml.charAt(i + 1))) {
+                    return false;
+                }
+                i++;
+                continue;
+            }
+            int end = cleanHtml.indexOf('>', i);
+            if (end < 0) {
+                return false;
+            }
+            boolean closing = cleanHtml.charAt(i + 1) == '/';
+            int nameStart = closing ? i + 2 : i + 1;
+            int nameEnd = nameStart;
+            while (nameEnd < end && cleanHtml.charAt(nameEnd) != ' ' && cleanHtml.charAt(nameEnd) != '/') {
+                nameEnd++;
+            }
+            String name = cleanHtml.substring(nameStart, nameEnd);
+            boolean withoutAttributes = nameEnd == end;
+            if (closing) {
+                if (!openElements.isEmpty()) {
+                    String closed = openElements.remove(openElements.size() - 1);
+                    if (closed != null) {
+                        idempotentElements.remove(idempotentElements.size() - 1);
+                    }
+                }
+            } else if (!VOID_ELEMENTS.contains(name)) {
+                if (removeEmptyElements && withoutAttributes && EMPTY_REMOVABLE_ELEMENTS.contains(name) && cleanHtml.startsWith("</", end + 1)) {
+                    return false;
+                }
+                if (withoutAttributes && IDEMPOTENT_ELEMENTS.contains(name)) {
+                    if (removeNestedDuplicates && idempotentElements.contains(name)) {
+                        return false;
+                    }
+                    idempotentElements.add(name);
+                    openElements.add(name);
+                } else {
+                    openElements.add(null);
+                }
+            }
+            i = end + 1;
+        }
+        return true;
+    }
+
+    /**
+     * @return the statistics of the contents compacted so far
+     */
+    OutputCompactionStats stats() {
+        return new OutputCompactionStats(renderedCount.sum(), compactedCount.sum(), savedCharacters.sum());
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    /**
+     * An element opened and not closed yet.
+     */
+    private static final class OpenElement {
+        private final String name;
+        private final List<String> attributes;
+        private final boolean preformatted;
+        /**
+         * Whether the element is idempotent and has no attributes, i.e. whether the same elements nested within it are useless.
+         */
+        private final boolean idempotent;
+        /**
+         * Whether the opening tag has been passed to the receiver, it is delayed for the elements that may be empty.
+         */
+        private boolean emitted;
+        /**
+         * Whether the element is a nested duplicate, its tags are never passed to the receiver.
+         */
+        private boolean suppressed;
+
+        private OpenElement(String name, List<String> attributes, boolean preformatted, boolean idempotent) {
+            this.name = name;
+            this.attributes = attributes;
+            this.preformatted = preformatted;
+            this.idempotent = idempotent;
+        }
+    }
+
+    private final class CompactingReceiver implements HtmlStreamEventReceiver {
+        private final HtmlStreamEventReceiver receiver;
+        private final List<OpenElement> openElements = new ArrayList<>();
+        /**
+         * The elements of {@link #openElements} before this index are either emitted or suppressed, the following ones may have
+         * their opening tag delayed.
+         */
+        private int firstPending;
+        private int preformattedDepth;
+        private long saved;
+
+        private CompactingReceiver(HtmlStreamEventReceiver receiver) {
+            this.receiver = receiver;
+        }
+
+        @Override
+        public void openDocument() {
+            receiver.openDocument();
+        }
+
+        @Override
+        public void closeDocument() {
+            emitPending();
+            receiver.closeDocument();
+            renderedCount.increment();
+            if (saved > 0) {
+                compactedCount.increment();
+                savedCharacters.add(saved);
+                logger.debug("Compacted the sanitized HTML, {} characters saved", saved);
+            }
+        }
+
+        @Override
+        public void openTag(String elementName, List<String> attrs) {
+            if (VOID_ELEMENTS.contains(elementName)) {
+                emitPending();
+                receiver.openTag(elementName, attrs);
+                return;
+            }
+            boolean preformatted = PREFORMATTED_ELEMENTS.contains(elementName) || setsWhiteSpace(attrs);
+            OpenElement element = new OpenElement(elementName, attrs, preformatted,
+                    attrs.isEmpty() && IDEMPOTENT_ELEMENTS.contains(elementName));
+            if (element.idempotent && removeNestedDuplicates && isOpenIdempotent(elementName)) {
+                element.suppressed = true;
+                saved += 2L * elementName.length() + 5;
+            } else if (!removeEmptyElements || !attrs.isEmpty() || !EMPTY_REMOVABLE_ELEMENTS.contains(elementName)) {
+                emitPending();
+                receiver.openTag(elementName, attrs);
+                element.emitted = true;
+                if (preformatted) {
+                    preformattedDepth++;
+                }
+            }
+            // otherwise, the opening tag is delayed until some content is known, or dropped with the closing tag if there is none
+            openElements.add(element);
+        }
+
+        @Override
+        public void closeTag(String elementName) {
+            int last = openElements.size() - 1;
+            if (VOID_ELEMENTS.contains(elementName) || last < 0 || !openElements.get(last).name.equals(elementName)) {
+                // not expected from a balanced stream, passed as is
+                emitPending();
+                receiver.closeTag(elementName);
+                return;
+            }
+            OpenElement element = openElements.remove(last);
+            if (element.preformatted) {
+                // only the emitted elements can be preformatted, the other ones have no attributes
+                preformattedDepth--;
+            }
+            if (element.emitted) {
+                receiver.closeTag(elementName);
+            } else if (!element.suppressed) {
+                // empty element, neither of its tags is passed to the receiver
+                saved += 2L * elementName.length() + 5;
+            }
+            firstPending = Math.min(firstPending, openElements.size());
+        }
+
+        @Override
+        public void text(String text) {
+            if (text.isEmpty()) {
+                return;
+            }
+            emitPending();
+            if (collapseWhitespace && preformattedDepth == 0) {
+                String collapsed = collapseWhitespace(text);
+                saved += text.length() - collapsed.length();
+                receiver.text(collapsed);
+            } else {
+                receiver.text(text);
+            }
+        }
+
+        /**
+         * Passes the delayed opening tags to the receiver, as their elements are not empty.
+         */
+        private void emitPending() {
+            for (int i = firstPending; i < openElements.size(); i++) {
+                OpenElement element = openElements.get(i);
+                if (!element.emitted && !element.suppressed) {
+                    receiver.openTag(element.name, element.attributes);
+                    element.emitted = true;
+                }
+            }
+            firstPending = openElements.size();
+        }
+
+        private boolean isOpenIdempotent(String elementName) {
+            for (OpenElement element : openElements) {
+                if (element.idempotent && !element.suppressed && element.name.equals(elementName)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the attributes include a style setting the <code>white-space</code> property
+     */
+    private static boolean setsWhiteSpace(List<String> attrs) {
+        for (int i = 0; i + 1 < attrs.size(); i += 2) {
+            if ("style".equals(attrs.get(i)) && attrs.get(i + 1).toLowerCase(Locale.ROOT).contains("white-space")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the text with its runs of whitespace characters collapsed, the same instance if there are none
+     */
+    static String collapseWhitespace(String text) {
+        StringBuilder collapsed = null;
+        int length = text.length();
+        int copied = 0;
+        int i = 0;
+        while (i < length) {
+            if (!isWhitespace(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            int runStart = i;
+            boolean lineFeed = false;
+            while (i < length && isWhitespace(text.charAt(i))) {
+                lineFeed |= text.charAt(i) == '\n';
+                i++;
+            }
+            if (i - runStart > 1) {
+                if (collapsed == null) {
+                    collapsed = new StringBuilder(length);
+                }
+                collapsed.append(text, copied, runStart).append(lineFeed ? '\n' : ' ');
+                copied = i;
+            }
+        }
+        return collapsed == null ? text : collapsed.append(text, copied, length).toString();
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl;
+
+import org.jahia.modules.htmlfiltering.PolicySanitizedHtmlResult;
+import org.jahia.modules.htmlfiltering.SanitizeDetailLevel;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lightweight result of the lower {@link SanitizeDetailLevel}s, without any rejected tags/attributes.
+ */
+final class OutputSanitizedHtmlResult implements PolicySanitizedHtmlResult {
+
+    private final String sanitizedHtml;
+    private final boolean changed;
+
+    OutputSanitizedHtmlResult(String sanitizedHtml, boolean changed) {
+        this.sanitizedHtml = sanitizedHtml;
+        this.changed = changed;
+    }
+
+    @Override
+    public boolean isValid() {
+        // the rejected tags/attributes are not known, only an unchanged content is known to be valid
+        return !changed;
+    }
+
+    @Override
+    public String getSanitizedHtml() {
+        return sanitizedHtml;
+    }
+
+    @Override
+    public boolean isChanged() {
+        return changed;
+    }
+
+    @Override
+    public Set<String> getRejectedTags() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public Map<String, Set<String>> getRejectedAttributesByTag() {
+        return Collections.emptyMap();
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.jahia.modules.htmlfiltering.engine.CompiledSanitizer;
+import org.jahia.modules.htmlfiltering.engine.EngineContext;
+import org.jahia.modules.htmlfiltering.engine.HtmlEventReceiver;
+import org.jahia.modules.htmlfiltering.engine.RejectionListener;
+import org.jahia.modules.htmlfiltering.engine.SanitizerEngine;
+import org.jahia.modules.htmlfiltering.model.ElementModel;
+import org.jahia.modules.htmlfiltering.model.PolicyModel;
+import org.jahia.modules.htmlfiltering.model.RuleSetModel;
+import org.owasp.html.HtmlChangeListener;
+import org.owasp.html.HtmlPolicyBuilder;
+import org.owasp.html.HtmlSanitizer;
+import org.owasp.html.HtmlStreamEventReceiver;
+import org.owasp.html.PolicyFactory;
+
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * The built-in {@link SanitizerEngine}, compiling the policies with the {@link HtmlPolicyBuilder} of the OWASP Java HTML Sanitizer.
+ */
+final class OwaspSanitizerEngine implements SanitizerEngine {
+
+    static final OwaspSanitizerEngine INSTANCE = new OwaspSanitizerEngine();
+
+    private OwaspSanitizerEngine() {
+    }
+
+    @Override
+    public String getName() {
+        return DEFAULT_ENGINE;
+    }
+
+    @Override
+    public CompiledSanitizer compile(PolicyModel policyModel, EngineContext context) {
+        HtmlPolicyBuilder builder = new HtmlPolicyBuilder();
+        processRuleSet(builder, policyModel.getAllowedRuleSet(), context, context.getStyleFilter(),
+                HtmlPolicyBuilder::allowAttributes, HtmlPolicyBuilder::allowElements, HtmlPolicyBuilder::allowTextIn, HtmlPolicyBuilder::allowUrlProtocols);
+        processRuleSet(builder, policyModel.getDisallowedRuleSet(), context, null,
+                HtmlPolicyBuilder::disallowAttributes, HtmlPolicyBuilder::disallowElements, HtmlPolicyBuilder::disallowTextIn, HtmlPolicyBuilder::disallowUrlProtocols);
+        return new OwaspSanitizer(builder.toFactory());
+    }
+
+    private static void processRuleSet(HtmlPolicyBuilder builder, RuleSetModel ruleSet, EngineContext context,
+                                       UnaryOperator<String> styleFilter, AttributeBuilderHandlerFunction attributeBuilderHandlerFunction,
+                                       BuilderHandlerFunction tagHandler, BuilderHandlerFunction textContentHandler, BuilderHandlerFunction protocolHandler) {
+        if (ruleSet != null) {
+            // Apply element rules
+            for (ElementModel element : ruleSet.getElements()) {
+                processElement(builder, context, styleFilter, attributeBuilderHandlerFunction, tagHandler, textContentHandler, element);
+            }
+
+            // Apply protocol rules
+            if (ruleSet.getProtocols() != null) {
+                protocolHandler.handle(builder, ruleSet.getProtocols().toArray(new String[0]));
+            }
+        }
+    }
+
+    private static void processElement(HtmlPolicyBuilder builder, EngineContext context, UnaryOperator<String> styleFilter,
+                                       AttributeBuilderHandlerFunction attributeBuilderHandlerFunction,
+                                       BuilderHandlerFunction tagHandler, BuilderHandlerFunction textContentHandler, ElementModel element) {
+        boolean noTags = CollectionUtils.isEmpty(element.getTags());
+        boolean noAttributes = CollectionUtils.isEmpty(element.getAttributes());
+        if (noAttributes) {
+            tagHandler.handle(builder, element.getTags().toArray(new String[0]));
+            textContentHandler.handle(builder, element.getTags().toArray(new String[0]));
+        } else {
+            HtmlPolicyBuilder.AttributeBuilder attributeBuilder =
+                    attributeBuilderHandlerFunction.handle(builder, element.getAttributes().toArray(new String[0]));
+
+            // Handle format pattern for allowed attributes only
+            if (element.getFormat() != null) {
+                Predicate<String> format = context.getFormat(element.getFormat());
+                attributeBuilder.matching((elementName, attributeName, value) -> format.test(value) ? value : null);
+            }
+
+            // Filter the declarations of the allowed style attribute, the other attributes are left unchanged by the style policy
+            if (styleFilter != null && element.getAttributes().stream().anyMatch(StyleFilter.STYLE_ATTRIBUTE::equalsIgnoreCase)) {
+                attributeBuilder.matching((elementName, attributeName, value) ->
+                        StyleFilter.STYLE_ATTRIBUTE.equals(attributeName) ? styleFilter.apply(value) : value);
+            }
+
+            if (noTags) {
+                // The attributes are for all tags
+                attributeBuilder.globally();
+            } else {
+                attributeBuilder.onElements(element.getTags().toArray(new String[0]));
+            }
+        }
+    }
+
+    /**
+     * Sanitizes the HTML contents with the policy factory built for a policy.
+     */
+    private static final class OwaspSanitizer implements CompiledSanitizer {
+        private final PolicyFactory policyFactory;
+
+        private OwaspSanitizer(PolicyFactory policyFactory) {
+            this.policyFactory = policyFactory;
+        }
+
+        @Override
+        public <T> void sanitize(String htmlText, HtmlEventReceiver output, HtmlEventReceiver inputObserver,
+                                 RejectionListener<? super T> listener, T context) {
+            HtmlStreamEventReceiver receiver = new OutputReceiver(output);
+            HtmlSanitizer.Policy policy = listener == null ? policyFactory.apply(receiver)
+                    : policyFactory.apply(receiver, new ChangeListener<>(listener), context);
+            HtmlSanitizer.sanitize(htmlText, inputObserver == null ? policy : new ObservedPolicy(policy, inputObserver));
+        }
+    }
+
+    /**
+     * Sends the events of the sanitized HTML to the output of the sanitization.
+     */
+    private static final class OutputReceiver implements HtmlStreamEventReceiver {
+        private final HtmlEventReceiver output;
+
+        private OutputReceiver(HtmlEventReceiver output) {
+            this.output = output;
+        }
+
+        @Override
+        public void openDocument() {
+            output.openDocument();
+        }
+
+        @Override
+        public void closeDocument() {
+            output.closeDocument();
+        }
+
+        @Override
+        public void openTag(String elementName, List<String> attrs) {
+            output.openTag(elementName, attrs);
+        }
+
+        @Override
+        public void closeTag(String elementName) {
+            output.closeTag(elementName);
+        }
+
+        @Override
+        public void text(String text) {
+            output.text(text);
+        }
+    }
+
+    /**
+     * Notifies the rejection listener of the sanitization of the changes made by the OWASP sanitizer.
+     */
+    private static final class ChangeListener<T> implements HtmlChangeListener<T> {
+        private final RejectionListener<? super T> listener;
+
+        private ChangeListener(RejectionListener<? super T> listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void discardedTag(T context, String elementName) {
+            listener.discardedTag(context, elementName);
+        }
+
+        @Override
+        public void discardedAttributes(T context, String tagName, String... attributeNames) {
+            listener.discardedAttributes(context, tagName, attributeNames);
+        }
+    }
+
+    /**
+     * Reports the events of the OWASP lexer to the input observer before the policy filters them.
+     */
+    private static final class ObservedPolicy implements HtmlSanitizer.Policy {
+        private final HtmlSanitizer.Policy delegate;
+        private final HtmlEventReceiver observer;
+
+        private ObservedPolicy(HtmlSanitizer.Policy delegate, HtmlEventReceiver observer) {
+            this.delegate = delegate;
+            this.observer = observer;
+        }
+
+        @Override
+        public void openDocument() {
+            observer.openDocument();
+            delegate.openDocument();
+        }
+
+        @Override
+        public void closeDocument() {
+            observer.closeDocument();
+            delegate.closeDocument();
+        }
+
+        @Override
+        public void openTag(String elementName, List<String> attrs) {
+            observer.openTag(elementName, attrs);
+            delegate.openTag(elementName, attrs);
+        }
+
+        @Override
+        public void closeTag(String elementName) {
+            observer.closeTag(elementName);
+            delegate.closeTag(elementName);
+        }
+
+        @Override
+        public void text(String text) {
+            observer.text(text);
+            delegate.text(text);
+        }
+    }
+
+    @FunctionalInterface
+    private interface AttributeBuilderHandlerFunction {
+        HtmlPolicyBuilder.AttributeBuilder handle(HtmlPolicyBuilder builder, String[] attributes);
+    }
+
+    @FunctionalInterface
+    private interface BuilderHandlerFunction {
+        void handle(HtmlPolicyBuilder builder, String[] items);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl;
+
+/**
+ * Immutable snapshot of the statistics of the parallel sanitization of a policy.
+ */
+public final class ParallelSanitizationStats {
+
+    private final long splitCount;
+    private final long unsplitCount;
+    private final long chunkCount;
+
+    ParallelSanitizationStats(long splitCount, long unsplitCount, long chunkCount) {
+        this.splitCount = splitCount;
+        this.unsplitCount = unsplitCount;
+        this.chunkCount = chunkCount;
+    }
+
+    /**
+     * @return the number of HTML contents split into chunks sanitized in parallel
+     */
+    public long getSplitCount() {
+        return splitCount;
+    }
+
+    /**
+     * @return the number of HTML contents long enough to be split, but sanitized sequentially for lack of a safe boundary
+     */
+    public long getUnsplitCount() {
+        return unsplitCount;
+    }
+
+    /**
+     * @return the total number of chunks sanitized in parallel
+     */
+    public long getChunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * @return the average number of chunks per HTML content split, <code>0</code> if none was split yet
+     */
+    public double getAverageChunkCount() {
+        return splitCount == 0 ? 0 : (double) chunkCount / splitCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ParallelSanitizationStats{" +
+                "splitCount=" + splitCount +
+                ", unsplitCount=" + unsplitCount +
+                ", chunkCount=" + chunkCount +
+                ", averageChunkCount=" + String.format("%.1f", getAverageChunkCount()) +
+                '}';
+    }
+}
@@ -0,0 +1,477 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Strips the artifacts of the content pasted from office suites (Microsoft Word, Google Docs) in a single pass over the HTML
+ * content, before it is sanitized:
+ * <ul>
+ *     <li>the conditional comments (<code>&lt;!--[if gte mso 9]&gt;...&lt;![endif]--&gt;</code>) with their content, and the
+ *     downlevel-revealed conditional markers (<code>&lt;![if !supportLists]&gt;</code>) without their content;</li>
+ *     <li>the tags of the office XML namespaces (e.g. <code>&lt;o:p&gt;</code>), without their content;</li>
+ *     <li>optionally, the <code>mso-*</code> declarations of the <code>style</code> attributes and the <code>Mso*</code> classes;</li>
+ *     <li>optionally, the Google Docs wrapper (<code>&lt;b id="docs-internal-guid-..."&gt;</code>), without its content;</li>
+ *     <li>optionally, the <code>span</code> tags left without attributes, without their content.</li>
+ * </ul>
+ * The content is not parsed as a tree: the tags are only matched by name and nesting, the result being sanitized afterwards
+ * anyway. The content of the raw text elements (e.g. <code>script</code>) and of the regular comments is left unchanged.
+ * <p>
+ * Instances are thread-safe and shared by all the sanitizations of a policy, they count the contents cleaned and the characters
+ * removed.
+ */
+final class PasteCleaner {
+
+    private static final String CONDITIONAL_COMMENT_START = "<!--[if";
+    private static final String DOWNLEVEL_REVEALED_START = "<![if";
+    private static final String DOWNLEVEL_REVEALED_END = "<![endif]";
+    private static final String GOOGLE_DOCS_WRAPPER_ID_PREFIX = "docs-internal-guid-";
+    private static final Set<String> OFFICE_NAMESPACES = new HashSet<>(Arrays.asList("o", "w", "v", "m", "x", "st1"));
+    private static final Set<String> RAW_TEXT_ELEMENTS = new HashSet<>(Arrays.asList("script", "style", "textarea", "title", "xmp",
+            "iframe", "noembed", "noframes"));
+
+    private final boolean officeStyles;
+    private final boolean officeClasses;
+    private final boolean googleDocsWrappers;
+    private final boolean emptySpans;
+    private final LongAdder cleanedCount = new LongAdder();
+    private final LongAdder removedCharacters = new LongAdder();
+
+    /**
+     * @param officeStyles       whether the <code>mso-*</code> declarations are removed from the <code>style</code> attributes
+     * @param officeClasses      whether the <code>Mso*</code> classes are removed from the <code>class</code> attributes
+     * @param googleDocsWrappers whether the Google Docs wrapper tags are removed
+     * @param emptySpans         whether the <code>span</code> tags without attributes are removed
+     */
+    PasteCleaner(boolean officeStyles, boolean officeClasses, boolean googleDocsWrappers, boolean emptySpans) {
+        this.officeStyles = officeStyles;
+        this.officeClasses = officeClasses;
+        this.googleDocsWrappers = googleDocsWrappers;
+        this.emptySpans = emptySpans;
+    }
+
+    /**
+     * @param html the HTML content
+     * @return the HTML content without the paste artifacts, the same instance if there are none
+     */
+    String clean(String html) {
+        if (html.indexOf('<') < 0) {
+            return html;
+        }
+        String cleaned = new Cleaning(html).run();
+        if (cleaned != html) {
+            cleanedCount.increment();
+            removedCharacters.add((long) html.length() - cleaned.length());
+        }
+        return cleaned;
+    }
+
+    /**
+     * @return the statistics of the contents cleaned so far
+     */
+    PasteCleanupStats stats() {
+        return new PasteCleanupStats(cleanedCount.sum(), removedCharacters.sum());
+    }
+
+    /**
+     * The state of the cleaning of a single HTML content.
+     */
+    private final class Cleaning {
+        private final String html;
+        private final int length;
+        /**
+         * The cleaned content, only created once the first artifact is found.
+         */
+        private StringBuilder cleaned;
+        /**
+         * The index up to which the content has been copied to {@link #cleaned} or skipped.
+         */
+        private int copied;
+        /**
+         * Whether each <code>span</code> tag currently open was removed, by nesting depth.
+         */
+        private final BitSet removedSpans = new BitSet();
+        private int spanDepth;
+        /**
+         * The depths of the <code>b</code> tags currently open that are Google Docs wrappers.
+         */
+        private final BitSet wrapperDepths = new BitSet();
+        private int bDepth;
+        private final List<Attribute> attributes = new ArrayList<>();
+
+        private Cleaning(String html) {
+            this.html = html;
+            this.length = html.length();
+        }
+
+        private String run() {
+            int i = 0;
+            while ((i = html.indexOf('<', i)) >= 0 && i + 1 < length) {
+                i = processMarkup(i);
+                if (i < 0) {
+                    // unterminated tag, left to the sanitizer
+                    break;
+                }
+            }
+            if (cleaned == null) {
+                return html;
+            }
+            return cleaned.append(html, copied, length).toString();
+        }
+
+        /**
+         * @param start the index of a <code>&lt;</code> character
+         * @return the index from which the processing continues, <code>-1</code> to stop it
+         */
+        private int processMarkup(int start) {
+            if (html.startsWith("<!--", start)) {
+                int end = html.indexOf("-->", start + 4);
+                end = end < 0 ? length : end + 3;
+                if (html.startsWith(CONDITIONAL_COMMENT_START, start)) {
+                    remove(start, end);
+                }
+                return end;
+            }
+            if (html.startsWith(DOWNLEVEL_REVEALED_START, start) || html.startsWith(DOWNLEVEL_REVEALED_END, start)) {
+                int end = html.indexOf('>', start);
+                end = end < 0 ? length : end + 1;
+                remove(start, end);
+                return end;
+            }
+            boolean closing = html.charAt(start + 1) == '/';
+            int nameStart = closing ? start + 2 : start + 1;
+            if (nameStart >= length || !isAsciiLetter(html.charAt(nameStart))) {
+                // not a tag
+                return start + 1;
+            }
+            int nameEnd = nameStart;
+            while (nameEnd < length && !isTagNameEnd(html.charAt(nameEnd))) {
+                nameEnd++;
+            }
+            String name = html.substring(nameStart, nameEnd).toLowerCase(Locale.ROOT);
+            int end = parseAttributes(nameEnd);
+            if (end < 0) {
+                return -1;
+            }
+            int colon = name.indexOf(':');
+            if (colon > 0 && OFFICE_NAMESPACES.contains(name.substring(0, colon))) {
+                remove(start, end);
+            } else if (closing) {
+                processClosingTag(name, start, end);
+            } else {
+                processOpeningTag(name, start, nameEnd, end);
+                if (RAW_TEXT_ELEMENTS.contains(name)) {
+                    int close = indexOfClosingTag(name, end);
+                    return close < 0 ? length : close;
+                }
+            }
+            return end;
+        }
+
+        private void processOpeningTag(String name, int start, int nameEnd, int end) {
+            boolean selfClosing = html.charAt(end - 2) == '/';
+            boolean changed = false;
+            boolean wrapper = false;
+            int keptAttributes = 0;
+            for (Attribute attribute : attributes) {
+                String value = attribute.value();
+                String cleanedValue = value;
+                if (officeStyles && "style".equals(attribute.name)) {
+                    cleanedValue = removeOfficeDeclarations(value);
+                } else if (officeClasses && "class".equals(attribute.name)) {
+                    cleanedValue = removeOfficeClasses(value);
+                } else if (googleDocsWrappers && "b".equals(name) && "id".equals(attribute.name)
+                        && value.startsWith(GOOGLE_DOCS_WRAPPER_ID_PREFIX)) {
+                    wrapper = true;
+                }
+                if (cleanedValue != value) {
+                    attribute.cleanedValue = cleanedValue;
+                    changed = true;
+                }
+                if (!cleanedValue.isEmpty() || attribute.cleanedValue == null) {
+                    keptAttributes++;
+                }
+            }
+
+            if ("b".equals(name) && !selfClosing) {
+                if (wrapper) {
+                    wrapperDepths.set(bDepth);
+                    remove(start, end);
+                }
+                bDepth++;
+                if (wrapper) {
+                    return;
+                }
+            } else if ("span".equals(name) && !selfClosing) {
+                boolean removed = emptySpans && keptAttributes == 0;
+                removedSpans.set(spanDepth++, removed);
+                if (removed) {
+                    remove(start, end);
+                    return;
+                }
+            }
+            if (changed) {
+                replace(start, end, rebuildTag(start, nameEnd, end));
+            }
+        }
+
+        private void processClosingTag(String name, int start, int end) {
+            if ("b".equals(name) && bDepth > 0) {
+                bDepth--;
+                if (wrapperDepths.get(bDepth)) {
+                    wrapperDepths.clear(bDepth);
+                    remove(start, end);
+                }
+            } else if ("span".equals(name) && spanDepth > 0) {
+                spanDepth--;
+                if (removedSpans.get(spanDepth)) {
+                    remove(start, end);
+                }
+            }
+        }
+
+        /**
+         * @return the opening tag with the cleaned attribute values, the attributes left empty being removed
+         */
+        private String rebuildTag(int start, int nameEnd, int end) {
+            StringBuilder tag = new StringBuilder(end - start);
+            tag.append(html, start, nameEnd);
+            int position = nameEnd;
+            for (Attribute attribute : attributes) {
+                if (attribute.cleanedValue == null) {
+                    continue;
+                }
+                if (attribute.cleanedValue.isEmpty()) {
+                    // the attribute is removed along with the whitespace preceding it
+                    int whitespaceStart = attribute.start;
+                    while (whitespaceStart > position && Character.isWhitespace(html.charAt(whitespaceStart - 1))) {
+                        whitespaceStart--;
+                    }
+                    tag.append(html, position, whitespaceStart);
+                } else {
+                    char quote = attribute.quote != 0 ? attribute.quote : (attribute.cleanedValue.indexOf('"') < 0 ? '"' : '\'');
+                    tag.append(html, position, attribute.nameEnd).append('=')
+                            .append(quote).append(attribute.cleanedValue).append(quote);
+                }
+                position = attribute.end;
+            }
+            return tag.append(html, position, end).toString();
+        }
+
+        /**
+         * Parses the attributes of a tag into {@link #attributes}.
+         *
+         * @param position the index following the tag name
+         * @return the index following the end of the tag, <code>-1</code> if the tag is not terminated
+         */
+        private int parseAttributes(int position) {
+            attributes.clear();
+            int i = position;
+            while (true) {
+                while (i < length && (Character.isWhitespace(html.charAt(i)) || html.charAt(i) == '/')) {
+                    i++;
+                }
+                if (i >= length) {
+                    return -1;
+                }
+                if (html.charAt(i) == '>') {
+                    return i + 1;
+                }
+                Attribute attribute = new Attribute(i);
+                while (i < length && !isAttributeNameEnd(html.charAt(i))) {
+                    i++;
+                }
+                attribute.nameEnd = i;
+                attribute.name = html.substring(attribute.start, i).toLowerCase(Locale.ROOT);
+                int afterName = i;
+                while (i < length && Character.isWhitespace(html.charAt(i))) {
+                    i++;
+                }
+                if (i < length && html.charAt(i) == '=') {
+                    i++;
+                    while (i < length && Character.isWhitespace(html.charAt(i))) {
+                        i++;
+                    }
+                    if (i < length && (html.charAt(i) == '"' || html.charAt(i) == '\'')) {
+                        attribute.quote = html.charAt(i);
+                        attribute.valueStart = i + 1;
+                        int close = html.indexOf(attribute.quote, i + 1);
+                        if (close < 0) {
+                            return -1;
+                        }
+                        attribute.valueEnd = close;
+                        i = close + 1;
+                    } else {
+                        attribute.valueStart = i;
+                        while (i < length && !Character.isWhitespace(html.charAt(i)) && html.charAt(i) != '>') {
+                            i++;
+                        }
+                        attribute.valueEnd = i;
+                    }
+                    attribute.end = i;
+                } else {
+                    // attribute without value
+                    attribute.valueStart = afterName;
+                    attribute.valueEnd = afterName;
+                    attribute.end = afterName;
+                    i = afterName;
+                }
+                attributes.add(attribute);
+            }
+        }
+
+        private int indexOfClosingTag(String name, int from) {
+            for (int i = html.indexOf("</", from); i >= 0; i = html.indexOf("</", i + 2)) {
+                if (html.regionMatches(true, i + 2, name, 0, name.length())) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void remove(int start, int end) {
+            replace(start, end, "");
+        }
+
+        private void replace(int start, int end, String replacement) {
+            if (cleaned == null) {
+                cleaned = new StringBuilder(length);
+            }
+            cleaned.append(html, copied, start).append(replacement);
+            copied = end;
+        }
+
+        private final class Attribute {
+            private final int start;
+            private int nameEnd;
+            private String name;
+            private char quote;
+            private int valueStart;
+            private int valueEnd;
+            private int end;
+            /**
+             * The value once cleaned, empty if the attribute is removed, <code>null</code> if the attribute is left unchanged.
+             */
+            private String cleanedValue;
+
+            private Attribute(int start) {
+                this.start = start;
+            }
+
+            private String value() {
+                return html.substring(valueStart, valueEnd);
+            }
+        }
+    }
+
+    /**
+     * @return the style without its <code>mso-*</code> declarations, the same instance if there are none
+     */
+    static String removeOfficeDeclarations(String style) {
+        if (!containsIgnoreCase(style, "mso-")) {
+            return style;
+        }
+        StringBuilder kept = new StringBuilder(style.length());
+        boolean removed = false;
+        int declarationStart = 0;
+        char quote = 0;
+        for (int i = 0; i <= style.length(); i++) {
+            char c = i < style.length() ? style.charAt(i) : ';';
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == ';' && (i == style.length() || !endsCharacterReference(style, i))) {
+                String declaration = style.substring(declarationStart, i);
+                String trimmed = declaration.trim();
+                if (trimmed.regionMatches(true, 0, "mso-", 0, 4)) {
+                    removed = true;
+                } else if (!trimmed.isEmpty()) {
+                    if (kept.length() > 0) {
+                        kept.append(';');
+                    }
+                    kept.append(declaration);
+                }
+                declarationStart = i + 1;
+            }
+        }
+        return removed ? kept.toString().trim() : style;
+    }
+
+    /**
+     * @return the classes without the <code>Mso*</code> ones, the same instance if there are none
+     */
+    static String removeOfficeClasses(String classes) {
+        if (!containsIgnoreCase(classes, "mso")) {
+            return classes;
+        }
+        StringBuilder kept = new StringBuilder(classes.length());
+        boolean removed = false;
+        for (String className : classes.trim().split("\\s+")) {
+            if (className.regionMatches(true, 0, "mso", 0, 3)) {
+                removed = true;
+            } else {
+                if (kept.length() > 0) {
+                    kept.append(' ');
+                }
+                kept.append(className);
+            }
+        }
+        return removed ? kept.toString() : classes;
+    }
+
+    /**
+     * @return <code>true</code> if the semicolon at the given index ends a character reference (e.g. <code>&amp;quot;</code>)
+     */
+    private static boolean endsCharacterReference(String value, int semicolon) {
+        int i = semicolon - 1;
+        while (i >= 0 && semicolon - i <= 32 && (isAsciiLetter(value.charAt(i)) || Character.isDigit(value.charAt(i)) || value.charAt(i) == '#')) {
+            i--;
+        }
+        return i >= 0 && i < semicolon - 1 && value.charAt(i) == '&';
+    }
+
+    private static boolean containsIgnoreCase(String value, String part) {
+        for (int i = 0; i + part.length() <= value.length(); i++) {
+            if (value.regionMatches(true, i, part, 0, part.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isTagNameEnd(char c) {
+        return Character.isWhitespace(c) || c == '/' || c == '>';
+    }
+
+    private static boolean isAttributeNameEnd(char c) {
+        return Character.isWhitespace(c) || c == '/' || c == '>' || c == '=';
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl;
+
+/**
+ * Immutable snapshot of the statistics of the paste cleanup of a policy.
+ */
+public final class PasteCleanupStats {
+
+    private final long cleanedCount;
+    private final long removedCharacters;
+
+    PasteCleanupStats(long cleanedCount, long removedCharacters) {
+        this.cleanedCount = cleanedCount;
+        this.removedCharacters = removedCharacters;
+    }
+
+    /**
+     * @return the number of HTML contents from which paste artifacts were removed
+     */
+    public long getCleanedCount() {
+        return cleanedCount;
+    }
+
+    /**
+     * @return the total number of characters removed from the HTML contents
+     */
+    public long getRemovedCharacters() {
+        return removedCharacters;
+    }
+
+    @Override
+    public String toString() {
+        return "PasteCleanupStats{" +
+                "cleanedCount=" + cleanedCount +
+                ", removedCharacters=" + removedCharacters +
+                '}';
+    }
+}
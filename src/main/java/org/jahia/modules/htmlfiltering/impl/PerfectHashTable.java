@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * An immutable table of ASCII names (tag or attribute names), numbered from <code>0</code> in insertion order and looked up
+ * without allocation, ignoring the case, directly in the HTML content being parsed.
+ * <p>
+ * The table is built with the "hash and displace" method: the names are first spread into small buckets, then each bucket gets
+ * a displacement placing all its names into free slots. A lookup computes one hash and compares at most one name.
+ */
+final class PerfectHashTable {
+
+    private final String[] names;
+    private final String[] slots;
+    private final int[] indexes;
+    private final int[] displacements;
+    private final int mask;
+
+    private PerfectHashTable(String[] names, String[] slots, int[] indexes, int[] displacements) {
+        this.names = names;
+        this.slots = slots;
+        this.indexes = indexes;
+        this.displacements = displacements;
+        this.mask = slots.length - 1;
+    }
+
+    /**
+     * @param names the names of the table, in lower case and made of ASCII characters, the duplicates are ignored
+     * @return the table of the given names
+     */
+    static PerfectHashTable create(Collection<String> names) {
+        String[] orderedNames = new LinkedHashSet<>(names).toArray(new String[0]);
+        // at most half of the slots are used, so that a displacement is quickly found for each bucket
+        int size = Integer.highestOneBit(Math.max(4, orderedNames.length) * 2 - 1) << 1;
+        while (true) {
+            PerfectHashTable table = create(orderedNames, size);
+            if (table != null) {
+                return table;
+            }
+            // very unlikely, but a larger table always ends up working
+            size <<= 1;
+        }
+    }
+
+    private static PerfectHashTable create(String[] names, int size) {
+        int bucketCount = Math.max(1, names.length / 2);
+        List<List<Integer>> buckets = new ArrayList<>(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        long[] hashes = new long[names.length];
+        for (int i = 0; i < names.length; i++) {
+            hashes[i] = hash(names[i], 0, names[i].length());
+            buckets.get(bucket(hashes[i], bucketCount)).add(i);
+        }
+        Integer[] order = new Integer[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            order[i] = i;
+        }
+        // the largest buckets are placed first, while most slots are still free
+        Arrays.sort(order, (b1, b2) -> buckets.get(b2).size() - buckets.get(b1).size());
+        String[] slots = new String[size];
+        int[] indexes = new int[size];
+        int[] displacements = new int[bucketCount];
+        int[] bucketSlots = new int[names.length];
+        for (int bucket : order) {
+            List<Integer> bucketNames = buckets.get(bucket);
+            int displacement = findDisplacement(bucketNames, hashes, slots, bucketSlots);
+            if (displacement < 0) {
+                return null;
+            }
+            displacements[bucket] = displacement;
+            for (int name : bucketNames) {
+                int slot = slot(hashes[name], displacement, size - 1);
+                slots[slot] = names[name];
+                indexes[slot] = name;
+            }
+        }
+        return new PerfectHashTable(names, slots, indexes, displacements);
+    }
+
+    private static int findDisplacement(List<Integer> bucketNames, long[] hashes, String[] slots, int[] bucketSlots) {
+        candidates:
+        for (int displacement = 0; displacement < slots.length * 4; displacement++) {
+            for (int i = 0; i < bucketNames.size(); i++) {
+                int slot = slot(hashes[bucketNames.get(i)], displacement, slots.length - 1);
+                if (slots[slot] != null) {
+                    continue candidates;
+                }
+                for (int j = 0; j < i; j++) {
+                    if (bucketSlots[j] == slot) {
+                        continue candidates;
+                    }
+                }
+                bucketSlots[i] = slot;
+            }
+            return displacement;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the number of names of the table
+     */
+    int size() {
+        return names.length;
+    }
+
+    /**
+     * @return the name of the given index, in lower case
+     */
+    String name(int index) {
+        return names[index];
+    }
+
+    /**
+     * @param text  the text containing the name to look up, in any case
+     * @param start the start index of the name in the text
+     * @param end   the end index of the name in the text
+     * @return the index of the name, <code>-1</code> if it is not in the table
+     */
+    int indexOf(CharSequence text, int start, int end) {
+        long hash = hash(text, start, end);
+        int slot = slot(hash, displacements[bucket(hash, displacements.length)], mask);
+        String name = slots[slot];
+        if (name == null || name.length() != end - start) {
+            return -1;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (toLowerCase(text.charAt(start + i)) != name.charAt(i)) {
+                return -1;
+            }
+        }
+        return indexes[slot];
+    }
+
+    private static int bucket(long hash, int bucketCount) {
+        return (int) ((hash & Integer.MAX_VALUE) % bucketCount);
+    }
+
+    private static int slot(long hash, int displacement, int mask) {
+        int slot = (int) (hash >>> 32) + displacement * 0x9E3779B9;
+        slot ^= slot >>> 15;
+        slot *= 0x85EBCA6B;
+        slot ^= slot >>> 13;
+        return slot & mask;
+    }
+
+    /**
+     * FNV-1a of the lower case characters, with a final avalanche step so that both halves are usable.
+     */
+    private static long hash(CharSequence text, int start, int end) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            hash = (hash ^ toLowerCase(text.charAt(i))) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static char toLowerCase(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The rich text editors placeholders (e.g. <code>{mode}</code>) to restore once percent-encoded by the sanitizer
+ * (e.g. <code>%7bmode%7d</code>), compiled into a trie of their encoded forms so that all of them are matched in a single pass.
+ * <p>
+ * Instances are immutable and shared by all the sanitizations of a configuration, see {@link PlaceholderRestoringAppendable}.
+ */
+final class PlaceholderRestorer {
+
+    /**
+     * The placeholders of the Jahia rich text editors, used when the configuration does not define any.
+     */
+    static final List<String> DEFAULT_PLACEHOLDERS = Collections.unmodifiableList(Arrays.asList("{mode}", "{lang}", "{workspace}"));
+    static final PlaceholderRestorer DEFAULT = create(DEFAULT_PLACEHOLDERS);
+
+    private final List<String> placeholders;
+    private final Node root;
+
+    private PlaceholderRestorer(List<String> placeholders, Node root) {
+        this.placeholders = placeholders;
+        this.root = root;
+    }
+
+    /**
+     * @param placeholders the placeholders, made of a name between curly braces
+     * @return the restorer of the given placeholders
+     */
+    static PlaceholderRestorer create(Collection<String> placeholders) {
+        Map<String, String> placeholdersByEncodedForm = new TreeMap<>();
+        for (String placeholder : placeholders) {
+            placeholdersByEncodedForm.put(encode(placeholder), placeholder);
+        }
+        return new PlaceholderRestorer(Collections.unmodifiableList(new ArrayList<>(placeholdersByEncodedForm.values())),
+                Node.build(placeholdersByEncodedForm, 0));
+    }
+
+    /**
+     * @return the form of the placeholder written by the sanitizer in URL attributes, e.g. <code>%7bmode%7d</code> for <code>{mode}</code>
+     */
+    static String encode(String placeholder) {
+        return "%7b" + placeholder.substring(1, placeholder.length() - 1) + "%7d";
+    }
+
+    /**
+     * @return the placeholders to restore, sorted by encoded form
+     */
+    List<String> getPlaceholders() {
+        return placeholders;
+    }
+
+    Node root() {
+        return root;
+    }
+
+    /**
+     * A node of the trie, reached after reading a prefix of at least one encoded placeholder.
+     */
+    static final class Node {
+        private final char[] keys;
+        private final Node[] children;
+        /**
+         * The placeholder to write when this node is reached, <code>null</code> if the prefix is not a complete encoded placeholder.
+         */
+        final String placeholder;
+
+        private Node(char[] keys, Node[] children, String placeholder) {
+            this.keys = keys;
+            this.children = children;
+            this.placeholder = placeholder;
+        }
+
+        /**
+         * @param placeholdersByEncodedForm the placeholders sharing the same prefix of the given depth, sorted by encoded form
+         */
+        private static Node build(Map<String, String> placeholdersByEncodedForm, int depth) {
+            String placeholder = null;
+            Map<Character, Map<String, String>> groups = new TreeMap<>();
+            placeholdersByEncodedForm.forEach((encoded, value) -> {
+                if (encoded.length() > depth) {
+                    groups.computeIfAbsent(encoded.charAt(depth), k -> new TreeMap<>()).put(encoded, value);
+                }
+            });
+            for (Map.Entry<String, String> entry : placeholdersByEncodedForm.entrySet()) {
+                if (entry.getKey().length() == depth) {
+                    placeholder = entry.getValue();
+                }
+            }
+            char[] keys = new char[groups.size()];
+            Node[] children = new Node[groups.size()];
+            int i = 0;
+            for (Map.Entry<Character, Map<String, String>> group : groups.entrySet()) {
+                keys[i] = group.getKey();
+                children[i] = build(group.getValue(), depth + 1);
+                i++;
+            }
+            return new Node(keys, children, placeholder);
+        }
+
+        /**
+         * @return the node reached by reading the given character from this node, <code>null</code> if no encoded placeholder matches
+         */
+        Node child(char c) {
+            // the fan-out is small, a linear scan is faster than any lookup structure
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl;
+
+import java.io.IOException;
+
+/**
+ * An {@link Appendable} restoring the rich text editors placeholders (e.g. <code>{mode}</code>) that got percent-encoded
+ * by the sanitizer, while the sanitized HTML is written to the underlying {@link Appendable}.
+ * <p>
+ * The placeholders are restored in a single pass, without needing the whole sanitized HTML: the characters that may be the
+ * beginning of an encoded placeholder are held back while they follow a path of the {@link PlaceholderRestorer} trie, until the
+ * placeholder is complete or proven not to match, so {@link #flush()} must be called once everything has been appended.
+ */
+final class PlaceholderRestoringAppendable implements Appendable {
+
+    private final Appendable output;
+    private final PlaceholderRestorer.Node root;
+    // allocated on the first potential placeholder only, most contents have none
+    private StringBuilder pending;
+    /**
+     * The trie node reached by the pending characters, the root if there is none.
+     */
+    private PlaceholderRestorer.Node node;
+
+    /**
+     * @param output      the underlying {@link Appendable}
+     * @param placeholders the placeholders to restore
+     */
+    PlaceholderRestoringAppendable(Appendable output, PlaceholderRestorer placeholders) {
+        this.output = output;
+        this.root = placeholders.root();
+        this.node = root;
+    }
+
+    @Override
+    public Appendable append(CharSequence csq) throws IOException {
+        return append(csq, 0, csq.length());
+    }
+
+    @Override
+    public Appendable append(CharSequence csq, int start, int end) throws IOException {
+        int i = start;
+        while (i < end) {
+            if (node == root) {
+                // copy everything up to the next potential placeholder at once
+                int next = i;
+                while (next < end && root.child(csq.charAt(next)) == null) {
+                    next++;
+                }
+                output.append(csq, i, next);
+                i = next;
+                if (i == end) {
+                    break;
+                }
+            }
+            append(csq.charAt(i++));
+        }
+        return this;
+    }
+
+    @Override
+    public Appendable append(char c) throws IOException {
+        PlaceholderRestorer.Node child = node.child(c);
+        if (child == null) {
+            if (node == root) {
+                output.append(c);
+            } else {
+                mismatch(c);
+            }
+            return this;
+        }
+        if (child.placeholder != null) {
+            // the encoded placeholders are never the prefix of another one, the first complete match is the only one
+            output.append(child.placeholder);
+            reset();
+            return this;
+        }
+        if (pending == null) {
+            pending = new StringBuilder();
+        }
+        pending.append(c);
+        node = child;
+        return this;
+    }
+
+    /**
+     * The pending characters followed by the given character do not match any placeholder: releases the first pending character
+     * and replays the following ones, as they may be the beginning of another placeholder.
+     */
+    private void mismatch(char c) throws IOException {
+        output.append(pending.charAt(0));
+        String replayed = pending.substring(1);
+        reset();
+        append(replayed);
+        append(c);
+    }
+
+    private void reset() {
+        if (pending != null) {
+            pending.setLength(0);
+        }
+        node = root;
+    }
+
+    /**
+     * Writes the characters held back to the underlying {@link Appendable}.
+     */
+    void flush() throws IOException {
+        if (node != root) {
+            output.append(pending);
+            reset();
+        }
+    }
+}
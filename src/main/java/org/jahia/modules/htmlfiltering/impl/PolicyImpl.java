@@ -15,29 +15,97 @@
  */
 package org.jahia.modules.htmlfiltering.impl;
 
-import org.apache.commons.lang3.StringUtils;
 import org.jahia.modules.htmlfiltering.*;
+import org.jahia.modules.htmlfiltering.impl.cache.BoundedCache;
+import org.jahia.modules.htmlfiltering.impl.cache.CacheStats;
+import org.jahia.modules.htmlfiltering.impl.cache.ContentHash;
+import org.jahia.modules.htmlfiltering.impl.cache.DigestFilter;
 import org.jahia.services.content.JCRNodeWrapper;
 import org.jahia.services.content.nodetypes.ExtendedPropertyDefinition;
 import org.jahia.services.content.nodetypes.SelectorType;
-import org.owasp.html.HtmlChangeListener;
-import org.owasp.html.HtmlPolicyBuilder;
-import org.owasp.html.PolicyFactory;
+import org.jahia.modules.htmlfiltering.engine.CompiledSanitizer;
+import org.jahia.modules.htmlfiltering.engine.HtmlEventReceiver;
+import org.jahia.modules.htmlfiltering.engine.RejectionListener;
+import org.jahia.modules.htmlfiltering.engine.SanitizerEngine;
+import org.owasp.html.Handler;
+import org.owasp.html.HtmlStreamEventReceiver;
+import org.owasp.html.HtmlStreamRenderer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.jcr.*;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
 
 /**
  * Implementation of the {@link Policy} interface for defining HTML filtering policies
  * within a specific workspace configuration. This class processes allowed and disallowed
  * rules for HTML elements, attributes, and protocols as specified in the workspace configuration.
- * It uses {@link HtmlPolicyBuilder} (OWASP Java HTML Sanitizer) to construct the filtering rules and applies them for sanitization
- * and validation operations.
+ * The filtering rules are compiled by a {@link SanitizerEngine} (the OWASP Java HTML Sanitizer by default), and applied for
+ * sanitization and validation operations.
  */
 public final class PolicyImpl implements Policy {
     private static final Logger logger = LoggerFactory.getLogger(PolicyImpl.class);
+    private static final int READ_BUFFER_SIZE = 8192;
+    /**
+     * Total length (in characters) of the distinct HTML texts of a batch from which they are sanitized in parallel.
+     */
+    static final int PARALLEL_BATCH_THRESHOLD = 64 * 1024;
+    /**
+     * Number of sanitized HTML contents remembered by the {@link #outputFilter}.
+     */
+    private static final int OUTPUT_FILTER_ENTRIES = 10000;
+    /**
+     * Shared result of the validations without any violation.
+     */
+    private static final PolicyValidationResult VALID_RESULT = new PolicySanitizedHtmlResultImpl().toImmutable();
+    /**
+     * Collects the tags and attributes rejected by the sanitizer into the result.
+     */
+    private static final RejectionListener<PolicySanitizedHtmlResultImpl> REJECTION_LISTENER = new RejectionListener<PolicySanitizedHtmlResultImpl>() {
+        @Override
+        public void discardedTag(PolicySanitizedHtmlResultImpl context, String elementName) {
+            context.addRejectedTag(elementName);
+        }
+
+        @Override
+        public void discardedAttributes(PolicySanitizedHtmlResultImpl context, String tagName, String... attributeNames) {
+            context.addRejectedAttributesByTag(tagName, attributeNames);
+        }
+    };
+    /**
+     * Receives the output of the sanitizer when only the validation result matters.
+     */
+    private static final HtmlEventReceiver NO_OUTPUT = new HtmlEventReceiver() {
+        @Override
+        public void openDocument() {
+            // no output
+        }
+
+        @Override
+        public void closeDocument() {
+            // no output
+        }
+
+        @Override
+        public void openTag(String elementName, List<String> attrs) {
+            // no output
+        }
+
+        @Override
+        public void closeTag(String elementName) {
+            // no output
+        }
+
+        @Override
+        public void text(String text) {
+            // no output
+        }
+    };
     private final Strategy strategy;
     /**
      * A map that associates node types with a set of property names to be processed.
@@ -60,15 +128,100 @@ public final class PolicyImpl implements Policy {
      * This is useful for cases where certain permissions should bypass the HTML filtering policy.
      */
     final List<String> skipOnPermissions;
-    private final PolicyFactory policyFactory;
+    /**
+     * The rule sets of this policy, compiled by its sanitizer engine.
+     */
+    private final CompiledSanitizer sanitizer;
+    /**
+     * An optional cache of the sanitization results, keyed by the hash of the HTML input.
+     * <p>
+     * It is bound to this policy: when the configuration is updated, a new policy is built and the cache is dropped with the previous one.
+     * <code>null</code> if the result cache is not enabled for this policy.
+     */
+    private final BoundedCache<ContentHash, PolicySanitizedHtmlResult> resultCache;
+    /**
+     * The optional cache of the sanitization results of the top-level blocks of the large HTML contents, <code>null</code> if not
+     * enabled for this policy.
+     */
+    private final BlockCache blockCache;
+    /**
+     * The optional cache of the format decisions taken on the attribute values, used by the attribute policies of the
+     * {@link #sanitizer}, <code>null</code> if not enabled for this policy.
+     */
+    private final AttributeDecisionCache attributeCache;
+    /**
+     * The filter of the declarations of the <code>style</code> attribute values, used by the attribute policies of the
+     * {@link #sanitizer}, <code>null</code> if the allowed CSS properties are not configured for this policy.
+     */
+    private final StyleFilter styleFilter;
+    /**
+     * Removes the office suites paste artifacts before the sanitization, <code>null</code> if the paste cleanup is not enabled
+     * for this policy.
+     */
+    private final PasteCleaner pasteCleaner;
+    /**
+     * Compacts the sanitized HTML while it is rendered, <code>null</code> if the output compaction is not enabled for this policy.
+     */
+    private final OutputCompactor outputCompactor;
+    /**
+     * Splits the very large HTML contents into chunks sanitized in parallel, <code>null</code> if the parallel sanitization is not
+     * enabled for this policy.
+     */
+    private final DocumentSplitter documentSplitter;
+    /**
+     * Bounds the number of HTML contents processed concurrently by this policy, <code>null</code> if the bulkhead is not enabled
+     * for this policy.
+     */
+    private final Bulkhead bulkhead;
+    /**
+     * Detects the HTML content that the {@link #sanitizer} would return unchanged, to skip its processing.
+     */
+    final CleanHtmlClassifier cleanHtmlClassifier;
+    /**
+     * The tag and attribute names of the rule sets of this policy, each one mapped to itself, so that the rejected names retained
+     * by the results share the same instances.
+     */
+    private final Map<String, String> knownNames;
+    /**
+     * The rich text editors placeholders restored after sanitization.
+     */
+    private final PlaceholderRestorer placeholderRestorer;
+    private final String fingerprint;
+    /**
+     * The sanitized HTML contents recently produced by this policy, that are very likely to be sanitized again unchanged.
+     * <p>
+     * It is bound to this policy: when the configuration is updated, a new policy is built with an empty filter.
+     */
+    private final DigestFilter outputFilter = new DigestFilter(OUTPUT_FILTER_ENTRIES);
+    /**
+     * The limits enforced on the HTML contents processed by this policy.
+     */
+    private final SanitizeLimits limits;
 
     public PolicyImpl(Strategy strategy, Map<String, Set<String>> propsToProcessByNodeType, Map<String, Set<String>> propsToSkipByNodeType,
-                      List<String> skipOnPermissions, PolicyFactory policyFactory) {
+                      List<String> skipOnPermissions, CompiledSanitizer sanitizer,
+                      BoundedCache<ContentHash, PolicySanitizedHtmlResult> resultCache, BlockCache blockCache,
+                      AttributeDecisionCache attributeCache, StyleFilter styleFilter, PasteCleaner pasteCleaner, OutputCompactor outputCompactor,
+                      DocumentSplitter documentSplitter, Bulkhead bulkhead, CleanHtmlClassifier cleanHtmlClassifier,
+                      Map<String, String> knownNames, PlaceholderRestorer placeholderRestorer, String fingerprint, SanitizeLimits limits) {
         this.strategy = strategy;
         this.propsToProcessByNodeType = propsToProcessByNodeType;
         this.propsToSkipByNodeType = propsToSkipByNodeType;
         this.skipOnPermissions = skipOnPermissions;
-        this.policyFactory = policyFactory;
+        this.sanitizer = sanitizer;
+        this.resultCache = resultCache;
+        this.blockCache = blockCache;
+        this.attributeCache = attributeCache;
+        this.styleFilter = styleFilter;
+        this.pasteCleaner = pasteCleaner;
+        this.outputCompactor = outputCompactor;
+        this.documentSplitter = documentSplitter;
+        this.bulkhead = bulkhead;
+        this.cleanHtmlClassifier = cleanHtmlClassifier;
+        this.knownNames = knownNames;
+        this.placeholderRestorer = placeholderRestorer;
+        this.fingerprint = fingerprint;
+        this.limits = limits;
     }
 
     @Override
@@ -76,6 +229,11 @@ public final class PolicyImpl implements Policy {
         return strategy;
     }
 
+    @Override
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
     @Override
     public boolean isApplicableToProperty(JCRNodeWrapper node, String propertyName, ExtendedPropertyDefinition propertyDefinition) {
         boolean result = skipOnPermissions.stream().noneMatch(node::hasPermission) &&
@@ -93,23 +251,554 @@ public final class PolicyImpl implements Policy {
 
     @Override
     public PolicySanitizedHtmlResult sanitize(String htmlText) {
-        PolicySanitizedHtmlResultImpl result = new PolicySanitizedHtmlResultImpl();
-        String sanitized = policyFactory.sanitize(htmlText, new HtmlChangeListener<PolicySanitizedHtmlResultImpl>() {
-            @Override
-            public void discardedTag(PolicySanitizedHtmlResultImpl context, String elementName) {
-                context.addRejectedTag(elementName);
+        return sanitize(htmlText, SanitizeDetailLevel.FULL);
+    }
+
+    @Override
+    public PolicySanitizedHtmlResult sanitize(String htmlText, SanitizeDetailLevel detailLevel) {
+        if (htmlText == null) {
+            return new OutputSanitizedHtmlResult("", true);
+        }
+        if (limits.isTooLong(htmlText)) {
+            return refuse(new PolicySanitizedHtmlResultImpl(knownNames), SanitizeLimit.INPUT_LENGTH, htmlText);
+        }
+        if (strategy == Strategy.STRIP) {
+            return strip(htmlText, detailLevel);
+        }
+        // the sanitizer input, a content with paste artifacts can neither be clean nor in its sanitized form
+        String cleanedHtml = cleanPaste(htmlText);
+        boolean pasteArtifacts = cleanedHtml != htmlText;
+        if (!pasteArtifacts && isClean(htmlText)) {
+            // plain text or simple markup already in its sanitized form, the sanitizer would return it unchanged
+            return new OutputSanitizedHtmlResult(htmlText, false);
+        }
+        if (bulkhead == null) {
+            return sanitize(htmlText, cleanedHtml, detailLevel);
+        }
+        if (!bulkhead.tryAcquire()) {
+            return refuse(new PolicySanitizedHtmlResultImpl(knownNames), SanitizeLimit.CONCURRENCY, htmlText);
+        }
+        try {
+            return sanitize(htmlText, cleanedHtml, detailLevel);
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    /**
+     * @param cleanedHtml the HTML content without its paste artifacts, see {@link #cleanPaste(String)}
+     */
+    private PolicySanitizedHtmlResult sanitize(String htmlText, String cleanedHtml, SanitizeDetailLevel detailLevel) {
+        boolean pasteArtifacts = cleanedHtml != htmlText;
+        if (!pasteArtifacts && outputFilter.mightContain(htmlText)) {
+            // probably produced by this policy already, verifying it is cheaper than sanitizing it again
+            PolicySanitizedHtmlResult result = verifyCanonical(htmlText);
+            if (result != null) {
+                return result;
+            }
+        }
+        if (resultCache != null) {
+            // the cache holds complete results, whatever the detail level
+            ContentHash key = ContentHash.of(htmlText);
+            PolicySanitizedHtmlResult result = resultCache.get(key);
+            if (result == null) {
+                // cached results are shared between callers, they must not be modifiable
+                result = doSanitize(htmlText, cleanedHtml).toImmutable();
+                if (result.getExceededLimit() == null) {
+                    resultCache.put(key, result);
+                    outputFilter.add(result.getSanitizedHtml());
+                } else if (result.getExceededLimit() != SanitizeLimit.DURATION && result.getExceededLimit() != SanitizeLimit.CONCURRENCY) {
+                    // refused again anyway, unlike a content refused because of the load at the time
+                    resultCache.put(key, result);
+                }
+            }
+            return result;
+        }
+        PolicySanitizedHtmlResult result;
+        if (detailLevel == SanitizeDetailLevel.FULL) {
+            result = doSanitize(htmlText, cleanedHtml);
+        } else {
+            try {
+                // no listener at all, the rejected tags/attributes are not needed
+                SanitizedHtmlBuilder output = render(htmlText, cleanedHtml, detailLevel == SanitizeDetailLevel.OUTPUT_AND_CHANGED, null);
+                result = new OutputSanitizedHtmlResult(output.build(), output.isChanged());
+            } catch (SanitizeLimits.LimitExceededException e) {
+                return refuse(new PolicySanitizedHtmlResultImpl(knownNames), e.getLimit(), htmlText);
+            }
+        }
+        if (result.getExceededLimit() == null) {
+            // the sanitized HTML is likely to be sanitized again later, e.g. when the content is saved again
+            outputFilter.add(result.getSanitizedHtml());
+        }
+        return result;
+    }
+
+    /**
+     * Extracts the text of the HTML content, for the policies of the {@link Strategy#STRIP} strategy: neither the sanitizer engine
+     * nor the caches are involved, the extraction being cheaper than any lookup.
+     */
+    private PolicySanitizedHtmlResult strip(String htmlText, SanitizeDetailLevel detailLevel) {
+        if (detailLevel != SanitizeDetailLevel.FULL) {
+            String text = TextExtractor.extract(htmlText, null);
+            return new OutputSanitizedHtmlResult(text, text != htmlText);
+        }
+        PolicySanitizedHtmlResultImpl result = new PolicySanitizedHtmlResultImpl(knownNames);
+        String text = TextExtractor.extract(htmlText, result::addRejectedTag);
+        result.setSanitizedHtml(text);
+        result.setChanged(text != htmlText);
+        return result;
+    }
+
+    /**
+     * Refuses an HTML content exceeding one of the limits of this policy: the result is invalid and its sanitized HTML is empty.
+     *
+     * @return the given result
+     */
+    private static PolicySanitizedHtmlResultImpl refuse(PolicySanitizedHtmlResultImpl result, SanitizeLimit limit, String htmlText) {
+        logger.warn("HTML content of {} characters refused, it exceeds the {} limit of the policy", htmlText.length(), limit);
+        result.setExceededLimit(limit);
+        result.setSanitizedHtml("");
+        result.setChanged(true);
+        return result;
+    }
+
+    /**
+     * Verifies whether the HTML content is already in its sanitized form, without building the sanitized HTML.
+     *
+     * @return the result of the sanitization, <code>null</code> if the HTML content is not in its sanitized form
+     */
+    private PolicySanitizedHtmlResult verifyCanonical(String htmlText) {
+        PolicySanitizedHtmlResultImpl result = new PolicySanitizedHtmlResultImpl(knownNames);
+        CanonicalOutputVerifier verifier = new CanonicalOutputVerifier(htmlText);
+        try {
+            render(htmlText, verifier, REJECTION_LISTENER, result);
+        } catch (CanonicalOutputVerifier.NotCanonicalException e) {
+            return null;
+        } catch (SanitizeLimits.LimitExceededException e) {
+            return refuse(result, e.getLimit(), htmlText);
+        } catch (IOException e) {
+            // never thrown when writing to a CanonicalOutputVerifier
+            throw new UncheckedIOException(e);
+        }
+        if (!verifier.isComplete()) {
+            return null;
+        }
+        result.setSanitizedHtml(htmlText);
+        result.setChanged(false);
+        return result;
+    }
+
+    @Override
+    public PolicyValidationResult sanitize(Reader htmlReader, Appendable output) throws IOException {
+        // the sanitizer engines require the whole input, only the output is streamed; a too long input is not read beyond the limit
+        return sanitize(readFully(htmlReader, limits.getMaxInputLength()), output);
+    }
+
+    @Override
+    public List<PolicySanitizedHtmlResult> sanitizeAll(List<String> htmlTexts, SanitizeDetailLevel detailLevel) {
+        // identical HTML texts (e.g. duplicated values of a multi-valued property) are only sanitized once
+        Map<String, Integer> distinctIndexes = new HashMap<>();
+        List<String> distinctTexts = new ArrayList<>();
+        int[] indexes = new int[htmlTexts.size()];
+        long distinctLength = 0;
+        for (int i = 0; i < indexes.length; i++) {
+            String htmlText = htmlTexts.get(i);
+            Integer index = distinctIndexes.get(htmlText);
+            if (index == null) {
+                index = distinctTexts.size();
+                distinctIndexes.put(htmlText, index);
+                distinctTexts.add(htmlText);
+                distinctLength += htmlText == null ? 0 : htmlText.length();
+            }
+            indexes[i] = index;
+        }
+
+        List<PolicySanitizedHtmlResult> distinctResults;
+        if (distinctTexts.size() > 1 && distinctLength >= PARALLEL_BATCH_THRESHOLD) {
+            distinctResults = SanitizeExecutors.invokeAll(distinctTexts, htmlText -> sanitize(htmlText, detailLevel));
+        } else {
+            distinctResults = new ArrayList<>(distinctTexts.size());
+            for (String htmlText : distinctTexts) {
+                distinctResults.add(sanitize(htmlText, detailLevel));
+            }
+        }
+
+        List<PolicySanitizedHtmlResult> results = new ArrayList<>(indexes.length);
+        for (int index : indexes) {
+            results.add(distinctResults.get(index));
+        }
+        return results;
+    }
+
+    @Override
+    public CompletionStage<PolicySanitizedHtmlResult> sanitizeAsync(String htmlText, SanitizeDetailLevel detailLevel) {
+        return SanitizeExecutors.supplyAsync(() -> sanitize(htmlText, detailLevel));
+    }
+
+    @Override
+    public PolicyValidationResult sanitize(String htmlText, Appendable output) throws IOException {
+        if (htmlText == null) {
+            return VALID_RESULT;
+        }
+        if (limits.isTooLong(htmlText)) {
+            return refuse(new PolicySanitizedHtmlResultImpl(knownNames), SanitizeLimit.INPUT_LENGTH, htmlText);
+        }
+        if (strategy == Strategy.STRIP) {
+            PolicySanitizedHtmlResult result = strip(htmlText, SanitizeDetailLevel.FULL);
+            output.append(result.getSanitizedHtml());
+            return result;
+        }
+        String cleanedHtml = cleanPaste(htmlText);
+        if (cleanedHtml == htmlText && isClean(htmlText)) {
+            output.append(htmlText);
+            return VALID_RESULT;
+        }
+        PolicySanitizedHtmlResultImpl result = new PolicySanitizedHtmlResultImpl(knownNames);
+        if (bulkhead != null && !bulkhead.tryAcquire()) {
+            // nothing written yet
+            return refuse(result, SanitizeLimit.CONCURRENCY, htmlText);
+        }
+        try {
+            if (!renderBlocks(cleanedHtml, output, result) && !renderChunks(cleanedHtml, output, result)) {
+                render(cleanedHtml, output, REJECTION_LISTENER, result);
+            }
+        } catch (SanitizeLimits.LimitExceededException e) {
+            refuse(result, e.getLimit(), htmlText);
+        } finally {
+            if (bulkhead != null) {
+                bulkhead.release();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sanitizes the HTML content with the sanitizer engine, without any shortcut.
+     */
+    PolicySanitizedHtmlResultImpl doSanitize(String htmlText) {
+        return doSanitize(htmlText, cleanPaste(htmlText));
+    }
+
+    /**
+     * @param cleanedHtml the HTML content without its paste artifacts, see {@link #cleanPaste(String)}
+     */
+    private PolicySanitizedHtmlResultImpl doSanitize(String htmlText, String cleanedHtml) {
+        PolicySanitizedHtmlResultImpl result = new PolicySanitizedHtmlResultImpl(knownNames);
+        try {
+            SanitizedHtmlBuilder output = render(htmlText, cleanedHtml, true, result);
+            result.setSanitizedHtml(output.build());
+            result.setChanged(output.isChanged());
+        } catch (SanitizeLimits.LimitExceededException e) {
+            refuse(result, e.getLimit(), htmlText);
+        }
+        return result;
+    }
+
+    /**
+     * @return <code>true</code> if the HTML content is already in its sanitized form, including its compaction if enabled
+     */
+    private boolean isClean(String htmlText) {
+        return cleanHtmlClassifier.isClean(htmlText) && (outputCompactor == null || outputCompactor.isCompact(htmlText));
+    }
+
+    /**
+     * @return the HTML content without its paste artifacts, the same instance if there are none or if the paste cleanup is not enabled
+     */
+    private String cleanPaste(String htmlText) {
+        return pasteCleaner == null ? htmlText : pasteCleaner.clean(htmlText);
+    }
+
+    /**
+     * @param htmlText    the original HTML content, that the sanitized HTML is compared with
+     * @param cleanedHtml the HTML content to sanitize, i.e. without its paste artifacts
+     * @param result      the result collecting the rejected tags/attributes, <code>null</code> if they are not needed
+     */
+    private SanitizedHtmlBuilder render(String htmlText, String cleanedHtml, boolean trackChanges, PolicySanitizedHtmlResultImpl result) {
+        SanitizedHtmlBuilder output = new SanitizedHtmlBuilder(htmlText, trackChanges);
+        try {
+            if (!renderBlocks(cleanedHtml, output, result) && !renderChunks(cleanedHtml, output, result)) {
+                render(cleanedHtml, output, result == null ? null : REJECTION_LISTENER, result);
             }
+        } catch (IOException e) {
+            // never thrown when writing to a SanitizedHtmlBuilder
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            output.discard();
+            throw e;
+        }
+        return output;
+    }
 
-            @Override
-            public void discardedAttributes(PolicySanitizedHtmlResultImpl context, String tagName, String... attributeNames) {
-                context.addRejectedAttributeByTag(tagName, new HashSet<>(Arrays.asList(attributeNames)));
+    /**
+     * Renders the sanitized HTML of a large HTML content block by block, only sanitizing the blocks that are not in the
+     * {@link #blockCache}, in parallel if the parallel sanitization is enabled and they are long enough.
+     * <p>
+     * Not used when the element count is limited, as the elements of the cached blocks would not be counted.
+     *
+     * @param result the result collecting the rejected tags/attributes of all the blocks, <code>null</code> if they are not needed
+     * @return <code>false</code> if the HTML content is not split, in which case nothing is rendered
+     */
+    private boolean renderBlocks(String htmlText, Appendable output, PolicySanitizedHtmlResultImpl result) throws IOException {
+        List<String> blocks = blockCache == null || limits.getMaxElementCount() != Integer.MAX_VALUE ? null : blockCache.split(htmlText);
+        if (blocks == null) {
+            return false;
+        }
+        ContentHash[] keys = new ContentHash[blocks.size()];
+        PolicySanitizedHtmlResult[] blockResults = new PolicySanitizedHtmlResult[blocks.size()];
+        List<Integer> misses = new ArrayList<>();
+        long missLength = 0;
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = ContentHash.of(blocks.get(i));
+            blockResults[i] = blockCache.get(keys[i]);
+            if (blockResults[i] == null) {
+                misses.add(i);
+                missLength += blocks.get(i).length();
             }
-        }, result);
+        }
+        if (!misses.isEmpty()) {
+            // the deadline is the one of the whole content
+            List<HtmlEventReceiver> observers = limits.observers(keys.length);
+            Function<Integer, PolicySanitizedHtmlResult> sanitizeBlock = i -> {
+                PolicySanitizedHtmlResultImpl blockResult = new PolicySanitizedHtmlResultImpl(knownNames);
+                StringBuilder blockOutput = new StringBuilder(blocks.get(i).length());
+                try {
+                    render(blocks.get(i), blockOutput, observers == null ? null : observers.get(i), REJECTION_LISTENER, blockResult);
+                } catch (IOException e) {
+                    // never thrown when writing to a StringBuilder
+                    throw new UncheckedIOException(e);
+                }
+                blockResult.setSanitizedHtml(blockOutput.toString());
+                // cached results are shared between the contents, they must not be modifiable
+                PolicySanitizedHtmlResult cachedResult = blockResult.toImmutable();
+                blockCache.put(keys[i], cachedResult);
+                return cachedResult;
+            };
+            List<PolicySanitizedHtmlResult> missResults;
+            if (documentSplitter != null && misses.size() > 1 && missLength >= documentSplitter.getMinLength()) {
+                missResults = SanitizeExecutors.invokeAll(misses, sanitizeBlock);
+            } else {
+                missResults = new ArrayList<>(misses.size());
+                for (int i : misses) {
+                    missResults.add(sanitizeBlock.apply(i));
+                }
+            }
+            for (int i = 0; i < misses.size(); i++) {
+                blockResults[misses.get(i)] = missResults.get(i);
+            }
+        }
+        for (PolicySanitizedHtmlResult blockResult : blockResults) {
+            output.append(blockResult.getSanitizedHtml());
+            if (result != null) {
+                result.addRejections(blockResult);
+            }
+        }
+        return true;
+    }
 
-        result.setSanitizedHtml(postProcessSanitizedHtml(sanitized));
+    /**
+     * Renders the sanitized HTML of a very large HTML content, split into chunks sanitized in parallel, to the given output.
+     *
+     * @param result the result collecting the rejected tags/attributes of all the chunks, <code>null</code> if they are not needed
+     * @return <code>false</code> if the HTML content is not split, in which case nothing is rendered
+     */
+    private boolean renderChunks(String htmlText, Appendable output, PolicySanitizedHtmlResultImpl result) throws IOException {
+        List<String> chunks = documentSplitter == null ? null : documentSplitter.split(htmlText);
+        if (chunks == null) {
+            return false;
+        }
+        List<HtmlEventReceiver> observers = limits.observers(chunks.size());
+        List<ChunkRendering> renderings = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            renderings.add(new ChunkRendering(chunks.get(i), observers == null ? null : observers.get(i),
+                    result == null ? null : new PolicySanitizedHtmlResultImpl(knownNames)));
+        }
+        SanitizeExecutors.invokeAll(renderings, rendering -> {
+            try {
+                render(rendering.chunk, rendering.output, rendering.observer, rendering.result == null ? null : REJECTION_LISTENER,
+                        rendering.result);
+            } catch (IOException e) {
+                // never thrown when writing to a StringBuilder
+                throw new UncheckedIOException(e);
+            }
+            return rendering;
+        });
+        // each chunk starts without any open element, their sanitized HTML can simply be concatenated
+        for (ChunkRendering rendering : renderings) {
+            output.append(rendering.output);
+            if (result != null) {
+                result.addRejections(rendering.result);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Renders the sanitized HTML to the given output, restoring the Jahia rich text editors placeholders and compacting it, if
+     * enabled, on the fly.
+     *
+     * @param listener the listener notified of the rejected tags/attributes, <code>null</code> if they are not needed
+     */
+    private <T> void render(String htmlText, Appendable output, RejectionListener<? super T> listener, T context) throws IOException {
+        render(htmlText, output, limits.observer(), listener, context);
+    }
+
+    /**
+     * @param observer the observer enforcing the limits, <code>null</code> if none of them apply
+     */
+    private <T> void render(String htmlText, Appendable output, HtmlEventReceiver observer, RejectionListener<? super T> listener,
+                            T context) throws IOException {
+        PlaceholderRestoringAppendable restoringOutput = new PlaceholderRestoringAppendable(output, placeholderRestorer);
+        HtmlStreamRenderer renderer = HtmlStreamRenderer.create(restoringOutput, e -> {
+            throw new UncheckedIOException(e);
+        }, Handler.DO_NOTHING);
+        HtmlStreamEventReceiver receiver = outputCompactor == null ? renderer : outputCompactor.wrap(renderer);
+        try {
+            sanitizer.sanitize(htmlText, new RenderingReceiver(receiver), observer, listener, context);
+            restoringOutput.flush();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Reads the whole content of the reader, or at least <code>maxLength + 1</code> characters if it is longer.
+     */
+    private static String readFully(Reader reader, int maxLength) throws IOException {
+        StringBuilder content = new StringBuilder();
+        char[] buffer = new char[READ_BUFFER_SIZE];
+        int read;
+        while (content.length() <= maxLength && (read = reader.read(buffer)) != -1) {
+            content.append(buffer, 0, read);
+        }
+        return content.toString();
+    }
+
+    @Override
+    public PolicyValidationResult validate(String htmlText, int maxViolations) {
+        if (maxViolations <= 0) {
+            throw new IllegalArgumentException("The maximum number of violations must be positive: " + maxViolations);
+        }
+        if (htmlText == null) {
+            return VALID_RESULT;
+        }
+        if (limits.isTooLong(htmlText)) {
+            return refuse(new PolicySanitizedHtmlResultImpl(knownNames), SanitizeLimit.INPUT_LENGTH, htmlText);
+        }
+        if (strategy == Strategy.STRIP) {
+            PolicySanitizedHtmlResultImpl result = new PolicySanitizedHtmlResultImpl(knownNames);
+            try {
+                TextExtractor.extract(htmlText, tag -> {
+                    result.addRejectedTag(tag);
+                    if (result.getViolationCount() >= maxViolations) {
+                        throw new ViolationLimitReachedException();
+                    }
+                });
+            } catch (ViolationLimitReachedException e) {
+                logger.debug("Validation stopped after {} violation(s)", maxViolations);
+            }
+            return result;
+        }
+        if (cleanHtmlClassifier.isClean(htmlText)) {
+            return VALID_RESULT;
+        }
+        if (resultCache != null) {
+            PolicySanitizedHtmlResult cachedResult = resultCache.get(ContentHash.of(htmlText));
+            if (cachedResult != null) {
+                return cachedResult;
+            }
+        }
+        PolicySanitizedHtmlResultImpl result = new PolicySanitizedHtmlResultImpl(knownNames);
+        if (bulkhead != null && !bulkhead.tryAcquire()) {
+            return refuse(result, SanitizeLimit.CONCURRENCY, htmlText);
+        }
+        try {
+            // run the sanitizer without rendering any output
+            sanitizer.sanitize(htmlText, NO_OUTPUT, limits.observer(), new ViolationLimitListener(maxViolations), result);
+        } catch (ViolationLimitReachedException e) {
+            logger.debug("Validation stopped after {} violation(s)", maxViolations);
+        } catch (SanitizeLimits.LimitExceededException e) {
+            refuse(result, e.getLimit(), htmlText);
+        } finally {
+            if (bulkhead != null) {
+                bulkhead.release();
+            }
+        }
         return result;
     }
 
+    /**
+     * @return the statistics of the result cache of this policy, or <code>null</code> if the result cache is not enabled
+     */
+    public CacheStats getResultCacheStats() {
+        return resultCache == null ? null : resultCache.stats();
+    }
+
+    /**
+     * @return the statistics of the block cache of this policy, or <code>null</code> if the block cache is not enabled
+     */
+    public CacheStats getBlockCacheStats() {
+        return blockCache == null ? null : blockCache.stats();
+    }
+
+    /**
+     * @return the statistics of the attribute cache of this policy, or <code>null</code> if the attribute cache is not enabled
+     */
+    public CacheStats getAttributeCacheStats() {
+        return attributeCache == null ? null : attributeCache.stats();
+    }
+
+    /**
+     * @return the statistics of the style cache of this policy, or <code>null</code> if the style cache is not enabled
+     */
+    public CacheStats getStyleCacheStats() {
+        return styleFilter == null ? null : styleFilter.stats();
+    }
+
+    /**
+     * @return the statistics of the paste cleanup of this policy, or <code>null</code> if the paste cleanup is not enabled
+     */
+    public PasteCleanupStats getPasteCleanupStats() {
+        return pasteCleaner == null ? null : pasteCleaner.stats();
+    }
+
+    /**
+     * @return the statistics of the output compaction of this policy, or <code>null</code> if the output compaction is not enabled
+     */
+    public OutputCompactionStats getOutputCompactionStats() {
+        return outputCompactor == null ? null : outputCompactor.stats();
+    }
+
+    /**
+     * @return the statistics of the parallel sanitization of this policy, or <code>null</code> if the parallel sanitization is not
+     * enabled
+     */
+    public ParallelSanitizationStats getParallelSanitizationStats() {
+        return documentSplitter == null ? null : documentSplitter.stats();
+    }
+
+    /**
+     * @return the live gauges and statistics of the bulkhead of this policy, or <code>null</code> if the bulkhead is not enabled
+     */
+    public BulkheadStats getBulkheadStats() {
+        return bulkhead == null ? null : bulkhead.stats();
+    }
+
+    /**
+     * Estimates the number of bytes retained by a sanitization result, used to bound the size of the result cache.
+     */
+    static long estimateResultSize(PolicySanitizedHtmlResult result) {
+        // the sanitized HTML is the dominant part, the rejected tags and attributes are usually few and short
+        long size = 64;
+        if (result.getSanitizedHtml() != null) {
+            size += 2L * result.getSanitizedHtml().length();
+        }
+        size += 48L * result.getRejectedTags().size();
+        for (Set<String> attributes : result.getRejectedAttributesByTag().values()) {
+            size += 48L * (attributes.size() + 1);
+        }
+        return size;
+    }
+
     private boolean isRichTextStringProperty(ExtendedPropertyDefinition definition) {
         return definition.getRequiredType() == PropertyType.STRING
                 && definition.getSelector() == SelectorType.RICHTEXT;
@@ -137,14 +826,97 @@ public final class PolicyImpl implements Policy {
         return false;
     }
 
-    private String postProcessSanitizedHtml(String sanitizedHtml) {
-        if (StringUtils.isAllBlank(sanitizedHtml)) {
-            return sanitizedHtml;
+    /**
+     * A chunk of a very large HTML content, along with its own output and result, sanitized in parallel with the other chunks.
+     */
+    private static final class ChunkRendering {
+        private final String chunk;
+        private final HtmlEventReceiver observer;
+        private final PolicySanitizedHtmlResultImpl result;
+        private final StringBuilder output;
+
+        private ChunkRendering(String chunk, HtmlEventReceiver observer, PolicySanitizedHtmlResultImpl result) {
+            this.chunk = chunk;
+            this.observer = observer;
+            this.result = result;
+            this.output = new StringBuilder(chunk.length());
+        }
+    }
+
+    /**
+     * Sends the events of the sanitized HTML to the renderer, or to the output compaction wrapping it.
+     */
+    private static final class RenderingReceiver implements HtmlEventReceiver {
+        private final HtmlStreamEventReceiver renderer;
+
+        private RenderingReceiver(HtmlStreamEventReceiver renderer) {
+            this.renderer = renderer;
+        }
+
+        @Override
+        public void openDocument() {
+            renderer.openDocument();
+        }
+
+        @Override
+        public void closeDocument() {
+            renderer.closeDocument();
+        }
+
+        @Override
+        public void openTag(String elementName, List<String> attrs) {
+            renderer.openTag(elementName, attrs);
+        }
+
+        @Override
+        public void closeTag(String elementName) {
+            renderer.closeTag(elementName);
+        }
+
+        @Override
+        public void text(String text) {
+            renderer.text(text);
+        }
+    }
+
+    /**
+     * Collects the rejected tags and attributes, and interrupts the sanitizer once the maximum number of violations is reached.
+     */
+    private static final class ViolationLimitListener implements RejectionListener<PolicySanitizedHtmlResultImpl> {
+        private final int maxViolations;
+
+        private ViolationLimitListener(int maxViolations) {
+            this.maxViolations = maxViolations;
+        }
+
+        @Override
+        public void discardedTag(PolicySanitizedHtmlResultImpl context, String elementName) {
+            REJECTION_LISTENER.discardedTag(context, elementName);
+            checkLimit(context);
+        }
+
+        @Override
+        public void discardedAttributes(PolicySanitizedHtmlResultImpl context, String tagName, String... attributeNames) {
+            REJECTION_LISTENER.discardedAttributes(context, tagName, attributeNames);
+            checkLimit(context);
+        }
+
+        private void checkLimit(PolicySanitizedHtmlResultImpl context) {
+            if (context.getViolationCount() >= maxViolations) {
+                throw new ViolationLimitReachedException();
+            }
+        }
+    }
+
+    /**
+     * Thrown to interrupt the sanitizer, never propagated outside of this class.
+     */
+    private static final class ViolationLimitReachedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private ViolationLimitReachedException() {
+            // no message nor stack trace, only used for control flow
+            super(null, null, false, false);
         }
-        // post process the sanitized HTML to replace the Jahia rich text editors placeholders
-        // todo make this configurable/extendable ?
-        String result = sanitizedHtml.replace("%7bmode%7d", "{mode}");
-        result = result.replace("%7blang%7d", "{lang}");
-        return result.replace("%7bworkspace%7d", "{workspace}");
     }
 }
@@ -20,12 +20,16 @@ import org.apache.commons.lang3.StringUtils;
 import org.jahia.modules.htmlfiltering.Policy;
 import org.jahia.modules.htmlfiltering.PolicyResolver;
 import org.jahia.modules.htmlfiltering.Strategy;
+import org.jahia.modules.htmlfiltering.engine.SanitizerEngine;
 import org.jahia.modules.htmlfiltering.impl.config.GlobalAbstractConfig;
 import org.jahia.modules.htmlfiltering.impl.config.Config;
 import org.osgi.service.cm.ConfigurationException;
 import org.osgi.service.cm.ManagedServiceFactory;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,19 +58,70 @@ public final class PolicyResolverImpl implements PolicyResolver, ManagedServiceF
      */
     private final Map<String, String> sitesByPid = Collections.synchronizedMap(new HashMap<>());
 
+    /**
+     * Maps persistent identities (PIDs) to their properties, to build the configurations again when an engine they select is
+     * registered or unregistered.
+     */
+    private final Map<String, Dictionary<String, ?>> propertiesByPid = Collections.synchronizedMap(new HashMap<>());
+
     @Reference(target = "(service.pid=org.jahia.modules.htmlfiltering.global.custom)")
     private GlobalAbstractConfig globalCustomConfig;
 
     @Reference(target = "(service.pid=org.jahia.modules.htmlfiltering.global.default)")
     private GlobalAbstractConfig globalDefaultConfig;
 
+    @Reference(cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC, unbind = "unbindSanitizerEngine")
+    public void bindSanitizerEngine(SanitizerEngine engine) {
+        SanitizerEngines.register(engine);
+        rebuildConfigs(engine.getName());
+    }
+
+    public void unbindSanitizerEngine(SanitizerEngine engine) {
+        SanitizerEngines.unregister(engine);
+        rebuildConfigs(engine.getName());
+    }
+
+    /**
+     * Builds the configurations selecting the given engine again, so that the policies compiled while the engine was missing use
+     * it, and the ones compiled with it no longer do once it is gone.
+     */
+    private synchronized void rebuildConfigs(String engineName) {
+        Map<String, Dictionary<String, ?>> properties;
+        synchronized (propertiesByPid) {
+            properties = new HashMap<>(propertiesByPid);
+        }
+        properties.forEach((pid, pidProperties) -> {
+            Config config = configsPerSiteKey.get(sitesByPid.get(pid));
+            if (config != null && config.selectsEngine(engineName)) {
+                try {
+                    updated(pid, pidProperties);
+                } catch (ConfigurationException e) {
+                    logger.error("Unable to rebuild the html filtering configuration (pid: {})", pid, e);
+                }
+            }
+        });
+        // the global configurations may not be bound yet when the engines are
+        if (globalCustomConfig != null) {
+            globalCustomConfig.engineChanged(engineName);
+        }
+        if (globalDefaultConfig != null) {
+            globalDefaultConfig.engineChanged(engineName);
+        }
+    }
+
+    @Deactivate
+    public void stop() {
+        // the policies are not used anymore, neither are the threads sanitizing their batches and their asynchronous sanitizations
+        SanitizeExecutors.shutdown();
+    }
+
     @Override
     public String getName() {
         return "HTML Filtering Registry Service";
     }
 
     @Override
-    public void updated(String pid, Dictionary<String, ?> properties) throws ConfigurationException {
+    public synchronized void updated(String pid, Dictionary<String, ?> properties) throws ConfigurationException {
         // extracting the site key from the configuration filename
         Object configurationPath = properties.get("felix.fileinstall.filename");
         if (configurationPath == null) {
@@ -85,14 +140,22 @@ public final class PolicyResolverImpl implements PolicyResolver, ManagedServiceF
         }
 
         // update the maps
-        configsPerSiteKey.put(siteKey, config);
+        Config previousConfig = configsPerSiteKey.put(siteKey, config);
         sitesByPid.put(pid, siteKey);
+        propertiesByPid.put(pid, properties);
+        if (previousConfig != null) {
+            previousConfig.logStats(logger, siteKey);
+        }
     }
 
     @Override
-    public void deleted(String pid) {
+    public synchronized void deleted(String pid) {
         String siteKey = sitesByPid.remove(pid);
-        configsPerSiteKey.remove(siteKey);
+        propertiesByPid.remove(pid);
+        Config previousConfig = configsPerSiteKey.remove(siteKey);
+        if (previousConfig != null) {
+            previousConfig.logStats(logger, siteKey);
+        }
 
         logger.info("html-filtering config for {} (pid: {}) deleted.", siteKey, pid);
     }
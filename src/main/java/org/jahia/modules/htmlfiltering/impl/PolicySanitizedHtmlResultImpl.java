@@ -1,24 +1,89 @@
 package org.jahia.modules.htmlfiltering.impl;
 
 import org.jahia.modules.htmlfiltering.PolicySanitizedHtmlResult;
+import org.jahia.modules.htmlfiltering.SanitizeLimit;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
 class PolicySanitizedHtmlResultImpl implements PolicySanitizedHtmlResult {
-    private final Set<String> rejectedTags = new HashSet<>();
-    private final Map<String, Set<String>> rejectedAttributesByTag = new HashMap<>();
+    /**
+     * The tag/attribute names known by the policy, used to share a single instance of the rejected names.
+     */
+    private final Map<String, String> knownNames;
+    // allocated on the first rejection only, most results have none
+    private Set<String> rejectedTags = Collections.emptySet();
+    private Map<String, Set<String>> rejectedAttributesByTag = Collections.emptyMap();
     private String sanitizedHtml;
+    private boolean changed;
+    private int violationCount;
+    private SanitizeLimit exceededLimit;
+
+    PolicySanitizedHtmlResultImpl() {
+        this(Collections.emptyMap());
+    }
+
+    /**
+     * @param knownNames the tag/attribute names known by the policy, each one mapped to itself
+     */
+    PolicySanitizedHtmlResultImpl(Map<String, String> knownNames) {
+        this.knownNames = knownNames;
+    }
+
+    private PolicySanitizedHtmlResultImpl(String sanitizedHtml, boolean changed, SanitizeLimit exceededLimit, Set<String> rejectedTags,
+                                          Map<String, Set<String>> rejectedAttributesByTag) {
+        this.knownNames = Collections.emptyMap();
+        this.sanitizedHtml = sanitizedHtml;
+        this.changed = changed;
+        this.exceededLimit = exceededLimit;
+        this.rejectedTags = rejectedTags;
+        this.rejectedAttributesByTag = rejectedAttributesByTag;
+    }
+
+    /**
+     * @return an unmodifiable copy of this result, that can safely be shared between callers
+     */
+    PolicySanitizedHtmlResultImpl toImmutable() {
+        if (rejectedTags.isEmpty() && rejectedAttributesByTag.isEmpty()) {
+            return new PolicySanitizedHtmlResultImpl(sanitizedHtml, changed, exceededLimit, Collections.emptySet(), Collections.emptyMap());
+        }
+        Map<String, Set<String>> attributesByTag = new HashMap<>();
+        rejectedAttributesByTag.forEach((tag, attributes) -> attributesByTag.put(tag, Collections.unmodifiableSet(new HashSet<>(attributes))));
+        return new PolicySanitizedHtmlResultImpl(sanitizedHtml, changed, exceededLimit, Collections.unmodifiableSet(new HashSet<>(rejectedTags)),
+                Collections.unmodifiableMap(attributesByTag));
+    }
 
     public void addRejectedTag(String tag) {
-        rejectedTags.add(tag);
+        if (rejectedTags.isEmpty()) {
+            rejectedTags = new HashSet<>();
+        }
+        if (rejectedTags.add(canonicalName(tag))) {
+            violationCount++;
+        }
+    }
+
+    /**
+     * @return the number of distinct rejected tags and distinct rejected attributes of a tag
+     */
+    int getViolationCount() {
+        return violationCount;
     }
 
     @Override
     public boolean isValid() {
-        return rejectedTags.isEmpty() && rejectedAttributesByTag.isEmpty();
+        return rejectedTags.isEmpty() && rejectedAttributesByTag.isEmpty() && exceededLimit == null;
+    }
+
+    @Override
+    public SanitizeLimit getExceededLimit() {
+        return exceededLimit;
+    }
+
+    void setExceededLimit(SanitizeLimit exceededLimit) {
+        this.exceededLimit = exceededLimit;
     }
 
     @Override
@@ -31,16 +96,32 @@ class PolicySanitizedHtmlResultImpl implements PolicySanitizedHtmlResult {
         return rejectedTags;
     }
 
-    void addRejectedAttributeByTag(String tag, Set<String> attributes) {
+    void addRejectedAttributesByTag(String tag, String... attributes) {
+        if (rejectedAttributesByTag.isEmpty()) {
+            rejectedAttributesByTag = new HashMap<>();
+        }
         // merge the attributes with the existing ones for that tag (if any)
-        rejectedAttributesByTag.compute(tag, (k, existingAttributes) -> {
-            if (existingAttributes == null) {
-                return attributes;
-            } else {
-                existingAttributes.addAll(attributes);
-                return existingAttributes;
+        Set<String> tagAttributes = rejectedAttributesByTag.computeIfAbsent(canonicalName(tag), k -> new HashSet<>());
+        for (String attribute : attributes) {
+            if (tagAttributes.add(canonicalName(attribute))) {
+                violationCount++;
             }
-        });
+        }
+    }
+
+    /**
+     * Adds the tags and attributes rejected in another result, e.g. the one of a chunk of the same HTML content.
+     */
+    void addRejections(PolicySanitizedHtmlResult other) {
+        other.getRejectedTags().forEach(this::addRejectedTag);
+        other.getRejectedAttributesByTag().forEach((tag, attributes) -> addRejectedAttributesByTag(tag, attributes.toArray(new String[0])));
+    }
+
+    /**
+     * @return the instance of the name known by the policy, to avoid retaining the copies created by the sanitizer for each event
+     */
+    private String canonicalName(String name) {
+        return knownNames.getOrDefault(name, name);
     }
 
     @Override
@@ -51,4 +132,13 @@ class PolicySanitizedHtmlResultImpl implements PolicySanitizedHtmlResult {
     public void setSanitizedHtml(String sanitizedHtml) {
         this.sanitizedHtml = sanitizedHtml;
     }
+
+    @Override
+    public boolean isChanged() {
+        return changed;
+    }
+
+    void setChanged(boolean changed) {
+        this.changed = changed;
+    }
 }
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Holds the fork-join pool used to sanitize large batches of HTML contents in parallel, and the executor of the asynchronous
+ * sanitizations.
+ * <p>
+ * The pool is dedicated to the module, rather than the common pool, so that its size is bounded and it does not compete with
+ * other users of the common pool. The asynchronous sanitizations run on a separate executor, bounded both by a number of threads
+ * and by a number of pending sanitizations, so that large jobs cannot exhaust the threads of the callers nor the memory. Both are
+ * created on first use and shut down when the module stops.
+ */
+final class SanitizeExecutors {
+
+    private static final Logger logger = LoggerFactory.getLogger(SanitizeExecutors.class);
+    private static final String THREAD_NAME_PREFIX = "html-filtering-sanitizer-";
+    private static final String ASYNC_THREAD_NAME_PREFIX = "html-filtering-async-";
+    /**
+     * Default number of asynchronous sanitizations running at the same time.
+     */
+    static final int DEFAULT_ASYNC_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    /**
+     * Default number of asynchronous sanitizations waiting for a thread, beyond which the new ones are rejected.
+     */
+    static final int DEFAULT_ASYNC_QUEUE_CAPACITY = 1000;
+    private static final long ASYNC_KEEP_ALIVE_SECONDS = 60;
+
+    private static ForkJoinPool pool;
+    private static ThreadPoolExecutor asyncExecutor;
+    private static int asyncThreads = DEFAULT_ASYNC_THREADS;
+    private static int asyncQueueCapacity = DEFAULT_ASYNC_QUEUE_CAPACITY;
+
+    private SanitizeExecutors() {
+    }
+
+    /**
+     * Applies the given function to each item in parallel.
+     *
+     * @param items    the items to process
+     * @param function the function to apply, must be thread-safe
+     * @return the results of the function, in the order of the items
+     */
+    static <T, R> List<R> invokeAll(List<T> items, Function<? super T, ? extends R> function) {
+        ForkJoinPool executor = getPool();
+        List<ForkJoinTask<? extends R>> tasks = new ArrayList<>(items.size());
+        for (T item : items) {
+            tasks.add(executor.submit(() -> function.apply(item)));
+        }
+        List<R> results = new ArrayList<>(items.size());
+        for (ForkJoinTask<? extends R> task : tasks) {
+            // rethrows the exception of the function, if any
+            results.add(task.join());
+        }
+        return results;
+    }
+
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null || pool.isShutdown()) {
+            // leave at least half of the processors to the other requests
+            int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+            pool = new ForkJoinPool(parallelism, SanitizeExecutors::newThread, null, false);
+            logger.debug("Created the sanitizer pool with a parallelism of {}", parallelism);
+        }
+        return pool;
+    }
+
+    private static ForkJoinWorkerThread newThread(ForkJoinPool forkJoinPool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+        thread.setName(THREAD_NAME_PREFIX + thread.getPoolIndex());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Runs the given supplier on the executor of the asynchronous sanitizations.
+     * <p>
+     * If the executor is saturated, the future is completed exceptionally with a {@link RejectedExecutionException} right away.
+     * If the future is cancelled before the supplier is started, the supplier is not run.
+     *
+     * @param supplier the supplier to run, must be thread-safe
+     * @return the future completed with the result of the supplier, or with the exception it throws
+     */
+    static <R> CompletableFuture<R> supplyAsync(Supplier<? extends R> supplier) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        Runnable task = () -> {
+            if (future.isDone()) {
+                // cancelled while waiting for a thread
+                return;
+            }
+            try {
+                future.complete(supplier.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        };
+        ThreadPoolExecutor executor = getAsyncExecutor();
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            logger.debug("Asynchronous sanitization rejected, {} sanitizations are already pending", executor.getQueue().size());
+            future.completeExceptionally(e);
+            return future;
+        }
+        // frees the place of a cancelled sanitization in the queue right away
+        future.whenComplete((result, e) -> {
+            if (future.isCancelled()) {
+                executor.remove(task);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Sets the bounds of the executor of the asynchronous sanitizations. The sanitizations already submitted complete on the
+     * previous executor, the new ones run on an executor with the given bounds.
+     *
+     * @param threads       the maximum number of asynchronous sanitizations running at the same time
+     * @param queueCapacity the maximum number of asynchronous sanitizations waiting for a thread
+     */
+    static synchronized void configureAsync(int threads, int queueCapacity) {
+        SanitizeExecutors.asyncThreads = threads;
+        SanitizeExecutors.asyncQueueCapacity = queueCapacity;
+        shutdownAsync();
+    }
+
+    private static synchronized ThreadPoolExecutor getAsyncExecutor() {
+        if (asyncExecutor == null || asyncExecutor.isShutdown()) {
+            asyncExecutor = new ThreadPoolExecutor(asyncThreads, asyncThreads, ASYNC_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(asyncQueueCapacity), asyncThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+            asyncExecutor.allowCoreThreadTimeOut(true);
+            logger.debug("Created the asynchronous sanitizer executor with {} threads and a queue of {} sanitizations", asyncThreads,
+                    asyncQueueCapacity);
+        }
+        return asyncExecutor;
+    }
+
+    private static ThreadFactory asyncThreadFactory() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, ASYNC_THREAD_NAME_PREFIX + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Shuts the pool and the executor of the asynchronous sanitizations down, if they were created. New ones are created if a
+     * batch or an asynchronous sanitization is submitted afterwards.
+     */
+    static synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+        shutdownAsync();
+    }
+
+    private static synchronized void shutdownAsync() {
+        if (asyncExecutor != null) {
+            // the pending sanitizations still complete
+            asyncExecutor.shutdown();
+            asyncExecutor = null;
+        }
+    }
+}
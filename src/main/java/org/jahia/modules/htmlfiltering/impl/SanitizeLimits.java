@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl;
+
+import org.jahia.modules.htmlfiltering.SanitizeLimit;
+import org.jahia.modules.htmlfiltering.engine.HtmlEventReceiver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The limits enforced by a policy on the HTML contents it processes, see {@link SanitizeLimit}.
+ * <p>
+ * The input length is checked before processing a content. The other limits are enforced on the events of the parsed content
+ * reported by the sanitizer engine, before they are filtered, so that the elements rejected by the policy are counted as well.
+ */
+final class SanitizeLimits {
+
+    static final SanitizeLimits NONE = new SanitizeLimits(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, 0);
+
+    /**
+     * Elements without content nor end tag, that never increase the nesting depth.
+     */
+    private static final Set<String> VOID_ELEMENTS = new HashSet<>(Arrays.asList(
+            "area", "base", "br", "col", "embed", "hr", "img", "input", "keygen", "link", "meta", "param", "source", "track", "wbr"));
+    /**
+     * Elements whose end tag may be omitted when followed by a sibling of the same kind, e.g. the items of a list.
+     */
+    private static final Set<String> OPTIONAL_END_TAG_ELEMENTS = new HashSet<>(Arrays.asList(
+            "dd", "dt", "li", "optgroup", "option", "p", "rp", "rt", "tbody", "td", "tfoot", "th", "thead", "tr"));
+
+    private final int maxInputLength;
+    private final int maxNestingDepth;
+    private final int maxElementCount;
+    /**
+     * <code>0</code> if the duration is not limited.
+     */
+    private final long maxDurationNanos;
+
+    SanitizeLimits(int maxInputLength, int maxNestingDepth, int maxElementCount, long maxDurationMillis) {
+        this.maxInputLength = maxInputLength;
+        this.maxNestingDepth = maxNestingDepth;
+        this.maxElementCount = maxElementCount;
+        this.maxDurationNanos = TimeUnit.MILLISECONDS.toNanos(maxDurationMillis);
+    }
+
+    int getMaxInputLength() {
+        return maxInputLength;
+    }
+
+    int getMaxNestingDepth() {
+        return maxNestingDepth;
+    }
+
+    int getMaxElementCount() {
+        return maxElementCount;
+    }
+
+    boolean isTooLong(String htmlText) {
+        return htmlText.length() > maxInputLength;
+    }
+
+    private boolean appliesToParsedContent() {
+        return maxNestingDepth != Integer.MAX_VALUE || maxElementCount != Integer.MAX_VALUE || maxDurationNanos != 0;
+    }
+
+    /**
+     * Creates the observer of the events of the parsed content of a single sanitization, interrupting it with a
+     * {@link LimitExceededException} as soon as one of the limits is exceeded.
+     *
+     * @return the observer, or <code>null</code> if none of the limits apply to the parsed content
+     */
+    HtmlEventReceiver observer() {
+        if (!appliesToParsedContent()) {
+            return null;
+        }
+        return new LimitObserver(System.nanoTime() + maxDurationNanos, null);
+    }
+
+    /**
+     * Creates the observers of the chunks of a single sanitization, sanitized in parallel (see {@link DocumentSplitter}): the
+     * elements of all the chunks are counted together and the deadline is the same for all of them, each chunk starting without
+     * any open element.
+     *
+     * @param count the number of chunks
+     * @return the observer of each chunk, or <code>null</code> if none of the limits apply to the parsed content
+     */
+    List<HtmlEventReceiver> observers(int count) {
+        if (!appliesToParsedContent()) {
+            return null;
+        }
+        long deadline = System.nanoTime() + maxDurationNanos;
+        AtomicInteger elementCount = new AtomicInteger();
+        List<HtmlEventReceiver> observers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            observers.add(new LimitObserver(deadline, elementCount));
+        }
+        return observers;
+    }
+
+    /**
+     * Counts the elements and tracks the open elements of a single sanitization, or of a chunk of it, checking the deadline on
+     * each event.
+     */
+    private final class LimitObserver implements HtmlEventReceiver {
+        private final long deadline;
+        /**
+         * The names of the open elements, only tracked when the nesting depth is limited.
+         */
+        private final List<String> openElements;
+        /**
+         * The element count shared with the observers of the other chunks, <code>null</code> if the content is not split.
+         */
+        private final AtomicInteger sharedElementCount;
+        private int elementCount;
+
+        private LimitObserver(long deadline, AtomicInteger sharedElementCount) {
+            this.deadline = deadline;
+            this.openElements = maxNestingDepth == Integer.MAX_VALUE ? null : new ArrayList<>();
+            this.sharedElementCount = sharedElementCount;
+        }
+
+        @Override
+        public void openDocument() {
+            // nothing to check
+        }
+
+        @Override
+        public void closeDocument() {
+            // nothing to check
+        }
+
+        @Override
+        public void openTag(String elementName, List<String> attrs) {
+            checkDeadline();
+            int count = sharedElementCount == null ? ++elementCount : sharedElementCount.incrementAndGet();
+            if (count > maxElementCount) {
+                throw new LimitExceededException(SanitizeLimit.ELEMENT_COUNT);
+            }
+            if (openElements != null && !VOID_ELEMENTS.contains(elementName)) {
+                int last = openElements.size() - 1;
+                if (last >= 0 && OPTIONAL_END_TAG_ELEMENTS.contains(elementName) && openElements.get(last).equals(elementName)) {
+                    // e.g. an item closing the previous item left open
+                    openElements.remove(last);
+                }
+                openElements.add(elementName);
+                if (openElements.size() > maxNestingDepth) {
+                    throw new LimitExceededException(SanitizeLimit.NESTING_DEPTH);
+                }
+            }
+        }
+
+        @Override
+        public void closeTag(String elementName) {
+            checkDeadline();
+            if (openElements != null) {
+                // also closes the elements left open inside it, an end tag without start tag is ignored
+                int index = openElements.lastIndexOf(elementName);
+                if (index >= 0) {
+                    openElements.subList(index, openElements.size()).clear();
+                }
+            }
+        }
+
+        @Override
+        public void text(String text) {
+            checkDeadline();
+        }
+
+        private void checkDeadline() {
+            if (maxDurationNanos != 0 && System.nanoTime() - deadline > 0) {
+                throw new LimitExceededException(SanitizeLimit.DURATION);
+            }
+        }
+    }
+
+    /**
+     * Interrupts the sanitizer once a limit is exceeded, never propagated outside of this package.
+     */
+    static final class LimitExceededException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        private final SanitizeLimit limit;
+
+        private LimitExceededException(SanitizeLimit limit) {
+            // no stack trace, only used for control flow
+            super(limit.name(), null, false, false);
+            this.limit = limit;
+        }
+
+        SanitizeLimit getLimit() {
+            return limit;
+        }
+    }
+}
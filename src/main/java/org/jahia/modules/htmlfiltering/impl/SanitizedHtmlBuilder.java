@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl;
+
+/**
+ * Collects the sanitized HTML and, optionally, detects whether it differs from the original HTML while it is written,
+ * which avoids comparing both strings once the sanitization is done.
+ * <p>
+ * The underlying buffer is reused by the next sanitizations of the same thread once {@link #build()} is called, unless it grew
+ * beyond {@link #MAX_RETAINED_CAPACITY}, so that a single large content does not stay in memory for the lifetime of the thread.
+ */
+final class SanitizedHtmlBuilder implements Appendable {
+
+    static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+    private static final ThreadLocal<StringBuilder> BUFFERS = new ThreadLocal<>();
+
+    private StringBuilder sanitizedHtml;
+    /**
+     * The original HTML to compare the sanitized HTML with, <code>null</code> if changes are not tracked.
+     */
+    private final String originalHtml;
+    private int length;
+    private boolean diverged;
+
+    /**
+     * @param originalHtml the original HTML
+     * @param trackChanges whether the sanitized HTML must be compared with the original HTML
+     */
+    SanitizedHtmlBuilder(String originalHtml, boolean trackChanges) {
+        // the sanitized HTML is usually about the size of the original one
+        this.sanitizedHtml = borrowBuffer(originalHtml.length());
+        this.originalHtml = trackChanges ? originalHtml : null;
+    }
+
+    private static StringBuilder borrowBuffer(int expectedLength) {
+        StringBuilder buffer = BUFFERS.get();
+        if (buffer == null || expectedLength > MAX_RETAINED_CAPACITY) {
+            return new StringBuilder(expectedLength);
+        }
+        // detached from the thread while in use, so that a nested sanitization gets its own buffer
+        BUFFERS.set(null);
+        buffer.ensureCapacity(expectedLength);
+        return buffer;
+    }
+
+    @Override
+    public SanitizedHtmlBuilder append(CharSequence csq) {
+        return append(csq, 0, csq.length());
+    }
+
+    @Override
+    public SanitizedHtmlBuilder append(CharSequence csq, int start, int end) {
+        if (originalHtml != null && !diverged) {
+            int count = end - start;
+            if (length + count > originalHtml.length()) {
+                diverged = true;
+            } else {
+                for (int i = 0; i < count && !diverged; i++) {
+                    diverged = csq.charAt(start + i) != originalHtml.charAt(length + i);
+                }
+            }
+        }
+        sanitizedHtml.append(csq, start, end);
+        length += end - start;
+        return this;
+    }
+
+    @Override
+    public SanitizedHtmlBuilder append(char c) {
+        if (originalHtml != null && !diverged) {
+            diverged = length >= originalHtml.length() || c != originalHtml.charAt(length);
+        }
+        sanitizedHtml.append(c);
+        length++;
+        return this;
+    }
+
+    /**
+     * @return <code>true</code> if the sanitized HTML differs from the original HTML, or if changes are not tracked
+     */
+    boolean isChanged() {
+        return originalHtml == null || diverged || length != originalHtml.length();
+    }
+
+    /**
+     * Returns the sanitized HTML and releases the underlying buffer, nothing can be appended afterwards.
+     *
+     * @return the sanitized HTML
+     */
+    String build() {
+        String result = sanitizedHtml.toString();
+        discard();
+        return result;
+    }
+
+    /**
+     * Releases the underlying buffer without building the sanitized HTML, e.g. when the sanitization is interrupted.
+     */
+    void discard() {
+        if (sanitizedHtml.capacity() <= MAX_RETAINED_CAPACITY) {
+            sanitizedHtml.setLength(0);
+            BUFFERS.set(sanitizedHtml);
+        }
+        sanitizedHtml = null;
+    }
+}
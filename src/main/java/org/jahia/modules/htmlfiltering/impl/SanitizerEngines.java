@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl;
+
+import org.jahia.modules.htmlfiltering.engine.SanitizerEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the {@link SanitizerEngine sanitizer engines} available to the configurations: the built-in ones, and the ones registered
+ * as OSGi services, tracked by the {@link PolicyResolverImpl}.
+ * <p>
+ * The engines are only looked up when a configuration is built: the {@link PolicyResolverImpl} builds the configurations
+ * selecting an engine again when it is registered or unregistered, the sanitizations already started with the previous policies
+ * complete with the engine they were compiled with.
+ */
+final class SanitizerEngines {
+
+    private static final Logger logger = LoggerFactory.getLogger(SanitizerEngines.class);
+
+    private static final Map<String, SanitizerEngine> engines = new ConcurrentHashMap<>();
+
+    private SanitizerEngines() {
+    }
+
+    /**
+     * Makes an engine available to the configurations built from now on.
+     */
+    static void register(SanitizerEngine engine) {
+        String name = engine.getName();
+        if (SanitizerEngine.DEFAULT_ENGINE.equals(name) || AllowlistSanitizerEngine.NAME.equals(name)) {
+            logger.warn("Ignoring the sanitizer engine {}, its name is the one of a built-in engine", engine.getClass().getName());
+            return;
+        }
+        SanitizerEngine previousEngine = engines.put(name, engine);
+        if (previousEngine != null) {
+            logger.warn("The sanitizer engine {} replaces another engine with the same name: {}", name, previousEngine.getClass().getName());
+        }
+        logger.info("Sanitizer engine {} registered", name);
+    }
+
+    /**
+     * Removes an engine from the configurations built from now on.
+     */
+    static void unregister(SanitizerEngine engine) {
+        if (engines.remove(engine.getName(), engine)) {
+            logger.info("Sanitizer engine {} unregistered", engine.getName());
+        }
+    }
+
+    /**
+     * @param name the name of an engine, <code>null</code> for the default one
+     * @return the engine, <code>null</code> if no engine of that name is registered
+     */
+    static SanitizerEngine get(String name) {
+        if (name == null || SanitizerEngine.DEFAULT_ENGINE.equals(name)) {
+            return OwaspSanitizerEngine.INSTANCE;
+        }
+        if (AllowlistSanitizerEngine.NAME.equals(name)) {
+            return AllowlistSanitizerEngine.INSTANCE;
+        }
+        return engines.get(name);
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl;
+
+import org.jahia.modules.htmlfiltering.impl.cache.BoundedCache;
+import org.jahia.modules.htmlfiltering.impl.cache.CacheStats;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Sanitizes the <code>style</code> attribute values declaration by declaration, keeping only the allowed CSS properties whose
+ * value matches their format.
+ * <p>
+ * The values are split on the semicolons that are not within quotes or parentheses, and the comments are removed. The values
+ * that could load resources or run scripts (<code>url(...)</code>, <code>expression(...)</code>, escapes, etc.) are always
+ * removed, whatever their format. The kept declarations are written in a normalized form, e.g. <code>color:red;margin:0</code>.
+ * <p>
+ * Pasted content usually repeats the same long style values many times, so the sanitized values are optionally memoized. The
+ * cache is bound to its policy: when the configuration is updated, a new policy is built and the cache is dropped with the
+ * previous one.
+ */
+final class StyleFilter {
+
+    static final String STYLE_ATTRIBUTE = "style";
+    /**
+     * The approximate number of bytes retained by a cache entry besides the characters of its key and value.
+     */
+    private static final int ENTRY_OVERHEAD = 96;
+    private static final String IMPORTANT = "important";
+    private static final String[] UNSAFE_TOKENS = {"url(", "image(", "image-set(", "element(", "expression(", "javascript:",
+            "-moz-binding"};
+
+    private final Map<String, Predicate<String>> formatsByProperty;
+    private final BoundedCache<String, SanitizedStyle> cache;
+
+    /**
+     * @param formatsByProperty the matchers of the values allowed for each CSS property, keyed by lower case property name
+     */
+    StyleFilter(Map<String, Predicate<String>> formatsByProperty) {
+        this.formatsByProperty = formatsByProperty;
+        this.cache = null;
+    }
+
+    /**
+     * @param formatsByProperty the matchers of the values allowed for each CSS property, keyed by lower case property name
+     * @param maxEntries        the maximum number of sanitized values kept
+     * @param maxBytes          the approximate maximum memory used by the sanitized values kept
+     */
+    StyleFilter(Map<String, Predicate<String>> formatsByProperty, int maxEntries, long maxBytes) {
+        this.formatsByProperty = formatsByProperty;
+        this.cache = new BoundedCache<>(maxEntries, maxBytes, sanitizedStyle -> sanitizedStyle.weight);
+    }
+
+    /**
+     * @param style a <code>style</code> attribute value
+     * @return the allowed declarations of the value, <code>null</code> if there are none
+     */
+    String filter(String style) {
+        if (cache == null) {
+            return sanitize(style);
+        }
+        SanitizedStyle sanitizedStyle = cache.get(style);
+        if (sanitizedStyle == null) {
+            String sanitized = sanitize(style);
+            long weight = ENTRY_OVERHEAD + 2L * (style.length() + (sanitized == null ? 0 : sanitized.length()));
+            sanitizedStyle = new SanitizedStyle(sanitized, weight);
+            cache.put(style, sanitizedStyle);
+        }
+        return sanitizedStyle.style;
+    }
+
+    /**
+     * @return the statistics of the cache of this filter, or <code>null</code> if it has no cache
+     */
+    CacheStats stats() {
+        return cache == null ? null : cache.stats();
+    }
+
+    private String sanitize(String style) {
+        StringBuilder sanitized = new StringBuilder(style.length());
+        StringBuilder declaration = new StringBuilder();
+        char quote = 0;
+        int depth = 0;
+        int length = style.length();
+        for (int i = 0; i < length; i++) {
+            char c = style.charAt(i);
+            if (quote != 0) {
+                declaration.append(c);
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '/' && i + 1 < length && style.charAt(i + 1) == '*') {
+                // an unterminated comment runs until the end of the value
+                int end = style.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 1;
+                declaration.append(' ');
+            } else if (c == ';' && depth == 0) {
+                appendDeclaration(sanitized, declaration);
+                declaration.setLength(0);
+            } else {
+                if (c == '"' || c == '\'') {
+                    quote = c;
+                } else if (c == '(') {
+                    depth++;
+                } else if (c == ')') {
+                    depth = Math.max(0, depth - 1);
+                }
+                declaration.append(c);
+            }
+        }
+        // the last declaration is dropped if a quote or a parenthesis is left open
+        if (quote == 0 && depth == 0) {
+            appendDeclaration(sanitized, declaration);
+        }
+        return sanitized.length() == 0 ? null : sanitized.toString();
+    }
+
+    private void appendDeclaration(StringBuilder sanitized, CharSequence declaration) {
+        String text = declaration.toString();
+        int colon = text.indexOf(':');
+        if (colon < 0) {
+            return;
+        }
+        String property = text.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+        Predicate<String> format = formatsByProperty.get(property);
+        if (format == null) {
+            return;
+        }
+        String value = text.substring(colon + 1).trim();
+        boolean important = false;
+        int bang = value.lastIndexOf('!');
+        if (bang >= 0 && IMPORTANT.equalsIgnoreCase(value.substring(bang + 1).trim())) {
+            important = true;
+            value = value.substring(0, bang).trim();
+        }
+        if (value.isEmpty() || !isSafe(value) || !format.test(value)) {
+            return;
+        }
+        if (sanitized.length() > 0) {
+            sanitized.append(';');
+        }
+        sanitized.append(property).append(':').append(value);
+        if (important) {
+            sanitized.append(" !important");
+        }
+    }
+
+    private static boolean isSafe(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            // escapes could hide any of the unsafe tokens, the other characters are not expected in a property value
+            if (c == '\\' || c == '<' || c == '>' || c == '{' || c == '}' || c == '@' || c == '!'
+                    || (c < ' ' && c != '\t' && c != '\n' && c != '\r' && c != '\f')) {
+                return false;
+            }
+        }
+        String lowerCaseValue = value.toLowerCase(Locale.ROOT);
+        for (String unsafeToken : UNSAFE_TOKENS) {
+            if (lowerCaseValue.contains(unsafeToken)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class SanitizedStyle {
+        /**
+         * The allowed declarations of the value, <code>null</code> if there are none.
+         */
+        private final String style;
+        private final long weight;
+
+        private SanitizedStyle(String style, long weight) {
+            this.style = style;
+            this.weight = weight;
+        }
+    }
+}
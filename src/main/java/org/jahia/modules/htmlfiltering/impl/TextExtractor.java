@@ -0,0 +1,341 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl;
+
+import org.jahia.modules.htmlfiltering.Strategy;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Single-pass tokenizer extracting the text of an HTML content, for the policies of the {@link Strategy#STRIP} strategy.
+ * <p>
+ * Unlike the OWASP sanitizer, it builds neither a tree nor any event: the tags, comments and doctypes are skipped, along with the
+ * content of the elements that are not displayed as text (<code>script</code>, <code>style</code>, <code>title</code>, etc.).
+ * The text is written as is, except that:
+ * <ul>
+ *     <li>the <code>&lt;</code>, <code>&gt;</code> and the <code>&amp;</code> not starting a character reference are encoded, so
+ *     that the text can never be interpreted as markup, along with the other characters encoded by the OWASP sanitizer in its text
+ *     output (<code>"</code>, <code>'</code>, <code>`</code>, <code>=</code>, <code>@</code>, <code>+</code> and
+ *     <code>{</code>), so that both strategies produce the same encoding;</li>
+ *     <li>the control characters (other than tabs and line breaks), lone surrogates and non-characters are removed;</li>
+ *     <li>a space is inserted where a block element or a line break separated two words.</li>
+ * </ul>
+ */
+final class TextExtractor {
+
+    /**
+     * The elements whose content is not text displayed to the users, skipped up to their closing tag.
+     */
+    private static final Set<String> SKIPPED_CONTENT_ELEMENTS = new HashSet<>(Arrays.asList(
+            "iframe", "noembed", "noframes", "noscript", "plaintext", "script", "style", "textarea", "title", "xmp"));
+    /**
+     * The elements separating the words of the text before and after them.
+     */
+    private static final Set<String> SEPARATING_ELEMENTS = new HashSet<>(Arrays.asList(
+            "address", "article", "aside", "blockquote", "br", "caption", "dd", "div", "dl", "dt", "figcaption", "figure", "footer",
+            "h1", "h2", "h3", "h4", "h5", "h6", "header", "hr", "li", "main", "nav", "ol", "p", "pre", "section", "table", "td", "th",
+            "tr", "ul"));
+    private static final int MAX_NAMED_REFERENCE_LENGTH = 32;
+
+    private TextExtractor() {
+    }
+
+    /**
+     * @param html         the HTML content, must not be <code>null</code>
+     * @param rejectedTags notified of the name (lowercase) of each opening tag removed, <code>null</code> if not needed
+     * @return the text of the HTML content, the same instance if it has no markup nor character to encode or remove
+     */
+    static String extract(String html, Consumer<String> rejectedTags) {
+        int length = html.length();
+        int i = 0;
+        while (i < length && !needsProcessing(html.charAt(i))) {
+            i++;
+        }
+        if (i == length) {
+            // plain text, nothing to extract
+            return html;
+        }
+        StringBuilder text = new StringBuilder(length);
+        text.append(html, 0, i);
+        boolean separated = false;
+        while (i < length) {
+            char c = html.charAt(i);
+            if (c == '<' && i + 1 < length) {
+                int end = skipMarkup(html, i, rejectedTags);
+                if (end >= 0) {
+                    if (end > 0) {
+                        separated |= isSeparatingTag(html, i);
+                        i = end;
+                    } else {
+                        i = length;
+                    }
+                    continue;
+                }
+            }
+            if (separated) {
+                if (text.length() > 0 && !isWhitespace(text.charAt(text.length() - 1)) && !isWhitespace(c)) {
+                    text.append(' ');
+                }
+                separated = false;
+            }
+            String encoded = encode(c);
+            if (encoded != null) {
+                text.append(encoded);
+            } else if (c == '&') {
+                int referenceEnd = skipCharacterReference(html, i);
+                if (referenceEnd < 0) {
+                    text.append("&amp;");
+                } else {
+                    text.append(html, i, referenceEnd);
+                    i = referenceEnd;
+                    continue;
+                }
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(html.charAt(i + 1))) {
+                text.append(c).append(html.charAt(++i));
+            } else if (isAllowed(c)) {
+                text.append(c);
+            }
+            i++;
+        }
+        return html.contentEquals(text) ? html : text.toString();
+    }
+
+    /**
+     * Skips the tag, comment or doctype starting at the given <code>&lt;</code>, and the content of the element it opens if that
+     * content is not text.
+     *
+     * @return the index after the markup, <code>0</code> if the markup is not terminated (the rest of the content is then skipped),
+     * or <code>-1</code> if the <code>&lt;</code> does not start any markup and is part of the text
+     */
+    private static int skipMarkup(String html, int start, Consumer<String> rejectedTags) {
+        char next = html.charAt(start + 1);
+        if (next == '!') {
+            if (html.startsWith("!--", start + 1)) {
+                // the comments may be abruptly closed, e.g. <!--> or <!--->
+                int contentStart = start + 4;
+                if (html.startsWith(">", contentStart)) {
+                    return contentStart + 1;
+                }
+                if (html.startsWith("->", contentStart)) {
+                    return contentStart + 2;
+                }
+                int end = html.indexOf("-->", contentStart);
+                return end < 0 ? 0 : end + 3;
+            }
+            return skipBogusComment(html, start + 2);
+        }
+        if (next == '?') {
+            return skipBogusComment(html, start + 2);
+        }
+        if (next == '/') {
+            if (start + 2 == html.length()) {
+                return -1;
+            }
+            if (!isAsciiLetter(html.charAt(start + 2))) {
+                // "</>" is ignored, any other closing tag without a name is a comment
+                return html.charAt(start + 2) == '>' ? start + 3 : skipBogusComment(html, start + 2);
+            }
+            return skipTag(html, nameEnd(html, start + 2));
+        }
+        if (!isAsciiLetter(next)) {
+            return -1;
+        }
+        int nameEnd = nameEnd(html, start + 1);
+        String name = html.substring(start + 1, nameEnd).toLowerCase(Locale.ROOT);
+        if (rejectedTags != null) {
+            rejectedTags.accept(name);
+        }
+        int end = skipTag(html, nameEnd);
+        if (end > 0 && SKIPPED_CONTENT_ELEMENTS.contains(name)) {
+            return skipContent(html, end, name);
+        }
+        return end;
+    }
+
+    /**
+     * Skips the attributes of a tag, the quoted values possibly containing <code>&gt;</code>.
+     *
+     * @return the index after the end of the tag, <code>0</code> if the tag is not terminated
+     */
+    private static int skipTag(String html, int start) {
+        int length = html.length();
+        boolean afterEquals = false;
+        for (int i = start; i < length; i++) {
+            char c = html.charAt(i);
+            if (c == '>') {
+                return i + 1;
+            }
+            if (afterEquals && (c == '"' || c == '\'')) {
+                int end = html.indexOf(c, i + 1);
+                if (end < 0) {
+                    return 0;
+                }
+                i = end;
+                afterEquals = false;
+            } else if (c == '=') {
+                afterEquals = true;
+            } else if (!isWhitespace(c)) {
+                afterEquals = false;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Skips the content of an element up to its closing tag, included.
+     *
+     * @return the index after the closing tag, <code>0</code> if the element is not closed
+     */
+    private static int skipContent(String html, int start, String name) {
+        if ("plaintext".equals(name)) {
+            // never closed
+            return 0;
+        }
+        int i = start;
+        while ((i = html.indexOf("</", i)) >= 0) {
+            int nameEnd = i + 2 + name.length();
+            if (html.regionMatches(true, i + 2, name, 0, name.length())
+                    && (nameEnd == html.length() || isWhitespace(html.charAt(nameEnd)) || html.charAt(nameEnd) == '/'
+                    || html.charAt(nameEnd) == '>')) {
+                return skipTag(html, nameEnd);
+            }
+            i += 2;
+        }
+        return 0;
+    }
+
+    /**
+     * @return the index after the next <code>&gt;</code>, <code>0</code> if there is none
+     */
+    private static int skipBogusComment(String html, int start) {
+        int end = html.indexOf('>', start);
+        return end < 0 ? 0 : end + 1;
+    }
+
+    /**
+     * @return the index after the character reference starting at the given <code>&amp;</code>, <code>-1</code> if it does not
+     * start a well-formed one
+     */
+    private static int skipCharacterReference(String html, int start) {
+        int length = html.length();
+        int i = start + 1;
+        int maxEnd;
+        if (i < length && html.charAt(i) == '#') {
+            i++;
+            boolean hexadecimal = i < length && (html.charAt(i) == 'x' || html.charAt(i) == 'X');
+            if (hexadecimal) {
+                i++;
+            }
+            int digitsStart = i;
+            maxEnd = i + (hexadecimal ? 6 : 7);
+            while (i < length && i < maxEnd && (hexadecimal ? Character.digit(html.charAt(i), 16) >= 0 : isAsciiDigit(html.charAt(i)))) {
+                i++;
+            }
+            if (i == digitsStart) {
+                return -1;
+            }
+        } else {
+            if (i == length || !isAsciiLetter(html.charAt(i))) {
+                return -1;
+            }
+            maxEnd = i + MAX_NAMED_REFERENCE_LENGTH;
+            while (i < length && i < maxEnd && (isAsciiLetter(html.charAt(i)) || isAsciiDigit(html.charAt(i)))) {
+                i++;
+            }
+        }
+        return i < length && html.charAt(i) == ';' ? i + 1 : -1;
+    }
+
+    private static boolean isSeparatingTag(String html, int start) {
+        int nameStart = html.charAt(start + 1) == '/' ? start + 2 : start + 1;
+        if (nameStart == html.length() || !isAsciiLetter(html.charAt(nameStart))) {
+            return false;
+        }
+        return SEPARATING_ELEMENTS.contains(html.substring(nameStart, nameEnd(html, nameStart)).toLowerCase(Locale.ROOT));
+    }
+
+    private static int nameEnd(String html, int start) {
+        int i = start;
+        while (i < html.length()) {
+            char c = html.charAt(i);
+            if (c == '>' || c == '/' || isWhitespace(c)) {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean needsProcessing(char c) {
+        return c == '&' || encode(c) != null || !isAllowed(c);
+    }
+
+    /**
+     * @return the character reference written instead of the given character, <code>null</code> if it is written as is (or, for
+     * the <code>&amp;</code>, if it depends on what follows)
+     */
+    private static String encode(char c) {
+        switch (c) {
+            case '<':
+                return "&lt;";
+            case '>':
+                return "&gt;";
+            case '"':
+                return "&#34;";
+            case '\'':
+                return "&#39;";
+            case '`':
+                return "&#96;";
+            case '=':
+                return "&#61;";
+            case '@':
+                return "&#64;";
+            case '+':
+                return "&#43;";
+            case '{':
+                return "&#123;";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return <code>false</code> for the control characters other than tabs and line breaks, the surrogates (the valid pairs are
+     * handled separately) and the non-characters
+     */
+    private static boolean isAllowed(char c) {
+        if (c < 0x20) {
+            return c == '\t' || c == '\n' || c == '\r';
+        }
+        return c != 0x7F && !Character.isSurrogate(c) && c != 0xFFFE && c != 0xFFFF;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * A thread-safe cache bounded both by a number of entries and by a total weight, using the W-TinyLFU eviction policy.
+ * <p>
+ * New entries first go to a small LRU window. When they leave the window, they are only admitted to the main segment if
+ * they have been accessed more often recently than the entry they would evict, as estimated by a {@link FrequencySketch}.
+ * The main segment is itself split into a probation and a protected area, entries accessed while in probation being promoted
+ * to the protected area. This way, a burst of entries used once cannot flush the entries that are frequently used.
+ * <p>
+ * Likewise, a new entry that does not fit in the remaining weight is only added if it has been accessed more often recently than
+ * all the entries it would evict together, so that a single very heavy entry cannot flush them either.
+ * <p>
+ * Values heavier than the maximum weight of the cache are never cached.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public final class BoundedCache<K, V> {
+
+    private static final double WINDOW_RATIO = 0.01;
+    private static final double PROTECTED_RATIO = 0.8;
+
+    private final int maxEntries;
+    private final long maxWeight;
+    private final int maxWindowEntries;
+    private final int maxProtectedEntries;
+    private final ToLongFunction<V> weigher;
+    private final FrequencySketch sketch;
+    private final LinkedHashMap<K, Entry<V>> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, Entry<V>> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, Entry<V>> protectedArea = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private long rejectionCount;
+
+    /**
+     * @param maxEntries the maximum number of entries in the cache
+     * @param maxWeight  the maximum total weight of the entries in the cache
+     * @param weigher    the function computing the weight of a value
+     */
+    public BoundedCache(int maxEntries, long maxWeight, ToLongFunction<V> weigher) {
+        if (maxEntries <= 0 || maxWeight <= 0) {
+            throw new IllegalArgumentException("The maximum number of entries and the maximum weight must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.maxWindowEntries = Math.max(1, (int) (maxEntries * WINDOW_RATIO));
+        this.maxProtectedEntries = (int) ((maxEntries - maxWindowEntries) * PROTECTED_RATIO);
+        this.weigher = weigher;
+        this.sketch = new FrequencySketch(maxEntries);
+    }
+
+    /**
+     * Returns the value associated with the given key, recording the access.
+     *
+     * @param key the key to look up
+     * @return the cached value, or <code>null</code> if the key is not in the cache
+     */
+    public synchronized V get(K key) {
+        sketch.increment(key);
+        Entry<V> entry = window.get(key);
+        if (entry == null) {
+            entry = protectedArea.get(key);
+        }
+        if (entry == null) {
+            entry = probation.remove(key);
+            if (entry != null) {
+                promote(key, entry);
+            }
+        }
+        if (entry == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return entry.value;
+    }
+
+    /**
+     * Associates the given value with the given key, evicting other entries if needed to respect the bounds of the cache.
+     *
+     * @param key   the key
+     * @param value the value, must not be <code>null</code>
+     */
+    public synchronized void put(K key, V value) {
+        sketch.increment(key);
+        long valueWeight = weigher.applyAsLong(value);
+        Entry<V> existing = remove(key);
+        if (existing != null) {
+            weight -= existing.weight;
+        }
+        if (valueWeight > maxWeight) {
+            rejectionCount++;
+            return;
+        }
+        if (!makeRoom(key, valueWeight)) {
+            // not worth the entries it would evict
+            evictionCount++;
+            return;
+        }
+        window.put(key, new Entry<>(value, valueWeight));
+        weight += valueWeight;
+        evict();
+    }
+
+    /**
+     * @return a snapshot of the statistics of this cache
+     */
+    public synchronized CacheStats stats() {
+        return new CacheStats(hitCount, missCount, evictionCount, rejectionCount, size(), weight);
+    }
+
+    private int size() {
+        return window.size() + probation.size() + protectedArea.size();
+    }
+
+    private Entry<V> remove(K key) {
+        Entry<V> entry = window.remove(key);
+        if (entry == null) {
+            entry = probation.remove(key);
+        }
+        if (entry == null) {
+            entry = protectedArea.remove(key);
+        }
+        return entry;
+    }
+
+    private void promote(K key, Entry<V> entry) {
+        protectedArea.put(key, entry);
+        if (protectedArea.size() > maxProtectedEntries) {
+            // demote the least recently used protected entry, it gets a second chance in probation
+            Map.Entry<K, Entry<V>> demoted = pollEldest(protectedArea);
+            probation.put(demoted.getKey(), demoted.getValue());
+        }
+    }
+
+    private boolean isOverflowing(int pendingEntries) {
+        return size() + pendingEntries > maxEntries || weight > maxWeight;
+    }
+
+    /**
+     * Evicts the least valuable entries until a new entry of the given weight fits, unless they have been accessed at least as
+     * often recently, all together, as the new entry.
+     *
+     * @return <code>false</code> if the new entry must not be added, in which case nothing is evicted
+     */
+    private boolean makeRoom(K key, long valueWeight) {
+        long excess = weight + valueWeight - maxWeight;
+        if (excess <= 0) {
+            return true;
+        }
+        List<K> victims = new ArrayList<>();
+        int victimsFrequency = 0;
+        int candidateFrequency = sketch.frequency(key);
+        for (LinkedHashMap<K, Entry<V>> area : Arrays.asList(probation, protectedArea, window)) {
+            for (Iterator<Map.Entry<K, Entry<V>>> iterator = area.entrySet().iterator(); excess > 0 && iterator.hasNext(); ) {
+                Map.Entry<K, Entry<V>> victim = iterator.next();
+                victimsFrequency += sketch.frequency(victim.getKey());
+                if (victimsFrequency >= candidateFrequency) {
+                    return false;
+                }
+                victims.add(victim.getKey());
+                excess -= victim.getValue().weight;
+            }
+        }
+        for (K victim : victims) {
+            discard(remove(victim));
+        }
+        return true;
+    }
+
+    private void evict() {
+        // the weight is already bounded by makeRoom, moving entries between the areas only changes their number
+        while (window.size() > maxWindowEntries) {
+            Map.Entry<K, Entry<V>> candidate = pollEldest(window);
+            // the candidate is not in any area anymore, but its weight is still counted
+            if (!isOverflowing(1)) {
+                probation.put(candidate.getKey(), candidate.getValue());
+                continue;
+            }
+            LinkedHashMap<K, Entry<V>> victimArea = probation.isEmpty() ? protectedArea : probation;
+            Map.Entry<K, Entry<V>> victim = victimArea.isEmpty() ? null : victimArea.entrySet().iterator().next();
+            if (victim == null || sketch.frequency(candidate.getKey()) > sketch.frequency(victim.getKey())) {
+                if (victim != null) {
+                    victimArea.remove(victim.getKey());
+                    discard(victim.getValue());
+                }
+                probation.put(candidate.getKey(), candidate.getValue());
+            } else {
+                discard(candidate.getValue());
+            }
+        }
+    }
+
+    private void discard(Entry<V> entry) {
+        weight -= entry.weight;
+        evictionCount++;
+    }
+
+    private static <K, V> Map.Entry<K, V> pollEldest(LinkedHashMap<K, V> map) {
+        Iterator<Map.Entry<K, V>> iterator = map.entrySet().iterator();
+        Map.Entry<K, V> eldest = iterator.next();
+        iterator.remove();
+        return eldest;
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long weight;
+
+        private Entry(V value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+}
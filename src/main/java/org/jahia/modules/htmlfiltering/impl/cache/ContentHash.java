@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl.cache;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A SHA-256 digest of a text content, used as a compact key to identify an HTML input without keeping a reference to it.
+ * <p>
+ * The digest is computed over the UTF-16 code units of the text, so no intermediate byte encoding of the whole text is needed.
+ */
+public final class ContentHash {
+
+    private static final String ALGORITHM = "SHA-256";
+    private static final int BUFFER_SIZE = 8192;
+
+    private final long h0;
+    private final long h1;
+    private final long h2;
+    private final long h3;
+
+    private ContentHash(long h0, long h1, long h2, long h3) {
+        this.h0 = h0;
+        this.h1 = h1;
+        this.h2 = h2;
+        this.h3 = h3;
+    }
+
+    /**
+     * Computes the hash of the given text.
+     *
+     * @param text the text to hash, must not be <code>null</code>
+     * @return the hash of the text
+     */
+    public static ContentHash of(CharSequence text) {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[Math.min(BUFFER_SIZE, Math.max(2, text.length() * 2))];
+        int position = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (position == buffer.length) {
+                digest.update(buffer, 0, position);
+                position = 0;
+            }
+            char c = text.charAt(i);
+            buffer[position++] = (byte) (c >>> 8);
+            buffer[position++] = (byte) c;
+        }
+        digest.update(buffer, 0, position);
+        byte[] bytes = digest.digest();
+        return new ContentHash(toLong(bytes, 0), toLong(bytes, 8), toLong(bytes, 16), toLong(bytes, 24));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is mandatory on every Java platform
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    }
+
+    private static long toLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ContentHash)) {
+            return false;
+        }
+        ContentHash that = (ContentHash) o;
+        return h0 == that.h0 && h1 == that.h1 && h2 == that.h2 && h3 == that.h3;
+    }
+
+    @Override
+    public int hashCode() {
+        // the digest is uniformly distributed, any of its bits are a good hash code
+        return (int) (h0 ^ (h0 >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x%016x%016x", h0, h1, h2, h3);
+    }
+}
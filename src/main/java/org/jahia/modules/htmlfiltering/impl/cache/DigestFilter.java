@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl.cache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Bloom filter of text contents, answering whether a text was probably added before, or was definitely not.
+ * <p>
+ * It uses a fixed amount of memory: once the expected number of texts has been added, the filter is cleared rather than letting
+ * its false positive rate grow. This class is thread-safe; concurrent additions may occasionally be lost, which only causes
+ * false negatives.
+ */
+public final class DigestFilter {
+
+    private static final int BITS_PER_ENTRY = 10;
+    private static final int HASH_FUNCTIONS = 7;
+
+    private final int expectedEntries;
+    private final int bitCount;
+    private volatile AtomicLongArray bits;
+    private final AtomicInteger additions = new AtomicInteger();
+
+    /**
+     * @param expectedEntries the number of texts after which the filter is cleared, about 1% of false positives are expected at
+     *                        that point
+     */
+    public DigestFilter(int expectedEntries) {
+        this.expectedEntries = expectedEntries;
+        long bitCount = Math.max(64L, (long) expectedEntries * BITS_PER_ENTRY);
+        this.bitCount = (int) Math.min(Integer.MAX_VALUE - 63, bitCount);
+        this.bits = new AtomicLongArray((this.bitCount + 63) / 64);
+    }
+
+    /**
+     * Adds a text to the filter.
+     */
+    public void add(CharSequence text) {
+        if (additions.incrementAndGet() > expectedEntries) {
+            clear();
+        }
+        long hash = hash(text);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        AtomicLongArray words = bits;
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            int bit = index(h1 + i * h2);
+            long mask = 1L << bit;
+            int word = bit >>> 6;
+            long current = words.get(word);
+            if ((current & mask) == 0) {
+                // a lost update only causes a false negative, no need to retry
+                words.compareAndSet(word, current, current | mask);
+            }
+        }
+    }
+
+    /**
+     * @return <code>false</code> if the text was definitely not added since the filter was last cleared, <code>true</code> if it
+     * probably was
+     */
+    public boolean mightContain(CharSequence text) {
+        long hash = hash(text);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        AtomicLongArray words = bits;
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            int bit = index(h1 + i * h2);
+            if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private synchronized void clear() {
+        if (additions.get() > expectedEntries) {
+            bits = new AtomicLongArray(bits.length());
+            additions.set(1);
+        }
+    }
+
+    private int index(int combinedHash) {
+        return (combinedHash & Integer.MAX_VALUE) % bitCount;
+    }
+
+    /**
+     * A fast 64-bit hash of the UTF-16 code units of the text (FNV-1a, with a final avalanche step).
+     */
+    private static long hash(CharSequence text) {
+        long hash = 0xcbf29ce484222325L ^ text.length();
+        for (int i = 0; i < text.length(); i++) {
+            hash = (hash ^ text.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
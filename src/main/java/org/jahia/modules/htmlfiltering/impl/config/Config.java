@@ -17,15 +17,29 @@ package org.jahia.modules.htmlfiltering.impl.config;
 
 import org.jahia.api.Constants;
 import org.jahia.modules.htmlfiltering.Policy;
+import org.jahia.modules.htmlfiltering.impl.BulkheadStats;
+import org.jahia.modules.htmlfiltering.impl.OutputCompactionStats;
+import org.jahia.modules.htmlfiltering.impl.ParallelSanitizationStats;
+import org.jahia.modules.htmlfiltering.impl.PasteCleanupStats;
+import org.jahia.modules.htmlfiltering.impl.PolicyImpl;
+import org.jahia.modules.htmlfiltering.impl.cache.CacheStats;
+import org.slf4j.Logger;
+
+import java.util.Set;
 
 public final class Config {
 
     private final Policy editWorkspacePolicy;
     private final Policy liveWorkspacePolicy;
+    private final Set<String> engineNames;
 
-    public Config(Policy editWorkspacePolicy, Policy liveWorkspacePolicy) {
+    /**
+     * @param engineNames the names of the sanitizer engines selected by the policies, registered or not
+     */
+    public Config(Policy editWorkspacePolicy, Policy liveWorkspacePolicy, Set<String> engineNames) {
         this.editWorkspacePolicy = editWorkspacePolicy;
         this.liveWorkspacePolicy = liveWorkspacePolicy;
+        this.engineNames = engineNames;
     }
 
     public Policy getPolicy(String workspaceName) {
@@ -45,4 +59,63 @@ public final class Config {
     public Policy getLiveWorkspacePolicy() {
         return liveWorkspacePolicy;
     }
+
+    /**
+     * @param engineName the name of a sanitizer engine
+     * @return <code>true</code> if one of the policies selects that engine, so that the configuration has to be built again when
+     * the engine is registered or unregistered
+     */
+    public boolean selectsEngine(String engineName) {
+        return engineNames.contains(engineName);
+    }
+
+    /**
+     * Logs the statistics of the result, block, attribute and style caches, of the paste cleanup, of the output compaction and of the
+     * parallel sanitization of both policies, if enabled.
+     * Meant to be called when the configuration is replaced or removed, as the caches are dropped with it.
+     *
+     * @param logger    the logger to use
+     * @param configKey a key identifying the configuration in the logs
+     */
+    public void logStats(Logger logger, String configKey) {
+        logStats(logger, configKey, Constants.EDIT_WORKSPACE, editWorkspacePolicy);
+        logStats(logger, configKey, Constants.LIVE_WORKSPACE, liveWorkspacePolicy);
+    }
+
+    private static void logStats(Logger logger, String configKey, String workspaceName, Policy policy) {
+        if (policy instanceof PolicyImpl) {
+            CacheStats stats = ((PolicyImpl) policy).getResultCacheStats();
+            if (stats != null) {
+                logger.info("Dropping the result cache of the html filtering configuration {} for the workspace {}: {}", configKey, workspaceName, stats);
+            }
+            CacheStats blockStats = ((PolicyImpl) policy).getBlockCacheStats();
+            if (blockStats != null) {
+                logger.info("Dropping the block cache of the html filtering configuration {} for the workspace {}: {}", configKey, workspaceName, blockStats);
+            }
+            CacheStats attributeStats = ((PolicyImpl) policy).getAttributeCacheStats();
+            if (attributeStats != null) {
+                logger.info("Dropping the attribute cache of the html filtering configuration {} for the workspace {}: {}", configKey, workspaceName, attributeStats);
+            }
+            CacheStats styleStats = ((PolicyImpl) policy).getStyleCacheStats();
+            if (styleStats != null) {
+                logger.info("Dropping the style cache of the html filtering configuration {} for the workspace {}: {}", configKey, workspaceName, styleStats);
+            }
+            PasteCleanupStats pasteCleanupStats = ((PolicyImpl) policy).getPasteCleanupStats();
+            if (pasteCleanupStats != null) {
+                logger.info("Paste cleanup of the html filtering configuration {} for the workspace {}: {}", configKey, workspaceName, pasteCleanupStats);
+            }
+            OutputCompactionStats outputCompactionStats = ((PolicyImpl) policy).getOutputCompactionStats();
+            if (outputCompactionStats != null) {
+                logger.info("Output compaction of the html filtering configuration {} for the workspace {}: {}", configKey, workspaceName, outputCompactionStats);
+            }
+            ParallelSanitizationStats parallelSanitizationStats = ((PolicyImpl) policy).getParallelSanitizationStats();
+            if (parallelSanitizationStats != null) {
+                logger.info("Parallel sanitization of the html filtering configuration {} for the workspace {}: {}", configKey, workspaceName, parallelSanitizationStats);
+            }
+            BulkheadStats bulkheadStats = ((PolicyImpl) policy).getBulkheadStats();
+            if (bulkheadStats != null) {
+                logger.info("Bulkhead of the html filtering configuration {} for the workspace {}: {}", configKey, workspaceName, bulkheadStats);
+            }
+        }
+    }
 }
@@ -30,15 +30,17 @@ public abstract class GlobalAbstractConfig implements ManagedService {
     protected final Logger logger = LoggerFactory.getLogger(getClass());
 
     private final AtomicReference<Config> htmlFilteringConfigRef = new AtomicReference<>();
+    private Dictionary<String, ?> properties;
 
     public Config getHtmlFilteringConfig() {
         return htmlFilteringConfigRef.get();
     }
 
     @Override
-    public void updated(Dictionary<String, ?> properties) {
+    public synchronized void updated(Dictionary<String, ?> properties) {
+        this.properties = properties;
         if (properties == null) {
-            htmlFilteringConfigRef.set(null);
+            logStats(htmlFilteringConfigRef.getAndSet(null));
             logger.info("Resetting html filtering configuration");
         } else {
             logger.info("Updating html filtering configuration");
@@ -48,7 +50,27 @@ public abstract class GlobalAbstractConfig implements ManagedService {
             } catch (ConfigurationException e) {
                 logger.error("Unable to read the html filtering configuration, unregistering it...", e);
             }
-            htmlFilteringConfigRef.set(config);
+            logStats(htmlFilteringConfigRef.getAndSet(config));
+        }
+    }
+
+    /**
+     * Builds the configuration again if it selects the given sanitizer engine, so that it uses the engine as soon as it is
+     * registered, and no longer uses it once it is unregistered.
+     *
+     * @param engineName the name of the engine registered or unregistered
+     */
+    public synchronized void engineChanged(String engineName) {
+        Config config = htmlFilteringConfigRef.get();
+        if (properties != null && config != null && config.selectsEngine(engineName)) {
+            logger.info("Sanitizer engine {} registered or unregistered, rebuilding the html filtering configuration", engineName);
+            updated(properties);
+        }
+    }
+
+    private void logStats(Config previousConfig) {
+        if (previousConfig != null) {
+            previousConfig.logStats(logger, getClass().getSimpleName());
         }
     }
 }
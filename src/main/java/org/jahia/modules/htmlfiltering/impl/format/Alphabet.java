@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl.format;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * A partition of the code points into atoms, the code points of an atom being matched by exactly the same transitions of an
+ * automaton, so that the automaton can work on atoms rather than on code points.
+ */
+final class Alphabet {
+
+    private static final int ASCII_LIMIT = 128;
+
+    /**
+     * The first code point of each interval of the partition, in increasing order.
+     */
+    private final int[] intervalStarts;
+    private final int[] intervalAtoms;
+    private final int[] asciiAtoms = new int[ASCII_LIMIT];
+    private final int size;
+
+    private Alphabet(int[] intervalStarts, int[] intervalAtoms, int size) {
+        this.intervalStarts = intervalStarts;
+        this.intervalAtoms = intervalAtoms;
+        this.size = size;
+        for (int codePoint = 0; codePoint < ASCII_LIMIT; codePoint++) {
+            asciiAtoms[codePoint] = intervalAtoms[interval(codePoint)];
+        }
+    }
+
+    /**
+     * @return the coarsest partition such that each of the given sets is a union of atoms
+     */
+    static Alphabet of(Collection<CodePointSet> sets) {
+        CodePointSet[] distinctSets = new LinkedHashSet<>(sets).toArray(new CodePointSet[0]);
+        TreeSet<Integer> boundaries = new TreeSet<>();
+        boundaries.add(0);
+        for (CodePointSet set : distinctSets) {
+            for (int i = 0; i < set.rangeCount(); i++) {
+                boundaries.add(set.rangeStart(i));
+                if (set.rangeEnd(i) < CodePointSet.MAX_CODE_POINT) {
+                    boundaries.add(set.rangeEnd(i) + 1);
+                }
+            }
+        }
+        int[] intervalStarts = boundaries.stream().mapToInt(Integer::intValue).toArray();
+        int[] intervalAtoms = new int[intervalStarts.length];
+        Map<BitSet, Integer> atomsBySignature = new HashMap<>();
+        for (int i = 0; i < intervalStarts.length; i++) {
+            // the intervals contained by the same sets belong to the same atom
+            BitSet signature = new BitSet(distinctSets.length);
+            for (int j = 0; j < distinctSets.length; j++) {
+                if (distinctSets[j].contains(intervalStarts[i])) {
+                    signature.set(j);
+                }
+            }
+            intervalAtoms[i] = atomsBySignature.computeIfAbsent(signature, s -> atomsBySignature.size());
+        }
+        return new Alphabet(intervalStarts, intervalAtoms, atomsBySignature.size());
+    }
+
+    /**
+     * @return the number of atoms
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the atom of the given code point
+     */
+    int atomOf(int codePoint) {
+        return codePoint < ASCII_LIMIT ? asciiAtoms[codePoint] : intervalAtoms[interval(codePoint)];
+    }
+
+    /**
+     * @param set one of the sets the alphabet was built from
+     * @return the atoms making up the set
+     */
+    BitSet atoms(CodePointSet set) {
+        BitSet atoms = new BitSet(size);
+        for (int i = 0; i < intervalStarts.length; i++) {
+            if (set.contains(intervalStarts[i])) {
+                atoms.set(intervalAtoms[i]);
+            }
+        }
+        return atoms;
+    }
+
+    private int interval(int codePoint) {
+        int low = 0;
+        int high = intervalStarts.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (intervalStarts[middle] <= codePoint) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+}
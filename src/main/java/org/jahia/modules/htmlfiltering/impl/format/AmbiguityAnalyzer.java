@@ -0,0 +1,364 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl.format;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+
+/**
+ * Computes the {@link FormatComplexity} of a regular expression from the degree of ambiguity of its {@link PositionAutomaton},
+ * i.e. how the number of ways of matching a value grows with its length, which is what a backtracking engine may have to try:
+ * <ul>
+ * <li>exponential if a state can loop back to itself in two different ways reading the same word,</li>
+ * <li>polynomial if two distinct states <code>p</code> and <code>q</code> both loop on a word that also leads from <code>p</code>
+ * to <code>q</code>,</li>
+ * <li>linear otherwise.</li>
+ * </ul>
+ * Both checks are done on the product of the automaton with itself, restricted to the states that are part of a match. The
+ * analysis is bounded: too large automata are reported as {@link FormatComplexity#UNKNOWN}.
+ */
+final class AmbiguityAnalyzer {
+
+    private static final int MAX_STATES = 200;
+    /**
+     * Above this number of states, the polynomial ambiguity is only approximated on the product of two automata, which may
+     * report some linear expressions as polynomial.
+     */
+    private static final int MAX_EXACT_STATES = 32;
+    private static final long MAX_STEPS = 2_000_000L;
+
+    private final PositionAutomaton automaton;
+    /**
+     * The number of useful states, numbered from 0 in the order of the states of the automaton.
+     */
+    private final int stateCount;
+    /**
+     * The useful transitions leaving each useful state.
+     */
+    private final int[][] outgoingEdges;
+    private final int[] compactStates;
+    private long steps;
+
+    private AmbiguityAnalyzer(PositionAutomaton automaton) {
+        this.automaton = automaton;
+        int[][] allOutgoingEdges = automaton.outgoingEdges();
+        boolean[] useful = usefulStates(automaton, allOutgoingEdges);
+        compactStates = new int[automaton.stateCount];
+        Arrays.fill(compactStates, -1);
+        int count = 0;
+        for (int state = 0; state < automaton.stateCount; state++) {
+            if (useful[state]) {
+                compactStates[state] = count++;
+            }
+        }
+        stateCount = count;
+        outgoingEdges = new int[count][];
+        for (int state = 0; state < automaton.stateCount; state++) {
+            if (useful[state]) {
+                outgoingEdges[compactStates[state]] = Arrays.stream(allOutgoingEdges[state])
+                        .filter(edge -> useful[automaton.edgeTargets[edge]]).toArray();
+            }
+        }
+    }
+
+    /**
+     * @return the complexity of matching values against the given automaton with a backtracking engine
+     */
+    static FormatComplexity analyze(PositionAutomaton automaton) {
+        AmbiguityAnalyzer analyzer = new AmbiguityAnalyzer(automaton);
+        if (analyzer.stateCount > MAX_STATES) {
+            return FormatComplexity.UNKNOWN;
+        }
+        try {
+            int[][] pairGraph = analyzer.buildPairGraph();
+            if (analyzer.hasExponentialAmbiguity(pairGraph)) {
+                return FormatComplexity.EXPONENTIAL;
+            }
+            return analyzer.hasPolynomialAmbiguity(pairGraph) ? FormatComplexity.POLYNOMIAL : FormatComplexity.LINEAR;
+        } catch (AnalysisTooLongException e) {
+            return FormatComplexity.UNKNOWN;
+        }
+    }
+
+    private static boolean[] usefulStates(PositionAutomaton automaton, int[][] outgoingEdges) {
+        boolean[] reachable = new boolean[automaton.stateCount];
+        Deque<Integer> queue = new ArrayDeque<>();
+        reachable[PositionAutomaton.INITIAL_STATE] = true;
+        queue.add(PositionAutomaton.INITIAL_STATE);
+        while (!queue.isEmpty()) {
+            for (int edge : outgoingEdges[queue.poll()]) {
+                int target = automaton.edgeTargets[edge];
+                if (!reachable[target]) {
+                    reachable[target] = true;
+                    queue.add(target);
+                }
+            }
+        }
+        // then the states reaching an accepting state, by iterating over the transitions backwards
+        boolean[] useful = new boolean[automaton.stateCount];
+        for (int state = 0; state < automaton.stateCount; state++) {
+            useful[state] = reachable[state] && automaton.accepting[state];
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int edge = 0; edge < automaton.edgeSources.length; edge++) {
+                int source = automaton.edgeSources[edge];
+                if (!useful[source] && reachable[source] && useful[automaton.edgeTargets[edge]]) {
+                    useful[source] = true;
+                    changed = true;
+                }
+            }
+        }
+        return useful;
+    }
+
+    /**
+     * Builds the product of the automaton with itself: the node <code>p * n + q</code> is the pair of states <code>(p, q)</code>,
+     * its successors being encoded as <code>target << 1 | divergent</code>, divergent meaning that the two transitions taken
+     * are different.
+     */
+    private int[][] buildPairGraph() {
+        int[][] graph = new int[stateCount * stateCount][];
+        int[] successors = new int[16];
+        for (int p = 0; p < stateCount; p++) {
+            for (int q = 0; q < stateCount; q++) {
+                int count = 0;
+                for (int e : outgoingEdges[p]) {
+                    for (int f : outgoingEdges[q]) {
+                        step();
+                        if (automaton.edgeAtoms[e].intersects(automaton.edgeAtoms[f])) {
+                            if (count == successors.length) {
+                                successors = Arrays.copyOf(successors, count * 2);
+                            }
+                            int target = compactStates[automaton.edgeTargets[e]] * stateCount + compactStates[automaton.edgeTargets[f]];
+                            successors[count++] = target << 1 | (e != f ? 1 : 0);
+                        }
+                    }
+                }
+                graph[p * stateCount + q] = Arrays.copyOf(successors, count);
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Two different loops on the same word exist if a strongly connected component of the product contains a pair of identical
+     * states, and a transition taking two different transitions of the automaton.
+     */
+    private boolean hasExponentialAmbiguity(int[][] pairGraph) {
+        int[] components = stronglyConnectedComponents(pairGraph);
+        boolean[] diagonalComponents = new boolean[pairGraph.length];
+        for (int p = 0; p < stateCount; p++) {
+            diagonalComponents[components[p * stateCount + p]] = true;
+        }
+        for (int node = 0; node < pairGraph.length; node++) {
+            if (diagonalComponents[components[node]]) {
+                for (int successor : pairGraph[node]) {
+                    if ((successor & 1) != 0 && components[successor >>> 1] == components[node]) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean hasPolynomialAmbiguity(int[][] pairGraph) {
+        int[][] reversedGraph = reverse(pairGraph);
+        BitSet[] reachedFromDiagonal = new BitSet[stateCount];
+        BitSet[] reachingDiagonal = new BitSet[stateCount];
+        for (int p = 0; p < stateCount; p++) {
+            reachedFromDiagonal[p] = reach(pairGraph, p * stateCount + p);
+            reachingDiagonal[p] = reach(reversedGraph, p * stateCount + p);
+        }
+        for (int p = 0; p < stateCount; p++) {
+            for (int q = 0; q < stateCount; q++) {
+                int pair = p * stateCount + q;
+                // (p, p) leads to (p, q), which leads to (q, q), but not necessarily on the same word
+                if (p != q && reachedFromDiagonal[p].get(pair) && reachingDiagonal[q].get(pair)
+                        && (stateCount > MAX_EXACT_STATES || hasSameWordPaths(p, q))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return <code>true</code> if a word leads from <code>p</code> to <code>p</code>, from <code>p</code> to <code>q</code> and
+     * from <code>q</code> to <code>q</code>, using the product of the automaton with itself twice
+     */
+    private boolean hasSameWordPaths(int p, int q) {
+        int n = stateCount;
+        BitSet visited = new BitSet(n * n * n);
+        Deque<Integer> queue = new ArrayDeque<>();
+        int start = (p * n + p) * n + q;
+        int goal = (p * n + q) * n + q;
+        visited.set(start);
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            int[] first = outgoingEdges[node / (n * n)];
+            int[] second = outgoingEdges[node / n % n];
+            int[] third = outgoingEdges[node % n];
+            for (int e : first) {
+                for (int f : second) {
+                    if (!automaton.edgeAtoms[e].intersects(automaton.edgeAtoms[f])) {
+                        continue;
+                    }
+                    BitSet atoms = (BitSet) automaton.edgeAtoms[e].clone();
+                    atoms.and(automaton.edgeAtoms[f]);
+                    for (int g : third) {
+                        step();
+                        if (atoms.intersects(automaton.edgeAtoms[g])) {
+                            int target = (compactStates[automaton.edgeTargets[e]] * n + compactStates[automaton.edgeTargets[f]]) * n
+                                    + compactStates[automaton.edgeTargets[g]];
+                            if (target == goal) {
+                                return true;
+                            }
+                            if (!visited.get(target)) {
+                                visited.set(target);
+                                queue.add(target);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private BitSet reach(int[][] graph, int start) {
+        BitSet visited = new BitSet(graph.length);
+        Deque<Integer> queue = new ArrayDeque<>();
+        visited.set(start);
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            for (int successor : graph[queue.poll()]) {
+                step();
+                int target = successor >>> 1;
+                if (!visited.get(target)) {
+                    visited.set(target);
+                    queue.add(target);
+                }
+            }
+        }
+        return visited;
+    }
+
+    private static int[][] reverse(int[][] graph) {
+        int[] counts = new int[graph.length];
+        for (int[] successors : graph) {
+            for (int successor : successors) {
+                counts[successor >>> 1]++;
+            }
+        }
+        int[][] reversed = new int[graph.length][];
+        for (int node = 0; node < graph.length; node++) {
+            reversed[node] = new int[counts[node]];
+            counts[node] = 0;
+        }
+        for (int node = 0; node < graph.length; node++) {
+            for (int successor : graph[node]) {
+                int target = successor >>> 1;
+                reversed[target][counts[target]++] = node << 1 | (successor & 1);
+            }
+        }
+        return reversed;
+    }
+
+    /**
+     * Tarjan's algorithm, without recursion as the product may be large.
+     *
+     * @return the component of each node
+     */
+    private static int[] stronglyConnectedComponents(int[][] graph) {
+        int size = graph.length;
+        int[] indexes = new int[size];
+        int[] lowLinks = new int[size];
+        int[] components = new int[size];
+        Arrays.fill(indexes, -1);
+        boolean[] onStack = new boolean[size];
+        int[] stack = new int[size];
+        int stackSize = 0;
+        int[] callNodes = new int[size];
+        int[] callPositions = new int[size];
+        int index = 0;
+        int componentCount = 0;
+        for (int root = 0; root < size; root++) {
+            if (indexes[root] >= 0) {
+                continue;
+            }
+            int depth = 0;
+            callNodes[0] = root;
+            callPositions[0] = 0;
+            indexes[root] = lowLinks[root] = index++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            while (depth >= 0) {
+                int node = callNodes[depth];
+                if (callPositions[depth] < graph[node].length) {
+                    int target = graph[node][callPositions[depth]++] >>> 1;
+                    if (indexes[target] < 0) {
+                        indexes[target] = lowLinks[target] = index++;
+                        stack[stackSize++] = target;
+                        onStack[target] = true;
+                        depth++;
+                        callNodes[depth] = target;
+                        callPositions[depth] = 0;
+                    } else if (onStack[target]) {
+                        lowLinks[node] = Math.min(lowLinks[node], indexes[target]);
+                    }
+                } else {
+                    if (lowLinks[node] == indexes[node]) {
+                        int member;
+                        do {
+                            member = stack[--stackSize];
+                            onStack[member] = false;
+                            components[member] = componentCount;
+                        } while (member != node);
+                        componentCount++;
+                    }
+                    depth--;
+                    if (depth >= 0) {
+                        int parent = callNodes[depth];
+                        lowLinks[parent] = Math.min(lowLinks[parent], lowLinks[node]);
+                    }
+                }
+            }
+        }
+        return components;
+    }
+
+    private void step() {
+        if (++steps > MAX_STEPS) {
+            throw AnalysisTooLongException.INSTANCE;
+        }
+    }
+
+    private static final class AnalysisTooLongException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        private static final AnalysisTooLongException INSTANCE = new AnalysisTooLongException();
+
+        private AnalysisTooLongException() {
+            // no message nor stack trace, only used for control flow
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl.format;
+
+/**
+ * Hand-coded matchers of the most common attribute formats, referenced in the rules with the {@link #PREFIX builtin:} prefix
+ * (e.g. <code>format: builtin:HTML_ID</code>) rather than defined under <code>formatDefinitions</code>.
+ * <p>
+ * They scan the values once, without any allocation, and are much faster than the equivalent regular expressions.
+ */
+public enum BuiltinFormat {
+
+    /**
+     * A letter followed by letters, digits, colons, hyphens, underscores or dots, as
+     * <code>[a-zA-Z][a-zA-Z0-9\:\-_\.]*</code>.
+     */
+    HTML_ID {
+        @Override
+        public boolean matches(CharSequence value) {
+            if (value.length() == 0 || !isAsciiLetter(value.charAt(0))) {
+                return false;
+            }
+            for (int i = 1; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (!isAsciiLetter(c) && !isDigit(c) && c != ':' && c != '-' && c != '_' && c != '.') {
+                    return false;
+                }
+            }
+            return true;
+        }
+    },
+    /**
+     * An integer or decimal number, optionally followed by a percent sign, or <code>auto</code>, as
+     * <code>([0-9]+%?|[0-9]+\.[0-9]+%?|auto)</code>.
+     */
+    NUMBER_OR_PERCENT {
+        @Override
+        public boolean matches(CharSequence value) {
+            if ("auto".contentEquals(value)) {
+                return true;
+            }
+            int length = value.length();
+            if (length > 0 && value.charAt(length - 1) == '%') {
+                length--;
+            }
+            int i = skipDigits(value, 0, length);
+            if (i == 0) {
+                return false;
+            }
+            if (i < length && value.charAt(i) == '.') {
+                int fractionStart = i + 1;
+                i = skipDigits(value, fractionStart, length);
+                if (i == fractionStart) {
+                    return false;
+                }
+            }
+            return i == length;
+        }
+    },
+    /**
+     * A hexadecimal color (e.g. <code>#fff</code>, <code>#ff000080</code>) or a color name (e.g. <code>red</code>).
+     */
+    COLOR {
+        @Override
+        public boolean matches(CharSequence value) {
+            int length = value.length();
+            if (length > 0 && value.charAt(0) == '#') {
+                if (length != 4 && length != 5 && length != 7 && length != 9) {
+                    return false;
+                }
+                for (int i = 1; i < length; i++) {
+                    if (!isHexDigit(value.charAt(i))) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            for (int i = 0; i < length; i++) {
+                if (!isAsciiLetter(value.charAt(i))) {
+                    return false;
+                }
+            }
+            return length > 0;
+        }
+    },
+    /**
+     * <code>0</code>, or a positive integer or decimal number followed by a CSS unit (e.g. <code>12px</code>, <code>1.5em</code>,
+     * <code>50%</code>).
+     */
+    CSS_LENGTH {
+        @Override
+        public boolean matches(CharSequence value) {
+            int length = value.length();
+            int i = skipDigits(value, 0, length);
+            if (i == length) {
+                return "0".contentEquals(value);
+            }
+            if (value.charAt(i) == '.') {
+                int fractionStart = i + 1;
+                i = skipDigits(value, fractionStart, length);
+                if (i == fractionStart) {
+                    return false;
+                }
+            } else if (i == 0) {
+                return false;
+            }
+            return isCssUnit(value, i, length);
+        }
+    },
+    /**
+     * A relative or absolute URL, the absolute ones being limited to the <code>http</code>, <code>https</code>, <code>ftp</code>,
+     * <code>ftps</code> and <code>mailto</code> protocols, as the <code>LINKS_URL</code> regular expression of the default
+     * configuration.
+     */
+    LINKS_URL {
+        @Override
+        public boolean matches(CharSequence value) {
+            return isRelativeUrl(value) || isAbsoluteUrl(value);
+        }
+    };
+
+    /**
+     * The prefix of the references to built-in formats.
+     */
+    public static final String PREFIX = "builtin:";
+
+    private static final String[] URL_PROTOCOLS = {"http://", "https://", "ftp://", "ftps://", "mailto:"};
+    private static final String[] CSS_UNITS = {"%", "px", "em", "rem", "ex", "ch", "vw", "vh", "vmin", "vmax", "cm", "mm", "in",
+            "pt", "pc"};
+    private static final String RELATIVE_URL_PUNCTUATION = "\\.#@$%+&;-_~,?=/!{}:";
+    private static final String ABSOLUTE_URL_PUNCTUATION = ".#@$%+&:-_~,?=/!()";
+    /**
+     * The ASCII characters allowed in the relative URLs and after the protocol of the absolute ones, so that the Unicode
+     * categories are only looked up for the other characters.
+     */
+    private static final boolean[] RELATIVE_URL_ASCII = asciiTable(RELATIVE_URL_PUNCTUATION);
+    private static final boolean[] ABSOLUTE_URL_ASCII = asciiTable(ABSOLUTE_URL_PUNCTUATION + ' ');
+
+    /**
+     * @return <code>true</code> if the whole value matches the format
+     */
+    public abstract boolean matches(CharSequence value);
+
+    /**
+     * @param format a format reference of a rule
+     * @return the built-in format referenced, <code>null</code> if the reference is not to an existing built-in format
+     */
+    public static BuiltinFormat fromReference(String format) {
+        if (!isReference(format)) {
+            return null;
+        }
+        String name = format.substring(PREFIX.length());
+        for (BuiltinFormat builtinFormat : values()) {
+            if (builtinFormat.name().equals(name)) {
+                return builtinFormat;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return <code>true</code> if the format reference of a rule is to a built-in format, whether it exists or not
+     */
+    public static boolean isReference(String format) {
+        return format != null && format.startsWith(PREFIX);
+    }
+
+    /**
+     * @return the table of the ASCII letters, digits and of the given characters
+     */
+    private static boolean[] asciiTable(String characters) {
+        boolean[] table = new boolean[128];
+        for (char c = 0; c < 128; c++) {
+            table[c] = isAsciiLetter(c) || isDigit(c) || characters.indexOf(c) >= 0;
+        }
+        return table;
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isHexDigit(char c) {
+        return isDigit(c) || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+    private static int skipDigits(CharSequence value, int start, int end) {
+        int i = start;
+        while (i < end && isDigit(value.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isCssUnit(CharSequence value, int start, int end) {
+        for (String unit : CSS_UNITS) {
+            if (end - start == unit.length() && regionMatches(value, start, unit, true)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param text the text to find, in lower case if the case is ignored
+     */
+    private static boolean regionMatches(CharSequence value, int start, String text, boolean ignoreCase) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = value.charAt(start + i);
+            if ((ignoreCase ? Character.toLowerCase(c) : c) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * <code>[\p{L}\p{N}\\\.#@$%\+&;\-_~,\?=/!{}:]+</code>, which also covers <code>#(\w)+</code>.
+     */
+    private static boolean isRelativeUrl(CharSequence value) {
+        if (value.length() == 0) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); ) {
+            char c = value.charAt(i);
+            if (c < 128) {
+                if (!RELATIVE_URL_ASCII[c]) {
+                    return false;
+                }
+                i++;
+                continue;
+            }
+            int codePoint = Character.codePointAt(value, i);
+            if (!isLetterOrNumber(codePoint)) {
+                return false;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return true;
+    }
+
+    /**
+     * <code>\s*(?:(?:ht|f)tps?://|mailto:)[\p{L}\p{N}][\p{L}\p{N}\p{Zs}\.#@$%\+&:\-_~,\?=/!\(\)]*+\s*</code>.
+     */
+    private static boolean isAbsoluteUrl(CharSequence value) {
+        int length = value.length();
+        int i = 0;
+        while (i < length && isSpace(value.charAt(i))) {
+            i++;
+        }
+        int protocolEnd = -1;
+        for (String protocol : URL_PROTOCOLS) {
+            if (length - i >= protocol.length() && regionMatches(value, i, protocol, false)) {
+                protocolEnd = i + protocol.length();
+                break;
+            }
+        }
+        if (protocolEnd < 0 || protocolEnd == length) {
+            return false;
+        }
+        i = protocolEnd;
+        int codePoint = Character.codePointAt(value, i);
+        if (!isLetterOrNumber(codePoint)) {
+            return false;
+        }
+        i += Character.charCount(codePoint);
+        // possessive: the trailing spaces are only the ones that are not space separators
+        while (i < length) {
+            char c = value.charAt(i);
+            if (c < 128) {
+                if (!ABSOLUTE_URL_ASCII[c]) {
+                    break;
+                }
+                i++;
+                continue;
+            }
+            codePoint = Character.codePointAt(value, i);
+            if (!isLetterOrNumber(codePoint) && Character.getType(codePoint) != Character.SPACE_SEPARATOR) {
+                break;
+            }
+            i += Character.charCount(codePoint);
+        }
+        while (i < length && isSpace(value.charAt(i))) {
+            i++;
+        }
+        return i == length;
+    }
+
+    private static boolean isLetterOrNumber(int codePoint) {
+        int type = Character.getType(codePoint);
+        return Character.isLetter(codePoint) || type == Character.DECIMAL_DIGIT_NUMBER || type == Character.LETTER_NUMBER
+                || type == Character.OTHER_NUMBER;
+    }
+
+    /**
+     * <code>\s</code>, without the Unicode flag.
+     */
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
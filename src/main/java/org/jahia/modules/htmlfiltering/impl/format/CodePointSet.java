@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl.format;
+
+import java.util.Arrays;
+
+/**
+ * An immutable set of Unicode code points, stored as sorted and disjoint ranges.
+ */
+final class CodePointSet {
+
+    static final int MAX_CODE_POINT = Character.MAX_CODE_POINT;
+    static final CodePointSet EMPTY = new CodePointSet(new int[0]);
+    static final CodePointSet ALL = range(0, MAX_CODE_POINT);
+
+    /**
+     * The code point sets of the Unicode general categories, indexed by {@link Character#getType(int)}, computed on first use.
+     */
+    private static CodePointSet[] categories;
+
+    /**
+     * The ranges, as pairs of inclusive bounds: <code>[start0, end0, start1, end1, ...]</code>.
+     */
+    private final int[] ranges;
+
+    private CodePointSet(int[] ranges) {
+        this.ranges = ranges;
+    }
+
+    static CodePointSet of(int codePoint) {
+        return range(codePoint, codePoint);
+    }
+
+    static CodePointSet range(int start, int end) {
+        return new CodePointSet(new int[]{start, end});
+    }
+
+    /**
+     * @param chars the characters of the set, in any order
+     */
+    static CodePointSet ofChars(String chars) {
+        CodePointSet set = EMPTY;
+        for (int i = 0; i < chars.length(); i++) {
+            set = set.union(of(chars.charAt(i)));
+        }
+        return set;
+    }
+
+    /**
+     * @param type a Unicode general category, as returned by {@link Character#getType(int)}
+     */
+    static CodePointSet category(int type) {
+        return getCategories()[type];
+    }
+
+    private static synchronized CodePointSet[] getCategories() {
+        if (categories == null) {
+            int[][] ranges = new int[Character.FINAL_QUOTE_PUNCTUATION + 1][];
+            int[] lengths = new int[ranges.length];
+            int start = 0;
+            int type = Character.getType(0);
+            for (int codePoint = 1; codePoint <= MAX_CODE_POINT + 1; codePoint++) {
+                int nextType = codePoint <= MAX_CODE_POINT ? Character.getType(codePoint) : -1;
+                if (nextType != type) {
+                    if (ranges[type] == null) {
+                        ranges[type] = new int[16];
+                    } else if (lengths[type] == ranges[type].length) {
+                        ranges[type] = Arrays.copyOf(ranges[type], lengths[type] * 2);
+                    }
+                    ranges[type][lengths[type]++] = start;
+                    ranges[type][lengths[type]++] = codePoint - 1;
+                    start = codePoint;
+                    type = nextType;
+                }
+            }
+            CodePointSet[] sets = new CodePointSet[ranges.length];
+            for (int i = 0; i < sets.length; i++) {
+                sets[i] = ranges[i] == null ? EMPTY : new CodePointSet(Arrays.copyOf(ranges[i], lengths[i]));
+            }
+            categories = sets;
+        }
+        return categories;
+    }
+
+    boolean isEmpty() {
+        return ranges.length == 0;
+    }
+
+    boolean contains(int codePoint) {
+        // index of the first range start greater than the code point
+        int low = 0;
+        int high = ranges.length / 2;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (ranges[2 * middle] <= codePoint) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low > 0 && codePoint <= ranges[2 * low - 1];
+    }
+
+    int rangeCount() {
+        return ranges.length / 2;
+    }
+
+    int rangeStart(int index) {
+        return ranges[2 * index];
+    }
+
+    int rangeEnd(int index) {
+        return ranges[2 * index + 1];
+    }
+
+    CodePointSet union(CodePointSet other) {
+        if (other.isEmpty()) {
+            return this;
+        }
+        if (isEmpty()) {
+            return other;
+        }
+        int[] merged = new int[ranges.length + other.ranges.length];
+        int length = 0;
+        int i = 0;
+        int j = 0;
+        while (i < ranges.length || j < other.ranges.length) {
+            int start;
+            int end;
+            if (j >= other.ranges.length || (i < ranges.length && ranges[i] <= other.ranges[j])) {
+                start = ranges[i];
+                end = ranges[i + 1];
+                i += 2;
+            } else {
+                start = other.ranges[j];
+                end = other.ranges[j + 1];
+                j += 2;
+            }
+            if (length > 0 && start <= merged[length - 1] + 1) {
+                // overlapping or adjacent to the previous range
+                merged[length - 1] = Math.max(merged[length - 1], end);
+            } else {
+                merged[length++] = start;
+                merged[length++] = end;
+            }
+        }
+        return new CodePointSet(Arrays.copyOf(merged, length));
+    }
+
+    CodePointSet complement() {
+        int[] complement = new int[ranges.length + 2];
+        int length = 0;
+        int next = 0;
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (ranges[i] > next) {
+                complement[length++] = next;
+                complement[length++] = ranges[i] - 1;
+            }
+            next = ranges[i + 1] + 1;
+        }
+        if (next <= MAX_CODE_POINT) {
+            complement[length++] = next;
+            complement[length++] = MAX_CODE_POINT;
+        }
+        return new CodePointSet(Arrays.copyOf(complement, length));
+    }
+
+    CodePointSet intersection(CodePointSet other) {
+        if (isEmpty() || other.isEmpty()) {
+            return EMPTY;
+        }
+        return complement().union(other.complement()).complement();
+    }
+
+    CodePointSet minus(CodePointSet other) {
+        if (isEmpty() || other.isEmpty()) {
+            return this;
+        }
+        return intersection(other.complement());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof CodePointSet && Arrays.equals(ranges, ((CodePointSet) o).ranges));
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(ranges);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < ranges.length; i += 2) {
+            builder.append(String.format("\\x{%x}", ranges[i]));
+            if (ranges[i + 1] != ranges[i]) {
+                builder.append(String.format("-\\x{%x}", ranges[i + 1]));
+            }
+        }
+        return builder.append(']').toString();
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl.format;
+
+/**
+ * The worst-case time complexity of matching a value against a format definition with a backtracking regular expression engine,
+ * such as {@link java.util.regex.Pattern}, as a function of the length of the value.
+ */
+public enum FormatComplexity {
+    /**
+     * The matching time is linear, whatever the value.
+     */
+    LINEAR,
+    /**
+     * Some values take a polynomial time to match (e.g. <code>a*a*b</code>).
+     */
+    POLYNOMIAL,
+    /**
+     * Some values take an exponential time to match (e.g. <code>(a+)+b</code>), which allows denial of service attacks.
+     */
+    EXPONENTIAL,
+    /**
+     * The format definition is too large or uses constructs that are not analyzed.
+     */
+    UNKNOWN
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl.format;
+
+import org.jahia.modules.htmlfiltering.impl.cache.BoundedCache;
+
+import java.util.regex.Pattern;
+
+/**
+ * Matches values against the regular expression of a format definition.
+ * <p>
+ * The expressions that fit the regular subset supported by {@link RegexParser} are compiled into an automaton matching in a time
+ * linear in the length of the values, whatever the expression. The others are matched with {@link Pattern}, their
+ * {@link #getComplexity() complexity} telling whether some values may take a super-linear time to match.
+ * <p>
+ * Instances are immutable and thread-safe, and shared by all the configurations using the same expression.
+ */
+public final class FormatMatcher {
+
+    private static final int MAX_POSITIONS = 2000;
+    private static final int MAX_DFA_STATES = 2000;
+    private static final BoundedCache<String, FormatMatcher> MATCHERS = new BoundedCache<>(256, Long.MAX_VALUE, matcher -> 1);
+
+    private final String regex;
+    private final FormatComplexity complexity;
+    /**
+     * The linear-time matcher, <code>null</code> if the expression is matched with {@link #pattern}.
+     */
+    private final LinearMatcher linearMatcher;
+    private final Pattern pattern;
+
+    private FormatMatcher(String regex, FormatComplexity complexity, LinearMatcher linearMatcher, Pattern pattern) {
+        this.regex = regex;
+        this.complexity = complexity;
+        this.linearMatcher = linearMatcher;
+        this.pattern = pattern;
+    }
+
+    /**
+     * @param regex the regular expression, using the {@link Pattern} syntax
+     * @return the matcher of the expression, shared with the previous calls for the same expression
+     * @throws java.util.regex.PatternSyntaxException if the expression is not valid
+     */
+    public static FormatMatcher compile(String regex) {
+        FormatMatcher matcher = MATCHERS.get(regex);
+        if (matcher == null) {
+            matcher = create(regex);
+            MATCHERS.put(regex, matcher);
+        }
+        return matcher;
+    }
+
+    private static FormatMatcher create(String regex) {
+        // validates the expression first, the parser only supporting valid expressions
+        Pattern pattern = Pattern.compile(regex);
+        RegexParser.Result parsed;
+        try {
+            parsed = RegexParser.parse(regex);
+        } catch (RegexParser.UnsupportedRegexException e) {
+            return new FormatMatcher(regex, FormatComplexity.UNKNOWN, null, pattern);
+        }
+        PositionAutomaton automaton = PositionAutomaton.build(parsed.node, MAX_POSITIONS);
+        if (automaton == null) {
+            return new FormatMatcher(regex, FormatComplexity.UNKNOWN, null, pattern);
+        }
+        FormatComplexity complexity = AmbiguityAnalyzer.analyze(automaton);
+        if (!parsed.exact) {
+            return new FormatMatcher(regex, complexity, null, pattern);
+        }
+        return new FormatMatcher(regex, complexity, LinearMatcher.create(automaton, MAX_DFA_STATES), null);
+    }
+
+    /**
+     * @return the regular expression
+     */
+    public String getRegex() {
+        return regex;
+    }
+
+    /**
+     * @return <code>true</code> if the values are matched in linear time, whatever the {@link #getComplexity() complexity} of the
+     * expression
+     */
+    public boolean isLinear() {
+        return linearMatcher != null;
+    }
+
+    /**
+     * @return the complexity of matching values against the expression with a backtracking engine
+     */
+    public FormatComplexity getComplexity() {
+        return complexity;
+    }
+
+    /**
+     * @return <code>true</code> if the whole value matches the expression
+     */
+    public boolean matches(CharSequence value) {
+        return linearMatcher != null ? linearMatcher.matches(value) : pattern.matcher(value).matches();
+    }
+
+    @Override
+    public String toString() {
+        return "FormatMatcher{regex='" + regex + "', complexity=" + complexity + ", linear=" + isLinear() + '}';
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl.format;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matches whole values against a {@link PositionAutomaton} in a time linear in the length of the values.
+ * <p>
+ * The automaton is determinized when the result stays small enough, a single table lookup being then done per code point.
+ * Otherwise, the set of active states of the automaton is tracked while reading the value, which is still linear but slower.
+ * Instances are immutable and thread-safe.
+ */
+final class LinearMatcher {
+
+    private static final int DEAD_STATE = -1;
+
+    private final Alphabet alphabet;
+    /**
+     * The transitions of the deterministic automaton, by state and atom, <code>null</code> if it was not built.
+     */
+    private final int[] transitions;
+    private final boolean[] accepting;
+    private final PositionAutomaton automaton;
+    private final int[][] outgoingEdges;
+
+    private LinearMatcher(Alphabet alphabet, int[] transitions, boolean[] accepting, PositionAutomaton automaton) {
+        this.alphabet = alphabet;
+        this.transitions = transitions;
+        this.accepting = accepting;
+        this.automaton = automaton;
+        this.outgoingEdges = transitions == null ? automaton.outgoingEdges() : null;
+    }
+
+    /**
+     * @param automaton    the automaton to match against
+     * @param maxDfaStates the maximum number of states of the deterministic automaton
+     * @return the matcher
+     */
+    static LinearMatcher create(PositionAutomaton automaton, int maxDfaStates) {
+        int atomCount = automaton.alphabet.size();
+        int[][] outgoingEdges = automaton.outgoingEdges();
+        Map<BitSet, Integer> stateIds = new HashMap<>();
+        List<BitSet> states = new ArrayList<>();
+        BitSet initial = new BitSet(automaton.stateCount);
+        initial.set(PositionAutomaton.INITIAL_STATE);
+        stateIds.put(initial, 0);
+        states.add(initial);
+        List<int[]> rows = new ArrayList<>();
+        for (int id = 0; id < states.size(); id++) {
+            BitSet[] targets = new BitSet[atomCount];
+            BitSet state = states.get(id);
+            for (int source = state.nextSetBit(0); source >= 0; source = state.nextSetBit(source + 1)) {
+                for (int edge : outgoingEdges[source]) {
+                    BitSet atoms = automaton.edgeAtoms[edge];
+                    for (int atom = atoms.nextSetBit(0); atom >= 0; atom = atoms.nextSetBit(atom + 1)) {
+                        if (targets[atom] == null) {
+                            targets[atom] = new BitSet(automaton.stateCount);
+                        }
+                        targets[atom].set(automaton.edgeTargets[edge]);
+                    }
+                }
+            }
+            int[] row = new int[atomCount];
+            for (int atom = 0; atom < atomCount; atom++) {
+                if (targets[atom] == null) {
+                    row[atom] = DEAD_STATE;
+                } else {
+                    Integer target = stateIds.get(targets[atom]);
+                    if (target == null) {
+                        if (states.size() >= maxDfaStates) {
+                            return new LinearMatcher(automaton.alphabet, null, null, automaton);
+                        }
+                        target = states.size();
+                        stateIds.put(targets[atom], target);
+                        states.add(targets[atom]);
+                    }
+                    row[atom] = target;
+                }
+            }
+            rows.add(row);
+        }
+        int[] transitions = new int[states.size() * atomCount];
+        boolean[] accepting = new boolean[states.size()];
+        for (int id = 0; id < states.size(); id++) {
+            System.arraycopy(rows.get(id), 0, transitions, id * atomCount, atomCount);
+            BitSet state = states.get(id);
+            for (int position = state.nextSetBit(0); position >= 0 && !accepting[id]; position = state.nextSetBit(position + 1)) {
+                accepting[id] = automaton.accepting[position];
+            }
+        }
+        return new LinearMatcher(automaton.alphabet, transitions, accepting, null);
+    }
+
+    /**
+     * @return whether the matcher uses a deterministic automaton
+     */
+    boolean isDeterministic() {
+        return transitions != null;
+    }
+
+    /**
+     * @return <code>true</code> if the whole value matches
+     */
+    boolean matches(CharSequence value) {
+        return transitions != null ? matchesDeterministic(value) : matchesNondeterministic(value);
+    }
+
+    private boolean matchesDeterministic(CharSequence value) {
+        int atomCount = alphabet.size();
+        int state = 0;
+        for (int i = 0; i < value.length(); ) {
+            int codePoint = Character.codePointAt(value, i);
+            i += Character.charCount(codePoint);
+            state = transitions[state * atomCount + alphabet.atomOf(codePoint)];
+            if (state == DEAD_STATE) {
+                return false;
+            }
+        }
+        return accepting[state];
+    }
+
+    private boolean matchesNondeterministic(CharSequence value) {
+        BitSet current = new BitSet(automaton.stateCount);
+        BitSet next = new BitSet(automaton.stateCount);
+        current.set(PositionAutomaton.INITIAL_STATE);
+        for (int i = 0; i < value.length(); ) {
+            int codePoint = Character.codePointAt(value, i);
+            i += Character.charCount(codePoint);
+            int atom = alphabet.atomOf(codePoint);
+            next.clear();
+            for (int source = current.nextSetBit(0); source >= 0; source = current.nextSetBit(source + 1)) {
+                for (int edge : outgoingEdges[source]) {
+                    if (automaton.edgeAtoms[edge].get(atom)) {
+                        next.set(automaton.edgeTargets[edge]);
+                    }
+                }
+            }
+            if (next.isEmpty()) {
+                return false;
+            }
+            BitSet swap = current;
+            current = next;
+            next = swap;
+        }
+        for (int state = current.nextSetBit(0); state >= 0; state = current.nextSetBit(state + 1)) {
+            if (automaton.accepting[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl.format;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A position automaton (Glushkov automaton) of a regular expression: one state per character class occurrence, plus the initial
+ * state, without any empty transition.
+ * <p>
+ * The possessive repetitions of a character class are supported with guards: leaving such a repetition while the next code point
+ * could still have been consumed by it is forbidden, which is what makes the repetition never give back.
+ * <p>
+ * Parallel transitions between the same states are kept separate, as they are distinct ways of matching a value: they do not
+ * matter for the matching, but they do for the {@link AmbiguityAnalyzer ambiguity analysis}.
+ */
+final class PositionAutomaton {
+
+    static final int INITIAL_STATE = 0;
+
+    final int stateCount;
+    final int[] edgeSources;
+    final int[] edgeTargets;
+    /**
+     * The atoms of the code points consumed by each transition.
+     */
+    final BitSet[] edgeAtoms;
+    final boolean[] accepting;
+    final Alphabet alphabet;
+
+    private PositionAutomaton(int stateCount, int[] edgeSources, int[] edgeTargets, BitSet[] edgeAtoms, boolean[] accepting,
+                              Alphabet alphabet) {
+        this.stateCount = stateCount;
+        this.edgeSources = edgeSources;
+        this.edgeTargets = edgeTargets;
+        this.edgeAtoms = edgeAtoms;
+        this.accepting = accepting;
+        this.alphabet = alphabet;
+    }
+
+    /**
+     * @param node         the regular expression
+     * @param maxPositions the maximum number of states, bounding the size of the automaton
+     * @return the automaton, <code>null</code> if it would have more than the given number of states
+     */
+    static PositionAutomaton build(RegexNode node, int maxPositions) {
+        Builder builder = new Builder(maxPositions);
+        Fragment fragment;
+        try {
+            fragment = builder.build(node);
+        } catch (TooLargeException e) {
+            return null;
+        }
+        fragment.first.forEach((position, guard) -> builder.addEdge(INITIAL_STATE, position, builder.classes.get(position).minus(guard)));
+        int stateCount = builder.classes.size();
+        boolean[] accepting = new boolean[stateCount];
+        accepting[INITIAL_STATE] = fragment.nullable;
+        fragment.last.keySet().forEach(position -> accepting[position] = true);
+
+        Alphabet alphabet = Alphabet.of(builder.labels);
+        int edgeCount = builder.labels.size();
+        int[] edgeSources = new int[edgeCount];
+        int[] edgeTargets = new int[edgeCount];
+        BitSet[] edgeAtoms = new BitSet[edgeCount];
+        for (int i = 0; i < edgeCount; i++) {
+            edgeSources[i] = builder.sources.get(i);
+            edgeTargets[i] = builder.targets.get(i);
+            edgeAtoms[i] = alphabet.atoms(builder.labels.get(i));
+        }
+        return new PositionAutomaton(stateCount, edgeSources, edgeTargets, edgeAtoms, accepting, alphabet);
+    }
+
+    /**
+     * @return the transitions leaving each state
+     */
+    int[][] outgoingEdges() {
+        int[] counts = new int[stateCount];
+        for (int source : edgeSources) {
+            counts[source]++;
+        }
+        int[][] outgoing = new int[stateCount][];
+        for (int state = 0; state < stateCount; state++) {
+            outgoing[state] = new int[counts[state]];
+            counts[state] = 0;
+        }
+        for (int edge = 0; edge < edgeSources.length; edge++) {
+            int source = edgeSources[edge];
+            outgoing[source][counts[source]++] = edge;
+        }
+        return outgoing;
+    }
+
+    /**
+     * The part of the automaton built for a node of the expression.
+     */
+    private static final class Fragment {
+        /**
+         * The states entered first, with the code points they cannot be entered with.
+         */
+        final Map<Integer, CodePointSet> first = new LinkedHashMap<>();
+        /**
+         * The states left last, with the code points that cannot follow them.
+         */
+        final Map<Integer, CodePointSet> last = new LinkedHashMap<>();
+        boolean nullable = true;
+        /**
+         * The code points that cannot follow when the fragment matches the empty string.
+         */
+        CodePointSet skipGuard = CodePointSet.EMPTY;
+
+        static void put(Map<Integer, CodePointSet> entries, int position, CodePointSet guard) {
+            entries.merge(position, guard, CodePointSet::intersection);
+        }
+    }
+
+    private static final class Builder {
+        private final int maxPositions;
+        /**
+         * The character class of each state, by state number.
+         */
+        private final List<CodePointSet> classes = new ArrayList<>();
+        private final List<Integer> sources = new ArrayList<>();
+        private final List<Integer> targets = new ArrayList<>();
+        private final List<CodePointSet> labels = new ArrayList<>();
+
+        private Builder(int maxPositions) {
+            this.maxPositions = maxPositions;
+            classes.add(null);
+        }
+
+        private int newPosition(CodePointSet codePoints) {
+            if (classes.size() > maxPositions) {
+                throw TooLargeException.INSTANCE;
+            }
+            classes.add(codePoints);
+            return classes.size() - 1;
+        }
+
+        private void addEdge(int source, int target, CodePointSet label) {
+            if (!label.isEmpty()) {
+                sources.add(source);
+                targets.add(target);
+                labels.add(label);
+            }
+        }
+
+        private void connect(Map<Integer, CodePointSet> last, Map<Integer, CodePointSet> first) {
+            last.forEach((source, sourceGuard) -> first.forEach((target, targetGuard) ->
+                    addEdge(source, target, classes.get(target).minus(sourceGuard.union(targetGuard)))));
+        }
+
+        private Fragment build(RegexNode node) {
+            if (node instanceof RegexNode.CharClass) {
+                Fragment fragment = new Fragment();
+                int position = newPosition(((RegexNode.CharClass) node).codePoints);
+                fragment.first.put(position, CodePointSet.EMPTY);
+                fragment.last.put(position, CodePointSet.EMPTY);
+                fragment.nullable = false;
+                return fragment;
+            }
+            if (node instanceof RegexNode.Sequence) {
+                Fragment fragment = new Fragment();
+                for (RegexNode item : ((RegexNode.Sequence) node).items) {
+                    fragment = concatenate(fragment, build(item));
+                }
+                return fragment;
+            }
+            if (node instanceof RegexNode.Alternation) {
+                Fragment fragment = null;
+                for (RegexNode alternative : ((RegexNode.Alternation) node).alternatives) {
+                    fragment = fragment == null ? build(alternative) : alternate(fragment, build(alternative));
+                }
+                return fragment;
+            }
+            return repeat((RegexNode.Repetition) node);
+        }
+
+        private Fragment repeat(RegexNode.Repetition repetition) {
+            if (repetition.min > maxPositions || repetition.max > maxPositions) {
+                throw TooLargeException.INSTANCE;
+            }
+            if (repetition.possessive) {
+                return repeatPossessively(((RegexNode.CharClass) repetition.body).codePoints, repetition.min, repetition.max);
+            }
+            Fragment fragment = new Fragment();
+            boolean unbounded = repetition.max == RegexNode.Repetition.UNBOUNDED;
+            for (int i = 0; i < repetition.min; i++) {
+                Fragment body = build(repetition.body);
+                if (unbounded && i == repetition.min - 1) {
+                    connect(body.last, body.first);
+                }
+                fragment = concatenate(fragment, body);
+            }
+            if (unbounded && repetition.min == 0) {
+                Fragment body = build(repetition.body);
+                connect(body.last, body.first);
+                optional(body);
+                fragment = concatenate(fragment, body);
+            } else if (!unbounded) {
+                // X{0,3} is built as (X(X(X)?)?)?
+                Fragment optionalPart = new Fragment();
+                for (int i = repetition.min; i < repetition.max; i++) {
+                    optionalPart = optional(concatenate(build(repetition.body), optionalPart));
+                }
+                fragment = concatenate(fragment, optionalPart);
+            }
+            return fragment;
+        }
+
+        /**
+         * Builds a chain of states for a possessive repetition of a character class: the repetition can only be left after its
+         * last state, or before the maximum is reached when the next code point is not in the class.
+         */
+        private Fragment repeatPossessively(CodePointSet codePoints, int min, int max) {
+            Fragment fragment = new Fragment();
+            if (max == 0) {
+                return fragment;
+            }
+            boolean unbounded = max == RegexNode.Repetition.UNBOUNDED;
+            fragment.nullable = min == 0;
+            fragment.skipGuard = min == 0 ? codePoints : CodePointSet.EMPTY;
+            int length = unbounded ? Math.max(min, 1) : max;
+            int previous = INITIAL_STATE;
+            for (int i = 1; i <= length; i++) {
+                int position = newPosition(codePoints);
+                if (i == 1) {
+                    fragment.first.put(position, CodePointSet.EMPTY);
+                } else {
+                    addEdge(previous, position, codePoints);
+                }
+                if (i >= Math.max(min, 1)) {
+                    fragment.last.put(position, !unbounded && i == max ? CodePointSet.EMPTY : codePoints);
+                }
+                previous = position;
+            }
+            if (unbounded) {
+                addEdge(previous, previous, codePoints);
+            }
+            return fragment;
+        }
+
+        private Fragment concatenate(Fragment left, Fragment right) {
+            connect(left.last, right.first);
+            Fragment fragment = new Fragment();
+            fragment.first.putAll(left.first);
+            if (left.nullable) {
+                right.first.forEach((position, guard) -> Fragment.put(fragment.first, position, guard.union(left.skipGuard)));
+            }
+            right.last.forEach((position, guard) -> Fragment.put(fragment.last, position, guard));
+            if (right.nullable) {
+                left.last.forEach((position, guard) -> Fragment.put(fragment.last, position, guard.union(right.skipGuard)));
+            }
+            fragment.nullable = left.nullable && right.nullable;
+            fragment.skipGuard = left.skipGuard.union(right.skipGuard);
+            return fragment;
+        }
+
+        private Fragment alternate(Fragment left, Fragment right) {
+            Fragment fragment = new Fragment();
+            left.first.forEach((position, guard) -> Fragment.put(fragment.first, position, guard));
+            right.first.forEach((position, guard) -> Fragment.put(fragment.first, position, guard));
+            left.last.forEach((position, guard) -> Fragment.put(fragment.last, position, guard));
+            right.last.forEach((position, guard) -> Fragment.put(fragment.last, position, guard));
+            fragment.nullable = left.nullable || right.nullable;
+            if (left.nullable && right.nullable) {
+                fragment.skipGuard = left.skipGuard.intersection(right.skipGuard);
+            } else {
+                fragment.skipGuard = left.nullable ? left.skipGuard : right.skipGuard;
+            }
+            return fragment;
+        }
+
+        private static Fragment optional(Fragment fragment) {
+            fragment.nullable = true;
+            fragment.skipGuard = CodePointSet.EMPTY;
+            return fragment;
+        }
+    }
+
+    private static final class TooLargeException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        private static final TooLargeException INSTANCE = new TooLargeException();
+
+        private TooLargeException() {
+            // no message nor stack trace, only used for control flow
+            super(null, null, false, false);
+        }
+    }
+}
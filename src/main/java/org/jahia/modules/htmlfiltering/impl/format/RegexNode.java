@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl.format;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A node of the syntax tree of a regular expression, as parsed by {@link RegexParser}.
+ * <p>
+ * Only the constructs having a meaning for the matching of a whole value are represented: capturing groups and lazy quantifiers
+ * are not distinguished from their plain counterparts.
+ */
+abstract class RegexNode {
+
+    static final RegexNode EMPTY = new Sequence(Collections.emptyList());
+
+    private RegexNode() {
+    }
+
+    /**
+     * Matches a single code point of a set.
+     */
+    static final class CharClass extends RegexNode {
+        final CodePointSet codePoints;
+
+        CharClass(CodePointSet codePoints) {
+            this.codePoints = codePoints;
+        }
+    }
+
+    /**
+     * Matches its items one after the other.
+     */
+    static final class Sequence extends RegexNode {
+        final List<RegexNode> items;
+
+        Sequence(List<RegexNode> items) {
+            this.items = items;
+        }
+    }
+
+    /**
+     * Matches any of its alternatives.
+     */
+    static final class Alternation extends RegexNode {
+        final List<RegexNode> alternatives;
+
+        Alternation(List<RegexNode> alternatives) {
+            this.alternatives = alternatives;
+        }
+    }
+
+    /**
+     * Matches the beginning or the end of the input, only used while parsing.
+     */
+    static final class Anchor extends RegexNode {
+        final boolean beginning;
+
+        Anchor(boolean beginning) {
+            this.beginning = beginning;
+        }
+    }
+
+    /**
+     * Matches its body repeatedly.
+     */
+    static final class Repetition extends RegexNode {
+        static final int UNBOUNDED = -1;
+
+        final RegexNode body;
+        final int min;
+        /**
+         * {@link #UNBOUNDED} if there is no maximum.
+         */
+        final int max;
+        /**
+         * Whether the repetition never gives back what it matched (e.g. <code>a*+</code>).
+         */
+        final boolean possessive;
+
+        Repetition(RegexNode body, int min, int max, boolean possessive) {
+            this.body = body;
+            this.min = min;
+            this.max = max;
+            this.possessive = possessive;
+        }
+    }
+}
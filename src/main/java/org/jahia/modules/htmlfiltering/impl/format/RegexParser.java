@@ -0,0 +1,732 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.impl.format;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses a {@link java.util.regex.Pattern} regular expression into a {@link RegexNode} tree, for its use by the linear-time
+ * matcher and the ambiguity analysis.
+ * <p>
+ * The regular subset of the syntax is supported exactly: literals, escapes, character classes (including the Unicode general
+ * categories and the POSIX classes), groups, alternations, greedy and lazy quantifiers, possessive quantifiers on a character
+ * class, the <code>i</code> flag, and the anchors at the beginning or the end of the expression.
+ * <p>
+ * The other constructs that can be approximated (back references, lookarounds, word boundaries, other anchors and other
+ * possessive or atomic constructs) make the result {@link Result#exact inexact}: it may then only be used for the analysis.
+ * The remaining ones (e.g. other flags) raise an {@link UnsupportedRegexException}.
+ */
+final class RegexParser {
+
+    /**
+     * The characters matched by <code>.</code>: all but the line terminators.
+     */
+    private static final CodePointSet DOT = CodePointSet.ofChars("\n\r\u0085\u2028\u2029").complement();
+    private static final CodePointSet DIGITS = CodePointSet.range('0', '9');
+    private static final CodePointSet LOWER = CodePointSet.range('a', 'z');
+    private static final CodePointSet UPPER = CodePointSet.range('A', 'Z');
+    private static final CodePointSet WORD = LOWER.union(UPPER).union(DIGITS).union(CodePointSet.of('_'));
+    private static final CodePointSet SPACES = CodePointSet.ofChars(" \t\n\u000B\f\r");
+    private static final CodePointSet HORIZONTAL_SPACES = CodePointSet.ofChars(" \t\u00A0\u1680\u180E\u202F\u205F\u3000")
+            .union(CodePointSet.range(0x2000, 0x200A));
+    private static final CodePointSet VERTICAL_SPACES = CodePointSet.ofChars("\n\u000B\f\r\u0085\u2028\u2029");
+    private static final CodePointSet PUNCTUATION = CodePointSet.ofChars("!\"#$%&'()*+,-./:;<=>?@[\\]^_`{|}~");
+    private static final Map<String, CodePointSet> POSIX_CLASSES = new HashMap<>();
+    private static final Map<String, int[]> CATEGORIES = new HashMap<>();
+
+    static {
+        POSIX_CLASSES.put("Lower", LOWER);
+        POSIX_CLASSES.put("Upper", UPPER);
+        POSIX_CLASSES.put("ASCII", CodePointSet.range(0, 0x7F));
+        POSIX_CLASSES.put("Alpha", LOWER.union(UPPER));
+        POSIX_CLASSES.put("Digit", DIGITS);
+        POSIX_CLASSES.put("Alnum", LOWER.union(UPPER).union(DIGITS));
+        POSIX_CLASSES.put("Punct", PUNCTUATION);
+        POSIX_CLASSES.put("Graph", LOWER.union(UPPER).union(DIGITS).union(PUNCTUATION));
+        POSIX_CLASSES.put("Print", LOWER.union(UPPER).union(DIGITS).union(PUNCTUATION).union(CodePointSet.of(' ')));
+        POSIX_CLASSES.put("Blank", CodePointSet.ofChars(" \t"));
+        POSIX_CLASSES.put("Cntrl", CodePointSet.range(0, 0x1F).union(CodePointSet.of(0x7F)));
+        POSIX_CLASSES.put("XDigit", DIGITS.union(CodePointSet.range('a', 'f')).union(CodePointSet.range('A', 'F')));
+        POSIX_CLASSES.put("Space", SPACES);
+
+        CATEGORIES.put("Lu", new int[]{Character.UPPERCASE_LETTER});
+        CATEGORIES.put("Ll", new int[]{Character.LOWERCASE_LETTER});
+        CATEGORIES.put("Lt", new int[]{Character.TITLECASE_LETTER});
+        CATEGORIES.put("Lm", new int[]{Character.MODIFIER_LETTER});
+        CATEGORIES.put("Lo", new int[]{Character.OTHER_LETTER});
+        CATEGORIES.put("Mn", new int[]{Character.NON_SPACING_MARK});
+        CATEGORIES.put("Mc", new int[]{Character.COMBINING_SPACING_MARK});
+        CATEGORIES.put("Me", new int[]{Character.ENCLOSING_MARK});
+        CATEGORIES.put("Nd", new int[]{Character.DECIMAL_DIGIT_NUMBER});
+        CATEGORIES.put("Nl", new int[]{Character.LETTER_NUMBER});
+        CATEGORIES.put("No", new int[]{Character.OTHER_NUMBER});
+        CATEGORIES.put("Pc", new int[]{Character.CONNECTOR_PUNCTUATION});
+        CATEGORIES.put("Pd", new int[]{Character.DASH_PUNCTUATION});
+        CATEGORIES.put("Ps", new int[]{Character.START_PUNCTUATION});
+        CATEGORIES.put("Pe", new int[]{Character.END_PUNCTUATION});
+        CATEGORIES.put("Pi", new int[]{Character.INITIAL_QUOTE_PUNCTUATION});
+        CATEGORIES.put("Pf", new int[]{Character.FINAL_QUOTE_PUNCTUATION});
+        CATEGORIES.put("Po", new int[]{Character.OTHER_PUNCTUATION});
+        CATEGORIES.put("Sm", new int[]{Character.MATH_SYMBOL});
+        CATEGORIES.put("Sc", new int[]{Character.CURRENCY_SYMBOL});
+        CATEGORIES.put("Sk", new int[]{Character.MODIFIER_SYMBOL});
+        CATEGORIES.put("So", new int[]{Character.OTHER_SYMBOL});
+        CATEGORIES.put("Zs", new int[]{Character.SPACE_SEPARATOR});
+        CATEGORIES.put("Zl", new int[]{Character.LINE_SEPARATOR});
+        CATEGORIES.put("Zp", new int[]{Character.PARAGRAPH_SEPARATOR});
+        CATEGORIES.put("Cc", new int[]{Character.CONTROL});
+        CATEGORIES.put("Cf", new int[]{Character.FORMAT});
+        CATEGORIES.put("Co", new int[]{Character.PRIVATE_USE});
+        CATEGORIES.put("Cs", new int[]{Character.SURROGATE});
+        CATEGORIES.put("Cn", new int[]{Character.UNASSIGNED});
+        for (String major : Arrays.asList("L", "M", "N", "P", "S", "Z", "C")) {
+            List<Integer> types = new ArrayList<>();
+            CATEGORIES.forEach((name, type) -> {
+                if (name.startsWith(major)) {
+                    types.add(type[0]);
+                }
+            });
+            CATEGORIES.put(major, types.stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    private final String regex;
+    private int index;
+    private boolean caseInsensitive;
+    private boolean exact = true;
+    /**
+     * The capturing groups, by number minus one, <code>null</code> until they are closed.
+     */
+    private final List<RegexNode> groups = new ArrayList<>();
+    private final Map<String, Integer> groupNumbers = new HashMap<>();
+
+    private RegexParser(String regex) {
+        this.regex = regex;
+    }
+
+    /**
+     * @param regex a valid {@link java.util.regex.Pattern} regular expression
+     * @return the parsed expression
+     * @throws UnsupportedRegexException if the expression uses constructs that cannot even be approximated
+     */
+    static Result parse(String regex) throws UnsupportedRegexException {
+        RegexParser parser = new RegexParser(regex);
+        RegexNode node = parser.parseAlternation();
+        if (parser.index < regex.length()) {
+            throw new UnsupportedRegexException("unbalanced parenthesis at index " + parser.index);
+        }
+        node = parser.resolveAnchors(node, true, true);
+        return new Result(node, parser.exact);
+    }
+
+    private RegexNode parseAlternation() throws UnsupportedRegexException {
+        List<RegexNode> alternatives = new ArrayList<>();
+        alternatives.add(parseSequence());
+        while (index < regex.length() && regex.charAt(index) == '|') {
+            index++;
+            alternatives.add(parseSequence());
+        }
+        return alternatives.size() == 1 ? alternatives.get(0) : new RegexNode.Alternation(alternatives);
+    }
+
+    private RegexNode parseSequence() throws UnsupportedRegexException {
+        List<RegexNode> items = new ArrayList<>();
+        while (index < regex.length() && regex.charAt(index) != '|' && regex.charAt(index) != ')') {
+            RegexNode atom;
+            if (regex.startsWith("\\Q", index)) {
+                List<RegexNode> literals = parseQuotation();
+                if (literals.isEmpty()) {
+                    continue;
+                }
+                // a quantifier only applies to the last quoted character
+                items.addAll(literals.subList(0, literals.size() - 1));
+                atom = literals.get(literals.size() - 1);
+            } else {
+                atom = parseAtom();
+                if (atom == null) {
+                    continue;
+                }
+            }
+            items.add(parseQuantifiers(atom));
+        }
+        return items.size() == 1 ? items.get(0) : new RegexNode.Sequence(items);
+    }
+
+    private List<RegexNode> parseQuotation() {
+        index += 2;
+        int end = regex.indexOf("\\E", index);
+        if (end < 0) {
+            end = regex.length();
+        }
+        List<RegexNode> literals = new ArrayList<>();
+        while (index < end) {
+            int codePoint = regex.codePointAt(index);
+            literals.add(new RegexNode.CharClass(fold(CodePointSet.of(codePoint))));
+            index += Character.charCount(codePoint);
+        }
+        index = Math.min(regex.length(), end + 2);
+        return literals;
+    }
+
+    /**
+     * @return the parsed atom, <code>null</code> if it does not match anything by itself (e.g. a flags group)
+     */
+    private RegexNode parseAtom() throws UnsupportedRegexException {
+        char c = regex.charAt(index);
+        switch (c) {
+            case '(':
+                return parseGroup();
+            case '[':
+                return new RegexNode.CharClass(parseClass());
+            case '.':
+                index++;
+                return new RegexNode.CharClass(DOT);
+            case '^':
+                index++;
+                return new RegexNode.Anchor(true);
+            case '$':
+                index++;
+                return new RegexNode.Anchor(false);
+            case '\\':
+                return parseEscapeAtom();
+            case '*':
+            case '+':
+            case '?':
+            case '{':
+                throw new UnsupportedRegexException("dangling quantifier at index " + index);
+            default:
+                int codePoint = regex.codePointAt(index);
+                index += Character.charCount(codePoint);
+                return new RegexNode.CharClass(fold(CodePointSet.of(codePoint)));
+        }
+    }
+
+    private RegexNode parseGroup() throws UnsupportedRegexException {
+        index++;
+        boolean enclosingCaseInsensitive = caseInsensitive;
+        RegexNode result;
+        if (index < regex.length() && regex.charAt(index) == '?') {
+            index++;
+            char kind = charAt(index);
+            if (kind == ':') {
+                index++;
+                result = parseGroupBody();
+            } else if (kind == '>') {
+                index++;
+                result = atomic(parseGroupBody());
+            } else if (kind == '=' || kind == '!' || (kind == '<' && (charAt(index + 1) == '=' || charAt(index + 1) == '!'))) {
+                // lookarounds only restrict the matched values, they are ignored by the approximation
+                index += kind == '<' ? 2 : 1;
+                parseGroupBody();
+                exact = false;
+                result = RegexNode.EMPTY;
+            } else if (kind == '<') {
+                int nameEnd = regex.indexOf('>', index);
+                if (nameEnd < 0) {
+                    throw new UnsupportedRegexException("unterminated group name at index " + index);
+                }
+                groupNumbers.put(regex.substring(index + 1, nameEnd), groups.size() + 1);
+                index = nameEnd + 1;
+                result = parseCapturingGroupBody();
+            } else {
+                return parseFlags(enclosingCaseInsensitive);
+            }
+        } else {
+            result = parseCapturingGroupBody();
+        }
+        caseInsensitive = enclosingCaseInsensitive;
+        return result;
+    }
+
+    private RegexNode parseCapturingGroupBody() throws UnsupportedRegexException {
+        int number = groups.size();
+        groups.add(null);
+        RegexNode body = parseGroupBody();
+        groups.set(number, body);
+        return body;
+    }
+
+    private RegexNode parseGroupBody() throws UnsupportedRegexException {
+        RegexNode body = parseAlternation();
+        if (charAt(index) != ')') {
+            throw new UnsupportedRegexException("unterminated group at index " + index);
+        }
+        index++;
+        return body;
+    }
+
+    /**
+     * Parses the flags of a <code>(?i)</code> or <code>(?i:X)</code> group, only the case insensitivity is supported.
+     */
+    private RegexNode parseFlags(boolean enclosingCaseInsensitive) throws UnsupportedRegexException {
+        boolean enabled = true;
+        boolean flag = caseInsensitive;
+        while (index < regex.length()) {
+            char c = regex.charAt(index++);
+            if (c == '-') {
+                enabled = false;
+            } else if (c == 'i') {
+                flag = enabled;
+            } else if (c == ')') {
+                // applies until the end of the enclosing group
+                caseInsensitive = flag;
+                return null;
+            } else if (c == ':') {
+                caseInsensitive = flag;
+                RegexNode body = parseGroupBody();
+                caseInsensitive = enclosingCaseInsensitive;
+                return body;
+            } else {
+                throw new UnsupportedRegexException("unsupported flag '" + c + "'");
+            }
+        }
+        throw new UnsupportedRegexException("unterminated flags group");
+    }
+
+    /**
+     * @return the node equivalent to an atomic group of the given body
+     */
+    private RegexNode atomic(RegexNode body) {
+        if (body instanceof RegexNode.CharClass) {
+            return body;
+        }
+        if (body instanceof RegexNode.Repetition && ((RegexNode.Repetition) body).body instanceof RegexNode.CharClass) {
+            RegexNode.Repetition repetition = (RegexNode.Repetition) body;
+            return new RegexNode.Repetition(repetition.body, repetition.min, repetition.max, true);
+        }
+        exact = false;
+        return body;
+    }
+
+    private RegexNode parseQuantifiers(RegexNode atom) throws UnsupportedRegexException {
+        RegexNode node = atom;
+        while (index < regex.length()) {
+            char c = regex.charAt(index);
+            int min;
+            int max;
+            if (c == '*') {
+                min = 0;
+                max = RegexNode.Repetition.UNBOUNDED;
+                index++;
+            } else if (c == '+') {
+                min = 1;
+                max = RegexNode.Repetition.UNBOUNDED;
+                index++;
+            } else if (c == '?') {
+                min = 0;
+                max = 1;
+                index++;
+            } else if (c == '{') {
+                int end = regex.indexOf('}', index);
+                if (end < 0) {
+                    throw new UnsupportedRegexException("unterminated repetition at index " + index);
+                }
+                String[] bounds = regex.substring(index + 1, end).split(",", -1);
+                try {
+                    min = Integer.parseInt(bounds[0]);
+                    max = bounds.length == 1 ? min : bounds[1].isEmpty() ? RegexNode.Repetition.UNBOUNDED : Integer.parseInt(bounds[1]);
+                } catch (NumberFormatException e) {
+                    throw new UnsupportedRegexException("invalid repetition at index " + index);
+                }
+                index = end + 1;
+            } else {
+                break;
+            }
+            boolean possessive = false;
+            if (charAt(index) == '?') {
+                // lazy, same values matched
+                index++;
+            } else if (charAt(index) == '+') {
+                possessive = true;
+                index++;
+            }
+            if (node instanceof RegexNode.Anchor) {
+                throw new UnsupportedRegexException("repeated anchor at index " + index);
+            }
+            if (possessive && !(node instanceof RegexNode.CharClass)) {
+                // approximated with a greedy repetition
+                exact = false;
+                possessive = false;
+            }
+            node = new RegexNode.Repetition(node, min, max, possessive);
+        }
+        return node;
+    }
+
+    private RegexNode parseEscapeAtom() throws UnsupportedRegexException {
+        char c = charAt(index + 1);
+        if (c >= '1' && c <= '9') {
+            index++;
+            return backReference(parseGroupNumber());
+        }
+        switch (c) {
+            case 'k':
+                int nameEnd = regex.indexOf('>', index);
+                if (charAt(index + 2) != '<' || nameEnd < 0 || !groupNumbers.containsKey(regex.substring(index + 3, nameEnd))) {
+                    throw new UnsupportedRegexException("invalid named back reference at index " + index);
+                }
+                int number = groupNumbers.get(regex.substring(index + 3, nameEnd));
+                index = nameEnd + 1;
+                return backReference(number);
+            case 'b':
+            case 'B':
+            case 'G':
+                // boundaries only restrict the matched values, they are ignored by the approximation
+                index += 2;
+                exact = false;
+                return RegexNode.EMPTY;
+            case 'A':
+                index += 2;
+                return new RegexNode.Anchor(true);
+            case 'z':
+            case 'Z':
+                index += 2;
+                return new RegexNode.Anchor(false);
+            case 'R':
+                index += 2;
+                return new RegexNode.Alternation(Arrays.asList(
+                        new RegexNode.Sequence(Arrays.asList(new RegexNode.CharClass(CodePointSet.of('\r')),
+                                new RegexNode.CharClass(CodePointSet.of('\n')))),
+                        new RegexNode.CharClass(VERTICAL_SPACES)));
+            default:
+                index++;
+                return new RegexNode.CharClass(fold(parseEscape()));
+        }
+    }
+
+    private int parseGroupNumber() {
+        // as java.util.regex, the longest number not greater than the number of groups
+        int number = regex.charAt(index++) - '0';
+        while (index < regex.length() && Character.isDigit(regex.charAt(index))) {
+            int next = number * 10 + (regex.charAt(index) - '0');
+            if (next > groups.size()) {
+                break;
+            }
+            number = next;
+            index++;
+        }
+        return number;
+    }
+
+    private RegexNode backReference(int number) throws UnsupportedRegexException {
+        if (number > groups.size() || groups.get(number - 1) == null) {
+            throw new UnsupportedRegexException("back reference to an unclosed group " + number);
+        }
+        // approximated with the group itself, which matches more values
+        exact = false;
+        return groups.get(number - 1);
+    }
+
+    /**
+     * Parses an escape sequence matching a single code point of a set, the index being on the character after the backslash.
+     */
+    private CodePointSet parseEscape() throws UnsupportedRegexException {
+        char c = charAt(index++);
+        switch (c) {
+            case 't':
+                return CodePointSet.of('\t');
+            case 'n':
+                return CodePointSet.of('\n');
+            case 'r':
+                return CodePointSet.of('\r');
+            case 'f':
+                return CodePointSet.of('\f');
+            case 'a':
+                return CodePointSet.of('\u0007');
+            case 'e':
+                return CodePointSet.of('\u001B');
+            case '0':
+                return CodePointSet.of(parseOctal());
+            case 'x':
+                if (charAt(index) == '{') {
+                    int end = regex.indexOf('}', index);
+                    return CodePointSet.of(parseHex(index + 1, end, end + 1));
+                }
+                return CodePointSet.of(parseHex(index, index + 2, index + 2));
+            case 'u':
+                return CodePointSet.of(parseHex(index, index + 4, index + 4));
+            case 'c':
+                return CodePointSet.of(charAt(index++) ^ 64);
+            case 'd':
+                return DIGITS;
+            case 'D':
+                return DIGITS.complement();
+            case 'w':
+                return WORD;
+            case 'W':
+                return WORD.complement();
+            case 's':
+                return SPACES;
+            case 'S':
+                return SPACES.complement();
+            case 'h':
+                return HORIZONTAL_SPACES;
+            case 'H':
+                return HORIZONTAL_SPACES.complement();
+            case 'v':
+                return VERTICAL_SPACES;
+            case 'V':
+                return VERTICAL_SPACES.complement();
+            case 'p':
+                return parseProperty();
+            case 'P':
+                return parseProperty().complement();
+            default:
+                if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+                    throw new UnsupportedRegexException("unsupported escape \\" + c);
+                }
+                // an escaped symbol matches itself
+                index--;
+                int codePoint = regex.codePointAt(index);
+                index += Character.charCount(codePoint);
+                return CodePointSet.of(codePoint);
+        }
+    }
+
+    private int parseOctal() throws UnsupportedRegexException {
+        int value = 0;
+        int digits = 0;
+        // at most 3 digits, for a value up to 0377
+        while (digits < 3 && charAt(index) >= '0' && charAt(index) <= '7' && (value * 8 + (charAt(index) - '0')) <= 0377) {
+            value = value * 8 + (regex.charAt(index++) - '0');
+            digits++;
+        }
+        if (digits == 0) {
+            throw new UnsupportedRegexException("invalid octal escape at index " + index);
+        }
+        return value;
+    }
+
+    private int parseHex(int start, int end, int next) throws UnsupportedRegexException {
+        if (start >= end || end > regex.length()) {
+            throw new UnsupportedRegexException("invalid hexadecimal escape at index " + index);
+        }
+        try {
+            int value = Integer.parseInt(regex.substring(start, end), 16);
+            index = next;
+            return value;
+        } catch (NumberFormatException e) {
+            throw new UnsupportedRegexException("invalid hexadecimal escape at index " + index);
+        }
+    }
+
+    private CodePointSet parseProperty() throws UnsupportedRegexException {
+        String name;
+        if (charAt(index) == '{') {
+            int end = regex.indexOf('}', index);
+            if (end < 0) {
+                throw new UnsupportedRegexException("unterminated property at index " + index);
+            }
+            name = regex.substring(index + 1, end);
+            index = end + 1;
+        } else {
+            name = String.valueOf(charAt(index++));
+        }
+        if (caseInsensitive) {
+            // java.util.regex may apply the case insensitivity to some properties
+            exact = false;
+        }
+        CodePointSet posixClass = POSIX_CLASSES.get(name);
+        if (posixClass != null) {
+            return posixClass;
+        }
+        int[] types = CATEGORIES.get(name.startsWith("Is") ? name.substring(2) : name);
+        if (types == null) {
+            throw new UnsupportedRegexException("unsupported property " + name);
+        }
+        CodePointSet set = CodePointSet.EMPTY;
+        for (int type : types) {
+            set = set.union(CodePointSet.category(type));
+        }
+        return set;
+    }
+
+    /**
+     * Parses a character class, the index being on its opening bracket.
+     */
+    private CodePointSet parseClass() throws UnsupportedRegexException {
+        index++;
+        boolean negated = false;
+        if (charAt(index) == '^') {
+            negated = true;
+            index++;
+        }
+        if (charAt(index) == ']') {
+            throw new UnsupportedRegexException("empty character class at index " + index);
+        }
+        CodePointSet set = CodePointSet.EMPTY;
+        List<CodePointSet> intersected = new ArrayList<>();
+        while (true) {
+            if (index >= regex.length()) {
+                throw new UnsupportedRegexException("unterminated character class");
+            }
+            char c = regex.charAt(index);
+            if (c == ']') {
+                index++;
+                break;
+            }
+            if (c == '[') {
+                set = set.union(parseClass());
+            } else if (c == '&' && charAt(index + 1) == '&') {
+                index += 2;
+                intersected.add(set);
+                set = CodePointSet.EMPTY;
+            } else {
+                set = set.union(parseClassRange());
+            }
+        }
+        for (CodePointSet operand : intersected) {
+            set = set.intersection(operand);
+        }
+        set = fold(set);
+        return negated ? set.complement() : set;
+    }
+
+    /**
+     * Parses a single character, an escape or a range of a character class.
+     */
+    private CodePointSet parseClassRange() throws UnsupportedRegexException {
+        int start;
+        if (regex.charAt(index) == '\\') {
+            if (charAt(index + 1) == 'Q') {
+                throw new UnsupportedRegexException("quotation in a character class at index " + index);
+            }
+            index++;
+            CodePointSet escape = parseEscape();
+            if (escape.rangeCount() != 1 || escape.rangeStart(0) != escape.rangeEnd(0)) {
+                if (charAt(index) == '-' && charAt(index + 1) != ']') {
+                    throw new UnsupportedRegexException("range from a class at index " + index);
+                }
+                return escape;
+            }
+            start = escape.rangeStart(0);
+        } else {
+            start = regex.codePointAt(index);
+            index += Character.charCount(start);
+        }
+        if (charAt(index) != '-' || charAt(index + 1) == ']' || charAt(index + 1) == '[' || index + 1 >= regex.length()) {
+            return CodePointSet.of(start);
+        }
+        index++;
+        int end;
+        if (regex.charAt(index) == '\\') {
+            index++;
+            CodePointSet escape = parseEscape();
+            if (escape.rangeCount() != 1 || escape.rangeStart(0) != escape.rangeEnd(0)) {
+                throw new UnsupportedRegexException("range to a class at index " + index);
+            }
+            end = escape.rangeStart(0);
+        } else {
+            end = regex.codePointAt(index);
+            index += Character.charCount(end);
+        }
+        if (end < start) {
+            throw new UnsupportedRegexException("invalid range at index " + index);
+        }
+        return CodePointSet.range(start, end);
+    }
+
+    /**
+     * @return the given set with the other case of its ASCII letters, if the case is ignored
+     */
+    private CodePointSet fold(CodePointSet set) {
+        if (!caseInsensitive) {
+            return set;
+        }
+        CodePointSet folded = set;
+        for (char c = 'a'; c <= 'z'; c++) {
+            char upper = Character.toUpperCase(c);
+            if (set.contains(c) || set.contains(upper)) {
+                folded = folded.union(CodePointSet.of(c)).union(CodePointSet.of(upper));
+            }
+        }
+        return folded;
+    }
+
+    /**
+     * Replaces the anchors by empty nodes, the expression being inexact if they are not at its beginning or end.
+     */
+    private RegexNode resolveAnchors(RegexNode node, boolean atBeginning, boolean atEnd) {
+        if (node instanceof RegexNode.Anchor) {
+            if (((RegexNode.Anchor) node).beginning ? !atBeginning : !atEnd) {
+                exact = false;
+            }
+            return RegexNode.EMPTY;
+        }
+        if (node instanceof RegexNode.Sequence) {
+            List<RegexNode> items = ((RegexNode.Sequence) node).items;
+            List<RegexNode> resolved = new ArrayList<>(items.size());
+            for (int i = 0; i < items.size(); i++) {
+                boolean itemAtBeginning = atBeginning && onlyAnchors(items.subList(0, i));
+                boolean itemAtEnd = atEnd && onlyAnchors(items.subList(i + 1, items.size()));
+                resolved.add(resolveAnchors(items.get(i), itemAtBeginning, itemAtEnd));
+            }
+            return new RegexNode.Sequence(resolved);
+        }
+        if (node instanceof RegexNode.Alternation) {
+            List<RegexNode> resolved = new ArrayList<>();
+            for (RegexNode alternative : ((RegexNode.Alternation) node).alternatives) {
+                resolved.add(resolveAnchors(alternative, atBeginning, atEnd));
+            }
+            return new RegexNode.Alternation(resolved);
+        }
+        if (node instanceof RegexNode.Repetition) {
+            RegexNode.Repetition repetition = (RegexNode.Repetition) node;
+            return new RegexNode.Repetition(resolveAnchors(repetition.body, false, false), repetition.min, repetition.max,
+                    repetition.possessive);
+        }
+        return node;
+    }
+
+    private static boolean onlyAnchors(List<RegexNode> nodes) {
+        return nodes.stream().allMatch(RegexNode.Anchor.class::isInstance);
+    }
+
+    private char charAt(int position) {
+        return position < regex.length() ? regex.charAt(position) : '\0';
+    }
+
+    /**
+     * A parsed regular expression.
+     */
+    static final class Result {
+        final RegexNode node;
+        /**
+         * Whether the node matches exactly the same values as the regular expression, or only approximates it.
+         */
+        final boolean exact;
+
+        private Result(RegexNode node, boolean exact) {
+            this.node = node;
+            this.exact = exact;
+        }
+    }
+
+    /**
+     * Raised for the regular expressions that cannot be parsed, even approximately.
+     */
+    static final class UnsupportedRegexException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedRegexException(String message) {
+            super(message);
+        }
+    }
+}
@@ -17,11 +17,15 @@ package org.jahia.modules.htmlfiltering.interceptor;
 
 import org.jahia.modules.htmlfiltering.Policy;
 import org.jahia.modules.htmlfiltering.PolicyResolver;
+import org.jahia.modules.htmlfiltering.PolicySanitizedHtmlResult;
+import org.jahia.modules.htmlfiltering.PolicyValidationResult;
+import org.jahia.modules.htmlfiltering.SanitizeDetailLevel;
 import org.jahia.modules.htmlfiltering.Strategy;
 import org.jahia.services.content.JCRNodeWrapper;
 import org.jahia.services.content.JCRStoreService;
 import org.jahia.services.content.interceptor.BaseInterceptor;
 import org.jahia.services.content.nodetypes.ExtendedPropertyDefinition;
+import org.osgi.service.cm.ManagedService;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Deactivate;
@@ -32,15 +36,40 @@ import org.slf4j.LoggerFactory;
 import javax.jcr.RepositoryException;
 import javax.jcr.Value;
 import javax.jcr.ValueFactory;
+import javax.jcr.nodetype.ConstraintViolationException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.List;
 
-@Component(immediate = true)
+@Component(immediate = true, service = ManagedService.class,
+        property = {
+                "service.pid=org.jahia.modules.htmlfiltering.interceptor",
+                "service.description=HTML filtering interceptor sanitizing the rich text properties before they are saved",
+                "service.vendor=Jahia Solutions Group SA"
+        })
 @SuppressWarnings("java:S2160") // ignore warning asking to override equals methods
-public class HtmlFilteringInterceptor extends BaseInterceptor {
+public class HtmlFilteringInterceptor extends BaseInterceptor implements ManagedService {
 
     private static final Logger logger = LoggerFactory.getLogger(HtmlFilteringInterceptor.class);
+    static final String STREAMING_THRESHOLD_PROPERTY = "htmlFiltering.interceptor.streamingThreshold";
+    /**
+     * Default length (in characters) from which the values are sanitized through the streaming path.
+     */
+    static final int DEFAULT_STREAMING_THRESHOLD = 1024 * 1024;
+    static final String SANITIZED_VALUES_PROPERTY = "htmlFiltering.interceptor.sanitizedValues";
+    /**
+     * Default number of properties whose last sanitized value is remembered, to skip sanitizing it again when it is set unchanged.
+     */
+    static final int DEFAULT_SANITIZED_VALUES = 10000;
 
     private JCRStoreService jcrStoreService;
     private PolicyResolver policyResolver;
+    private volatile int streamingThreshold = DEFAULT_STREAMING_THRESHOLD;
+    /**
+     * <code>null</code> if the sanitized values are not remembered.
+     */
+    private volatile SanitizedValueRegistry sanitizedValueRegistry = new SanitizedValueRegistry(DEFAULT_SANITIZED_VALUES);
 
     @Activate
     public void start() {
@@ -62,12 +91,49 @@ public class HtmlFilteringInterceptor extends BaseInterceptor {
         this.policyResolver = policyResolver;
     }
 
+    @Override
+    public void updated(Dictionary<String, ?> properties) {
+        int threshold = readIntProperty(properties, STREAMING_THRESHOLD_PROPERTY, DEFAULT_STREAMING_THRESHOLD);
+        logger.info("Values of {} characters or more will be sanitized through the streaming path", threshold);
+        streamingThreshold = threshold;
+        int sanitizedValues = readIntProperty(properties, SANITIZED_VALUES_PROPERTY, DEFAULT_SANITIZED_VALUES);
+        logger.info("The last sanitized value of up to {} properties will be remembered", sanitizedValues);
+        sanitizedValueRegistry = sanitizedValues > 0 ? new SanitizedValueRegistry(sanitizedValues) : null;
+    }
+
+    private static int readIntProperty(Dictionary<String, ?> properties, String name, int defaultValue) {
+        Object value = properties == null ? null : properties.get(name);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.toString().trim());
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid value '{}' for {}, using the default value {}", value, name, defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+
     @Override
     public Value beforeSetValue(JCRNodeWrapper node, String name, ExtendedPropertyDefinition definition, Value originalValue)
             throws RepositoryException {
         Policy policy = getPolicyForInterceptor(node, name, definition, originalValue);
         if (policy != null) {
-            return processValue(policy, originalValue, node.getSession().getValueFactory());
+            String originalText = originalValue.getString();
+            SanitizedValueRegistry registry = sanitizedValueRegistry;
+            if (registry == null) {
+                return processValue(policy, originalValue, originalText, node.getSession().getValueFactory());
+            }
+            // Jahia sets all the properties of a node on many edit operations, including the ones that were not modified
+            String propertyKey = node.getSession().getWorkspace().getName() + ':' + node.getIdentifier() + '/' + name;
+            // a value recorded is the sanitized HTML produced by the same rules, whether it was saved since or not: it would be
+            // set unchanged, and its SHA-256 hash cannot be matched by a different value
+            if (registry.isRecorded(propertyKey, policy.getFingerprint(), originalText)) {
+                logger.debug("Skip the sanitization of the unchanged property {} of {}", name, node.getPath());
+                return originalValue;
+            }
+            Value sanitizedValue = processValue(policy, originalValue, originalText, node.getSession().getValueFactory());
+            registry.record(propertyKey, policy.getFingerprint(), sanitizedValue == originalValue ? originalText : sanitizedValue.getString());
+            return sanitizedValue;
         }
 
         return originalValue;
@@ -78,21 +144,16 @@ public class HtmlFilteringInterceptor extends BaseInterceptor {
             throws RepositoryException {
         Policy policy = getPolicyForInterceptor(node, name, definition, originalValues);
         if (policy != null) {
-            Value[] sanitizedValues = new Value[originalValues.length];
-            for (int i = 0; i < originalValues.length; i++) {
-                sanitizedValues[i] = processValue(policy, originalValues[i], node.getSession().getValueFactory());
-            }
-            return sanitizedValues;
+            return processValues(policy, originalValues, node.getSession().getValueFactory());
         }
         return originalValues;
     }
 
     private Policy getPolicyForInterceptor(JCRNodeWrapper node, String propertyName, ExtendedPropertyDefinition definition, Object originalValue) throws RepositoryException {
         if (originalValue != null) {
-            // Resolve policy with strategy: SANITIZE
-            Policy policy = policyResolver.resolvePolicy(node.getResolveSite().getSiteKey(),
-                    node.getSession().getWorkspace().getName(), Strategy.SANITIZE);
-            if (policy != null && policy.isApplicableToProperty(node, propertyName, definition)) {
+            // Resolve policy with strategy: SANITIZE or STRIP, the REJECT one being enforced by the validator
+            Policy policy = policyResolver.resolvePolicy(node.getResolveSite().getSiteKey(), node.getSession().getWorkspace().getName());
+            if (policy != null && policy.getStrategy() != Strategy.REJECT && policy.isApplicableToProperty(node, propertyName, definition)) {
                 return policy;
             }
         }
@@ -100,10 +161,44 @@ public class HtmlFilteringInterceptor extends BaseInterceptor {
         return null;
     }
 
-    private static Value processValue(Policy policy, Value originalValue, ValueFactory valueFactory) throws RepositoryException {
-        String originalText = originalValue.getString();
-        String sanitizedText = policy.sanitize(originalValue.getString()).getSanitizedHtml();
-        if (!originalText.equals(sanitizedText)) {
+    private Value processValue(Policy policy, Value originalValue, String originalText, ValueFactory valueFactory) throws RepositoryException {
+        if (originalText.length() >= streamingThreshold) {
+            return processLargeValue(policy, originalValue, originalText, valueFactory);
+        }
+        // only the sanitized HTML and whether it changed are needed, not the rejected tags/attributes
+        PolicySanitizedHtmlResult result = policy.sanitize(originalText, SanitizeDetailLevel.OUTPUT_AND_CHANGED);
+        return toValue(result, originalValue, originalText, valueFactory);
+    }
+
+    /**
+     * Sanitizes the values of a multi-valued property as a single batch, except the large ones that go through the streaming path.
+     */
+    private Value[] processValues(Policy policy, Value[] originalValues, ValueFactory valueFactory) throws RepositoryException {
+        Value[] sanitizedValues = new Value[originalValues.length];
+        List<Integer> batchPositions = new ArrayList<>(originalValues.length);
+        List<String> batchTexts = new ArrayList<>(originalValues.length);
+        for (int i = 0; i < originalValues.length; i++) {
+            String originalText = originalValues[i].getString();
+            if (originalText.length() >= streamingThreshold) {
+                sanitizedValues[i] = processLargeValue(policy, originalValues[i], originalText, valueFactory);
+            } else {
+                batchPositions.add(i);
+                batchTexts.add(originalText);
+            }
+        }
+        List<PolicySanitizedHtmlResult> results = policy.sanitizeAll(batchTexts, SanitizeDetailLevel.OUTPUT_AND_CHANGED);
+        for (int i = 0; i < results.size(); i++) {
+            int position = batchPositions.get(i);
+            sanitizedValues[position] = toValue(results.get(i), originalValues[position], batchTexts.get(i), valueFactory);
+        }
+        return sanitizedValues;
+    }
+
+    private static Value toValue(PolicySanitizedHtmlResult result, Value originalValue, String originalText, ValueFactory valueFactory)
+            throws ConstraintViolationException {
+        checkLimits(result, originalText);
+        if (result.isChanged()) {
+            String sanitizedText = result.getSanitizedHtml();
             if (logger.isDebugEnabled()) {
                 logger.debug("Sanitize value from {} to {}", originalText, sanitizedText);
             }
@@ -111,4 +206,34 @@ public class HtmlFilteringInterceptor extends BaseInterceptor {
         }
         return originalValue;
     }
+
+    /**
+     * Sanitizes a large value without building the sanitized HTML as long as it is identical to the original value, so that an
+     * unchanged value is detected without any copy.
+     */
+    private static Value processLargeValue(Policy policy, Value originalValue, String originalText, ValueFactory valueFactory) throws RepositoryException {
+        SanitizedValueBuffer buffer = new SanitizedValueBuffer(originalText);
+        try {
+            checkLimits(policy.sanitize(originalText, buffer), originalText);
+            if (buffer.isUnchanged()) {
+                return originalValue;
+            }
+            String sanitizedText = buffer.getSanitizedText();
+            logger.debug("Sanitize large value of {} characters to {} characters", originalText.length(), sanitizedText.length());
+            return valueFactory.createValue(sanitizedText);
+        } catch (IOException e) {
+            // never thrown when writing to a SanitizedValueBuffer
+            throw new RepositoryException("Unable to sanitize the value", e);
+        }
+    }
+
+    /**
+     * Refuses the value if it exceeds one of the limits of the policy, rather than saving an empty or truncated value.
+     */
+    private static void checkLimits(PolicyValidationResult result, String originalText) throws ConstraintViolationException {
+        if (result.getExceededLimit() != null) {
+            throw new ConstraintViolationException("The HTML value of " + originalText.length() + " characters exceeds the "
+                    + result.getExceededLimit() + " limit of the HTML filtering policy");
+        }
+    }
 }
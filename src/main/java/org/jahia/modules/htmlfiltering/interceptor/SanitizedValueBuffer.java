@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.interceptor;
+
+/**
+ * Receives the sanitized version of a large value and compares it with the original value while it is written.
+ * <p>
+ * As long as the sanitized HTML is identical to the beginning of the original value, nothing is stored. On the first difference,
+ * the identical part is copied from the original value into an in-memory buffer that receives the rest of the sanitized HTML.
+ * This way, an unchanged value never gets copied. A changed value is needed as a <code>String</code> anyway, the properties
+ * being of the <code>STRING</code> type, so buffering it elsewhere (e.g. in a temporary file) would not lower the memory used.
+ */
+final class SanitizedValueBuffer implements Appendable {
+
+    private final String originalText;
+    /**
+     * Number of characters written that are identical to the beginning of the original value, only relevant until a difference is found.
+     */
+    private int matchingLength;
+    /**
+     * The sanitized value, <code>null</code> until a difference is found.
+     */
+    private StringBuilder sanitizedText;
+
+    /**
+     * @param originalText the original value
+     */
+    SanitizedValueBuffer(String originalText) {
+        this.originalText = originalText;
+    }
+
+    @Override
+    public Appendable append(CharSequence csq) {
+        return append(csq, 0, csq.length());
+    }
+
+    @Override
+    public Appendable append(CharSequence csq, int start, int end) {
+        if (sanitizedText == null) {
+            int i = start;
+            while (i < end && matchingLength < originalText.length() && csq.charAt(i) == originalText.charAt(matchingLength)) {
+                i++;
+                matchingLength++;
+            }
+            if (i == end) {
+                return this;
+            }
+            startBuffering();
+            start = i;
+        }
+        sanitizedText.append(csq, start, end);
+        return this;
+    }
+
+    @Override
+    public Appendable append(char c) {
+        if (sanitizedText == null) {
+            if (matchingLength < originalText.length() && c == originalText.charAt(matchingLength)) {
+                matchingLength++;
+                return this;
+            }
+            startBuffering();
+        }
+        sanitizedText.append(c);
+        return this;
+    }
+
+    private void startBuffering() {
+        // the sanitized value is usually about as long as the original one
+        sanitizedText = new StringBuilder(originalText.length());
+        // the sanitized value starts with the part identical to the original value
+        sanitizedText.append(originalText, 0, matchingLength);
+    }
+
+    /**
+     * @return <code>true</code> if everything written so far is identical to the original value
+     */
+    boolean isUnchanged() {
+        return sanitizedText == null && matchingLength == originalText.length();
+    }
+
+    /**
+     * @return the sanitized value
+     */
+    String getSanitizedText() {
+        if (sanitizedText == null) {
+            // everything written is identical to the beginning of the original value
+            return originalText.substring(0, matchingLength);
+        }
+        return sanitizedText.toString();
+    }
+}
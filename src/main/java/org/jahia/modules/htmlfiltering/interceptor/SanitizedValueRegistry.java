@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.interceptor;
+
+import org.jahia.modules.htmlfiltering.impl.cache.BoundedCache;
+import org.jahia.modules.htmlfiltering.impl.cache.ContentHash;
+
+/**
+ * Remembers the last value set by the interceptor on each property, as a hash along with the fingerprint of the policy that
+ * sanitized it, so that setting the same value again under the same policy does not require sanitizing it again.
+ * <p>
+ * The number of properties remembered is bounded, the least valuable entries are evicted first.
+ */
+final class SanitizedValueRegistry {
+
+    private final BoundedCache<String, SanitizedValue> sanitizedValues;
+
+    /**
+     * @param maxEntries the maximum number of properties remembered
+     */
+    SanitizedValueRegistry(int maxEntries) {
+        this.sanitizedValues = new BoundedCache<>(maxEntries, Long.MAX_VALUE, value -> 1);
+    }
+
+    /**
+     * Records the value set on a property after its sanitization.
+     *
+     * @param propertyKey the key identifying the property
+     * @param fingerprint the fingerprint of the policy that sanitized the value
+     * @param value       the sanitized value
+     */
+    void record(String propertyKey, String fingerprint, String value) {
+        sanitizedValues.put(propertyKey, new SanitizedValue(fingerprint, value.length(), ContentHash.of(value)));
+    }
+
+    /**
+     * @return <code>true</code> if the given value is the last one recorded for the property under the given policy fingerprint
+     */
+    boolean isRecorded(String propertyKey, String fingerprint, String value) {
+        SanitizedValue sanitizedValue = sanitizedValues.get(propertyKey);
+        // the length is checked first, to avoid hashing the value in most cases where it differs
+        return sanitizedValue != null && sanitizedValue.fingerprint.equals(fingerprint) && sanitizedValue.length == value.length()
+                && sanitizedValue.hash.equals(ContentHash.of(value));
+    }
+
+    private static final class SanitizedValue {
+        private final String fingerprint;
+        private final int length;
+        private final ContentHash hash;
+
+        private SanitizedValue(String fingerprint, int length, ContentHash hash) {
+            this.fingerprint = fingerprint;
+            this.length = length;
+            this.hash = hash;
+        }
+    }
+}
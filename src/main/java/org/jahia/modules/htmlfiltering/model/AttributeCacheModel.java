@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.model;
+
+import javax.validation.constraints.Positive;
+
+/**
+ * Configuration of the cache of the format decisions taken on the attribute values by a policy.
+ */
+public class AttributeCacheModel {
+    private static final int DEFAULT_MAX_ENTRIES = 4096;
+    private static final int DEFAULT_MAX_VALUE_LENGTH = 128;
+    private boolean enabled = true;
+    @Positive
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+    @Positive
+    private int maxValueLength = DEFAULT_MAX_VALUE_LENGTH;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public int getMaxValueLength() {
+        return maxValueLength;
+    }
+
+    public void setMaxValueLength(int maxValueLength) {
+        this.maxValueLength = maxValueLength;
+    }
+
+    @Override
+    public String toString() {
+        return "AttributeCacheModel{" +
+                "enabled=" + enabled +
+                ", maxEntries=" + maxEntries +
+                ", maxValueLength=" + maxValueLength +
+                '}';
+    }
+}
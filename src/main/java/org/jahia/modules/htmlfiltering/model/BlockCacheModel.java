@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.model;
+
+import javax.validation.constraints.Positive;
+
+/**
+ * Configuration of the cache of the sanitized top-level blocks of the large HTML contents processed by a policy.
+ */
+public class BlockCacheModel {
+    private static final int DEFAULT_MAX_ENTRIES = 10000;
+    private static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+    private static final int DEFAULT_MIN_LENGTH = 16 * 1024;
+    private boolean enabled = true;
+    @Positive
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+    @Positive
+    private long maxBytes = DEFAULT_MAX_BYTES;
+    @Positive
+    private int minLength = DEFAULT_MIN_LENGTH;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public int getMinLength() {
+        return minLength;
+    }
+
+    public void setMinLength(int minLength) {
+        this.minLength = minLength;
+    }
+
+    @Override
+    public String toString() {
+        return "BlockCacheModel{" +
+                "enabled=" + enabled +
+                ", maxEntries=" + maxEntries +
+                ", maxBytes=" + maxBytes +
+                ", minLength=" + minLength +
+                '}';
+    }
+}
@@ -20,6 +20,8 @@ import org.jahia.modules.htmlfiltering.model.validation.constraints.ValidFormatR
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -37,6 +39,10 @@ public class ConfigModel {
     private PolicyModel liveWorkspace;
     @ValidFormatDefinitions
     private Map<String, String> formatDefinitions;
+    /**
+     * The rich text editors placeholders to restore in the sanitized HTML, the default Jahia ones if not set.
+     */
+    private List<@Pattern(regexp = "\\{[a-zA-Z0-9_.-]+}", message = "must be a name made of letters, digits, '_', '.' or '-' between curly braces") String> placeholders;
 
     public PolicyModel getEditWorkspace() {
         return editWorkspace;
@@ -62,12 +68,21 @@ public class ConfigModel {
         this.formatDefinitions = formatDefinitions;
     }
 
+    public List<String> getPlaceholders() {
+        return placeholders;
+    }
+
+    public void setPlaceholders(List<String> placeholders) {
+        this.placeholders = placeholders;
+    }
+
     @Override
     public String toString() {
         return "ConfigModel{" +
                 "editWorkspace=" + editWorkspace +
                 ", liveWorkspace=" + liveWorkspace +
                 ", formatDefinitions=" + formatDefinitions +
+                ", placeholders=" + placeholders +
                 '}';
     }
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.model;
+
+import javax.validation.constraints.Positive;
+
+/**
+ * Configuration of the limits enforced by a policy on the HTML contents it processes.
+ * <p>
+ * Each limit is optional, a missing limit is not enforced.
+ */
+public class LimitsModel {
+    @Positive
+    private Integer maxInputLength;
+    @Positive
+    private Integer maxNestingDepth;
+    @Positive
+    private Integer maxElementCount;
+    @Positive
+    private Long maxDurationMillis;
+
+    public Integer getMaxInputLength() {
+        return maxInputLength;
+    }
+
+    public void setMaxInputLength(Integer maxInputLength) {
+        this.maxInputLength = maxInputLength;
+    }
+
+    public Integer getMaxNestingDepth() {
+        return maxNestingDepth;
+    }
+
+    public void setMaxNestingDepth(Integer maxNestingDepth) {
+        this.maxNestingDepth = maxNestingDepth;
+    }
+
+    public Integer getMaxElementCount() {
+        return maxElementCount;
+    }
+
+    public void setMaxElementCount(Integer maxElementCount) {
+        this.maxElementCount = maxElementCount;
+    }
+
+    public Long getMaxDurationMillis() {
+        return maxDurationMillis;
+    }
+
+    public void setMaxDurationMillis(Long maxDurationMillis) {
+        this.maxDurationMillis = maxDurationMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "LimitsModel{" +
+                "maxInputLength=" + maxInputLength +
+                ", maxNestingDepth=" + maxNestingDepth +
+                ", maxElementCount=" + maxElementCount +
+                ", maxDurationMillis=" + maxDurationMillis +
+                '}';
+    }
+}
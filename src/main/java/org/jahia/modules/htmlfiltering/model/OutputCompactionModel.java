@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.model;
+
+/**
+ * Configuration of the compaction of the sanitized HTML produced by a policy.
+ */
+public class OutputCompactionModel {
+    private boolean enabled = true;
+    private boolean collapseWhitespace = true;
+    private boolean removeEmptyElements = true;
+    private boolean removeNestedDuplicates = true;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isCollapseWhitespace() {
+        return collapseWhitespace;
+    }
+
+    public void setCollapseWhitespace(boolean collapseWhitespace) {
+        this.collapseWhitespace = collapseWhitespace;
+    }
+
+    public boolean isRemoveEmptyElements() {
+        return removeEmptyElements;
+    }
+
+    public void setRemoveEmptyElements(boolean removeEmptyElements) {
+        this.removeEmptyElements = removeEmptyElements;
+    }
+
+    public boolean isRemoveNestedDuplicates() {
+        return removeNestedDuplicates;
+    }
+
+    public void setRemoveNestedDuplicates(boolean removeNestedDuplicates) {
+        this.removeNestedDuplicates = removeNestedDuplicates;
+    }
+
+    @Override
+    public String toString() {
+        return "OutputCompactionModel{" +
+                "enabled=" + enabled +
+                ", collapseWhitespace=" + collapseWhitespace +
+                ", removeEmptyElements=" + removeEmptyElements +
+                ", removeNestedDuplicates=" + removeNestedDuplicates +
+                '}';
+    }
+}
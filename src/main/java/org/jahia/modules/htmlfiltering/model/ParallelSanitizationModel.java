@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.model;
+
+import javax.validation.constraints.Positive;
+
+/**
+ * Configuration of the parallel sanitization of the very large HTML contents processed by a policy.
+ */
+public class ParallelSanitizationModel {
+    private boolean enabled = true;
+    @Positive
+    private int minLength = 256 * 1024;
+    @Positive
+    private int chunkLength = 64 * 1024;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMinLength() {
+        return minLength;
+    }
+
+    public void setMinLength(int minLength) {
+        this.minLength = minLength;
+    }
+
+    public int getChunkLength() {
+        return chunkLength;
+    }
+
+    public void setChunkLength(int chunkLength) {
+        this.chunkLength = chunkLength;
+    }
+
+    @Override
+    public String toString() {
+        return "ParallelSanitizationModel{" +
+                "enabled=" + enabled +
+                ", minLength=" + minLength +
+                ", chunkLength=" + chunkLength +
+                '}';
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.model;
+
+/**
+ * Configuration of the removal of the office suites paste artifacts from the HTML contents, before they are sanitized by a policy.
+ * <p>
+ * The conditional comments and the tags of the office XML namespaces are always removed when enabled, the other artifacts can
+ * be kept individually.
+ */
+public class PasteCleanupModel {
+    private boolean enabled = true;
+    private boolean officeStyles = true;
+    private boolean officeClasses = true;
+    private boolean googleDocsWrappers = true;
+    private boolean emptySpans = true;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isOfficeStyles() {
+        return officeStyles;
+    }
+
+    public void setOfficeStyles(boolean officeStyles) {
+        this.officeStyles = officeStyles;
+    }
+
+    public boolean isOfficeClasses() {
+        return officeClasses;
+    }
+
+    public void setOfficeClasses(boolean officeClasses) {
+        this.officeClasses = officeClasses;
+    }
+
+    public boolean isGoogleDocsWrappers() {
+        return googleDocsWrappers;
+    }
+
+    public void setGoogleDocsWrappers(boolean googleDocsWrappers) {
+        this.googleDocsWrappers = googleDocsWrappers;
+    }
+
+    public boolean isEmptySpans() {
+        return emptySpans;
+    }
+
+    public void setEmptySpans(boolean emptySpans) {
+        this.emptySpans = emptySpans;
+    }
+
+    @Override
+    public String toString() {
+        return "PasteCleanupModel{" +
+                "enabled=" + enabled +
+                ", officeStyles=" + officeStyles +
+                ", officeClasses=" + officeClasses +
+                ", googleDocsWrappers=" + googleDocsWrappers +
+                ", emptySpans=" + emptySpans +
+                '}';
+    }
+}
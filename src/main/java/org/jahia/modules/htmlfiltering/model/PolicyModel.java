@@ -37,10 +37,28 @@ public class PolicyModel {
     private RuleSetModel disallowedRuleSet;
     @NotNull
     private PolicyStrategy strategy;
+    @Pattern(regexp = "[a-zA-Z0-9_.-]+", message = "must be a name made of letters, digits, '_', '.' or '-'")
+    private String engine;
     @NotEmpty
     private List<@Pattern(regexp = NODE_TYPES_PROPS_REGEX, message = NODE_TYPES_PROPS_MSG) String> process;
     private List<@Pattern(regexp = NODE_TYPES_PROPS_REGEX, message = NODE_TYPES_PROPS_MSG) String> skip;
     private List<String> skipOnPermissions;
+    @Valid
+    private CacheModel resultCache;
+    @Valid
+    private AttributeCacheModel attributeCache;
+    @Valid
+    private BlockCacheModel blockCache;
+    @Valid
+    private StyleModel style;
+    private PasteCleanupModel pasteCleanup;
+    private OutputCompactionModel outputCompaction;
+    @Valid
+    private ParallelSanitizationModel parallelSanitization;
+    @Valid
+    private BulkheadModel bulkhead;
+    @Valid
+    private LimitsModel limits;
 
     public RuleSetModel getAllowedRuleSet() {
         return allowedRuleSet;
@@ -66,6 +84,14 @@ public class PolicyModel {
         this.strategy = strategy;
     }
 
+    public String getEngine() {
+        return engine;
+    }
+
+    public void setEngine(String engine) {
+        this.engine = engine;
+    }
+
     public List<String> getProcess() {
         return process;
     }
@@ -90,6 +116,78 @@ public class PolicyModel {
         this.skipOnPermissions = skipOnPermissions;
     }
 
+    public CacheModel getResultCache() {
+        return resultCache;
+    }
+
+    public void setResultCache(CacheModel resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    public AttributeCacheModel getAttributeCache() {
+        return attributeCache;
+    }
+
+    public void setAttributeCache(AttributeCacheModel attributeCache) {
+        this.attributeCache = attributeCache;
+    }
+
+    public BlockCacheModel getBlockCache() {
+        return blockCache;
+    }
+
+    public void setBlockCache(BlockCacheModel blockCache) {
+        this.blockCache = blockCache;
+    }
+
+    public StyleModel getStyle() {
+        return style;
+    }
+
+    public void setStyle(StyleModel style) {
+        this.style = style;
+    }
+
+    public PasteCleanupModel getPasteCleanup() {
+        return pasteCleanup;
+    }
+
+    public void setPasteCleanup(PasteCleanupModel pasteCleanup) {
+        this.pasteCleanup = pasteCleanup;
+    }
+
+    public OutputCompactionModel getOutputCompaction() {
+        return outputCompaction;
+    }
+
+    public void setOutputCompaction(OutputCompactionModel outputCompaction) {
+        this.outputCompaction = outputCompaction;
+    }
+
+    public ParallelSanitizationModel getParallelSanitization() {
+        return parallelSanitization;
+    }
+
+    public void setParallelSanitization(ParallelSanitizationModel parallelSanitization) {
+        this.parallelSanitization = parallelSanitization;
+    }
+
+    public BulkheadModel getBulkhead() {
+        return bulkhead;
+    }
+
+    public void setBulkhead(BulkheadModel bulkhead) {
+        this.bulkhead = bulkhead;
+    }
+
+    public LimitsModel getLimits() {
+        return limits;
+    }
+
+    public void setLimits(LimitsModel limits) {
+        this.limits = limits;
+    }
+
     /**
      * Defines the strategy for handling HTML content that does not adhere
      * to the allowed rule set.
@@ -109,7 +207,14 @@ public class PolicyModel {
          *
          * @see HtmlFilteringInterceptor#beforeSetValue(JCRNodeWrapper, String, ExtendedPropertyDefinition, Value)
          */
-        SANITIZE
+        SANITIZE,
+        /**
+         * Strategy to remove all the markup of the HTML content, keeping only its text, e.g. for teasers or SEO descriptions.
+         * As for {@link #SANITIZE}, this is performed automatically before storing the value of a node property in the JCR.
+         *
+         * @see HtmlFilteringInterceptor#beforeSetValue(JCRNodeWrapper, String, ExtendedPropertyDefinition, Value)
+         */
+        STRIP
     }
 
     @Override
@@ -118,9 +223,19 @@ public class PolicyModel {
                 "allowedRuleSet=" + allowedRuleSet +
                 ", disallowedRuleSet=" + disallowedRuleSet +
                 ", strategy=" + strategy +
+                ", engine=" + engine +
                 ", process=" + process +
                 ", skip=" + skip +
                 ", skipOnPermissions=" + skipOnPermissions +
+                ", resultCache=" + resultCache +
+                ", attributeCache=" + attributeCache +
+                ", blockCache=" + blockCache +
+                ", style=" + style +
+                ", pasteCleanup=" + pasteCleanup +
+                ", outputCompaction=" + outputCompaction +
+                ", parallelSanitization=" + parallelSanitization +
+                ", bulkhead=" + bulkhead +
+                ", limits=" + limits +
                 '}';
     }
 }
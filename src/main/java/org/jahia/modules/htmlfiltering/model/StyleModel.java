@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2002-2025 Jahia Solutions Group SA. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jahia.modules.htmlfiltering.model;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import java.util.List;
+
+/**
+ * Configuration of the CSS declarations allowed in the <code>style</code> attributes by a policy.
+ */
+public class StyleModel {
+    @NotEmpty
+    @Valid
+    private List<CssPropertyModel> properties;
+    /**
+     * The cache of the sanitized <code>style</code> attribute values, enabled with its default settings if not set.
+     */
+    @Valid
+    private CacheModel cache;
+
+    public List<CssPropertyModel> getProperties() {
+        return properties;
+    }
+
+    public void setProperties(List<CssPropertyModel> properties) {
+        this.properties = properties;
+    }
+
+    public CacheModel getCache() {
+        return cache;
+    }
+
+    public void setCache(CacheModel cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public String toString() {
+        return "StyleModel{" +
+                "properties=" + properties +
+                ", cache=" + cache +
+                '}';
+    }
+}
@@ -16,6 +16,8 @@
 package org.jahia.modules.htmlfiltering.model.validation;
 
 import org.apache.commons.lang3.StringUtils;
+import org.jahia.modules.htmlfiltering.impl.format.FormatComplexity;
+import org.jahia.modules.htmlfiltering.impl.format.FormatMatcher;
 import org.jahia.modules.htmlfiltering.model.validation.constraints.ValidFormatDefinitions;
 
 import javax.validation.ConstraintValidator;
@@ -54,6 +56,15 @@ public class ValidFormatDefinitionsValidator implements ConstraintValidator<Vali
                         String.format("the value for the format definition of '%s' must be a valid regular expression", entry.getKey())).addConstraintViolation();
                 return false;
             }
+
+            // the formats matched with java.util.regex must not allow denial of service attacks
+            FormatMatcher formatMatcher = FormatMatcher.compile(regex);
+            if (!formatMatcher.isLinear() && formatMatcher.getComplexity() == FormatComplexity.EXPONENTIAL) {
+                context.disableDefaultConstraintViolation();
+                context.buildConstraintViolationWithTemplate(
+                        String.format("the value for the format definition of '%s' must not take an exponential time to match", entry.getKey())).addConstraintViolation();
+                return false;
+            }
         }
 
         return true;
@@ -16,10 +16,13 @@
 package org.jahia.modules.htmlfiltering.model.validation;
 
 
+import org.jahia.modules.htmlfiltering.impl.format.BuiltinFormat;
 import org.jahia.modules.htmlfiltering.model.ConfigModel;
+import org.jahia.modules.htmlfiltering.model.CssPropertyModel;
 import org.jahia.modules.htmlfiltering.model.ElementModel;
 import org.jahia.modules.htmlfiltering.model.PolicyModel;
 import org.jahia.modules.htmlfiltering.model.RuleSetModel;
+import org.jahia.modules.htmlfiltering.model.StyleModel;
 import org.jahia.modules.htmlfiltering.model.validation.constraints.ValidFormatReference;
 
 import javax.validation.ConstraintValidator;
@@ -68,6 +71,10 @@ public class ValidFormatReferenceValidator implements ConstraintValidator<ValidF
             isValid &= validateRuleSet(model.getDisallowedRuleSet(), formatNames, context, path + ".disallowedRuleSet");
         }
 
+        if (model.getStyle() != null) {
+            isValid &= validateStyle(model.getStyle(), formatNames, context, path + ".style");
+        }
+
         return isValid;
     }
 
@@ -81,19 +88,47 @@ public class ValidFormatReferenceValidator implements ConstraintValidator<ValidF
 
         for (int i = 0; i < ruleSet.getElements().size(); i++) {
             ElementModel element = ruleSet.getElements().get(i);
-            if (element != null && element.getFormat() != null && !formatNames.contains(element.getFormat())) {
-                context.disableDefaultConstraintViolation();
-                context.buildConstraintViolationWithTemplate(
-                                String.format("Format '%s' not defined under 'formatDefinitions'", element.getFormat())
-                        )
-                        .addPropertyNode(path)
-                        .addPropertyNode("elements")
-                        .addPropertyNode("[" + i + "].format")
-                        .addConstraintViolation();
+            if (element != null && !isDefined(element.getFormat(), formatNames)) {
+                addViolation(element.getFormat(), context, path, "elements", i);
+                isValid = false;
+            }
+        }
+
+        return isValid;
+    }
+
+    private boolean validateStyle(StyleModel style, Set<String> formatNames,
+                                  ConstraintValidatorContext context, String path) {
+        if (style.getProperties() == null) {
+            return true;
+        }
+
+        boolean isValid = true;
+
+        for (int i = 0; i < style.getProperties().size(); i++) {
+            CssPropertyModel property = style.getProperties().get(i);
+            if (property != null && !isDefined(property.getFormat(), formatNames)) {
+                addViolation(property.getFormat(), context, path, "properties", i);
                 isValid = false;
             }
         }
 
         return isValid;
     }
+
+    private static boolean isDefined(String format, Set<String> formatNames) {
+        return format == null || formatNames.contains(format) || BuiltinFormat.fromReference(format) != null;
+    }
+
+    private static void addViolation(String format, ConstraintValidatorContext context, String path, String listName, int index) {
+        String message = BuiltinFormat.isReference(format)
+                ? String.format("Format '%s' is not a built-in format", format)
+                : String.format("Format '%s' not defined under 'formatDefinitions'", format);
+        context.disableDefaultConstraintViolation();
+        context.buildConstraintViolationWithTemplate(message)
+                .addPropertyNode(path)
+                .addPropertyNode(listName)
+                .addPropertyNode("[" + index + "].format")
+                .addConstraintViolation();
+    }
 }
@@ -15,6 +15,7 @@ import javax.jcr.RepositoryException;
 import javax.jcr.Value;
 import javax.validation.ConstraintValidator;
 import javax.validation.ConstraintValidatorContext;
+import java.util.LinkedHashSet;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
@@ -25,6 +26,11 @@ import java.util.Set;
 public class HtmlValidator implements ConstraintValidator<HtmlFilteringConstraint, HtmlFilteringValidator> {
 
     private static final Logger logger = LoggerFactory.getLogger(HtmlValidator.class);
+    /**
+     * Number of violations after which the validation of a property value stops, to avoid processing large contents entirely
+     * when they are already known to be invalid.
+     */
+    private static final int MAX_VIOLATIONS_PER_VALUE = 10;
 
     @Override
     public void initialize(HtmlFilteringConstraint constraintAnnotation) {
@@ -64,24 +70,33 @@ public class HtmlValidator implements ConstraintValidator<HtmlFilteringConstrain
             // Only validate property if the policy is applicable to it
             if (policy.isApplicableToProperty(node, propertyName, (ExtendedPropertyDefinition) property.getDefinition())) {
                 if (property.isMultiple()) {
-                    Value[] values = property.getValues();
-                    for (Value value : values) {
+                    // identical values are only validated, and their violations reported, once
+                    Set<String> values = new LinkedHashSet<>();
+                    for (Value value : property.getValues()) {
+                        values.add(value.getString());
+                    }
+                    for (String value : values) {
                         // Do the evaluation for each value, return the whole result
                         isValid = validatePropertyValue(propertyName, value, policy, context) && isValid;
                     }
                 } else {
                     // Do the evaluation for each property, return the whole result
-                    isValid =validatePropertyValue(propertyName, property.getValue(), policy, context) && isValid;
+                    isValid = validatePropertyValue(propertyName, property.getValue().getString(), policy, context) && isValid;
                 }
             }
         }
         return isValid;
     }
 
-    private boolean validatePropertyValue(String propertyName, Value value, Policy policy, ConstraintValidatorContext context) throws RepositoryException {
-        PolicySanitizedHtmlResult policyExecutionResult = policy.sanitize(value.getString());
+    private boolean validatePropertyValue(String propertyName, String value, Policy policy, ConstraintValidatorContext context) {
+        PolicyValidationResult policyExecutionResult = policy.validate(value, MAX_VIOLATIONS_PER_VALUE);
         if (!policyExecutionResult.isValid()) {
             Locale locale = JahiaLocaleContextHolder.getLocale();
+            if (policyExecutionResult.getExceededLimit() != null) {
+                String errorMessage = Messages.get("resources.html-filtering",
+                        "htmlFiltering.invalid.limit." + policyExecutionResult.getExceededLimit().name().toLowerCase(Locale.ROOT), locale);
+                context.buildConstraintViolationWithTemplate(errorMessage).addPropertyNode(propertyName).addConstraintViolation();
+            }
             for (String tag : policyExecutionResult.getRejectedTags()) {
                 String errorMessage = Messages.getWithArgs("resources.html-filtering", "htmlFiltering.invalid.tags", locale,  tag);
                 context.buildConstraintViolationWithTemplate(errorMessage).addPropertyNode(propertyName).addConstraintViolation();
@@ -0,0 +1,137 @@
+package org.jahia.modules.htmlfiltering.impl;
+
+import org.jahia.modules.htmlfiltering.Policy;
+import org.jahia.modules.htmlfiltering.PolicySanitizedHtmlResult;
+import org.jahia.modules.htmlfiltering.model.ConfigModel;
+import org.jahia.modules.htmlfiltering.model.PolicyModel;
+import org.jahia.modules.htmlfiltering.model.RuleSetModel;
+import org.junit.Test;
+import org.osgi.service.cm.ConfigurationException;
+
+import java.util.Random;
+
+import static org.jahia.modules.htmlfiltering.impl.TestHelper.buildElement;
+import static org.jahia.modules.htmlfiltering.impl.TestHelper.of;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Differential tests of the allowlist engine: the contents of a large corpus, made of the typical constructs of rich text
+ * contents, of invalid markup and of attacks, must be sanitized exactly as the OWASP engine does.
+ */
+public class AllowlistSanitizerEngineTest {
+
+    private static final int GENERATED_CONTENTS = 5000;
+
+    private static final String[] FRAGMENTS = {
+            "Some text", " ", "\n", "\t", "a &amp; b", "&lt;tag&gt;", "&#233;&#xE9;&eacute;&nbsp;", "&copy; &foo; &#0; &#x110000;",
+            "Tom & Jerry", "&notit; &ampx", "a < b", "a > b", "<3", "\u00E9\uD83D\uDE00", "\u0000\u0007\r\n",
+            "<p>", "</p>", "<P CLASS=\"a\">", "<p id=\"p1\" title=\"t\">", "<p id=\"1p\">", "<p class=c>", "<p hidden>",
+            "<p class=\"a\" class=\"b\">", "<p\tclass='a'\n>", "<p/>", "</p >", "</P>",
+            "<b>", "</b>", "<i>", "</i>", "<strong>", "</strong>", "<em>", "</em>", "<u>", "</u>", "<span>", "</span>",
+            "<span class=\"s\">", "<font color=\"red\">", "</font>", "<sub>", "</sub>", "<sup>", "</sup>", "<code>", "</code>",
+            "<h1>", "</h1>", "<h2 id=\"t\">", "</h2>", "<h6>", "</h6>", "<div>", "</div>", "<div title=\"a &quot;b&quot;\">",
+            "<blockquote cite=\"https://www.jahia.com\">", "</blockquote>", "<section>", "</section>", "<header>", "</header>",
+            "<ul>", "</ul>", "<ol start=\"2\">", "</ol>", "<li>", "</li>", "<li value=\"3\">",
+            "<br>", "<br/>", "<br />", "</br>", "<hr>", "<wbr>",
+            "<a href=\"https://www.jahia.com/{lang}/page.html\">", "<a href=\"/cms/{mode}/{lang}/sites/a.html?x=1&y=2\">",
+            "<a href=\"mailto:a@b.c\">", "<a href=\"javascript:alert(1)\">", "<a href=\"JavaScript:void\">", "<a href=\"#top\">",
+            "<a href=\"page.html\" target=\"_blank\">", "<a href=\"page.html\" rel=\"nofollow\">", "<a href=\"a b\">", "<a>",
+            "<a href=\"ftp://x\">", "<a href=\"data:text/html;base64,PHNjcmlwdD4=\">", "</a>",
+            "<img src=\"https://www.jahia.com/files/{workspace}/image.png\" />", "<img src=\"/a.png\" alt=\"a\">", "<img>",
+            "<img src=\"x\" onerror=\"alert(1)\">", "<img src=\"javascript:alert(1)\">",
+            "<p style=\"color: red\">", "<p onclick=\"alert(1)\">", "<p data-x=\"y\">",
+            "<table>", "<tr>", "<td>", "</td>", "</tr>", "</table>", "<pre>", "</pre>", "<textarea>", "</textarea>",
+            "<script>alert(1)</script>", "<style>p { color: red }</style>", "<iframe src=\"https://www.jahia.com\"></iframe>",
+            "<noscript><p>a</p></noscript>", "<svg><circle /></svg>", "<title>t</title>",
+            "<!-- comment -->", "<!-- <p> -->", "<!---->", "<!-->", "<!DOCTYPE html>", "<?xml version=\"1.0\"?>", "<![CDATA[x]]>",
+            "<o:p>", "</o:p>", "<custom-element>", "</custom-element>", "<", "</", "<p", "<a href=\"x", "&", "&#",
+    };
+    private static final String[] WRAPPERS = {"p", "div", "b", "em", "ul", "li", "span class=\"s\"", "h6", "a href=\"/x\"", "table"};
+
+    @Test
+    public void GIVEN_each_fragment_WHEN_sanitizing_THEN_both_engines_give_the_same_result() throws ConfigurationException {
+        Policy owaspPolicy = ConfigBuilder.buildFromModel(buildConfigModel(null)).getEditWorkspacePolicy();
+        Policy allowlistPolicy = ConfigBuilder.buildFromModel(buildConfigModel(AllowlistSanitizerEngine.NAME)).getEditWorkspacePolicy();
+
+        for (String fragment : FRAGMENTS) {
+            assertSameResult(owaspPolicy, allowlistPolicy, fragment);
+            assertSameResult(owaspPolicy, allowlistPolicy, "<p>a" + fragment + "b</p>");
+        }
+    }
+
+    @Test
+    public void GIVEN_generated_contents_WHEN_sanitizing_THEN_both_engines_give_the_same_result() throws ConfigurationException {
+        Policy owaspPolicy = ConfigBuilder.buildFromModel(buildConfigModel(null)).getEditWorkspacePolicy();
+        Policy allowlistPolicy = ConfigBuilder.buildFromModel(buildConfigModel(AllowlistSanitizerEngine.NAME)).getEditWorkspacePolicy();
+        Random random = new Random(42);
+
+        for (int i = 0; i < GENERATED_CONTENTS; i++) {
+            assertSameResult(owaspPolicy, allowlistPolicy, generate(random, 3));
+        }
+    }
+
+    private static String generate(Random random, int depth) {
+        StringBuilder html = new StringBuilder();
+        int parts = 1 + random.nextInt(6);
+        for (int i = 0; i < parts; i++) {
+            if (depth > 0 && random.nextInt(3) == 0) {
+                String wrapper = WRAPPERS[random.nextInt(WRAPPERS.length)];
+                html.append('<').append(wrapper).append('>').append(generate(random, depth - 1));
+                // the end tag is sometimes missing
+                if (random.nextInt(8) != 0) {
+                    html.append("</").append(wrapper, 0, wrapper.contains(" ") ? wrapper.indexOf(' ') : wrapper.length()).append('>');
+                }
+            } else {
+                html.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+        }
+        return html.toString();
+    }
+
+    private static void assertSameResult(Policy owaspPolicy, Policy allowlistPolicy, String html) {
+        PolicySanitizedHtmlResult expected = owaspPolicy.sanitize(html);
+        PolicySanitizedHtmlResult actual = allowlistPolicy.sanitize(html);
+        assertEquals(html, expected.getSanitizedHtml(), actual.getSanitizedHtml());
+        assertEquals(html, expected.getRejectedTags(), actual.getRejectedTags());
+        assertEquals(html, expected.getRejectedAttributesByTag(), actual.getRejectedAttributesByTag());
+    }
+
+    /**
+     * The rules of the default configuration for the most common elements and attributes.
+     */
+    private static ConfigModel buildConfigModel(String engine) {
+        PolicyModel policyModel = new PolicyModel();
+        policyModel.setStrategy(PolicyModel.PolicyStrategy.SANITIZE);
+        policyModel.setProcess(of("nt:base.*"));
+        policyModel.setEngine(engine);
+        RuleSetModel allowedRuleSet = new RuleSetModel();
+        allowedRuleSet.setProtocols(of("http", "https", "mailto"));
+        allowedRuleSet.setElements(of(
+                buildElement(null, of("class", "dir", "hidden", "lang", "role", "style", "title"), null),
+                buildElement(null, of("id"), "builtin:HTML_ID"),
+                buildElement(of("a", "abbr", "b", "br", "cite", "code", "del", "em", "font", "i", "ins", "mark", "q", "s", "small",
+                        "span", "strike", "strong", "sub", "sup", "u", "wbr"), null, null),
+                buildElement(of("article", "blockquote", "div", "footer", "h1", "h2", "h3", "h4", "h5", "header", "hr", "li", "ol",
+                        "p", "pre", "section", "ul", "img", "table", "tr", "td"), null, null),
+                buildElement(of("a"), of("href"), "builtin:LINKS_URL"),
+                buildElement(of("a"), of("rel", "target"), null),
+                buildElement(of("img"), of("src"), "builtin:LINKS_URL"),
+                buildElement(of("img"), of("alt"), null),
+                buildElement(of("blockquote"), of("cite"), null),
+                buildElement(of("ol"), of("start"), null),
+                buildElement(of("li"), of("value"), null),
+                buildElement(of("font"), of("color"), null)
+        ));
+        policyModel.setAllowedRuleSet(allowedRuleSet);
+        RuleSetModel disallowedRuleSet = new RuleSetModel();
+        disallowedRuleSet.setElements(of(
+                buildElement(of("p"), of("title"), null),
+                buildElement(of("h6"), null, null)
+        ));
+        policyModel.setDisallowedRuleSet(disallowedRuleSet);
+        ConfigModel configModel = new ConfigModel();
+        configModel.setEditWorkspace(policyModel);
+        configModel.setLiveWorkspace(policyModel);
+        return configModel;
+    }
+}
@@ -0,0 +1,236 @@
+package org.jahia.modules.htmlfiltering.impl;
+
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+import org.jahia.modules.htmlfiltering.engine.CompiledSanitizer;
+import org.jahia.modules.htmlfiltering.engine.EngineContext;
+import org.jahia.modules.htmlfiltering.engine.HtmlEventReceiver;
+import org.jahia.modules.htmlfiltering.engine.RejectionListener;
+import org.jahia.modules.htmlfiltering.impl.format.BuiltinFormat;
+import org.jahia.modules.htmlfiltering.model.PolicyModel;
+import org.jahia.modules.htmlfiltering.model.RuleSetModel;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+import static org.jahia.modules.htmlfiltering.impl.TestHelper.buildElement;
+import static org.jahia.modules.htmlfiltering.impl.TestHelper.of;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests the content handled by the allowlist engine itself, the content left to the OWASP sanitizer is verified against it by
+ * {@link AllowlistSanitizerEngineTest}.
+ */
+@RunWith(JUnitParamsRunner.class)
+public class AllowlistSanitizerTest {
+
+    private static final EngineContext ENGINE_CONTEXT = new EngineContext() {
+        @Override
+        public Predicate<String> getFormat(String format) {
+            return BuiltinFormat.fromReference(format)::matches;
+        }
+
+        @Override
+        public UnaryOperator<String> getStyleFilter() {
+            return null;
+        }
+    };
+
+    @Test
+    @Parameters({
+            "<p>Hello <b>world</b></p>,<p>Hello <b>world</b></p>",
+            "<P CLASS=\"x\">a</P >,<p class=\"x\">a</p>",
+            // rejected elements are removed, not their text
+            "<div><em>a</em><ul><li>b</li></ul></div>,<div>a<ul><li>b</li></ul></div>",
+            // rejected attributes are removed
+            "<p title=\"t\" onclick=\"x()\" class='c'>a</p>,<p class=\"c\">a</p>",
+            "<p id=\"a1\">x</p><p id=\"1a\">y</p>,<p id=\"a1\">x</p><p>y</p>",
+            // protocols are checked and the curly braces of the URLs are encoded
+            "<a href=\"https://x/{mode}/a.html\" title=\"t\">l</a>,<a href=\"https://x/%7bmode%7d/a.html\" title=\"t\">l</a>",
+            "<a href=\"javascript:void\" class=\"c\">l</a>,<a class=\"c\">l</a>",
+            "<a href=\"?a=1&b=2&amp;c=3\">l</a>,<a href=\"?a=1&b=2&c=3\">l</a>",
+            "<img src=\"/a.png\" /><br>,<img src=\"/a.png\"><br>",
+            // character references are decoded
+            "a &amp; b &lt; &#233;&#xE9;&nbsp;&eacute; & c,a & b < \u00E9\u00E9\u00A0\u00E9 & c",
+            // comments are removed
+            "<div><!-- <p> -->a</div>,<div>a</div>",
+            // the elements left open are closed and the end tags without start tag are ignored
+            "<p>a</b>b <b>c,<p>ab <b>c</b></p>",
+    })
+    public void GIVEN_handled_html_WHEN_sanitizing_THEN_the_fallback_is_not_used(String html, String expectedHtml) {
+        RecordingSanitizer fallback = new RecordingSanitizer();
+        CompiledSanitizer sanitizer = AllowlistSanitizerEngine.compile(buildPolicyModel(), ENGINE_CONTEXT, fallback);
+        RecordingReceiver output = new RecordingReceiver();
+
+        sanitizer.sanitize(html, output, null, null, null);
+
+        assertNull(fallback.html);
+        assertEquals("[" + expectedHtml + "]", output.html.toString());
+    }
+
+    @Test
+    @Parameters({
+            "<script>a</script>",
+            "<table><tr><td>a</td></tr></table>",
+            "<!DOCTYPE html><p>a</p>",
+            "a < b",
+            "<p class=x>a</p>",
+            "<p hidden>a</p>",
+            "<p title=\"a\" title=\"b\">a</p>",
+            "a &foo; b",
+            "a &copy b",
+            "&#0;",
+            // elements that are not properly nested
+            "<p>a<p>b</p></p>",
+            "<b><em>a</b></em>",
+            "<ul> <li>a</li></ul>",
+            "<a href=\"/x\"><b><a href=\"/y\">l</a></b></a>",
+            // elements removed without attributes
+            "<a>a</a>",
+            // disallowed elements, whose text is also removed
+            "<h6>a</h6>",
+            // URLs the OWASP sanitizer encodes
+            "<a href=\"/a b\">l</a>",
+    })
+    public void GIVEN_html_not_handled_WHEN_sanitizing_THEN_the_fallback_is_used(String html) {
+        RecordingSanitizer fallback = new RecordingSanitizer();
+        CompiledSanitizer sanitizer = AllowlistSanitizerEngine.compile(buildPolicyModel(), ENGINE_CONTEXT, fallback);
+        RecordingReceiver output = new RecordingReceiver();
+
+        sanitizer.sanitize(html, output, null, null, null);
+
+        assertEquals(html, fallback.html);
+        assertEquals("[fallback]", output.html.toString());
+    }
+
+    @Test
+    public void GIVEN_html_with_rejections_WHEN_sanitizing_THEN_they_are_reported() {
+        CompiledSanitizer sanitizer = AllowlistSanitizerEngine.compile(buildPolicyModel(), ENGINE_CONTEXT, new RecordingSanitizer());
+        List<String> rejections = new ArrayList<>();
+
+        sanitizer.sanitize("<p title=\"t\" CustomAttr=\"a\">a<em>b</em></p>", new RecordingReceiver(), null, new RecordingListener(),
+                rejections);
+
+        assertEquals(Arrays.asList("p[title customattr]", "em"), rejections);
+    }
+
+    @Test
+    public void GIVEN_html_not_handled_after_some_events_WHEN_sanitizing_THEN_the_observer_and_the_listener_are_notified_once() {
+        RecordingSanitizer fallback = new RecordingSanitizer();
+        CompiledSanitizer sanitizer = AllowlistSanitizerEngine.compile(buildPolicyModel(), ENGINE_CONTEXT, fallback);
+        RecordingReceiver observer = new RecordingReceiver();
+        List<String> rejections = new ArrayList<>();
+
+        sanitizer.sanitize("<em>a</em><script>b</script>", new RecordingReceiver(), observer, new RecordingListener(), rejections);
+
+        assertEquals("<em>a</em><script>b</script>", fallback.html);
+        assertEquals("[<em>a</em><script>b</script>]", observer.html.toString());
+        assertEquals(Arrays.asList("em", "script"), rejections);
+    }
+
+    private static PolicyModel buildPolicyModel() {
+        PolicyModel policyModel = new PolicyModel();
+        RuleSetModel allowedRuleSet = new RuleSetModel();
+        allowedRuleSet.setElements(of(
+                buildElement(null, of("class", "title"), null),
+                buildElement(null, of("id"), "builtin:HTML_ID"),
+                buildElement(of("a"), of("href"), null),
+                buildElement(of("img"), of("src"), null),
+                buildElement(of("p", "b", "a", "img", "br", "div", "ul", "li", "span", "h6", "table", "td"), null, null)
+        ));
+        allowedRuleSet.setProtocols(of("https", "mailto"));
+        policyModel.setAllowedRuleSet(allowedRuleSet);
+        RuleSetModel disallowedRuleSet = new RuleSetModel();
+        disallowedRuleSet.setElements(of(
+                buildElement(of("p"), of("title"), null),
+                buildElement(of("h6"), null, null)
+        ));
+        policyModel.setDisallowedRuleSet(disallowedRuleSet);
+        return policyModel;
+    }
+
+    /**
+     * Writes the events received without encoding them, the brackets standing for the document.
+     */
+    private static final class RecordingReceiver implements HtmlEventReceiver {
+        private final StringBuilder html = new StringBuilder();
+
+        @Override
+        public void openDocument() {
+            html.append('[');
+        }
+
+        @Override
+        public void closeDocument() {
+            html.append(']');
+        }
+
+        @Override
+        public void openTag(String elementName, List<String> attrs) {
+            html.append('<').append(elementName);
+            for (int i = 0; i < attrs.size(); i += 2) {
+                html.append(' ').append(attrs.get(i)).append("=\"").append(attrs.get(i + 1)).append('"');
+            }
+            html.append('>');
+        }
+
+        @Override
+        public void closeTag(String elementName) {
+            html.append("</").append(elementName).append('>');
+        }
+
+        @Override
+        public void text(String text) {
+            html.append(text);
+        }
+    }
+
+    private static final class RecordingListener implements RejectionListener<List<String>> {
+        @Override
+        public void discardedTag(List<String> context, String elementName) {
+            context.add(elementName);
+        }
+
+        @Override
+        public void discardedAttributes(List<String> context, String tagName, String... attributeNames) {
+            context.add(tagName + Arrays.toString(attributeNames).replace(",", ""));
+        }
+    }
+
+    /**
+     * Records the content it is called with, and sends the events the OWASP sanitizer would send for the content of
+     * {@link #GIVEN_html_not_handled_after_some_events_WHEN_sanitizing_THEN_the_observer_and_the_listener_are_notified_once()}.
+     */
+    private static final class RecordingSanitizer implements CompiledSanitizer {
+        private String html;
+
+        @Override
+        public <T> void sanitize(String htmlText, HtmlEventReceiver output, HtmlEventReceiver inputObserver,
+                                 RejectionListener<? super T> listener, T context) {
+            html = htmlText;
+            if (inputObserver != null) {
+                inputObserver.openDocument();
+                inputObserver.openTag("em", new ArrayList<>());
+                inputObserver.text("a");
+                inputObserver.closeTag("em");
+                inputObserver.openTag("script", new ArrayList<>());
+                inputObserver.text("b");
+                inputObserver.closeTag("script");
+                inputObserver.closeDocument();
+            }
+            if (listener != null) {
+                listener.discardedTag(context, "em");
+                listener.discardedTag(context, "script");
+            }
+            output.openDocument();
+            output.text("fallback");
+            output.closeDocument();
+        }
+    }
+}
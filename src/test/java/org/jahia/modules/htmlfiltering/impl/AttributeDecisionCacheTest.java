@@ -0,0 +1,100 @@
+package org.jahia.modules.htmlfiltering.impl;
+
+import org.jahia.modules.htmlfiltering.impl.cache.CacheStats;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AttributeDecisionCacheTest {
+
+    @Test
+    public void GIVEN_a_cache_WHEN_matching_the_same_value_again_THEN_the_decision_is_reused() {
+        AttributeDecisionCache cache = new AttributeDecisionCache(16, 10);
+        AtomicInteger matchCount = new AtomicInteger();
+        Predicate<String> matcher = cache.matcher(value -> {
+            matchCount.incrementAndGet();
+            return value.startsWith("a");
+        });
+
+        assertTrue(matcher.test("abc"));
+        assertTrue(matcher.test("abc"));
+        assertFalse(matcher.test("xyz"));
+        assertFalse(matcher.test("xyz"));
+
+        assertEquals(2, matchCount.get());
+        CacheStats stats = cache.stats();
+        assertEquals(2, stats.getHitCount());
+        assertEquals(2, stats.getMissCount());
+    }
+
+    @Test
+    public void GIVEN_a_cache_shared_by_several_formats_WHEN_matching_the_same_value_THEN_each_format_takes_its_own_decision() {
+        AttributeDecisionCache cache = new AttributeDecisionCache(1, 10);
+        Predicate<String> digits = cache.matcher(value -> value.chars().allMatch(Character::isDigit));
+        Predicate<String> letters = cache.matcher(value -> value.chars().allMatch(Character::isLetter));
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(digits.test("123"));
+            assertFalse(letters.test("123"));
+        }
+
+        // a single slot, each decision replaces the other one
+        CacheStats stats = cache.stats();
+        assertEquals(0, stats.getHitCount());
+        assertEquals(1, stats.getSize());
+        assertEquals(5, stats.getEvictionCount());
+    }
+
+    @Test
+    public void GIVEN_a_cache_WHEN_matching_values_longer_than_the_limit_THEN_they_are_not_cached() {
+        AttributeDecisionCache cache = new AttributeDecisionCache(16, 2);
+        Predicate<String> matcher = cache.matcher(value -> true);
+
+        assertTrue(matcher.test("abc"));
+        assertTrue(matcher.test("abc"));
+
+        CacheStats stats = cache.stats();
+        assertEquals(0, stats.getHitCount() + stats.getMissCount());
+        assertEquals(2, stats.getRejectionCount());
+        assertEquals(0, stats.getSize());
+    }
+
+    @Test
+    public void GIVEN_a_cache_smaller_than_the_values_WHEN_matching_them_concurrently_THEN_the_decisions_are_those_of_the_format() throws Exception {
+        AttributeDecisionCache cache = new AttributeDecisionCache(8, 10);
+        Predicate<String> matcher = cache.matcher(value -> Integer.parseInt(value) % 3 == 0);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> mismatches = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                mismatches.add(executor.submit(() -> {
+                    int count = 0;
+                    for (int i = 0; i < 100000; i++) {
+                        int value = i % 64;
+                        if (matcher.test(Integer.toString(value)) != (value % 3 == 0)) {
+                            count++;
+                        }
+                    }
+                    return count;
+                }));
+            }
+            for (Future<Integer> future : mismatches) {
+                assertEquals(0, (int) future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(400000, cache.stats().getHitCount() + cache.stats().getMissCount());
+        assertTrue(cache.stats().getSize() <= 8);
+    }
+}
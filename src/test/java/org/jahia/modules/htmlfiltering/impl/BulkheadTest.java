@@ -0,0 +1,93 @@
+package org.jahia.modules.htmlfiltering.impl;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BulkheadTest {
+
+    @Test
+    public void GIVEN_available_permits_WHEN_acquiring_them_THEN_they_are_acquired_and_counted_as_active() {
+        Bulkhead bulkhead = new Bulkhead(2, 0, 0);
+
+        assertTrue(bulkhead.tryAcquire());
+        assertTrue(bulkhead.tryAcquire());
+
+        BulkheadStats stats = bulkhead.stats();
+        assertEquals(2, stats.getMaxConcurrent());
+        assertEquals(2, stats.getActiveCount());
+        assertEquals(2, stats.getAcquiredCount());
+        bulkhead.release();
+        bulkhead.release();
+        assertEquals(0, bulkhead.stats().getActiveCount());
+    }
+
+    @Test
+    public void GIVEN_a_saturated_bulkhead_without_queue_WHEN_acquiring_a_permit_THEN_it_is_refused_right_away() {
+        Bulkhead bulkhead = new Bulkhead(1, 0, 10000);
+        assertTrue(bulkhead.tryAcquire());
+
+        long start = System.nanoTime();
+        boolean acquired = bulkhead.tryAcquire();
+
+        assertFalse(acquired);
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(1, bulkhead.stats().getRejectedCount());
+        assertEquals(0, bulkhead.stats().getWaitingCount());
+    }
+
+    @Test
+    public void GIVEN_a_saturated_bulkhead_WHEN_no_permit_is_released_in_time_THEN_the_permit_is_refused_after_waiting() {
+        Bulkhead bulkhead = new Bulkhead(1, 1, 50);
+        assertTrue(bulkhead.tryAcquire());
+
+        boolean acquired = bulkhead.tryAcquire();
+
+        assertFalse(acquired);
+        assertEquals(1, bulkhead.stats().getTimedOutCount());
+        assertEquals(0, bulkhead.stats().getWaitingCount());
+    }
+
+    @Test
+    public void GIVEN_a_saturated_bulkhead_WHEN_a_permit_is_released_while_waiting_THEN_the_waiting_content_acquires_it() throws Exception {
+        Bulkhead bulkhead = new Bulkhead(1, 1, 10000);
+        assertTrue(bulkhead.tryAcquire());
+
+        CompletableFuture<Boolean> waiting = CompletableFuture.supplyAsync(bulkhead::tryAcquire);
+        awaitWaitingCount(bulkhead, 1);
+        bulkhead.release();
+
+        assertTrue(waiting.get(10, TimeUnit.SECONDS));
+        assertEquals(1, bulkhead.stats().getQueuedCount());
+        assertEquals(1, bulkhead.stats().getActiveCount());
+        assertEquals(0, bulkhead.stats().getWaitingCount());
+    }
+
+    @Test
+    public void GIVEN_a_full_queue_WHEN_acquiring_a_permit_THEN_it_is_refused_right_away() throws Exception {
+        Bulkhead bulkhead = new Bulkhead(1, 1, 10000);
+        assertTrue(bulkhead.tryAcquire());
+        CompletableFuture<Boolean> waiting = CompletableFuture.supplyAsync(bulkhead::tryAcquire);
+        awaitWaitingCount(bulkhead, 1);
+
+        boolean acquired = bulkhead.tryAcquire();
+
+        assertFalse(acquired);
+        assertEquals(1, bulkhead.stats().getRejectedCount());
+        bulkhead.release();
+        assertTrue(waiting.get(10, TimeUnit.SECONDS));
+    }
+
+    private static void awaitWaitingCount(Bulkhead bulkhead, int waitingCount) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (bulkhead.stats().getWaitingCount() < waitingCount && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(waitingCount, bulkhead.stats().getWaitingCount());
+    }
+}
@@ -0,0 +1,135 @@
+package org.jahia.modules.htmlfiltering.impl;
+
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+import org.jahia.modules.htmlfiltering.PolicySanitizedHtmlResult;
+import org.jahia.modules.htmlfiltering.model.ConfigModel;
+import org.jahia.modules.htmlfiltering.model.PolicyModel;
+import org.jahia.modules.htmlfiltering.model.RuleSetModel;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.osgi.service.cm.ConfigurationException;
+
+import java.util.Collections;
+import java.util.Random;
+
+import static org.jahia.modules.htmlfiltering.impl.TestHelper.buildConfigModel;
+import static org.jahia.modules.htmlfiltering.impl.TestHelper.buildElement;
+import static org.jahia.modules.htmlfiltering.impl.TestHelper.of;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the fast path of {@link PolicyImpl#sanitize(String)} based on {@link CleanHtmlClassifier}: the content classified as clean
+ * must give exactly the same result as the full sanitization.
+ */
+@RunWith(JUnitParamsRunner.class)
+public class CleanHtmlClassifierTest {
+
+    private static final String[] FRAGMENTS = {
+            "text", " ", "\n", "\t", "\u00E9", "\u20AC", "'", "\"", "&", "&amp;", "&nbsp;", "<", ">", "=", "+", "@", "`", "{", "{{", "}", "%7bmode%7d",
+            "%7B", "%", "\r", "\u0000", "\u0085", "\u00A0", "\u2028", "\uFFFE", "\uD83D\uDE00", "\uD83D",
+            "<p>", "</p>", "<P>", "<h1>", "</h1>", "<b>", "</b>", "<em>", "</em>", "<div>", "</div>", "<ul>", "</ul>", "<li>", "</li>",
+            "<br />", "<br>", "<br/>", "<span>", "</span>", "<script>", "</script>", "<!-- comment -->",
+            "<p class=\"a\">", "<p class='a'>", "<p class=\"\">", "<p class=a>", "<p title=\"t\">", "<p id=\"x\">", "<div dir=\"rtl\">",
+            "<a href=\"https://example.com\">", "</a>", "<p style=\"color:red\">", "<p class=\"a\" class=\"b\">", "<p  class=\"a\">",
+            "</p class=\"a\">", "</b >", "</ p>", "</p\n>",
+    };
+
+    private static PolicyImpl buildPolicy() throws ConfigurationException {
+        ConfigModel configModel = buildConfigModel("p", "h1", "h2", "b", "em", "div", "ul", "ol", "li", "br", "span", "a", "blockquote");
+        PolicyModel policyModel = configModel.getEditWorkspace();
+        policyModel.getAllowedRuleSet().setElements(of(
+                policyModel.getAllowedRuleSet().getElements().get(0),
+                buildElement(null, of("class", "dir", "title", "style"), null),
+                buildElement(null, of("id"), "HTML_ID"),
+                buildElement(of("a"), of("href"), null)
+        ));
+        policyModel.getAllowedRuleSet().setProtocols(of("https"));
+        RuleSetModel disallowedRuleSet = new RuleSetModel();
+        disallowedRuleSet.setElements(of(buildElement(of("p"), of("title"), null)));
+        policyModel.setDisallowedRuleSet(disallowedRuleSet);
+        configModel.setFormatDefinitions(Collections.singletonMap("HTML_ID", "[a-zA-Z0-9_]+"));
+        return (PolicyImpl) ConfigBuilder.buildFromModel(configModel).getEditWorkspacePolicy();
+    }
+
+    private static Object[] parameters() {
+        return new Object[]{
+                // plain text
+                new Object[]{"", true},
+                new Object[]{"my text", true},
+                new Object[]{"multi\nline\ttext with unicode: \u00E9 \u20AC \u4E2D\u6587", true},
+                new Object[]{"100% sure, or not?", true},
+                new Object[]{"don't", false},
+                new Object[]{"a < b", false},
+                new Object[]{"fish &amp; chips", false},
+                new Object[]{"1 + 1 = 2", false},
+                new Object[]{"john@example.com", false},
+                new Object[]{"link to %7bmode%7d", false},
+                new Object[]{"carriage\r\nreturn", false},
+                // simple markup
+                new Object[]{"<p>my text</p>", true},
+                new Object[]{"<h1>title</h1><p>some <b>bold</b> and <em>emphasized</em> text<br />new line</p>", true},
+                new Object[]{"<div class=\"main\" dir=\"rtl\"><p class=\"intro\">text</p><ul><li>one</li><li><p>two</p></li></ul></div>", true},
+                new Object[]{"<blockquote><p>quote</p></blockquote>", true},
+                new Object[]{"<p></p>", true},
+                new Object[]{"text<br />", true},
+                // markup the sanitizer has to process
+                new Object[]{"<P>my text</P>", false},
+                new Object[]{"<p>unclosed", false},
+                new Object[]{"<p><div>block in paragraph</div></p>", false},
+                new Object[]{"<b><p>block in inline</p></b>", false},
+                new Object[]{"<ul>\n<li>whitespace in list</li>\n</ul>", false},
+                new Object[]{"<li>item without list</li>", false},
+                new Object[]{"<br>", false},
+                new Object[]{"<p title=\"disallowed\">text</p>", false},
+                new Object[]{"<p id=\"formatted\">text</p>", false},
+                new Object[]{"<p style=\"color:red\">text</p>", false},
+                new Object[]{"<p class='single'>text</p>", false},
+                new Object[]{"<p class=\"\">text</p>", false},
+                new Object[]{"<p class=\"a\" class=\"b\">text</p>", false},
+                new Object[]{"<p unknown=\"value\">text</p>", false},
+                new Object[]{"<span class=\"a\">skipped if empty</span>", false},
+                new Object[]{"<a href=\"https://example.com\">link</a>", false},
+                                new Object[]{"<h3>not allowed</h3>", false},
+                new Object[]{"<script>alert('x')</script>", false},
+                new Object[]{"<!-- comment -->", false},
+                new Object[]{"<p class=\"a\">text</p class=\"a\">", false},
+                new Object[]{"<p><b class=\"x\">text</b class=\"x\"></p>", false},
+                new Object[]{"<p>text</p >", false},
+                new Object[]{"<p>text</p\n>", false},
+                new Object[]{"<p>text</ p>", false},
+        };
+    }
+
+    @Test
+    @Parameters(method = "parameters")
+    public void GIVEN_html_WHEN_sanitizing_THEN_the_result_is_the_same_as_the_full_sanitization(String html, boolean expectedClean) throws ConfigurationException {
+        PolicyImpl policy = buildPolicy();
+
+        assertEquals(expectedClean, policy.cleanHtmlClassifier.isClean(html));
+        assertSameResult(html, policy.doSanitize(html), policy.sanitize(html));
+    }
+
+    @Test
+    public void GIVEN_random_html_WHEN_sanitizing_THEN_the_result_is_the_same_as_the_full_sanitization() throws ConfigurationException {
+        PolicyImpl policy = buildPolicy();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder html = new StringBuilder();
+            int fragments = random.nextInt(12);
+            for (int j = 0; j < fragments; j++) {
+                html.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+            assertSameResult(html.toString(), policy.doSanitize(html.toString()), policy.sanitize(html.toString()));
+        }
+    }
+
+    private static void assertSameResult(String html, PolicySanitizedHtmlResult expected, PolicySanitizedHtmlResult actual) {
+        assertEquals("Sanitized HTML of: " + html, expected.getSanitizedHtml(), actual.getSanitizedHtml());
+        assertEquals("Validity of: " + html, expected.isValid(), actual.isValid());
+        assertEquals("Change of: " + html, expected.isChanged(), actual.isChanged());
+        assertEquals("Rejected tags of: " + html, expected.getRejectedTags(), actual.getRejectedTags());
+        assertEquals("Rejected attributes of: " + html, expected.getRejectedAttributesByTag(), actual.getRejectedAttributesByTag());
+    }
+}
@@ -4,8 +4,15 @@ import junitparams.JUnitParamsRunner;
 import junitparams.Parameters;
 import org.jahia.modules.htmlfiltering.Policy;
 import org.jahia.modules.htmlfiltering.Strategy;
+import org.jahia.modules.htmlfiltering.engine.CompiledSanitizer;
+import org.jahia.modules.htmlfiltering.engine.EngineContext;
+import org.jahia.modules.htmlfiltering.engine.HtmlEventReceiver;
+import org.jahia.modules.htmlfiltering.engine.RejectionListener;
+import org.jahia.modules.htmlfiltering.engine.SanitizerEngine;
 import org.jahia.modules.htmlfiltering.impl.config.Config;
 import org.jahia.modules.htmlfiltering.model.ConfigModel;
+import org.jahia.modules.htmlfiltering.model.ElementModel;
+import org.jahia.modules.htmlfiltering.model.LimitsModel;
 import org.jahia.modules.htmlfiltering.model.PolicyModel;
 import org.jahia.modules.htmlfiltering.model.RuleSetModel;
 import org.jahia.modules.htmlfiltering.model.validation.constraints.FormatRequiresAttributes;
@@ -16,18 +23,24 @@ import org.osgi.service.cm.ConfigurationException;
 
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Dictionary;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.jahia.modules.htmlfiltering.impl.ConfigBuilder.buildFromModel;
 import static org.jahia.modules.htmlfiltering.impl.TestHelper.assertContainsExactValidationError;
 import static org.jahia.modules.htmlfiltering.impl.TestHelper.assertContainsValidationError;
+import static org.jahia.modules.htmlfiltering.impl.TestHelper.buildCssProperty;
 import static org.jahia.modules.htmlfiltering.impl.TestHelper.buildElement;
+import static org.jahia.modules.htmlfiltering.impl.TestHelper.buildStyle;
 import static org.jahia.modules.htmlfiltering.impl.TestHelper.of;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThrows;
@@ -107,6 +120,46 @@ public class ConfigBuilderTest {
         assertContainsExactValidationError(exception, "formatDefinitions", "the value for the format definition of 'MY_FORMAT' must be a valid regular expression");
     }
 
+    @Test
+    public void GIVEN_an_exponential_format_definition_pattern_WHEN_building_THEN_validation_error() {
+        ConfigModel configModel = TestHelper.buildConfigModel();
+        Map<String, String> formatDefinitions = new HashMap<>();
+        // the back reference requires java.util.regex, which would backtrack exponentially
+        formatDefinitions.put("MY_FORMAT", "(\\w+)+-\\1");
+        configModel.setFormatDefinitions(formatDefinitions);
+
+        ValidationConfigurationException exception = assertThrows(ValidationConfigurationException.class, () -> buildFromModel(configModel));
+
+        assertContainsExactValidationError(exception, "formatDefinitions", "the value for the format definition of 'MY_FORMAT' must not take an exponential time to match");
+    }
+
+    @Test
+    public void GIVEN_an_exponential_format_definition_pattern_matched_in_linear_time_WHEN_building_THEN_success() throws ConfigurationException {
+        ConfigModel configModel = TestHelper.buildConfigModel();
+        Map<String, String> formatDefinitions = new HashMap<>();
+        formatDefinitions.put("MY_FORMAT", "(\\w+)+");
+        configModel.setFormatDefinitions(formatDefinitions);
+
+        assertNotNull(buildFromModel(configModel));
+    }
+
+    @Test
+    @Parameters({
+            "mode",
+            "{mode",
+            "{}",
+            "{my mode}",
+            "{%7bmode}",
+    })
+    public void GIVEN_an_invalid_placeholder_WHEN_building_THEN_validation_error(String placeholder) {
+        ConfigModel configModel = TestHelper.buildConfigModel();
+        configModel.setPlaceholders(TestHelper.of("{mode}", placeholder));
+
+        ValidationConfigurationException exception = assertThrows(ValidationConfigurationException.class, () -> buildFromModel(configModel));
+
+        assertContainsExactValidationError(exception, "placeholders[1].<list element>", "must be a name made of letters, digits, '_', '.' or '-' between curly braces");
+    }
+
     @Test
     @Parameters({
             "UNDEFINED_FORMAT",
@@ -126,6 +179,48 @@ public class ConfigBuilderTest {
         assertContainsExactValidationError(exception, "editWorkspace.allowedRuleSet.elements.[0].format", "Format '" + formatName + "' not defined under 'formatDefinitions'");
     }
 
+    @Test
+    public void GIVEN_a_built_in_format_WHEN_building_THEN_success() throws ConfigurationException {
+        ConfigModel configModel = TestHelper.buildConfigModel();
+        configModel.getEditWorkspace().getAllowedRuleSet().getElements().get(0).setFormat("builtin:HTML_ID");
+        configModel.getEditWorkspace().getAllowedRuleSet().getElements().get(0).setAttributes(of("id"));
+
+        assertNotNull(buildFromModel(configModel));
+    }
+
+    @Test
+    public void GIVEN_an_unknown_built_in_format_WHEN_building_THEN_validation_error() {
+        ConfigModel configModel = TestHelper.buildConfigModel();
+        configModel.getEditWorkspace().getAllowedRuleSet().getElements().get(0).setFormat("builtin:UNKNOWN");
+        configModel.getEditWorkspace().getAllowedRuleSet().getElements().get(0).setAttributes(of("id"));
+
+        ValidationConfigurationException exception = assertThrows(ValidationConfigurationException.class, () -> buildFromModel(configModel));
+
+        assertContainsExactValidationError(exception, "editWorkspace.allowedRuleSet.elements.[0].format", "Format 'builtin:UNKNOWN' is not a built-in format");
+    }
+
+    @Test
+    public void GIVEN_a_css_property_with_an_undefined_format_WHEN_building_THEN_validation_error() {
+        ConfigModel configModel = TestHelper.buildConfigModel();
+        configModel.getEditWorkspace().setStyle(buildStyle(
+                buildCssProperty(of("color"), "builtin:COLOR"),
+                buildCssProperty(of("margin"), "UNDEFINED_FORMAT")));
+
+        ValidationConfigurationException exception = assertThrows(ValidationConfigurationException.class, () -> buildFromModel(configModel));
+
+        assertContainsExactValidationError(exception, "editWorkspace.style.properties.[1].format", "Format 'UNDEFINED_FORMAT' not defined under 'formatDefinitions'");
+    }
+
+    @Test
+    public void GIVEN_an_invalid_css_property_name_WHEN_building_THEN_validation_error() {
+        ConfigModel configModel = TestHelper.buildConfigModel();
+        configModel.getEditWorkspace().setStyle(buildStyle(buildCssProperty(of("color", "x:y"), null)));
+
+        ValidationConfigurationException exception = assertThrows(ValidationConfigurationException.class, () -> buildFromModel(configModel));
+
+        assertContainsExactValidationError(exception, "editWorkspace.style.properties[0].properties[1].<list element>", "must be a CSS property name");
+    }
+
     //--------------------------------
     // validate fields of PolicyModel
     //--------------------------------
@@ -155,6 +250,7 @@ public class ConfigBuilderTest {
     @Parameters({
             "REJECT, REJECT",
             "SANITIZE, SANITIZE",
+            "STRIP, STRIP",
     })
     public void GIVEN_the_edit_workspace_with_a_specific_strategy_WHEN_building_THEN_the_strategy_matches(PolicyModel.PolicyStrategy strategyModel, Strategy expectedStrategy) throws ConfigurationException {
         ConfigModel configModel = TestHelper.buildConfigModel();
@@ -171,6 +267,7 @@ public class ConfigBuilderTest {
     @Parameters({
             "REJECT, REJECT",
             "SANITIZE, SANITIZE",
+            "STRIP, STRIP",
     })
     public void GIVEN_the_live_workspace_with_a_specific_strategy_WHEN_building_THEN_the_strategy_matches(PolicyModel.PolicyStrategy strategyModel, Strategy expectedStrategy) throws ConfigurationException {
         ConfigModel configModel = TestHelper.buildConfigModel();
@@ -539,6 +636,188 @@ public class ConfigBuilderTest {
         assertContainsExactValidationError(exception, "liveWorkspace.allowedRuleSet.elements.[0].format", "Format 'UNDEFINED_FORMAT' not defined under 'formatDefinitions'");
     }
 
+    //--------
+    // engine
+    //--------
+
+    @Test
+    public void GIVEN_a_registered_engine_selected_in_edit_workspace_WHEN_building_THEN_the_edit_policy_is_compiled_by_it() throws ConfigurationException {
+        TextEngine engine = new TextEngine("text", "sanitized");
+        ConfigModel configModel = TestHelper.buildConfigModel("p");
+        configModel.getEditWorkspace().setEngine("text");
+        SanitizerEngines.register(engine);
+        try {
+            Config config = buildFromModel(configModel);
+
+            assertEquals(Collections.singletonList(configModel.getEditWorkspace()), engine.compiledModels);
+            assertEquals("sanitized", config.getEditWorkspacePolicy().sanitize("<p>a</p><script>b</script>").getSanitizedHtml());
+            assertEquals("<p>a</p>", config.getLiveWorkspacePolicy().sanitize("<p>a</p><script>b</script>").getSanitizedHtml());
+            assertNotEquals(config.getEditWorkspacePolicy().getFingerprint(), config.getLiveWorkspacePolicy().getFingerprint());
+        } finally {
+            SanitizerEngines.unregister(engine);
+        }
+    }
+
+    @Test
+    public void GIVEN_an_engine_that_is_not_registered_WHEN_building_THEN_the_default_engine_is_used() throws ConfigurationException {
+        ConfigModel configModel = TestHelper.buildConfigModel("p");
+        configModel.getEditWorkspace().setEngine("unknown");
+
+        Config config = buildFromModel(configModel);
+
+        assertEquals("<p>a</p>", config.getEditWorkspacePolicy().sanitize("<p>a</p><script>b</script>").getSanitizedHtml());
+        // the values are recorded as sanitized by the engine that actually compiled the policy
+        assertEquals(config.getLiveWorkspacePolicy().getFingerprint(), config.getEditWorkspacePolicy().getFingerprint());
+        // so that the configuration is built again once the engine is registered
+        assertTrue(config.selectsEngine("unknown"));
+        assertTrue(config.selectsEngine(SanitizerEngine.DEFAULT_ENGINE));
+        assertFalse(config.selectsEngine(AllowlistSanitizerEngine.NAME));
+    }
+
+    @Test
+    public void GIVEN_the_allowlist_engine_selected_in_edit_workspace_WHEN_building_THEN_the_edit_policy_is_compiled_by_it() throws ConfigurationException {
+        ConfigModel configModel = TestHelper.buildConfigModel("p");
+        configModel.getEditWorkspace().setEngine(AllowlistSanitizerEngine.NAME);
+
+        Config config = buildFromModel(configModel);
+
+        assertEquals(AllowlistSanitizerEngine.INSTANCE, SanitizerEngines.get(AllowlistSanitizerEngine.NAME));
+        assertEquals("<p>a</p>b", config.getEditWorkspacePolicy().sanitize("<p>a</p><em>b</em>").getSanitizedHtml());
+        assertEquals("<p>a</p>", config.getEditWorkspacePolicy().sanitize("<p>a</p><script>b</script>").getSanitizedHtml());
+    }
+
+    @Test
+    public void GIVEN_an_engine_with_the_name_of_the_default_one_WHEN_registering_THEN_it_is_ignored() {
+        TextEngine engine = new TextEngine(SanitizerEngine.DEFAULT_ENGINE, "sanitized");
+
+        SanitizerEngines.register(engine);
+
+        assertEquals(OwaspSanitizerEngine.INSTANCE, SanitizerEngines.get(SanitizerEngine.DEFAULT_ENGINE));
+        assertEquals(OwaspSanitizerEngine.INSTANCE, SanitizerEngines.get(null));
+    }
+
+    @Test
+    public void GIVEN_an_invalid_engine_name_WHEN_building_THEN_validation_error() {
+        ConfigModel configModel = TestHelper.buildConfigModel();
+        configModel.getLiveWorkspace().setEngine("my engine");
+
+        ValidationConfigurationException exception = assertThrows(ValidationConfigurationException.class, () -> buildFromModel(configModel));
+
+        assertContainsExactValidationError(exception, "liveWorkspace.engine", "must be a name made of letters, digits, '_', '.' or '-'");
+    }
+
+    /**
+     * An engine replacing any HTML content with a fixed text.
+     */
+    private static final class TextEngine implements SanitizerEngine {
+        private final String name;
+        private final String text;
+        private final List<PolicyModel> compiledModels = new ArrayList<>();
+
+        private TextEngine(String name, String text) {
+            this.name = name;
+            this.text = text;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public CompiledSanitizer compile(PolicyModel policyModel, EngineContext context) {
+            compiledModels.add(policyModel);
+            return new CompiledSanitizer() {
+                @Override
+                public <T> void sanitize(String htmlText, HtmlEventReceiver output, HtmlEventReceiver inputObserver,
+                                         RejectionListener<? super T> listener, T context) {
+                    output.openDocument();
+                    output.text(text);
+                    output.closeDocument();
+                }
+            };
+        }
+    }
+
+    //-------------
+    // fingerprint
+    //-------------
+
+    @Test
+    public void GIVEN_two_configurations_with_the_same_rules_WHEN_building_THEN_the_policies_have_the_same_fingerprint() throws ConfigurationException {
+        ConfigModel configModel = TestHelper.buildCompleteConfigModel();
+        ConfigModel otherConfigModel = TestHelper.buildCompleteConfigModel();
+        // not part of the sanitization rules
+        otherConfigModel.getEditWorkspace().setProcess(of("jnt:text.text"));
+
+        Config config = buildFromModel(configModel);
+        Config otherConfig = buildFromModel(otherConfigModel);
+
+        assertEquals(config.getEditWorkspacePolicy().getFingerprint(), otherConfig.getEditWorkspacePolicy().getFingerprint());
+        assertEquals(config.getEditWorkspacePolicy().getFingerprint(), config.getLiveWorkspacePolicy().getFingerprint());
+    }
+
+    @Test
+    public void GIVEN_two_configurations_with_the_same_rules_in_a_different_order_WHEN_building_THEN_the_policies_have_the_same_fingerprint() throws ConfigurationException {
+        ConfigModel configModel = TestHelper.buildCompleteConfigModel();
+        ConfigModel otherConfigModel = TestHelper.buildCompleteConfigModel();
+        RuleSetModel otherRuleSet = otherConfigModel.getEditWorkspace().getAllowedRuleSet();
+        List<ElementModel> elements = new ArrayList<>(otherRuleSet.getElements());
+        Collections.reverse(elements);
+        for (ElementModel element : elements) {
+            if (element.getTags() != null) {
+                List<String> tags = new ArrayList<>(element.getTags());
+                Collections.reverse(tags);
+                element.setTags(tags);
+            }
+        }
+        otherRuleSet.setElements(elements);
+
+        Config config = buildFromModel(configModel);
+        Config otherConfig = buildFromModel(otherConfigModel);
+
+        assertEquals(config.getEditWorkspacePolicy().getFingerprint(), otherConfig.getEditWorkspacePolicy().getFingerprint());
+    }
+
+    @Test
+    public void GIVEN_configurations_with_different_rules_WHEN_building_THEN_the_policies_have_different_fingerprints() throws ConfigurationException {
+        String fingerprint = buildFromModel(TestHelper.buildCompleteConfigModel()).getEditWorkspacePolicy().getFingerprint();
+        ConfigModel otherRules = TestHelper.buildCompleteConfigModel();
+        otherRules.getEditWorkspace().getAllowedRuleSet().setProtocols(of("https"));
+        ConfigModel otherFormat = TestHelper.buildCompleteConfigModel();
+        otherFormat.getFormatDefinitions().put("HTML_ID", "^[a-z]+$");
+        ConfigModel otherPlaceholders = TestHelper.buildCompleteConfigModel();
+        otherPlaceholders.setPlaceholders(of("{mode}"));
+        ConfigModel otherLimits = TestHelper.buildCompleteConfigModel();
+        otherLimits.getEditWorkspace().setLimits(new LimitsModel());
+        otherLimits.getEditWorkspace().getLimits().setMaxElementCount(100);
+        ConfigModel otherStyle = TestHelper.buildCompleteConfigModel();
+        otherStyle.getEditWorkspace().setStyle(buildStyle(buildCssProperty(of("color"), null)));
+
+        assertNotEquals(fingerprint, buildFromModel(otherRules).getEditWorkspacePolicy().getFingerprint());
+        assertNotEquals(fingerprint, buildFromModel(otherFormat).getEditWorkspacePolicy().getFingerprint());
+        assertNotEquals(fingerprint, buildFromModel(otherPlaceholders).getEditWorkspacePolicy().getFingerprint());
+        assertNotEquals(fingerprint, buildFromModel(otherLimits).getEditWorkspacePolicy().getFingerprint());
+        assertNotEquals(fingerprint, buildFromModel(otherStyle).getEditWorkspacePolicy().getFingerprint());
+    }
+
+    //--------
+    // limits
+    //--------
+
+    @Test
+    @Parameters({"0", "-1"})
+    public void GIVEN_a_limit_that_is_not_positive_WHEN_building_THEN_validation_error(int limit) {
+        ConfigModel configModel = TestHelper.buildConfigModel();
+        LimitsModel limits = new LimitsModel();
+        limits.setMaxNestingDepth(limit);
+        configModel.getEditWorkspace().setLimits(limits);
+
+        ValidationConfigurationException exception = assertThrows(ValidationConfigurationException.class, () -> buildFromModel(configModel));
+
+        assertContainsExactValidationError(exception, "editWorkspace.limits.maxNestingDepth", Positive.class);
+    }
+
     //---------------------
     // complete validation
     //---------------------
@@ -0,0 +1,114 @@
+package org.jahia.modules.htmlfiltering.impl;
+
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(JUnitParamsRunner.class)
+public class DocumentSplitterTest {
+
+    @Test
+    public void GIVEN_html_shorter_than_the_minimum_length_WHEN_splitting_THEN_it_is_not_split() {
+        DocumentSplitter splitter = new DocumentSplitter(100, 1);
+
+        assertNull(splitter.split("<p>a</p><p>b</p>"));
+        assertEquals(0, splitter.stats().getUnsplitCount());
+    }
+
+    @Test
+    public void GIVEN_top_level_blocks_WHEN_splitting_THEN_the_html_is_split_before_each_of_them() {
+        DocumentSplitter splitter = new DocumentSplitter(1, 1);
+
+        List<String> chunks = splitter.split("<p>a</p><p>b<br>c</p>d<div>e</div>");
+
+        assertEquals(Arrays.asList("<p>a</p>", "<p>b<br>c</p>d", "<div>e</div>"), chunks);
+        assertEquals(1, splitter.stats().getSplitCount());
+        assertEquals(3, splitter.stats().getChunkCount());
+    }
+
+    @Test
+    public void GIVEN_nested_blocks_WHEN_splitting_THEN_the_html_is_only_split_at_the_top_level() {
+        DocumentSplitter splitter = new DocumentSplitter(1, 1);
+
+        List<String> chunks = splitter.split("<DIV><p>a</p><p>b</p></div><span>c</span><p>d</p>");
+
+        assertEquals(Arrays.asList("<DIV><p>a</p><p>b</p></div><span>c</span>", "<p>d</p>"), chunks);
+    }
+
+    @Test
+    public void GIVEN_a_chunk_length_WHEN_splitting_THEN_the_chunks_are_at_least_that_long() {
+        DocumentSplitter splitter = new DocumentSplitter(1, 10);
+
+        List<String> chunks = splitter.split("<p>a</p><p>b</p><p>c</p>");
+
+        assertEquals(Arrays.asList("<p>a</p><p>b</p>", "<p>c</p>"), chunks);
+    }
+
+    @Test
+    public void GIVEN_raw_text_comments_and_quoted_attributes_WHEN_splitting_THEN_their_content_is_not_parsed_as_tags() {
+        DocumentSplitter splitter = new DocumentSplitter(1, 1);
+
+        List<String> chunks = splitter.split("<p title=\"a>b\">a</p><script></p><p></script><!-- </p> --><p>b</p>");
+
+        assertEquals(Arrays.asList("<p title=\"a>b\">a</p><script></p><p></script><!-- </p> -->", "<p>b</p>"), chunks);
+    }
+
+    @Parameters({
+            "<li>x</li>",
+            "<span>x</b>",
+            "</span>",
+            "<b><i>x</b></i>",
+            "<!-->",
+            "<!DOCTYPE html>",
+            "<?xml?>",
+            "<plaintext>",
+            "<script>x",
+            "<span title='x>",
+            "<o:p>x</o:p>",
+            "<!-- x",
+            "</ p>",
+    })
+    @Test
+    public void GIVEN_a_construct_making_the_state_of_the_sanitizer_uncertain_WHEN_splitting_THEN_the_html_is_not_split_after_it(String construct) {
+        DocumentSplitter splitter = new DocumentSplitter(1, 1);
+
+        assertNull(splitter.split("<p>a</p>" + construct + "<p>b</p><p>c</p>"));
+        assertEquals(Arrays.asList("<p>a</p>", "<div>b</div>" + construct + "<p>c</p>"),
+                splitter.split("<p>a</p><div>b</div>" + construct + "<p>c</p>"));
+        assertEquals(2, splitter.stats().getUnsplitCount() + splitter.stats().getSplitCount());
+    }
+
+    @Parameters({
+            "<div><b><p>x</p></b></div>",
+            "<p>a<p>b</p></p>",
+            "<h2>a<div>b</div></h2>",
+            "<div><a href=\"a\">a<a href=\"b\">b</a></a></div>",
+            "<ul>x<li>y</li></ul>",
+            "<ul><div><li>x</li></div></ul>",
+            "<table><tr>x<td>y</td></tr></table>",
+            "<table><p>x</p></table>",
+    })
+    @Test
+    public void GIVEN_a_block_whose_elements_the_sanitizer_closes_early_WHEN_splitting_THEN_the_html_is_not_split_after_it(String block) {
+        DocumentSplitter splitter = new DocumentSplitter(1, 1);
+
+        assertEquals(Arrays.asList("<p>a</p>", block + "<p>b</p>"), splitter.split("<p>a</p>" + block + "<p>b</p>"));
+    }
+
+    @Test
+    public void GIVEN_blocks_whose_elements_are_expected_by_the_sanitizer_WHEN_splitting_THEN_the_html_is_split_after_them() {
+        DocumentSplitter splitter = new DocumentSplitter(1, 1);
+
+        List<String> chunks = splitter.split("<p><b>a<i>b</i></b><br></p><ul>\n<li><p>c</p></li></ul><table><tr><td><div>d</div></td></tr></table><p>e</p>");
+
+        assertEquals(Arrays.asList("<p><b>a<i>b</i></b><br></p>", "<ul>\n<li><p>c</p></li></ul>",
+                "<table><tr><td><div>d</div></td></tr></table>", "<p>e</p>"), chunks);
+    }
+}
@@ -0,0 +1,206 @@
+package org.jahia.modules.htmlfiltering.impl;
+
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.owasp.html.HtmlStreamEventReceiver;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnitParamsRunner.class)
+public class OutputCompactorTest {
+
+    private static final List<String> NO_ATTRIBUTES = Collections.emptyList();
+
+    @Test
+    public void GIVEN_whitespace_runs_WHEN_compacting_THEN_they_are_collapsed_outside_preformatted_elements() {
+        OutputCompactor compactor = new OutputCompactor(true, true, true);
+        StringBuilder output = new StringBuilder();
+        HtmlStreamEventReceiver receiver = compactor.wrap(new RecordingReceiver(output));
+
+        receiver.openDocument();
+        receiver.openTag("p", NO_ATTRIBUTES);
+        receiver.text("a   b \n\t c d");
+        receiver.closeTag("p");
+        receiver.openTag("pre", NO_ATTRIBUTES);
+        receiver.text("a   b");
+        receiver.closeTag("pre");
+        receiver.openTag("div", Arrays.asList("style", "white-space: pre-wrap"));
+        receiver.text("a   b");
+        receiver.closeTag("div");
+        receiver.closeDocument();
+
+        assertEquals("<p>a b\nc d</p><pre>a   b</pre><div style=\"white-space: pre-wrap\">a   b</div>", output.toString());
+        assertEquals(5, compactor.stats().getSavedCharacters());
+    }
+
+    @Test
+    public void GIVEN_empty_inline_elements_WHEN_compacting_THEN_they_are_removed() {
+        OutputCompactor compactor = new OutputCompactor(true, true, true);
+        StringBuilder output = new StringBuilder();
+        HtmlStreamEventReceiver receiver = compactor.wrap(new RecordingReceiver(output));
+
+        receiver.openDocument();
+        receiver.openTag("p", NO_ATTRIBUTES);
+        receiver.openTag("span", NO_ATTRIBUTES);
+        receiver.openTag("em", NO_ATTRIBUTES);
+        receiver.closeTag("em");
+        receiver.closeTag("span");
+        receiver.text("a");
+        receiver.openTag("span", NO_ATTRIBUTES);
+        receiver.text("b");
+        receiver.closeTag("span");
+        receiver.openTag("i", Arrays.asList("class", "icon"));
+        receiver.closeTag("i");
+        receiver.openTag("span", NO_ATTRIBUTES);
+        receiver.openTag("br", NO_ATTRIBUTES);
+        receiver.closeTag("span");
+        receiver.closeTag("p");
+        receiver.closeDocument();
+
+        assertEquals("<p>a<span>b</span><i class=\"icon\"></i><span><br></span></p>", output.toString());
+        assertEquals(1, compactor.stats().getCompactedCount());
+        assertEquals("<span><em></em></span>".length(), compactor.stats().getSavedCharacters());
+    }
+
+    @Test
+    public void GIVEN_empty_quotation_WHEN_compacting_THEN_it_is_kept() {
+        OutputCompactor compactor = new OutputCompactor(true, true, true);
+        StringBuilder output = new StringBuilder();
+        HtmlStreamEventReceiver receiver = compactor.wrap(new RecordingReceiver(output));
+
+        receiver.openDocument();
+        receiver.openTag("p", NO_ATTRIBUTES);
+        receiver.text("a");
+        receiver.openTag("q", NO_ATTRIBUTES);
+        receiver.closeTag("q");
+        receiver.closeTag("p");
+        receiver.closeDocument();
+
+        assertEquals("<p>a<q></q></p>", output.toString());
+        assertEquals(0, compactor.stats().getCompactedCount());
+    }
+
+    @Test
+    public void GIVEN_nested_duplicate_formatting_WHEN_compacting_THEN_the_inner_elements_are_removed() {
+        OutputCompactor compactor = new OutputCompactor(true, true, true);
+        StringBuilder output = new StringBuilder();
+        HtmlStreamEventReceiver receiver = compactor.wrap(new RecordingReceiver(output));
+
+        receiver.openDocument();
+        receiver.openTag("b", NO_ATTRIBUTES);
+        receiver.text("a");
+        receiver.openTag("i", NO_ATTRIBUTES);
+        receiver.openTag("b", NO_ATTRIBUTES);
+        receiver.text("b");
+        receiver.closeTag("b");
+        receiver.closeTag("i");
+        receiver.closeTag("b");
+        receiver.openTag("small", NO_ATTRIBUTES);
+        receiver.openTag("small", NO_ATTRIBUTES);
+        receiver.text("c");
+        receiver.closeTag("small");
+        receiver.closeTag("small");
+        receiver.closeDocument();
+
+        assertEquals("<b>a<i>b</i></b><small><small>c</small></small>", output.toString());
+    }
+
+    @Test
+    public void GIVEN_compaction_options_disabled_WHEN_compacting_THEN_the_output_is_unchanged() {
+        OutputCompactor compactor = new OutputCompactor(false, false, false);
+        StringBuilder output = new StringBuilder();
+        HtmlStreamEventReceiver receiver = compactor.wrap(new RecordingReceiver(output));
+
+        receiver.openDocument();
+        receiver.openTag("b", NO_ATTRIBUTES);
+        receiver.openTag("b", NO_ATTRIBUTES);
+        receiver.text("a  b");
+        receiver.closeTag("b");
+        receiver.openTag("span", NO_ATTRIBUTES);
+        receiver.closeTag("span");
+        receiver.closeTag("b");
+        receiver.closeDocument();
+
+        assertEquals("<b><b>a  b</b><span></span></b>", output.toString());
+        assertEquals(0, compactor.stats().getCompactedCount());
+        assertEquals(1, compactor.stats().getRenderedCount());
+    }
+
+    @Test
+    @Parameters({
+            "<p>a b</p>",
+            "<p>a<br />b</p>",
+            "<p class=\"x\"><b>a</b> <i><b>b</b></i></p>",
+            "<p><span class=\"x\"></span></p>",
+    })
+    public void GIVEN_compact_clean_html_WHEN_checking_THEN_it_is_compact(String html) {
+        assertTrue(new OutputCompactor(true, true, true).isCompact(html));
+    }
+
+    @Test
+    @Parameters({
+            "<p>a  b</p>",
+            "<p>a\n\nb</p>",
+            "<p><b></b>a</p>",
+            "<p><b>a<i><b>b</b></i></b></p>",
+    })
+    public void GIVEN_clean_html_that_is_not_compact_WHEN_checking_THEN_it_is_not_compact(String html) {
+        assertFalse(new OutputCompactor(true, true, true).isCompact(html));
+    }
+
+    @Test
+    public void GIVEN_text_without_whitespace_runs_WHEN_collapsing_THEN_the_same_instance_is_returned() {
+        String text = "a b\nc\td";
+
+        assertSame(text, OutputCompactor.collapseWhitespace(text));
+    }
+
+    /**
+     * Renders the events without any encoding, enough to check their sequence.
+     */
+    private static final class RecordingReceiver implements HtmlStreamEventReceiver {
+        private final StringBuilder output;
+
+        private RecordingReceiver(StringBuilder output) {
+            this.output = output;
+        }
+
+        @Override
+        public void openDocument() {
+            // nothing to record
+        }
+
+        @Override
+        public void closeDocument() {
+            // nothing to record
+        }
+
+        @Override
+        public void openTag(String elementName, List<String> attrs) {
+            output.append('<').append(elementName);
+            for (int i = 0; i + 1 < attrs.size(); i += 2) {
+                output.append(' ').append(attrs.get(i)).append("=\"").append(attrs.get(i + 1)).append('"');
+            }
+            output.append('>');
+        }
+
+        @Override
+        public void closeTag(String elementName) {
+            output.append("</").append(elementName).append('>');
+        }
+
+        @Override
+        public void text(String text) {
+            output.append(text);
+        }
+    }
+}
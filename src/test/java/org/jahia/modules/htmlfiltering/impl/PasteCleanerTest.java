@@ -0,0 +1,77 @@
+package org.jahia.modules.htmlfiltering.impl;
+
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+@RunWith(JUnitParamsRunner.class)
+public class PasteCleanerTest {
+
+    @Test
+    @Parameters({
+            // conditional comments are removed with their content
+            "<!--[if gte mso 9]><xml><w:WordDocument></w:WordDocument></xml><![endif]--><p>a</p>,<p>a</p>",
+            // downlevel-revealed conditional markers are removed without their content
+            "<p><![if !supportLists]>1.<![endif]>a</p>,<p>1.a</p>",
+            // office namespaced tags are removed without their content
+            "<p>a<o:p>&nbsp;</o:p></p>,<p>a&nbsp;</p>",
+            "<p>a<o:p/></p><st1:place>Paris</st1:place>,<p>a</p>Paris",
+            // mso styles are removed from the style attributes
+            "<p style='margin:0cm;mso-pagination:widow-orphan;font-size:11pt'>a</p>,<p style='margin:0cm;font-size:11pt'>a</p>",
+            "<p style=\"font-family:&quot;Calibri&quot; sans-serif;mso-fareast-font-family:Calibri\">a</p>,<p style=\"font-family:&quot;Calibri&quot; sans-serif\">a</p>",
+            "<p style=\"mso-list:l0 level1 lfo1\" title=\"t\">a</p>,<p title=\"t\">a</p>",
+            // Mso classes are removed
+            "<p class=MsoNormal>a</p>,<p>a</p>",
+            "<p class=\"MsoListParagraph intro\">a</p>,<p class=\"intro\">a</p>",
+            // spans left without attributes are unwrapped
+            "<p><span style='mso-bidi-font-weight:bold'>a<span>b</span></span> <span lang=EN-US>c</span></p>,<p>ab <span lang=EN-US>c</span></p>",
+            // the Google Docs wrapper is unwrapped
+            "<b style=\"font-weight:normal;\" id=\"docs-internal-guid-1234\"><p>a<b>b</b></p></b>,<p>a<b>b</b></p>",
+            // raw text elements are left unchanged
+            "<script>var a = '<o:p>';</script><o:p>a</o:p>,<script>var a = '<o:p>';</script>a",
+    })
+    public void GIVEN_pasted_html_WHEN_cleaning_THEN_the_artifacts_are_removed(String html, String expectedHtml) {
+        PasteCleaner pasteCleaner = new PasteCleaner(true, true, true, true);
+
+        assertEquals(expectedHtml, pasteCleaner.clean(html));
+    }
+
+    @Test
+    @Parameters({
+            "plain text",
+            "<p class=\"intro\" style=\"color:red\">a <span lang=\"fr\">b</span></p>",
+            "<!-- regular comment --><p>a</p>",
+            "<p>a < b</p>",
+            "<p title=\"unterminated>a</p>",
+    })
+    public void GIVEN_html_without_artifacts_WHEN_cleaning_THEN_the_same_instance_is_returned(String html) {
+        PasteCleaner pasteCleaner = new PasteCleaner(true, true, true, true);
+
+        assertSame(html, pasteCleaner.clean(html));
+        assertEquals(0, pasteCleaner.stats().getCleanedCount());
+    }
+
+    @Test
+    public void GIVEN_optional_cleanups_disabled_WHEN_cleaning_THEN_only_the_office_markup_is_removed() {
+        PasteCleaner pasteCleaner = new PasteCleaner(false, false, false, false);
+        String html = "<b id=\"docs-internal-guid-1\"><p class=MsoNormal><span style='mso-x:y'>a</span><o:p></o:p></p></b>";
+
+        assertEquals("<b id=\"docs-internal-guid-1\"><p class=MsoNormal><span style='mso-x:y'>a</span></p></b>", pasteCleaner.clean(html));
+    }
+
+    @Test
+    public void GIVEN_pasted_html_WHEN_cleaning_THEN_the_removed_characters_are_counted() {
+        PasteCleaner pasteCleaner = new PasteCleaner(true, true, true, true);
+
+        pasteCleaner.clean("<p>a<o:p></o:p></p>");
+        pasteCleaner.clean("<p>a</p>");
+        pasteCleaner.clean("<p class=MsoNormal>a</p>");
+
+        assertEquals(2, pasteCleaner.stats().getCleanedCount());
+        assertEquals(11 + 16, pasteCleaner.stats().getRemovedCharacters());
+    }
+}
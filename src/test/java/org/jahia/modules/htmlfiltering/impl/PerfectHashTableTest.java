@@ -0,0 +1,60 @@
+package org.jahia.modules.htmlfiltering.impl;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class PerfectHashTableTest {
+
+    @Test
+    public void GIVEN_names_WHEN_looking_them_up_THEN_their_index_is_found_in_any_case() {
+        PerfectHashTable table = PerfectHashTable.create(Arrays.asList("p", "a", "blockquote", "h1", "a"));
+
+        assertEquals(4, table.size());
+        assertEquals(0, table.indexOf("p", 0, 1));
+        assertEquals(1, table.indexOf("A", 0, 1));
+        assertEquals(2, table.indexOf("<BlockQuote>", 1, 11));
+        assertEquals(3, table.indexOf("<h1 class", 1, 3));
+        assertEquals("blockquote", table.name(2));
+    }
+
+    @Test
+    public void GIVEN_names_WHEN_looking_up_other_names_THEN_they_are_not_found() {
+        PerfectHashTable table = PerfectHashTable.create(Arrays.asList("p", "a", "blockquote", "h1"));
+
+        assertEquals(-1, table.indexOf("b", 0, 1));
+        assertEquals(-1, table.indexOf("h2", 0, 2));
+        assertEquals(-1, table.indexOf("pp", 0, 2));
+        assertEquals(-1, table.indexOf("blockquotes", 0, 11));
+        assertEquals(-1, table.indexOf("", 0, 0));
+    }
+
+    @Test
+    public void GIVEN_many_names_WHEN_looking_them_up_THEN_each_one_is_found_at_its_index() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            names.add("aria-" + Integer.toString(i, 36));
+        }
+
+        PerfectHashTable table = PerfectHashTable.create(names);
+
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i);
+            assertEquals(i, table.indexOf(name.toUpperCase(), 0, name.length()));
+        }
+        assertEquals(-1, table.indexOf("aria-", 0, 5));
+    }
+
+    @Test
+    public void GIVEN_no_name_WHEN_looking_up_a_name_THEN_it_is_not_found() {
+        PerfectHashTable table = PerfectHashTable.create(Collections.emptyList());
+
+        assertEquals(0, table.size());
+        assertEquals(-1, table.indexOf("p", 0, 1));
+    }
+}
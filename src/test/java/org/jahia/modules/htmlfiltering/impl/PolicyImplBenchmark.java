@@ -0,0 +1,201 @@
+package org.jahia.modules.htmlfiltering.impl;
+
+import org.jahia.modules.htmlfiltering.Policy;
+import org.jahia.modules.htmlfiltering.PolicySanitizedHtmlResult;
+import org.jahia.modules.htmlfiltering.SanitizeDetailLevel;
+import org.jahia.modules.htmlfiltering.impl.format.BuiltinFormat;
+import org.jahia.modules.htmlfiltering.model.AttributeCacheModel;
+import org.jahia.modules.htmlfiltering.model.ConfigModel;
+import org.jahia.modules.htmlfiltering.model.ParallelSanitizationModel;
+import org.jahia.modules.htmlfiltering.model.PolicyModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.osgi.service.cm.ConfigurationException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time and the allocations of the sanitization of typical rich text contents.
+ * <p>
+ * Not run by the unit tests, run the {@link #main(String[])} method to get the <code>gc.alloc.rate.norm</code> (bytes/op) of each case.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PolicyImplBenchmark {
+
+    private static final String PARAGRAPH = "<h2 class=\"title\">It's a title</h2>"
+            + "<p id=\"paragraph\">Some text with <a href=\"https://www.jahia.com/{lang}/page.html\">a link</a> "
+            + "and an image <img src=\"https://www.jahia.com/files/{workspace}/image.png\" /></p>";
+    private static final String REJECTED = "<p onclick=\"alert('Javascript')\" style=\"color: red\">Some text</p>"
+            + "<script>alert('Javascript')</script><iframe src=\"https://www.jahia.com\"></iframe>";
+
+    /**
+     * Attribute values checked against the formats of the default configuration.
+     */
+    private static final String FORMATTED = "<p id=\"intro-paragraph\">A <a href=\"https://www.jahia.com/en/page.html?tab=1\">link</a> "
+            + "and <a href=\"../sibling/page.html#anchor\">another one</a></p>"
+            + "<table><tr><td width=\"50%\" height=\"120\">cell</td><td width=\"12.5%\" height=\"auto\">cell</td></tr></table>";
+
+    @Param({"1", "10", "100"})
+    public int paragraphs;
+
+    private Policy policy;
+    private Policy stripPolicy;
+    private Policy allowlistPolicy;
+    private Policy parallelPolicy;
+    private Policy builtinFormatPolicy;
+    private Policy regexFormatPolicy;
+    private Policy cachedFormatPolicy;
+    private Policy noFormatPolicy;
+    private String validHtml;
+    private String invalidHtml;
+    private String formattedHtml;
+
+    @Setup
+    public void setUp() throws ConfigurationException {
+        policy = ConfigBuilder.buildFromModel(TestHelper.buildCompleteConfigModel()).getEditWorkspacePolicy();
+        ConfigModel stripConfigModel = TestHelper.buildCompleteConfigModel();
+        stripConfigModel.getEditWorkspace().setStrategy(PolicyModel.PolicyStrategy.STRIP);
+        stripPolicy = ConfigBuilder.buildFromModel(stripConfigModel).getEditWorkspacePolicy();
+        ConfigModel allowlistConfigModel = TestHelper.buildCompleteConfigModel();
+        allowlistConfigModel.getEditWorkspace().setEngine(AllowlistSanitizerEngine.NAME);
+        allowlistPolicy = ConfigBuilder.buildFromModel(allowlistConfigModel).getEditWorkspacePolicy();
+        ConfigModel parallelConfigModel = TestHelper.buildCompleteConfigModel();
+        ParallelSanitizationModel parallelSanitization = new ParallelSanitizationModel();
+        // low enough for the contents of 100 paragraphs to be split
+        parallelSanitization.setMinLength(16 * 1024);
+        parallelSanitization.setChunkLength(4 * 1024);
+        parallelConfigModel.getEditWorkspace().setParallelSanitization(parallelSanitization);
+        parallelPolicy = ConfigBuilder.buildFromModel(parallelConfigModel).getEditWorkspacePolicy();
+        builtinFormatPolicy = ConfigBuilder.buildFromModel(buildFormatConfigModel(BuiltinFormat.PREFIX)).getEditWorkspacePolicy();
+        ConfigModel regexFormatConfigModel = buildFormatConfigModel("");
+        // the regular expressions of the default configuration the built-in formats replace
+        Map<String, String> formatDefinitions = new HashMap<>();
+        formatDefinitions.put("HTML_ID", "[a-zA-Z][a-zA-Z0-9\\:\\-_\\.]*");
+        formatDefinitions.put("NUMBER_OR_PERCENT", "([0-9]+%?|[0-9]+\\.[0-9]+%?|auto)");
+        formatDefinitions.put("LINKS_URL", "(?:(?:[\\p{L}\\p{N}\\\\\\.#@$%\\+&;\\-_~,\\?=/!{}:]+|#(\\w)+)|(\\s*(?:(?:ht|f)tps?://|mailto:)[\\p{L}\\p{N}][\\p{L}\\p{N}\\p{Zs}\\.#@$%\\+&:\\-_~,\\?=/!\\(\\)]*+\\s*))");
+        regexFormatConfigModel.setFormatDefinitions(formatDefinitions);
+        regexFormatPolicy = ConfigBuilder.buildFromModel(regexFormatConfigModel).getEditWorkspacePolicy();
+        ConfigModel cachedFormatConfigModel = buildFormatConfigModel(BuiltinFormat.PREFIX);
+        cachedFormatConfigModel.getEditWorkspace().setAttributeCache(new AttributeCacheModel());
+        cachedFormatPolicy = ConfigBuilder.buildFromModel(cachedFormatConfigModel).getEditWorkspacePolicy();
+        noFormatPolicy = ConfigBuilder.buildFromModel(buildFormatConfigModel(null)).getEditWorkspacePolicy();
+        StringBuilder valid = new StringBuilder();
+        StringBuilder invalid = new StringBuilder();
+        StringBuilder formatted = new StringBuilder();
+        for (int i = 0; i < paragraphs; i++) {
+            valid.append(PARAGRAPH);
+            invalid.append(PARAGRAPH).append(REJECTED);
+            formatted.append(FORMATTED);
+        }
+        validHtml = valid.toString();
+        invalidHtml = invalid.toString();
+        formattedHtml = formatted.toString();
+    }
+
+    /**
+     * @param formatPrefix the prefix of the references to the formats of the rules, <code>null</code> to allow the attributes
+     *                     without any format
+     */
+    private static ConfigModel buildFormatConfigModel(String formatPrefix) {
+        ConfigModel configModel = TestHelper.buildConfigModel("p", "a", "table", "tr", "td");
+        configModel.getEditWorkspace().getAllowedRuleSet().setElements(Arrays.asList(
+                TestHelper.buildElement(Arrays.asList("p", "a", "table", "tr", "td"), null, null),
+                TestHelper.buildElement(null, Collections.singletonList("id"), format(formatPrefix, "HTML_ID")),
+                TestHelper.buildElement(Collections.singletonList("td"), Arrays.asList("width", "height"), format(formatPrefix, "NUMBER_OR_PERCENT")),
+                TestHelper.buildElement(Collections.singletonList("a"), Collections.singletonList("href"), format(formatPrefix, "LINKS_URL"))));
+        configModel.getEditWorkspace().getAllowedRuleSet().setProtocols(Arrays.asList("http", "https"));
+        return configModel;
+    }
+
+    private static String format(String formatPrefix, String name) {
+        return formatPrefix == null ? null : formatPrefix + name;
+    }
+
+    @Benchmark
+    public PolicySanitizedHtmlResult sanitizeValid() {
+        return policy.sanitize(validHtml);
+    }
+
+    @Benchmark
+    public PolicySanitizedHtmlResult sanitizeInvalid() {
+        return policy.sanitize(invalidHtml);
+    }
+
+    @Benchmark
+    public PolicySanitizedHtmlResult sanitizeInvalidOutputOnly() {
+        return policy.sanitize(invalidHtml, SanitizeDetailLevel.OUTPUT_AND_CHANGED);
+    }
+
+    @Benchmark
+    public PolicySanitizedHtmlResult sanitizeValidWithAllowlistEngine() {
+        return allowlistPolicy.sanitize(validHtml);
+    }
+
+    @Benchmark
+    public PolicySanitizedHtmlResult sanitizeInvalidWithAllowlistEngine() {
+        return allowlistPolicy.sanitize(invalidHtml);
+    }
+
+    @Benchmark
+    public PolicySanitizedHtmlResult sanitizeInvalidInParallel() {
+        return parallelPolicy.sanitize(invalidHtml);
+    }
+
+    @Benchmark
+    public PolicySanitizedHtmlResult sanitizeWithBuiltinFormats() {
+        return builtinFormatPolicy.sanitize(formattedHtml);
+    }
+
+    @Benchmark
+    public PolicySanitizedHtmlResult sanitizeWithRegexFormats() {
+        return regexFormatPolicy.sanitize(formattedHtml);
+    }
+
+    @Benchmark
+    public PolicySanitizedHtmlResult sanitizeWithCachedBuiltinFormats() {
+        return cachedFormatPolicy.sanitize(formattedHtml);
+    }
+
+    /**
+     * The same contents without any format to match: the difference with the cases above is the most that memoizing the format
+     * decisions could save.
+     */
+    @Benchmark
+    public PolicySanitizedHtmlResult sanitizeWithoutFormats() {
+        return noFormatPolicy.sanitize(formattedHtml);
+    }
+
+    @Benchmark
+    public PolicySanitizedHtmlResult stripInvalidOutputOnly() {
+        return stripPolicy.sanitize(invalidHtml, SanitizeDetailLevel.OUTPUT_AND_CHANGED);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PolicyImplBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -4,22 +4,53 @@ import junitparams.JUnitParamsRunner;
 import junitparams.Parameters;
 import org.jahia.modules.htmlfiltering.Policy;
 import org.jahia.modules.htmlfiltering.PolicySanitizedHtmlResult;
+import org.jahia.modules.htmlfiltering.PolicyValidationResult;
+import org.jahia.modules.htmlfiltering.SanitizeDetailLevel;
+import org.jahia.modules.htmlfiltering.SanitizeLimit;
+import org.jahia.modules.htmlfiltering.Strategy;
+import org.jahia.modules.htmlfiltering.impl.cache.CacheStats;
 import org.jahia.modules.htmlfiltering.impl.config.Config;
+import org.jahia.modules.htmlfiltering.model.AttributeCacheModel;
+import org.jahia.modules.htmlfiltering.model.BlockCacheModel;
+import org.jahia.modules.htmlfiltering.model.BulkheadModel;
+import org.jahia.modules.htmlfiltering.model.CacheModel;
 import org.jahia.modules.htmlfiltering.model.ConfigModel;
+import org.jahia.modules.htmlfiltering.model.ElementModel;
+import org.jahia.modules.htmlfiltering.model.LimitsModel;
+import org.jahia.modules.htmlfiltering.model.OutputCompactionModel;
+import org.jahia.modules.htmlfiltering.model.ParallelSanitizationModel;
+import org.jahia.modules.htmlfiltering.model.PasteCleanupModel;
+import org.jahia.modules.htmlfiltering.model.PolicyModel;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.osgi.service.cm.ConfigurationException;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.jahia.modules.htmlfiltering.impl.TestHelper.buildConfigModel;
 import static org.jahia.modules.htmlfiltering.impl.TestHelper.buildCompleteConfigModel;
+import static org.jahia.modules.htmlfiltering.impl.TestHelper.buildCssProperty;
 import static org.jahia.modules.htmlfiltering.impl.TestHelper.buildElement;
+import static org.jahia.modules.htmlfiltering.impl.TestHelper.buildStyle;
 import static org.jahia.modules.htmlfiltering.impl.TestHelper.of;
+import static org.jahia.modules.htmlfiltering.impl.TestHelper.setOf;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
 @RunWith(JUnitParamsRunner.class)
@@ -244,4 +275,786 @@ public class PolicyImplTest {
         assertEquals(expectedHtml, sanitized);
     }
 
+    @Test
+    public void GIVEN_a_configuration_with_a_result_cache_WHEN_sanitizing_the_same_html_twice_THEN_the_cached_result_is_returned() throws ConfigurationException {
+        ConfigModel configModel = buildConfigModel("p");
+        configModel.getEditWorkspace().setResultCache(new CacheModel());
+        Config config = ConfigBuilder.buildFromModel(configModel);
+        PolicyImpl policy = (PolicyImpl) config.getEditWorkspacePolicy();
+        String html = "<p>Hello World</p><script>alert('Javascript')</script>";
+
+        PolicySanitizedHtmlResult firstResult = policy.sanitize(html);
+        PolicySanitizedHtmlResult secondResult = policy.sanitize(new String(html.toCharArray()));
+
+        assertSame(firstResult, secondResult);
+        assertEquals("<p>Hello World</p>", secondResult.getSanitizedHtml());
+        assertEquals(new HashSet<>(of("script")), secondResult.getRejectedTags());
+        CacheStats stats = policy.getResultCacheStats();
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(1, stats.getSize());
+        // the live workspace policy has no cache configured
+        assertNull(((PolicyImpl) config.getLiveWorkspacePolicy()).getResultCacheStats());
+    }
+
+    @Test
+    public void GIVEN_a_configuration_with_an_attribute_cache_WHEN_sanitizing_repeated_values_THEN_the_format_decisions_are_cached() throws ConfigurationException {
+        ConfigModel configModel = buildConfigModel("p");
+        configModel.getEditWorkspace().getAllowedRuleSet().setElements(of(
+                buildElement(of("p"), of("id"), "DIGITS"),
+                buildElement(of("p"), null, null)
+        ));
+        configModel.setFormatDefinitions(Collections.singletonMap("DIGITS", "[0-9]+"));
+        configModel.getEditWorkspace().setAttributeCache(new AttributeCacheModel());
+        Config config = ConfigBuilder.buildFromModel(configModel);
+        PolicyImpl policy = (PolicyImpl) config.getEditWorkspacePolicy();
+
+        String sanitized = policy.sanitize("<p id=\"1\">a</p><p id=\"1\">b</p><p id=\"x\">c</p><p id=\"x\">d</p>").getSanitizedHtml();
+
+        assertEquals("<p id=\"1\">a</p><p id=\"1\">b</p><p>c</p><p>d</p>", sanitized);
+        CacheStats stats = policy.getAttributeCacheStats();
+        assertEquals(2, stats.getHitCount());
+        assertEquals(2, stats.getMissCount());
+        // the live workspace policy has no cache configured
+        assertNull(((PolicyImpl) config.getLiveWorkspacePolicy()).getAttributeCacheStats());
+    }
+
+    @Test
+    public void GIVEN_an_attribute_cache_WHEN_sanitizing_values_longer_than_the_limit_THEN_they_are_not_cached() throws ConfigurationException {
+        ConfigModel configModel = buildConfigModel("p");
+        configModel.getEditWorkspace().getAllowedRuleSet().setElements(of(
+                buildElement(of("p"), of("id"), "DIGITS"),
+                buildElement(of("p"), null, null)
+        ));
+        configModel.setFormatDefinitions(Collections.singletonMap("DIGITS", "[0-9]+"));
+        AttributeCacheModel attributeCache = new AttributeCacheModel();
+        attributeCache.setMaxValueLength(2);
+        configModel.getEditWorkspace().setAttributeCache(attributeCache);
+        PolicyImpl policy = (PolicyImpl) ConfigBuilder.buildFromModel(configModel).getEditWorkspacePolicy();
+
+        String sanitized = policy.sanitize("<p id=\"123\">a</p><p id=\"123\">b</p>").getSanitizedHtml();
+
+        assertEquals("<p id=\"123\">a</p><p id=\"123\">b</p>", sanitized);
+        assertEquals(0, policy.getAttributeCacheStats().getHitCount());
+        assertEquals(0, policy.getAttributeCacheStats().getSize());
+        assertEquals(2, policy.getAttributeCacheStats().getRejectionCount());
+    }
+
+    @Test
+    public void GIVEN_a_configuration_with_allowed_css_properties_WHEN_sanitizing_THEN_only_their_declarations_are_kept() throws ConfigurationException {
+        ConfigModel configModel = buildConfigModel("p");
+        configModel.getEditWorkspace().getAllowedRuleSet().setElements(of(
+                buildElement(null, of("style", "class"), null),
+                buildElement(of("p"), null, null)
+        ));
+        configModel.getEditWorkspace().setStyle(buildStyle(
+                buildCssProperty(of("color", "background-color"), "builtin:COLOR"),
+                buildCssProperty(of("text-align"), null)
+        ));
+        Config config = ConfigBuilder.buildFromModel(configModel);
+        PolicyImpl policy = (PolicyImpl) config.getEditWorkspacePolicy();
+        String style = "color: red; mso-bidi-font-family: Calibri; text-align: center";
+
+        String sanitized = policy.sanitize("<p class=\"a\" style=\"" + style + "\">a</p><p style=\"" + style + "\">b</p>"
+                + "<p style=\"position: fixed\">c</p>").getSanitizedHtml();
+
+        assertEquals("<p class=\"a\" style=\"color:red;text-align:center\">a</p><p style=\"color:red;text-align:center\">b</p><p>c</p>", sanitized);
+        assertEquals(1, policy.getStyleCacheStats().getHitCount());
+        // the live workspace policy has no allowed CSS properties configured
+        assertNull(((PolicyImpl) config.getLiveWorkspacePolicy()).getStyleCacheStats());
+    }
+
+    @Test
+    public void GIVEN_a_configuration_with_paste_cleanup_WHEN_sanitizing_pasted_html_THEN_the_artifacts_are_removed() throws ConfigurationException {
+        ConfigModel configModel = buildConfigModel("p");
+        configModel.getEditWorkspace().getAllowedRuleSet().setElements(of(
+                buildElement(null, of("style", "class"), null),
+                buildElement(of("p", "span"), null, null)
+        ));
+        configModel.getEditWorkspace().setPasteCleanup(new PasteCleanupModel());
+        Config config = ConfigBuilder.buildFromModel(configModel);
+        PolicyImpl policy = (PolicyImpl) config.getEditWorkspacePolicy();
+
+        PolicySanitizedHtmlResult result = policy.sanitize("<!--[if gte mso 9]><xml></xml><![endif]-->"
+                + "<p class=MsoNormal style='margin:0cm;mso-line-height-alt:12pt'><span style='mso-ansi-language:EN-US'>a</span><o:p></o:p></p>");
+
+        assertEquals("<p style=\"margin:0cm\">a</p>", result.getSanitizedHtml());
+        assertTrue(result.isChanged());
+        assertEquals(1, policy.getPasteCleanupStats().getCleanedCount());
+        assertNull(((PolicyImpl) config.getLiveWorkspacePolicy()).getPasteCleanupStats());
+    }
+
+    @Test
+    public void GIVEN_a_configuration_with_paste_cleanup_WHEN_sanitizing_clean_html_with_office_classes_THEN_they_are_removed() throws ConfigurationException {
+        ConfigModel configModel = buildConfigModel("p");
+        configModel.getEditWorkspace().getAllowedRuleSet().setElements(of(
+                buildElement(null, of("class"), null),
+                buildElement(of("p"), null, null)
+        ));
+        configModel.getEditWorkspace().setPasteCleanup(new PasteCleanupModel());
+        Policy policy = ConfigBuilder.buildFromModel(configModel).getEditWorkspacePolicy();
+
+        // the content only uses allowed tags and attributes, but it is not in its sanitized form once cleaned
+        PolicySanitizedHtmlResult result = policy.sanitize("<p class=\"MsoNormal\">a</p>");
+
+        assertEquals("<p>a</p>", result.getSanitizedHtml());
+        assertTrue(result.isChanged());
+    }
+
+    @Test
+    public void GIVEN_a_configuration_with_output_compaction_WHEN_sanitizing_THEN_the_sanitized_html_is_compacted() throws ConfigurationException {
+        ConfigModel configModel = buildConfigModel("p", "b", "span", "pre");
+        configModel.getEditWorkspace().setOutputCompaction(new OutputCompactionModel());
+        Config config = ConfigBuilder.buildFromModel(configModel);
+        PolicyImpl policy = (PolicyImpl) config.getEditWorkspacePolicy();
+
+        String sanitized = policy.sanitize("<p>a   <b>b<b>c</b></b><span><font>d</font></span></p><pre>e   f</pre>").getSanitizedHtml();
+
+        assertEquals("<p>a <b>bc</b>d</p><pre>e   f</pre>", sanitized);
+        assertEquals(1, policy.getOutputCompactionStats().getCompactedCount());
+        assertNull(((PolicyImpl) config.getLiveWorkspacePolicy()).getOutputCompactionStats());
+    }
+
+    @Test
+    public void GIVEN_a_configuration_with_output_compaction_WHEN_sanitizing_clean_html_with_whitespace_runs_THEN_it_is_compacted() throws ConfigurationException {
+        ConfigModel configModel = buildConfigModel("p");
+        configModel.getEditWorkspace().setOutputCompaction(new OutputCompactionModel());
+        Policy policy = ConfigBuilder.buildFromModel(configModel).getEditWorkspacePolicy();
+
+        PolicySanitizedHtmlResult result = policy.sanitize("<p>a    b</p>");
+
+        assertEquals("<p>a b</p>", result.getSanitizedHtml());
+        assertTrue(result.isChanged());
+    }
+
+    @Test
+    public void GIVEN_a_strip_policy_WHEN_sanitizing_THEN_only_the_text_is_kept() throws ConfigurationException, IOException {
+        ConfigModel configModel = buildConfigModel("p", "b");
+        configModel.getEditWorkspace().setStrategy(PolicyModel.PolicyStrategy.STRIP);
+        Policy policy = ConfigBuilder.buildFromModel(configModel).getEditWorkspacePolicy();
+        String html = "<p>a <b>b</b> &amp; c<script>d</script></p><p>e</p>";
+
+        PolicySanitizedHtmlResult result = policy.sanitize(html);
+        StringBuilder output = new StringBuilder();
+        PolicyValidationResult streamedResult = policy.sanitize(html, output);
+
+        assertEquals(Strategy.STRIP, policy.getStrategy());
+        assertEquals("a b &amp; c e", result.getSanitizedHtml());
+        assertTrue(result.isChanged());
+        assertEquals(setOf("p", "b", "script"), result.getRejectedTags());
+        assertEquals("a b &amp; c e", output.toString());
+        assertEquals(result.getRejectedTags(), streamedResult.getRejectedTags());
+        assertFalse(policy.sanitize("a b &amp; c").isChanged());
+        assertEquals(1, policy.validate(html, 1).getRejectedTags().size());
+    }
+
+    @Test
+    public void GIVEN_a_cached_result_WHEN_modifying_it_THEN_an_exception_is_thrown() throws ConfigurationException {
+        ConfigModel configModel = buildConfigModel("p");
+        configModel.getEditWorkspace().setResultCache(new CacheModel());
+        Policy policy = ConfigBuilder.buildFromModel(configModel).getEditWorkspacePolicy();
+
+        PolicySanitizedHtmlResult result = policy.sanitize("<p>Hello World</p><script>alert('Javascript')</script>");
+
+        assertThrows(UnsupportedOperationException.class, () -> result.getRejectedTags().clear());
+    }
+
+    @Test
+    @Parameters({
+            "<p>Hello World</p>",
+            "Hello World",
+            "<p>Hello World</p><script>alert('Javascript')</script>",
+            "<h1 class=\"title\" onclick=\"alert('Javascript')\">title</h1><p style=\"color: red\" title=\"text\">text</p><iframe></iframe>"
+    })
+    public void GIVEN_html_WHEN_validating_THEN_the_violations_are_the_same_as_when_sanitizing(String html) throws ConfigurationException {
+        Policy policy = ConfigBuilder.buildFromModel(buildConfigModel("h1", "p")).getEditWorkspacePolicy();
+
+        PolicySanitizedHtmlResult sanitizeResult = policy.sanitize(html);
+        PolicyValidationResult validationResult = policy.validate(html);
+
+        assertEquals(sanitizeResult.isValid(), validationResult.isValid());
+        assertEquals(sanitizeResult.getRejectedTags(), validationResult.getRejectedTags());
+        assertEquals(sanitizeResult.getRejectedAttributesByTag(), validationResult.getRejectedAttributesByTag());
+    }
+
+    @Test
+    public void GIVEN_html_with_several_violations_WHEN_validating_with_a_maximum_of_violations_THEN_the_validation_stops_early() throws ConfigurationException {
+        Policy policy = ConfigBuilder.buildFromModel(buildConfigModel("p")).getEditWorkspacePolicy();
+        String html = "<script>alert('Javascript')</script><p class=\"text\" title=\"text\">text</p><iframe></iframe>";
+
+        PolicyValidationResult firstViolationResult = policy.validate(html, 1);
+        PolicyValidationResult allViolationsResult = policy.validate(html, Integer.MAX_VALUE);
+
+        assertFalse(firstViolationResult.isValid());
+        assertEquals(new HashSet<>(of("script")), firstViolationResult.getRejectedTags());
+        assertTrue(firstViolationResult.getRejectedAttributesByTag().isEmpty());
+        assertEquals(new HashSet<>(of("script", "iframe")), allViolationsResult.getRejectedTags());
+        assertEquals(new HashSet<>(of("class", "title")), allViolationsResult.getRejectedAttributesByTag().get("p"));
+    }
+
+    @Test
+    @Parameters({
+            "<p>Hello World</p>",
+            "<p>Hello World</p><script>alert('Javascript')</script>",
+            "<h1 id=\"&^z\">title1</h1><h2 id=\"A1a_\" dir=\"rtl\">title2</h2><h5>title5</h5>",
+            "<a href=\"##cms-context##/{mode}/{lang}/{workspace}/##ref:link1##.html\">link</a>",
+            "<a href=\"##cms-context##/{unknown}/##ref:link1##.html\">link</a>"
+    })
+    public void GIVEN_html_WHEN_sanitizing_with_streams_THEN_the_result_is_the_same_as_when_sanitizing_a_string(String html) throws ConfigurationException, IOException {
+        Policy policy = ConfigBuilder.buildFromModel(buildCompleteConfigModel()).getEditWorkspacePolicy();
+        StringWriter output = new StringWriter();
+
+        PolicySanitizedHtmlResult expectedResult = policy.sanitize(html);
+        PolicyValidationResult streamingResult = policy.sanitize(new StringReader(html), output);
+
+        assertEquals(expectedResult.getSanitizedHtml(), output.toString());
+        assertEquals(expectedResult.isValid(), streamingResult.isValid());
+        assertEquals(expectedResult.getRejectedTags(), streamingResult.getRejectedTags());
+        assertEquals(expectedResult.getRejectedAttributesByTag(), streamingResult.getRejectedAttributesByTag());
+    }
+
+    @Test
+    @Parameters({
+            "<p>Hello World</p>, OUTPUT, false",
+            "<p>Hello World</p>, OUTPUT_AND_CHANGED, false",
+            "<p>Hello World</p>, FULL, false",
+            "<p>Hello World<br></p>, OUTPUT, true",
+            "<p>Hello World<br></p>, OUTPUT_AND_CHANGED, true",
+            "<p>Hello World<br></p>, FULL, true",
+            "<p>Hello World</p><script>alert('Javascript')</script>, OUTPUT_AND_CHANGED, true",
+            "<p>Hello World</p><script>alert('Javascript')</script>, FULL, true",
+            "<p>Hello World</p>&nbsp;, OUTPUT, true",
+            "<p>Hello World</p>&#160;, OUTPUT_AND_CHANGED, true"
+    })
+    public void GIVEN_a_detail_level_WHEN_sanitizing_THEN_the_output_and_the_change_are_reported(String html, SanitizeDetailLevel detailLevel, boolean expectedChanged) throws ConfigurationException {
+        Policy policy = ConfigBuilder.buildFromModel(buildConfigModel("p", "br")).getEditWorkspacePolicy();
+
+        PolicySanitizedHtmlResult result = policy.sanitize(html, detailLevel);
+
+        assertEquals(policy.sanitize(html).getSanitizedHtml(), result.getSanitizedHtml());
+        assertEquals(expectedChanged, result.isChanged());
+        if (detailLevel == SanitizeDetailLevel.FULL) {
+            assertEquals(!policy.sanitize(html).getRejectedTags().isEmpty(), !result.isValid());
+        } else {
+            assertTrue(result.getRejectedTags().isEmpty());
+        }
+    }
+
+    @Test
+    public void GIVEN_html_unchanged_by_the_sanitization_WHEN_sanitizing_THEN_it_is_reported_as_unchanged() throws ConfigurationException {
+        Policy policy = ConfigBuilder.buildFromModel(buildConfigModel("p", "br")).getEditWorkspacePolicy();
+        String html = "<p>Hello<br />World</p>";
+
+        PolicySanitizedHtmlResult result = policy.sanitize(html, SanitizeDetailLevel.OUTPUT_AND_CHANGED);
+
+        assertEquals(html, result.getSanitizedHtml());
+        assertFalse(result.isChanged());
+        assertTrue(result.isValid());
+    }
+
+    @Test
+    public void GIVEN_consecutive_sanitizations_on_the_same_thread_WHEN_sanitizing_THEN_the_reused_buffers_do_not_leak_content() throws ConfigurationException {
+        Policy policy = ConfigBuilder.buildFromModel(buildConfigModel("p")).getEditWorkspacePolicy();
+        StringBuilder large = new StringBuilder();
+        while (large.length() <= SanitizedHtmlBuilder.MAX_RETAINED_CAPACITY) {
+            large.append("<p>It's a large content</p><script>alert('Javascript')</script>");
+        }
+
+        String first = policy.sanitize("<p>It's a first content</p><div>with a div</div>").getSanitizedHtml();
+        String second = policy.sanitize("<p>It's a 2nd</p>").getSanitizedHtml();
+        String third = policy.sanitize(large.toString()).getSanitizedHtml();
+        String fourth = policy.sanitize("<p>It's the last one</p>").getSanitizedHtml();
+
+        assertEquals("<p>It&#39;s a first content</p>with a div", first);
+        assertEquals("<p>It&#39;s a 2nd</p>", second);
+        assertEquals(large.toString().replace("'s", "&#39;s").replace("<script>alert('Javascript')</script>", ""), third);
+        assertEquals("<p>It&#39;s the last one</p>", fourth);
+    }
+
+    @Test
+    public void GIVEN_html_with_rejected_names_known_by_the_policy_WHEN_sanitizing_THEN_the_rejected_names_share_the_policy_instances() throws ConfigurationException {
+        Policy policy = ConfigBuilder.buildFromModel(buildCompleteConfigModel()).getEditWorkspacePolicy();
+
+        PolicySanitizedHtmlResult first = policy.sanitize("<h5>It's a title</h5><p title=\"title\">text</p>");
+        PolicySanitizedHtmlResult second = policy.sanitize("<h5>It's another title</h5><p title=\"other\">text</p>");
+
+        assertEquals(setOf("h5"), first.getRejectedTags());
+        assertSame(first.getRejectedTags().iterator().next(), second.getRejectedTags().iterator().next());
+        assertSame(first.getRejectedAttributesByTag().get("p").iterator().next(), second.getRejectedAttributesByTag().get("p").iterator().next());
+    }
+
+    @Test
+    @Parameters({
+            // configured placeholders are restored, the default ones are not anymore
+            "<a href=\"/cms/{site}/{mode}/{my-page.id}.html\">link</a>, <a href=\"/cms/{site}/%7bmode%7d/{my-page.id}.html\">link</a>",
+            // placeholders next to each other or to partial matches
+            "<a href=\"/{site}{site}{si/{sitex}\">link</a>, <a href=\"/{site}{site}%7bsi/%7bsitex%7d\">link</a>",
+    })
+    public void GIVEN_configured_placeholders_WHEN_sanitizing_THEN_only_those_placeholders_are_restored(String html, String expectedHtml) throws ConfigurationException {
+        ConfigModel configModel = buildConfigModel("a");
+        configModel.getEditWorkspace().getAllowedRuleSet().setElements(of(
+                buildElement(of("a"), null, null),
+                buildElement(of("a"), of("href"), null)));
+        configModel.setPlaceholders(of("{site}", "{my-page.id}"));
+        Policy policy = ConfigBuilder.buildFromModel(configModel).getEditWorkspacePolicy();
+
+        assertEquals(expectedHtml, policy.sanitize(html).getSanitizedHtml());
+    }
+
+    @Test
+    public void GIVEN_a_batch_with_duplicates_WHEN_sanitizing_all_THEN_results_are_in_order_and_duplicates_are_sanitized_once() throws ConfigurationException {
+        Policy policy = ConfigBuilder.buildFromModel(buildConfigModel("p")).getEditWorkspacePolicy();
+        List<String> htmlTexts = of("<p>It's a first value</p><div>with a div</div>", "<p>second</p>", null,
+                "<p>It's a first value</p><div>with a div</div>");
+
+        List<PolicySanitizedHtmlResult> results = policy.sanitizeAll(htmlTexts);
+
+        assertEquals(htmlTexts.size(), results.size());
+        for (int i = 0; i < htmlTexts.size(); i++) {
+            PolicySanitizedHtmlResult expected = policy.sanitize(htmlTexts.get(i));
+            assertEquals(expected.getSanitizedHtml(), results.get(i).getSanitizedHtml());
+            assertEquals(expected.getRejectedTags(), results.get(i).getRejectedTags());
+            assertEquals(expected.isChanged(), results.get(i).isChanged());
+        }
+        assertSame(results.get(0), results.get(3));
+    }
+
+    @Test
+    public void GIVEN_a_large_batch_WHEN_sanitizing_all_THEN_results_are_the_same_as_sanitizing_each_value() throws ConfigurationException {
+        Policy policy = ConfigBuilder.buildFromModel(buildConfigModel("p")).getEditWorkspacePolicy();
+        List<String> htmlTexts = new ArrayList<>();
+        int length = 0;
+        for (int i = 0; length < 2 * PolicyImpl.PARALLEL_BATCH_THRESHOLD; i++) {
+            String htmlText = "<p>It's the value " + i + "</p><script>alert('Javascript')</script><div>" + i + "</div>";
+            htmlTexts.add(htmlText);
+            length += htmlText.length();
+        }
+
+        List<PolicySanitizedHtmlResult> results = policy.sanitizeAll(htmlTexts, SanitizeDetailLevel.OUTPUT_AND_CHANGED);
+
+        assertEquals(htmlTexts.size(), results.size());
+        for (int i = 0; i < htmlTexts.size(); i++) {
+            assertEquals("<p>It&#39;s the value " + i + "</p>" + i, results.get(i).getSanitizedHtml());
+            assertTrue(results.get(i).isChanged());
+        }
+    }
+
+    @Test
+    public void GIVEN_html_WHEN_sanitizing_it_asynchronously_THEN_the_result_is_the_same_as_when_sanitizing_it_synchronously() throws Exception {
+        Policy policy = ConfigBuilder.buildFromModel(buildConfigModel("p")).getEditWorkspacePolicy();
+        String html = "<p>It's a value</p><script>alert('Javascript')</script><div>value</div>";
+
+        PolicySanitizedHtmlResult result = policy.sanitizeAsync(html).toCompletableFuture().get(10, TimeUnit.SECONDS);
+        PolicySanitizedHtmlResult outputResult = policy.sanitizeAsync(html, SanitizeDetailLevel.OUTPUT).toCompletableFuture()
+                .get(10, TimeUnit.SECONDS);
+
+        PolicySanitizedHtmlResult expectedResult = policy.sanitize(html);
+        assertEquals(expectedResult.getSanitizedHtml(), result.getSanitizedHtml());
+        assertEquals(expectedResult.getRejectedTags(), result.getRejectedTags());
+        assertEquals(expectedResult.getSanitizedHtml(), outputResult.getSanitizedHtml());
+    }
+
+    @Test
+    public void GIVEN_a_policy_whose_bulkhead_is_saturated_WHEN_processing_html_THEN_it_is_refused_with_the_concurrency_limit() throws Exception {
+        ConfigModel configModel = buildConfigModel("p");
+        BulkheadModel bulkhead = new BulkheadModel();
+        bulkhead.setMaxConcurrent(1);
+        bulkhead.setMaxQueued(0);
+        configModel.getEditWorkspace().setBulkhead(bulkhead);
+        PolicyImpl policy = (PolicyImpl) ConfigBuilder.buildFromModel(configModel).getEditWorkspacePolicy();
+        String html = "<p>It's a value</p><script>alert('Javascript')</script>";
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        StringBuilder output = new StringBuilder();
+        // holds the only permit while the sanitized HTML is written
+        Appendable blockingOutput = new Appendable() {
+            @Override
+            public Appendable append(CharSequence csq) {
+                return append(csq, 0, csq.length());
+            }
+
+            @Override
+            public Appendable append(CharSequence csq, int start, int end) {
+                writing.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                output.append(csq, start, end);
+                return this;
+            }
+
+            @Override
+            public Appendable append(char c) {
+                return append(String.valueOf(c));
+            }
+        };
+        try {
+            CompletableFuture<PolicyValidationResult> running = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return policy.sanitize(html, blockingOutput);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            assertTrue(writing.await(10, TimeUnit.SECONDS));
+
+            PolicySanitizedHtmlResult refusedResult = policy.sanitize(html);
+            PolicyValidationResult refusedValidation = policy.validate(html);
+
+            assertEquals(SanitizeLimit.CONCURRENCY, refusedResult.getExceededLimit());
+            assertEquals("", refusedResult.getSanitizedHtml());
+            assertEquals(SanitizeLimit.CONCURRENCY, refusedValidation.getExceededLimit());
+            assertEquals(1, policy.getBulkheadStats().getActiveCount());
+            assertEquals(2, policy.getBulkheadStats().getRejectedCount());
+            release.countDown();
+            assertNull(running.get(10, TimeUnit.SECONDS).getExceededLimit());
+            assertEquals(policy.sanitize(html).getSanitizedHtml(), output.toString());
+            assertEquals(0, policy.getBulkheadStats().getActiveCount());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    @Parameters({"OUTPUT", "OUTPUT_AND_CHANGED", "FULL"})
+    public void GIVEN_html_already_sanitized_by_the_policy_WHEN_sanitizing_it_again_THEN_it_is_returned_unchanged(SanitizeDetailLevel detailLevel) throws ConfigurationException {
+        Policy policy = ConfigBuilder.buildFromModel(buildCompleteConfigModel()).getEditWorkspacePolicy();
+        String sanitizedHtml = policy.sanitize("<p class=\"title\">It's <a href=\"https://example.com/{mode}\">a link</a></p><h5>rejected</h5>", detailLevel).getSanitizedHtml();
+
+        PolicySanitizedHtmlResult result = policy.sanitize(sanitizedHtml, detailLevel);
+
+        assertSame(sanitizedHtml, result.getSanitizedHtml());
+        assertFalse(result.isChanged());
+        assertTrue(result.isValid());
+    }
+
+    @Test
+    public void GIVEN_html_similar_to_sanitized_html_WHEN_sanitizing_it_THEN_it_is_sanitized() throws ConfigurationException {
+        Policy policy = ConfigBuilder.buildFromModel(buildCompleteConfigModel()).getEditWorkspacePolicy();
+        String sanitizedHtml = policy.sanitize("<p>It's a text</p>").getSanitizedHtml();
+
+        PolicySanitizedHtmlResult result = policy.sanitize(sanitizedHtml + "<h5>rejected</h5>");
+
+        assertEquals(sanitizedHtml + "rejected", result.getSanitizedHtml());
+        assertTrue(result.isChanged());
+        assertEquals(setOf("h5"), result.getRejectedTags());
+    }
+
+    @Test
+    @Parameters({"OUTPUT", "OUTPUT_AND_CHANGED", "FULL"})
+    public void GIVEN_html_exceeding_the_maximum_input_length_WHEN_sanitizing_THEN_it_is_refused(SanitizeDetailLevel detailLevel) throws ConfigurationException {
+        LimitsModel limits = new LimitsModel();
+        limits.setMaxInputLength(10);
+        Policy policy = buildPolicyWithLimits(limits);
+
+        PolicySanitizedHtmlResult result = policy.sanitize("<p>Hello World</p>", detailLevel);
+
+        assertEquals(SanitizeLimit.INPUT_LENGTH, result.getExceededLimit());
+        assertEquals("", result.getSanitizedHtml());
+        assertTrue(result.isChanged());
+        assertFalse(result.isValid());
+        assertNull(policy.sanitize("<p>Hello</p>", detailLevel).getExceededLimit());
+    }
+
+    @Test
+    @Parameters({
+            // the rejected elements are counted as well
+            "<p><b><i><u>text</u></i></b></p>",
+            "<p>text</p><div><div><div><div>text</div></div></div></div>",
+            // elements left open are still nested
+            "<div><span><b><i>text</div>",
+    })
+    public void GIVEN_html_exceeding_the_maximum_nesting_depth_WHEN_sanitizing_THEN_it_is_refused(String html) throws ConfigurationException {
+        LimitsModel limits = new LimitsModel();
+        limits.setMaxNestingDepth(3);
+        Policy policy = buildPolicyWithLimits(limits);
+
+        PolicySanitizedHtmlResult result = policy.sanitize(html);
+
+        assertEquals(SanitizeLimit.NESTING_DEPTH, result.getExceededLimit());
+        assertEquals("", result.getSanitizedHtml());
+        assertFalse(result.isValid());
+    }
+
+    @Test
+    @Parameters({
+            "<p><b><i>text</i></b></p><p><b><i>text</i></b></p>",
+            "<p>line<br />line<br />line<br />line</p>",
+            // elements with an optional end tag are closed by their next sibling
+            "<div><p>text<p>text</div><ul><li>a<li>b<li>c<li>d</ul>",
+    })
+    public void GIVEN_html_within_the_maximum_nesting_depth_WHEN_sanitizing_THEN_it_is_sanitized(String html) throws ConfigurationException {
+        LimitsModel limits = new LimitsModel();
+        limits.setMaxNestingDepth(3);
+        Policy policy = buildPolicyWithLimits(limits);
+
+        PolicySanitizedHtmlResult result = policy.sanitize(html);
+
+        assertNull(result.getExceededLimit());
+        assertEquals(buildPolicyWithLimits(null).sanitize(html).getSanitizedHtml(), result.getSanitizedHtml());
+    }
+
+    @Test
+    @Parameters({
+            // already in its sanitized form
+            "<p>a</p><p>b</p><p>c</p><p>d</p>",
+            "<p>a</p><p>b</p><p>c</p><script>alert('Javascript')</script>",
+    })
+    public void GIVEN_html_exceeding_the_maximum_element_count_WHEN_sanitizing_THEN_it_is_refused(String html) throws ConfigurationException {
+        LimitsModel limits = new LimitsModel();
+        limits.setMaxElementCount(3);
+        Policy policy = buildPolicyWithLimits(limits);
+
+        PolicySanitizedHtmlResult result = policy.sanitize(html);
+
+        assertEquals(SanitizeLimit.ELEMENT_COUNT, result.getExceededLimit());
+        assertEquals("", result.getSanitizedHtml());
+        assertNull(policy.sanitize("<p>a</p><p>b</p><p>c</p>").getExceededLimit());
+    }
+
+    @Test
+    public void GIVEN_html_exceeding_a_limit_WHEN_validating_THEN_it_is_invalid() throws ConfigurationException {
+        LimitsModel limits = new LimitsModel();
+        limits.setMaxInputLength(100);
+        limits.setMaxElementCount(3);
+        Policy policy = buildPolicyWithLimits(limits);
+
+        PolicyValidationResult tooManyElements = policy.validate("<p>a</p><p>b</p><p>c</p><p>d</p>");
+        PolicyValidationResult tooLong = policy.validate(String.join("", Collections.nCopies(20, "<p>a</p>")));
+
+        assertFalse(tooManyElements.isValid());
+        assertEquals(SanitizeLimit.ELEMENT_COUNT, tooManyElements.getExceededLimit());
+        assertEquals(SanitizeLimit.INPUT_LENGTH, tooLong.getExceededLimit());
+        assertTrue(policy.validate("<p>a</p><p>b</p><p>c</p>").isValid());
+    }
+
+    @Test
+    public void GIVEN_a_reader_exceeding_the_maximum_input_length_WHEN_sanitizing_THEN_it_is_refused() throws ConfigurationException, IOException {
+        LimitsModel limits = new LimitsModel();
+        limits.setMaxInputLength(10);
+        Policy policy = buildPolicyWithLimits(limits);
+
+        PolicyValidationResult result = policy.sanitize(new StringReader("<p>Hello World</p>"), new StringWriter());
+
+        assertEquals(SanitizeLimit.INPUT_LENGTH, result.getExceededLimit());
+        assertFalse(result.isValid());
+    }
+
+    @Test
+    public void GIVEN_a_cached_result_exceeding_a_limit_WHEN_sanitizing_the_same_html_again_THEN_it_is_refused_again() throws ConfigurationException {
+        ConfigModel configModel = buildConfigModel("p");
+        configModel.getEditWorkspace().setResultCache(new CacheModel());
+        configModel.getEditWorkspace().setLimits(new LimitsModel());
+        configModel.getEditWorkspace().getLimits().setMaxElementCount(1);
+        Policy policy = ConfigBuilder.buildFromModel(configModel).getEditWorkspacePolicy();
+
+        PolicySanitizedHtmlResult firstResult = policy.sanitize("<p>a</p><p>b</p>");
+        PolicySanitizedHtmlResult secondResult = policy.sanitize("<p>a</p><p>b</p>");
+
+        assertSame(firstResult, secondResult);
+        assertEquals(SanitizeLimit.ELEMENT_COUNT, secondResult.getExceededLimit());
+    }
+
+    @Test
+    @Parameters({"false", "true"})
+    public void GIVEN_a_large_html_WHEN_sanitizing_it_in_parallel_THEN_the_result_is_the_same_as_when_sanitizing_it_sequentially(boolean outputCompaction) throws ConfigurationException, IOException {
+        Policy sequentialPolicy = buildLargeHtmlPolicy(null, null, outputCompaction);
+        PolicyImpl parallelPolicy = (PolicyImpl) buildLargeHtmlPolicy(new ParallelSanitizationModel(), null, outputCompaction);
+        String html = buildLargeHtml(3 * 256 * 1024);
+
+        PolicySanitizedHtmlResult expectedResult = sequentialPolicy.sanitize(html);
+        PolicySanitizedHtmlResult result = parallelPolicy.sanitize(html);
+        StringBuilder output = new StringBuilder();
+        PolicyValidationResult streamedResult = parallelPolicy.sanitize(html, output);
+
+        assertEquals(expectedResult.getSanitizedHtml(), result.getSanitizedHtml());
+        assertEquals(expectedResult.isChanged(), result.isChanged());
+        assertEquals(expectedResult.getRejectedTags(), result.getRejectedTags());
+        assertEquals(expectedResult.getRejectedAttributesByTag(), result.getRejectedAttributesByTag());
+        assertEquals(expectedResult.getSanitizedHtml(), output.toString());
+        assertEquals(expectedResult.getRejectedTags(), streamedResult.getRejectedTags());
+        assertEquals(expectedResult.getRejectedAttributesByTag(), streamedResult.getRejectedAttributesByTag());
+        assertEquals(expectedResult.getSanitizedHtml(), parallelPolicy.sanitize(html, SanitizeDetailLevel.OUTPUT).getSanitizedHtml());
+        assertEquals(3, parallelPolicy.getParallelSanitizationStats().getSplitCount());
+        assertTrue(parallelPolicy.getParallelSanitizationStats().getAverageChunkCount() > 5);
+    }
+
+    @Test
+    public void GIVEN_a_large_html_exceeding_the_maximum_element_count_WHEN_sanitizing_it_in_parallel_THEN_the_elements_of_all_the_chunks_are_counted() throws ConfigurationException {
+        ConfigModel configModel = buildConfigModel("p");
+        ParallelSanitizationModel parallelSanitization = new ParallelSanitizationModel();
+        parallelSanitization.setMinLength(1024);
+        parallelSanitization.setChunkLength(256);
+        configModel.getEditWorkspace().setParallelSanitization(parallelSanitization);
+        configModel.getEditWorkspace().setLimits(new LimitsModel());
+        configModel.getEditWorkspace().getLimits().setMaxElementCount(1000);
+        PolicyImpl policy = (PolicyImpl) ConfigBuilder.buildFromModel(configModel).getEditWorkspacePolicy();
+        StringBuilder html = new StringBuilder();
+        for (int i = 0; i < 1001; i++) {
+            html.append("<p>").append(i).append("</p>");
+        }
+
+        PolicySanitizedHtmlResult result = policy.sanitize(html.toString());
+
+        assertEquals(SanitizeLimit.ELEMENT_COUNT, result.getExceededLimit());
+        assertEquals("", result.getSanitizedHtml());
+        assertEquals(1, policy.getParallelSanitizationStats().getSplitCount());
+    }
+
+    @Test
+    public void GIVEN_a_large_html_without_safe_boundary_WHEN_sanitizing_it_in_parallel_THEN_it_is_sanitized_sequentially() throws ConfigurationException {
+        Policy sequentialPolicy = buildLargeHtmlPolicy(null, null, false);
+        PolicyImpl parallelPolicy = (PolicyImpl) buildLargeHtmlPolicy(new ParallelSanitizationModel(), null, false);
+        // the list items are not closed, the list is never closed either
+        String html = "<ul><li>" + buildLargeHtml(256 * 1024);
+
+        assertEquals(sequentialPolicy.sanitize(html).getSanitizedHtml(), parallelPolicy.sanitize(html).getSanitizedHtml());
+        assertEquals(0, parallelPolicy.getParallelSanitizationStats().getSplitCount());
+        assertEquals(1, parallelPolicy.getParallelSanitizationStats().getUnsplitCount());
+    }
+
+    @Test
+    public void GIVEN_random_html_with_misnested_and_unclosed_elements_WHEN_sanitizing_it_in_chunks_THEN_the_result_is_the_same_as_when_sanitizing_it_sequentially() throws ConfigurationException {
+        Policy sequentialPolicy = buildLargeHtmlPolicy(null, null, false);
+        ParallelSanitizationModel parallelSanitization = new ParallelSanitizationModel();
+        parallelSanitization.setMinLength(1);
+        parallelSanitization.setChunkLength(1);
+        PolicyImpl parallelPolicy = (PolicyImpl) buildLargeHtmlPolicy(parallelSanitization, null, false);
+        // fixed seed, so that a failure can be reproduced
+        Random random = new Random(42);
+
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder html = new StringBuilder();
+            for (int j = 0; j < 6; j++) {
+                appendRandomHtml(random, html, 0);
+                html.append("<p>").append(j).append("</p>");
+            }
+
+            PolicySanitizedHtmlResult expectedResult = sequentialPolicy.sanitize(html.toString());
+            PolicySanitizedHtmlResult result = parallelPolicy.sanitize(html.toString());
+
+            assertEquals(html.toString(), expectedResult.getSanitizedHtml(), result.getSanitizedHtml());
+            assertEquals(html.toString(), expectedResult.getRejectedTags(), result.getRejectedTags());
+        }
+        assertTrue(parallelPolicy.getParallelSanitizationStats().getSplitCount() > 0);
+        assertTrue(parallelPolicy.getParallelSanitizationStats().getUnsplitCount() > 0);
+    }
+
+    @Test
+    @Parameters({"false", "true"})
+    public void GIVEN_a_large_html_edited_in_a_single_block_WHEN_sanitizing_it_again_THEN_only_that_block_is_sanitized(boolean parallelSanitization) throws ConfigurationException, IOException {
+        Policy sequentialPolicy = buildLargeHtmlPolicy(null, null, false);
+        PolicyImpl blockCachePolicy = (PolicyImpl) buildLargeHtmlPolicy(parallelSanitization ? new ParallelSanitizationModel() : null,
+                new BlockCacheModel(), false);
+        String html = buildLargeHtml(parallelSanitization ? 256 * 1024 : 32 * 1024);
+        String editedHtml = html.replace("Paragraph   8 ", "Paragraph   8 edited ");
+
+        PolicySanitizedHtmlResult result = blockCachePolicy.sanitize(html);
+        long blockCount = blockCachePolicy.getBlockCacheStats().getMissCount();
+        StringBuilder editedOutput = new StringBuilder();
+        PolicyValidationResult editedResult = blockCachePolicy.sanitize(editedHtml, editedOutput);
+
+        assertEquals(sequentialPolicy.sanitize(html).getSanitizedHtml(), result.getSanitizedHtml());
+        PolicySanitizedHtmlResult expectedEditedResult = sequentialPolicy.sanitize(editedHtml);
+        assertEquals(expectedEditedResult.getSanitizedHtml(), editedOutput.toString());
+        assertEquals(expectedEditedResult.getRejectedTags(), editedResult.getRejectedTags());
+        assertEquals(expectedEditedResult.getRejectedAttributesByTag(), editedResult.getRejectedAttributesByTag());
+        assertTrue(blockCount > 100);
+        assertEquals(blockCount + 1, blockCachePolicy.getBlockCacheStats().getMissCount());
+        assertEquals(blockCount - 1, blockCachePolicy.getBlockCacheStats().getHitCount());
+    }
+
+    @Test
+    public void GIVEN_a_block_cache_and_a_maximum_element_count_WHEN_sanitizing_a_large_html_THEN_the_block_cache_is_not_used() throws ConfigurationException {
+        ConfigModel configModel = buildConfigModel("p");
+        configModel.getEditWorkspace().setBlockCache(new BlockCacheModel());
+        configModel.getEditWorkspace().setLimits(new LimitsModel());
+        configModel.getEditWorkspace().getLimits().setMaxElementCount(100000);
+        PolicyImpl policy = (PolicyImpl) ConfigBuilder.buildFromModel(configModel).getEditWorkspacePolicy();
+
+        PolicySanitizedHtmlResult result = policy.sanitize(buildLargeHtml(32 * 1024));
+
+        assertNull(result.getExceededLimit());
+        assertEquals(0, policy.getBlockCacheStats().getMissCount());
+    }
+
+    private static Policy buildLargeHtmlPolicy(ParallelSanitizationModel parallelSanitization, BlockCacheModel blockCache, boolean outputCompaction) throws ConfigurationException {
+        ConfigModel configModel = buildCompleteConfigModel();
+        PolicyModel policyModel = configModel.getEditWorkspace();
+        policyModel.setStrategy(PolicyModel.PolicyStrategy.SANITIZE);
+        List<ElementModel> elements = new ArrayList<>(policyModel.getAllowedRuleSet().getElements());
+        elements.add(buildElement(of("div", "ul", "li", "b", "span", "table", "tr", "td"), null, null));
+        policyModel.getAllowedRuleSet().setElements(elements);
+        policyModel.setParallelSanitization(parallelSanitization);
+        policyModel.setBlockCache(blockCache);
+        if (outputCompaction) {
+            policyModel.setOutputCompaction(new OutputCompactionModel());
+        }
+        return ConfigBuilder.buildFromModel(configModel).getEditWorkspacePolicy();
+    }
+
+    /**
+     * @return an HTML content of at least the given length, made of various top-level blocks with rejected tags and attributes
+     */
+    private static String buildLargeHtml(int minLength) {
+        String[] blocks = {
+                "<p class=\"intro\" title=\"t\">Paragraph   %d with <b>bold <b>text</b></b> &amp; <span></span>entities</p>\n",
+                "<div onclick=\"alert(%d)\"><p>Nested <i>italic</i></p><p>paragraph</p></div>\n",
+                "<ul><li>Item %d</li><li>Next item</li></ul>",
+                "<h5>Disallowed heading %d</h5><script>document.write('<p>')</script>",
+                "<table><td>Cell %d</td></table><!-- comment <p> -->",
+                "<p><a href=\"https://example.com/{mode}/%d\">link</a><img src=\"image%d.gif\"></p>",
+                "Text %d at the top level <u>with underline</u>",
+                "<h2 id=\"heading-%d\">Heading</h2>\n\n",
+        };
+        StringBuilder html = new StringBuilder();
+        for (int i = 0; html.length() < minLength; i++) {
+            html.append(String.format(blocks[i % blocks.length], i, i));
+        }
+        return html.toString();
+    }
+
+    /**
+     * Appends random elements, some of them misnested or left unclosed: inline elements enclosing blocks, elements rejected by
+     * the policy of {@link #buildLargeHtmlPolicy} (<code>section</code>, <code>em</code>, <code>dl</code>, <code>dt</code>) or
+     * with a rejected attribute, elements whose end tag is optional, etc.
+     */
+    private static void appendRandomHtml(Random random, StringBuilder html, int depth) {
+        String[] tags = {"p", "div", "b", "span", "a", "h5", "section", "em", "ul", "li", "table", "tr", "td", "dl", "dt"};
+        int count = 1 + random.nextInt(3);
+        for (int i = 0; i < count; i++) {
+            int kind = random.nextInt(depth < 3 ? 4 : 2);
+            if (kind == 0) {
+                html.append("text ").append(random.nextInt(10));
+            } else if (kind == 1) {
+                html.append(random.nextBoolean() ? " " : "<br>");
+            } else {
+                String tag = tags[random.nextInt(tags.length)];
+                html.append('<').append(tag);
+                if (random.nextInt(4) == 0) {
+                    html.append(" onclick=\"alert(1)\"");
+                } else if ("a".equals(tag)) {
+                    html.append(" href=\"https://example.com\"");
+                }
+                html.append('>');
+                appendRandomHtml(random, html, depth + 1);
+                int closing = random.nextInt(6);
+                if (closing == 1) {
+                    // misnested or unmatched end tag
+                    html.append("</").append(tags[random.nextInt(tags.length)]).append('>');
+                } else if (closing > 1) {
+                    html.append("</").append(tag).append('>');
+                }
+                // otherwise, left unclosed
+            }
+        }
+    }
+
+    private static Policy buildPolicyWithLimits(LimitsModel limits) throws ConfigurationException {
+        ConfigModel configModel = buildConfigModel("p", "div");
+        configModel.getEditWorkspace().setLimits(limits);
+        return ConfigBuilder.buildFromModel(configModel).getEditWorkspacePolicy();
+    }
 }
@@ -0,0 +1,92 @@
+package org.jahia.modules.htmlfiltering.impl;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class SanitizeExecutorsTest {
+
+    @Test
+    public void GIVEN_a_supplier_WHEN_running_it_asynchronously_THEN_the_future_is_completed_with_its_result_on_another_thread() throws Exception {
+        Thread callerThread = Thread.currentThread();
+
+        CompletableFuture<Thread> future = SanitizeExecutors.supplyAsync(Thread::currentThread);
+
+        assertNotSame(callerThread, future.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void GIVEN_a_failing_supplier_WHEN_running_it_asynchronously_THEN_the_future_is_completed_with_its_exception() {
+        CompletableFuture<String> future = SanitizeExecutors.supplyAsync(() -> {
+            throw new IllegalStateException("failure");
+        });
+
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+        assertEquals("failure", exception.getCause().getMessage());
+    }
+
+    @Test
+    public void GIVEN_a_saturated_executor_WHEN_running_a_supplier_asynchronously_THEN_it_is_rejected_right_away() throws Exception {
+        SanitizeExecutors.configureAsync(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CompletableFuture<Boolean> running = SanitizeExecutors.supplyAsync(() -> await(release));
+            CompletableFuture<Boolean> queued = SanitizeExecutors.supplyAsync(() -> true);
+
+            CompletableFuture<Boolean> rejected = SanitizeExecutors.supplyAsync(() -> true);
+
+            assertTrue(rejected.isCompletedExceptionally());
+            ExecutionException exception = assertThrows(ExecutionException.class, rejected::get);
+            assertTrue(exception.getCause() instanceof RejectedExecutionException);
+            release.countDown();
+            assertTrue(running.get(10, TimeUnit.SECONDS));
+            assertTrue(queued.get(10, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            SanitizeExecutors.configureAsync(SanitizeExecutors.DEFAULT_ASYNC_THREADS, SanitizeExecutors.DEFAULT_ASYNC_QUEUE_CAPACITY);
+        }
+    }
+
+    @Test
+    public void GIVEN_a_future_cancelled_before_its_supplier_started_WHEN_a_thread_is_available_THEN_the_supplier_is_not_run() throws Exception {
+        SanitizeExecutors.configureAsync(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean run = new AtomicBoolean();
+        try {
+            CompletableFuture<Boolean> running = SanitizeExecutors.supplyAsync(() -> await(release));
+            CompletableFuture<Boolean> cancelled = SanitizeExecutors.supplyAsync(() -> run.getAndSet(true));
+
+            cancelled.cancel(false);
+            // the place of the cancelled supplier in the queue is available again
+            CompletableFuture<Boolean> queued = SanitizeExecutors.supplyAsync(() -> true);
+            release.countDown();
+
+            assertTrue(running.get(10, TimeUnit.SECONDS));
+            assertTrue(queued.get(10, TimeUnit.SECONDS));
+            assertFalse(run.get());
+        } finally {
+            release.countDown();
+            SanitizeExecutors.configureAsync(SanitizeExecutors.DEFAULT_ASYNC_THREADS, SanitizeExecutors.DEFAULT_ASYNC_QUEUE_CAPACITY);
+        }
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
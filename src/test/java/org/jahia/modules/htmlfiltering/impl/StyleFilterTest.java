@@ -0,0 +1,91 @@
+package org.jahia.modules.htmlfiltering.impl;
+
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+import org.jahia.modules.htmlfiltering.impl.cache.CacheStats;
+import org.jahia.modules.htmlfiltering.impl.format.BuiltinFormat;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(JUnitParamsRunner.class)
+public class StyleFilterTest {
+
+    private static Map<String, Predicate<String>> buildFormatsByProperty() {
+        Map<String, Predicate<String>> formatsByProperty = new HashMap<>();
+        formatsByProperty.put("color", BuiltinFormat.COLOR::matches);
+        formatsByProperty.put("margin", BuiltinFormat.CSS_LENGTH::matches);
+        formatsByProperty.put("font-family", value -> true);
+        formatsByProperty.put("font-weight", value -> true);
+        formatsByProperty.put("background", value -> true);
+        return formatsByProperty;
+    }
+
+    @Test
+    @Parameters({
+            // allowed properties are kept in a normalized form
+            "color: red,color:red",
+            "COLOR : #FFF ;  margin:0;,color:#FFF;margin:0",
+            "font-weight: bold !important,font-weight:bold !important",
+            // unknown properties are removed
+            "color:red;mso-bidi-font-family:Calibri;position:fixed,color:red",
+            // values not matching their format are removed
+            "color:#12;margin:10px;margin:auto,margin:10px",
+            // comments are removed
+            "/* Word */color:/**/red,color:red",
+            // semicolons within quotes do not split the declarations
+            "font-family:\"a;b\";color:red,font-family:\"a;b\";color:red",
+            // unsafe values are removed whatever the format
+            "background:url(javascript:alert(1));color:red,color:red",
+            "background:expression(alert(1)),",
+            "background:\\75rl(x);color:blue,color:blue",
+            "font-weight:bold !ie;color:red,color:red",
+            // a declaration left unterminated is removed
+            "color:red;font-family:\"a,color:red",
+            "color:red;background:rgb(1 2 3,color:red",
+            "color:red/* unterminated,color:red",
+            // nothing allowed
+            "position:fixed,",
+            "  ;;,",
+    })
+    public void GIVEN_a_style_WHEN_filtering_THEN_only_the_allowed_declarations_are_kept(String style, String expectedStyle) {
+        StyleFilter styleFilter = new StyleFilter(buildFormatsByProperty());
+
+        String filtered = styleFilter.filter(style);
+
+        assertEquals(expectedStyle.isEmpty() ? null : expectedStyle, filtered);
+    }
+
+    @Test
+    public void GIVEN_a_style_with_a_list_value_WHEN_filtering_THEN_the_value_is_kept() {
+        StyleFilter styleFilter = new StyleFilter(buildFormatsByProperty());
+
+        assertEquals("font-family:\"Times New Roman\", serif;color:red",
+                styleFilter.filter("font-family: \"Times New Roman\", serif; color: red; mso-fareast-language: EN-US"));
+    }
+
+    @Test
+    public void GIVEN_a_style_filter_with_a_cache_WHEN_filtering_repeated_styles_THEN_they_are_sanitized_once() {
+        StyleFilter styleFilter = new StyleFilter(buildFormatsByProperty(), 100, 100000);
+
+        assertEquals("color:red", styleFilter.filter("color:red;mso-ansi-language:EN-US"));
+        assertEquals("color:red", styleFilter.filter("color:red;mso-ansi-language:EN-US"));
+        assertNull(styleFilter.filter("position:absolute"));
+        assertNull(styleFilter.filter("position:absolute"));
+
+        CacheStats stats = styleFilter.stats();
+        assertEquals(2, stats.getHitCount());
+        assertEquals(2, stats.getMissCount());
+    }
+
+    @Test
+    public void GIVEN_a_style_filter_without_cache_WHEN_getting_its_stats_THEN_there_are_none() {
+        assertNull(new StyleFilter(buildFormatsByProperty()).stats());
+    }
+}
@@ -1,9 +1,11 @@
 package org.jahia.modules.htmlfiltering.impl;
 
 import org.jahia.modules.htmlfiltering.model.ConfigModel;
+import org.jahia.modules.htmlfiltering.model.CssPropertyModel;
 import org.jahia.modules.htmlfiltering.model.ElementModel;
 import org.jahia.modules.htmlfiltering.model.PolicyModel;
 import org.jahia.modules.htmlfiltering.model.RuleSetModel;
+import org.jahia.modules.htmlfiltering.model.StyleModel;
 
 import javax.validation.ConstraintViolation;
 import java.lang.annotation.Annotation;
@@ -96,6 +98,19 @@ public class TestHelper {
         return elementModel;
     }
 
+    public static StyleModel buildStyle(CssPropertyModel... properties) {
+        StyleModel styleModel = new StyleModel();
+        styleModel.setProperties(of(properties));
+        return styleModel;
+    }
+
+    public static CssPropertyModel buildCssProperty(List<String> properties, String format) {
+        CssPropertyModel cssPropertyModel = new CssPropertyModel();
+        cssPropertyModel.setProperties(properties);
+        cssPropertyModel.setFormat(format);
+        return cssPropertyModel;
+    }
+
     // equivalent of List.of(...) only available in Java 9+
     public static <T> List<T> of(T... items) {
         return Arrays.asList(items);
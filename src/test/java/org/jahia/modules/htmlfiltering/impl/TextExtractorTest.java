@@ -0,0 +1,71 @@
+package org.jahia.modules.htmlfiltering.impl;
+
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+@RunWith(JUnitParamsRunner.class)
+public class TextExtractorTest {
+
+    @Test
+    @Parameters({
+            "<p>Hello <b>world</b></p>,Hello world",
+            // block elements and line breaks separate the words
+            "<h1>Title</h1><p>Text</p>,Title Text",
+            "a<br />b<br>c,a b c",
+            "<ul><li>a</li><li>b</li></ul>,a b",
+            "<p>a</p>\n<p>b</p>,a\nb",
+            // the content of the elements not displayed as text is removed
+            "a<script>var b = '</p>';</script>c,ac",
+            "a<STYLE type=\"text/css\">p { color: red }</style >c,ac",
+            "<title>t</title><textarea><p>x</p></textarea>a,a",
+            "a<script>unterminated,a",
+            // comments and doctypes are removed
+            "<!DOCTYPE html><!-- a < b -->c<!-->d<?xml version=\"1.0\"?>,cd",
+            // quoted attribute values may contain the end of the tag
+            "<a title=\"a > b\" href='c>d'>link</a>,link",
+            // markup characters are encoded
+            "a < b > c,a &lt; b &gt; c",
+            "a<,a&lt;",
+            "a</ b>c</>d,acd",
+            "Tom & Jerry &amp; co &#39;&#x27;&nbsp; &copy &#;,Tom &amp; Jerry &amp; co &#39;&#x27;&nbsp; &amp;copy &amp;#;",
+            "a<3 b,a&lt;3 b",
+            // the other characters encoded by the OWASP sanitizer in its text output are encoded the same way
+            "<p>say \"hi\" it's `x`</p>,say &#34;hi&#34; it&#39;s &#96;x&#96;",
+            "a=b+c@d {{e}},a&#61;b&#43;c&#64;d &#123;&#123;e}}",
+            // control characters are removed
+            "a\u0000b\u0007c\td,abc\td",
+            // unterminated tags are removed up to the end
+            "a<p title=\"b,a",
+    })
+    public void GIVEN_html_WHEN_extracting_the_text_THEN_only_the_text_is_kept(String html, String expectedText) {
+        assertEquals(expectedText, TextExtractor.extract(html, null));
+    }
+
+    @Test
+    @Parameters({
+            "plain text",
+            "text with references: &amp; &lt;b&gt; &#39;",
+            "text with unicode: \u00E9\uD83D\uDE00",
+    })
+    public void GIVEN_text_without_markup_WHEN_extracting_the_text_THEN_the_same_instance_is_returned(String text) {
+        assertSame(text, TextExtractor.extract(text, null));
+    }
+
+    @Test
+    public void GIVEN_html_WHEN_extracting_the_text_THEN_the_opening_tags_are_notified() {
+        List<String> rejectedTags = new ArrayList<>();
+
+        TextExtractor.extract("<P>a<b>b</b><br /></P><script>c</script><!-- <i> -->", rejectedTags::add);
+
+        assertEquals(Arrays.asList("p", "b", "br", "script"), rejectedTags);
+    }
+}
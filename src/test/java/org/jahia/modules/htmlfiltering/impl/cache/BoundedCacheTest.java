@@ -0,0 +1,119 @@
+package org.jahia.modules.htmlfiltering.impl.cache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BoundedCacheTest {
+
+    @Test
+    public void GIVEN_a_cache_WHEN_adding_more_entries_than_its_maximum_THEN_the_number_of_entries_is_bounded() {
+        BoundedCache<Integer, String> cache = new BoundedCache<>(100, Long.MAX_VALUE, value -> 1);
+
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, "value" + i);
+        }
+
+        CacheStats stats = cache.stats();
+        assertEquals(100, stats.getSize());
+        assertEquals(900, stats.getEvictionCount());
+    }
+
+    @Test
+    public void GIVEN_a_cache_WHEN_adding_entries_heavier_than_its_maximum_weight_THEN_the_total_weight_is_bounded() {
+        BoundedCache<Integer, String> cache = new BoundedCache<>(100, 50, String::length);
+
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, "0123456789");
+        }
+        cache.put(-1, new String(new char[51]));
+
+        CacheStats stats = cache.stats();
+        assertTrue(stats.getWeight() <= 50);
+        assertEquals(5, stats.getSize());
+        assertEquals(1, stats.getRejectionCount());
+        assertNull(cache.get(-1));
+    }
+
+    @Test
+    public void GIVEN_frequently_used_entries_WHEN_a_burst_of_new_entries_is_added_THEN_the_frequently_used_entries_are_kept() {
+        BoundedCache<Integer, String> cache = new BoundedCache<>(100, Long.MAX_VALUE, value -> 1);
+        for (int i = 0; i < 50; i++) {
+            cache.put(i, "hot" + i);
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 50; i++) {
+                cache.get(i);
+            }
+        }
+
+        // entries used only once
+        for (int i = 1000; i < 1500; i++) {
+            cache.put(i, "cold" + i);
+        }
+
+        for (int i = 0; i < 50; i++) {
+            assertEquals("hot" + i, cache.get(i));
+        }
+    }
+
+    @Test
+    public void GIVEN_frequently_used_heavy_entries_WHEN_a_new_heavy_entry_is_added_THEN_the_frequently_used_entries_are_kept() {
+        BoundedCache<Integer, String> cache = new BoundedCache<>(100, 100, String::length);
+        for (int i = 0; i < 4; i++) {
+            cache.put(i, "hot" + i + new String(new char[20]));
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 4; i++) {
+                cache.get(i);
+            }
+        }
+
+        // used only once, it would need to evict all the other entries to fit
+        cache.put(-1, new String(new char[90]));
+
+        assertNull(cache.get(-1));
+        for (int i = 0; i < 4; i++) {
+            assertEquals("hot" + i + new String(new char[20]), cache.get(i));
+        }
+        assertTrue(cache.stats().getWeight() <= 100);
+    }
+
+    @Test
+    public void GIVEN_heavy_entries_WHEN_a_heavy_entry_used_more_often_is_added_THEN_it_evicts_the_least_used_ones() {
+        BoundedCache<Integer, String> cache = new BoundedCache<>(100, 100, String::length);
+        for (int i = 0; i < 4; i++) {
+            cache.put(i, new String(new char[25]));
+        }
+        cache.get(3);
+        for (int round = 0; round < 5; round++) {
+            // missed lookups, as when the same large content is sanitized again and again
+            cache.get(-1);
+        }
+
+        cache.put(-1, new String(new char[50]));
+
+        assertEquals(50, cache.get(-1).length());
+        assertEquals(25, cache.get(3).length());
+        assertNull(cache.get(0));
+        assertNull(cache.get(1));
+        assertEquals(2, cache.stats().getEvictionCount());
+        assertTrue(cache.stats().getWeight() <= 100);
+    }
+
+    @Test
+    public void GIVEN_a_cache_WHEN_looking_up_entries_THEN_hits_and_misses_are_counted() {
+        BoundedCache<String, String> cache = new BoundedCache<>(10, 10, value -> 1);
+        cache.put("a", "A");
+
+        assertEquals("A", cache.get("a"));
+        assertNull(cache.get("b"));
+
+        CacheStats stats = cache.stats();
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(0.5, stats.getHitRate(), 0.0);
+    }
+}
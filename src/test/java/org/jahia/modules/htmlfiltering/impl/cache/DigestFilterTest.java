@@ -0,0 +1,53 @@
+package org.jahia.modules.htmlfiltering.impl.cache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DigestFilterTest {
+
+    @Test
+    public void GIVEN_added_texts_WHEN_checking_them_THEN_they_are_contained() {
+        DigestFilter filter = new DigestFilter(1000);
+
+        for (int i = 0; i < 1000; i++) {
+            filter.add("<p>text " + i + "</p>");
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.mightContain("<p>text " + i + "</p>"));
+        }
+    }
+
+    @Test
+    public void GIVEN_a_full_filter_WHEN_checking_texts_not_added_THEN_few_false_positives_are_returned() {
+        DigestFilter filter = new DigestFilter(1000);
+        for (int i = 0; i < 1000; i++) {
+            filter.add("<p>text " + i + "</p>");
+        }
+
+        int falsePositives = 0;
+        for (int i = 1000; i < 11000; i++) {
+            if (filter.mightContain("<p>text " + i + "</p>")) {
+                falsePositives++;
+            }
+        }
+
+        // about 1% expected
+        assertTrue("Too many false positives: " + falsePositives, falsePositives < 300);
+    }
+
+    @Test
+    public void GIVEN_more_texts_than_expected_WHEN_adding_them_THEN_the_filter_is_cleared() {
+        DigestFilter filter = new DigestFilter(100);
+        filter.add("<p>first</p>");
+
+        for (int i = 0; i < 100; i++) {
+            filter.add("<p>text " + i + "</p>");
+        }
+
+        assertFalse(filter.mightContain("<p>first</p>"));
+        assertTrue(filter.mightContain("<p>text 99</p>"));
+    }
+}
@@ -0,0 +1,114 @@
+package org.jahia.modules.htmlfiltering.impl.format;
+
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnitParamsRunner.class)
+public class BuiltinFormatTest {
+
+    private static final String CHARACTERS = "abfhmoptxzAF0159.%:/_-#@()\\{} \t\n\u00E9\u00A0\u0663";
+
+    @Test
+    public void GIVEN_the_html_id_format_WHEN_matching_random_values_THEN_same_results_as_the_regex() {
+        assertSameAsRegex(BuiltinFormat.HTML_ID, "[a-zA-Z][a-zA-Z0-9\\:\\-_\\.]*", "");
+    }
+
+    @Test
+    public void GIVEN_the_number_or_percent_format_WHEN_matching_random_values_THEN_same_results_as_the_regex() {
+        assertSameAsRegex(BuiltinFormat.NUMBER_OR_PERCENT, "([0-9]+%?|[0-9]+\\.[0-9]+%?|auto)", "auto");
+    }
+
+    @Test
+    public void GIVEN_the_links_url_format_WHEN_matching_random_values_THEN_same_results_as_the_regex() {
+        assertSameAsRegex(BuiltinFormat.LINKS_URL,
+                "(?:(?:[\\p{L}\\p{N}\\\\\\.#@$%\\+&;\\-_~,\\?=/!{}:]+|#(\\w)+)|(\\s*(?:(?:ht|f)tps?://|mailto:)[\\p{L}\\p{N}][\\p{L}\\p{N}\\p{Zs}\\.#@$%\\+&:\\-_~,\\?=/!\\(\\)]*+\\s*))",
+                " https://");
+    }
+
+    private static void assertSameAsRegex(BuiltinFormat format, String regex, String prefix) {
+        Pattern pattern = Pattern.compile(regex);
+        Random random = new Random(42);
+        for (int i = 0; i < 50000; i++) {
+            // half of the values start with a prefix matching the beginning of the format
+            StringBuilder value = new StringBuilder(i % 2 == 0 ? prefix : "");
+            int length = random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                value.append(CHARACTERS.charAt(random.nextInt(CHARACTERS.length())));
+            }
+            assertEquals(format + " on '" + value + "'", pattern.matcher(value).matches(), format.matches(value));
+        }
+    }
+
+    @Test
+    @Parameters({
+            "#fff",
+            "#FFFA",
+            "#00ff00",
+            "#00ff0080",
+            "red",
+            "transparent",
+    })
+    public void GIVEN_a_color_WHEN_matching_THEN_it_matches(String value) {
+        assertTrue(BuiltinFormat.COLOR.matches(value));
+    }
+
+    @Test
+    @Parameters({
+            "",
+            "#",
+            "#ff",
+            "#fffff",
+            "#ggg",
+            "red;",
+            "rgb(0)",
+    })
+    public void GIVEN_an_invalid_color_WHEN_matching_THEN_it_does_not_match(String value) {
+        assertFalse(BuiltinFormat.COLOR.matches(value));
+    }
+
+    @Test
+    @Parameters({
+            "0",
+            "12px",
+            "1.5em",
+            ".5REM",
+            "50%",
+            "100vh",
+    })
+    public void GIVEN_a_css_length_WHEN_matching_THEN_it_matches(String value) {
+        assertTrue(BuiltinFormat.CSS_LENGTH.matches(value));
+    }
+
+    @Test
+    @Parameters({
+            "",
+            "12",
+            "px",
+            "1.px",
+            "-1px",
+            "12 px",
+            "1e3px",
+    })
+    public void GIVEN_an_invalid_css_length_WHEN_matching_THEN_it_does_not_match(String value) {
+        assertFalse(BuiltinFormat.CSS_LENGTH.matches(value));
+    }
+
+    @Test
+    public void GIVEN_format_references_WHEN_resolving_them_THEN_only_existing_built_in_formats_are_returned() {
+        assertEquals(BuiltinFormat.HTML_ID, BuiltinFormat.fromReference("builtin:HTML_ID"));
+        assertNull(BuiltinFormat.fromReference("builtin:UNKNOWN"));
+        assertNull(BuiltinFormat.fromReference("HTML_ID"));
+        assertTrue(BuiltinFormat.isReference("builtin:UNKNOWN"));
+        assertFalse(BuiltinFormat.isReference("HTML_ID"));
+    }
+}
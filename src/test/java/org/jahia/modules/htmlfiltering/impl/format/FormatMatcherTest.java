@@ -0,0 +1,88 @@
+package org.jahia.modules.htmlfiltering.impl.format;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FormatMatcherTest {
+
+    private static final String[] LINEAR_REGEXES = {
+            "[a-zA-Z][a-zA-Z0-9\\:\\-_\\.]*",
+            "([0-9]+%?|[0-9]+\\.[0-9]+%?|auto)",
+            "(?:(?:[\\p{L}\\p{N}\\\\\\.#@$%\\+&;\\-_~,\\?=/!{}:]+|#(\\w)+)|(\\s*(?:(?:ht|f)tps?://|mailto:)[\\p{L}\\p{N}][\\p{L}\\p{N}\\p{Zs}\\.#@$%\\+&:\\-_~,\\?=/!\\(\\)]*+\\s*))",
+            "^[a-zA-Z0-9_]+$",
+            ".*\\.gif",
+            "(?i)auto|[0-9]{1,3}+%?",
+            "[a-z&&[^aeiou]]+\\Q.b\\E",
+            "a*+b?a",
+    };
+    private static final String CHARACTERS = "abcdefgiostuxyzAB019.%:/_-# \t\n\u00E9\u00A0!()\\{}";
+
+    @Test
+    public void GIVEN_regular_formats_WHEN_matching_random_values_THEN_same_results_as_java_regex() {
+        Random random = new Random(42);
+        for (String regex : LINEAR_REGEXES) {
+            FormatMatcher matcher = FormatMatcher.compile(regex);
+            Pattern pattern = Pattern.compile(regex);
+            assertTrue(regex, matcher.isLinear());
+            for (int i = 0; i < 20000; i++) {
+                StringBuilder value = new StringBuilder();
+                int length = random.nextInt(10);
+                for (int j = 0; j < length; j++) {
+                    // half of the values are made of the characters of the regex, to match it more often
+                    String characters = i % 2 == 0 ? CHARACTERS : regex;
+                    value.append(characters.charAt(random.nextInt(characters.length())));
+                }
+                assertEquals(regex + " on '" + value + "'", pattern.matcher(value).matches(), matcher.matches(value));
+            }
+        }
+    }
+
+    @Test
+    public void GIVEN_the_default_link_format_WHEN_matching_urls_THEN_they_match() {
+        FormatMatcher matcher = FormatMatcher.compile(LINEAR_REGEXES[2]);
+
+        assertTrue(matcher.matches("https://www.jahia.com/home.html?lang=fr#top"));
+        assertTrue(matcher.matches(" mailto:john.doe@example.com "));
+        assertTrue(matcher.matches("/cms/{mode}/{lang}/sites/digitall/home.html"));
+        assertFalse(matcher.matches("javascript:alert(1)"));
+    }
+
+    @Test
+    public void GIVEN_nested_repetitions_WHEN_compiling_THEN_exponential_complexity() {
+        FormatMatcher matcher = FormatMatcher.compile("(a+)+");
+
+        assertEquals(FormatComplexity.EXPONENTIAL, matcher.getComplexity());
+        // matched in linear time anyway
+        assertTrue(matcher.isLinear());
+        assertFalse(matcher.matches(new String(new char[100000]).replace('\0', 'a') + "!"));
+    }
+
+    @Test
+    public void GIVEN_overlapping_repetitions_WHEN_compiling_THEN_polynomial_complexity() {
+        assertEquals(FormatComplexity.POLYNOMIAL, FormatMatcher.compile("a*a*").getComplexity());
+        assertEquals(FormatComplexity.LINEAR, FormatMatcher.compile("a*b*").getComplexity());
+        assertEquals(FormatComplexity.LINEAR, FormatMatcher.compile("a*+a*").getComplexity());
+    }
+
+    @Test
+    public void GIVEN_a_back_reference_WHEN_compiling_THEN_java_regex_is_used() {
+        FormatMatcher matcher = FormatMatcher.compile("(a+)+\\1");
+
+        assertFalse(matcher.isLinear());
+        assertEquals(FormatComplexity.EXPONENTIAL, matcher.getComplexity());
+        assertTrue(matcher.matches("aaa"));
+        assertFalse(matcher.matches("a"));
+    }
+
+    @Test
+    public void GIVEN_the_same_regex_WHEN_compiling_twice_THEN_the_matcher_is_shared() {
+        assertSame(FormatMatcher.compile("[0-9]+"), FormatMatcher.compile("[0-9]+"));
+    }
+}